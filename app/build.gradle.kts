@@ -53,6 +53,10 @@ dependencies {
     implementation("com.google.android.gms:play-services-location:21.1.0")
     
     testImplementation(libs.junit)
+    // Host-side SQLite for schema / query-plan tests
+    testImplementation(libs.sqlite.jdbc)
+    // Real org.json on the JVM; the android.jar stubs throw
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.example.notex.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.notex.models.Notebook;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark for the notebook listing query with 1,000 notebooks.
+ * The listing must stay a single query regardless of notebook count,
+ * so page counts come from the denormalized column.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotebookListingBenchmarkTest {
+
+    private static final String TAG = "NotebookListingBench";
+    private static final int NOTEBOOK_COUNT = 1000;
+    private static final int RUNS = 5;
+
+    private DatabaseHelper dbHelper;
+    private String userId;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        userId = "bench_" + UUID.randomUUID();
+
+        for (int i = 0; i < NOTEBOOK_COUNT; i++) {
+            dbHelper.addNotebook(userId, "Notebook " + i, "#5DADE2");
+        }
+        // Give every notebook a multi-page payload so the legacy path would parse JSON per row
+        for (Notebook notebook : dbHelper.getUserNotebooks(userId)) {
+            dbHelper.addPage(notebook.getId(), "Multi-Page Notebook",
+                    "{\"pages\":[{\"pageNumber\":1,\"content\":\"{}\"},{\"pageNumber\":2,\"content\":\"{}\"}],\"totalPages\":2}");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Notebook notebook : dbHelper.getUserNotebooks(userId)) {
+            dbHelper.deleteNotebook(notebook.getId());
+        }
+    }
+
+    @Test
+    public void listUserNotebooks_1000Notebooks() {
+        List<Notebook> notebooks = dbHelper.getUserNotebooks(userId);
+        assertEquals(NOTEBOOK_COUNT, notebooks.size());
+        for (Notebook notebook : notebooks) {
+            assertEquals(2, notebook.getPageCount());
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            dbHelper.getUserNotebooks(userId);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Log.i(TAG, "getUserNotebooks(" + NOTEBOOK_COUNT + " notebooks): best of " + RUNS + " = "
+                + (best / 1_000_000.0) + " ms");
+    }
+}
@@ -8,9 +8,9 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.databinding.ActivityAdminDashboardBinding;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
 
 import java.text.SimpleDateFormat;
@@ -107,12 +107,10 @@ public class AdminDashboardActivity extends AppCompatActivity {
 
     private void loadSystemStats() {
         // Load actual statistics from database
-        AuthManager authManager = AuthManager.getInstance(this);
-        DatabaseHelper db = authManager.getDatabaseHelper();
-        
+        NoteRepository repository = NoteRepository.getInstance(this);
+
         // Get total user count
-        int totalUsers = db.getTotalUserCount();
-        binding.tvTotalUsers.setText(String.valueOf(totalUsers));
+        repository.getTotalUserCount(totalUsers -> binding.tvTotalUsers.setText(String.valueOf(totalUsers)));
         
         // Total notes - will be implemented when notes feature is added
         binding.tvTotalNotes.setText("0");
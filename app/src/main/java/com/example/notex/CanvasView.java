@@ -140,6 +140,9 @@ public class CanvasView extends FrameLayout {
     private java.util.Stack<CanvasState> undoStack = new java.util.Stack<>();
     private java.util.Stack<CanvasState> redoStack = new java.util.Stack<>();
     private static final int MAX_UNDO_STACK = 50;
+
+    // Longest side of the display rendition kept next to each inserted image
+    private static final int IMAGE_DISPLAY_MAX_SIZE = 1024;
     
     // Simplified text state - just track if editing
     private boolean isEditingText = false;
@@ -662,16 +665,17 @@ public class CanvasView extends FrameLayout {
     }
     public void addImage(android.net.Uri imageUri) {
         try {
-            // Load bitmap from URI
-            android.graphics.Bitmap bitmap;
+            // Store the picked bytes by content hash; a photo inserted before is reused as is
+            java.io.File original;
             try (java.io.InputStream input = getContext().getContentResolver().openInputStream(imageUri)) {
                 if (input == null) {
                     Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
                     return;
                 }
-                bitmap = android.graphics.BitmapFactory.decodeStream(input);
+                original = getImageStore().put(input);
             }
 
+            android.graphics.Bitmap bitmap = loadDisplayBitmap(original);
             if (bitmap == null) {
                 Toast.makeText(getContext(), "Failed to decode image", Toast.LENGTH_SHORT).show();
                 return;
@@ -681,40 +685,23 @@ public class CanvasView extends FrameLayout {
             int maxWidth = getWidth() > 0 ? getWidth() / 2 : 800;
             int maxHeight = getHeight() > 0 ? getHeight() / 2 : 800;
             
-            float scale = Math.min(
+            float scale = Math.min(1.0f, Math.min(
                 (float) maxWidth / bitmap.getWidth(),
                 (float) maxHeight / bitmap.getHeight()
-            );
-            
-            if (scale < 1.0f) {
-                int newWidth = (int) (bitmap.getWidth() * scale);
-                int newHeight = (int) (bitmap.getHeight() * scale);
-                bitmap = android.graphics.Bitmap.createScaledBitmap(bitmap, newWidth, newHeight, true);
-            }
+            ));
+            float width = bitmap.getWidth() * scale;
+            float height = bitmap.getHeight() * scale;
             
             // Place image at center of canvas
-            float x = (getWidth() - bitmap.getWidth()) / 2f;
-            float y = (getHeight() - bitmap.getHeight()) / 2f;
+            float x = (getWidth() - width) / 2f;
+            float y = (getHeight() - height) / 2f;
             
             // Ensure image is visible (minimum coordinates)
             if (x < 0) x = 50;
             if (y < 0) y = 50;
-            
-            // Persist the bitmap to app storage so it can be reloaded after saving
-            java.io.File imagesDir = new java.io.File(getContext().getFilesDir(), "canvas_images");
-            if (!imagesDir.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                imagesDir.mkdirs();
-            }
-            String timeStamp = new java.text.SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.getDefault())
-                    .format(new java.util.Date());
-            java.io.File outFile = new java.io.File(imagesDir, "img_" + timeStamp + "_" + java.util.UUID.randomUUID() + ".png");
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(outFile)) {
-                bitmap.compress(android.graphics.Bitmap.CompressFormat.PNG, 100, fos);
-            }
 
             ImageElement imageElement = new ImageElement(
-                bitmap, outFile.getAbsolutePath(), x, y, bitmap.getWidth(), bitmap.getHeight());
+                bitmap, original.getAbsolutePath(), x, y, width, height);
             imageElements.add(imageElement);
             
             saveState(); // Save state for undo/redo
@@ -726,6 +713,76 @@ public class CanvasView extends FrameLayout {
         }
     }
 
+    private com.example.notex.database.CanvasImageStore getImageStore() {
+        return new com.example.notex.database.CanvasImageStore(
+                new java.io.File(getContext().getFilesDir(), "canvas_images"));
+    }
+
+    /**
+     * Decode the display rendition of a stored image, creating it from the
+     * original on first use. Returns null if the image cannot be decoded.
+     */
+    private android.graphics.Bitmap loadDisplayBitmap(java.io.File original) {
+        java.io.File display = com.example.notex.database.CanvasImageStore.displayFile(original);
+        if (display.isFile()) {
+            android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(display.getAbsolutePath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        // Subsample while decoding so a camera photo never has to fit in memory at full size
+        android.graphics.BitmapFactory.Options options = new android.graphics.BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        android.graphics.BitmapFactory.decodeFile(original.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= IMAGE_DISPLAY_MAX_SIZE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(original.getAbsolutePath(), options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        float scale = (float) IMAGE_DISPLAY_MAX_SIZE / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale < 1.0f) {
+            android.graphics.Bitmap scaled = android.graphics.Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+
+        // Written to a temp file and renamed, so a reader never decodes a partial rendition
+        java.io.File dir = display.getParentFile();
+        if (dir != null && !dir.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dir.mkdirs();
+        }
+        java.io.File temp = new java.io.File(dir, display.getName() + ".tmp");
+        try (java.io.FileOutputStream fos = new java.io.FileOutputStream(temp)) {
+            if (bitmap.hasAlpha()) {
+                bitmap.compress(android.graphics.Bitmap.CompressFormat.PNG, 100, fos);
+            } else {
+                bitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, 90, fos);
+            }
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+        }
+        if (!temp.renameTo(display)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+        return bitmap;
+    }
+
     // Serialize canvas content to JSON
     public String toJson() {
         try {
@@ -913,7 +970,7 @@ public class CanvasView extends FrameLayout {
                         if (imageObj.has("path")) {
                             String path = imageObj.optString("path", null);
                             if (path != null && !path.isEmpty()) {
-                                android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(path);
+                                android.graphics.Bitmap bitmap = loadDisplayBitmap(new java.io.File(path));
                                 if (bitmap != null) {
                                     ImageElement element = new ImageElement(bitmap, path, x, y, width, height);
                                     element.rotation = rotation;
@@ -929,21 +986,11 @@ public class CanvasView extends FrameLayout {
                         if (imageObj.has("bitmap")) {
                             String base64Image = imageObj.getString("bitmap");
                             byte[] imageBytes = android.util.Base64.decode(base64Image, android.util.Base64.DEFAULT);
-                            android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+                            // Persist it to the store so subsequent saves use the new format;
+                            // reloading the same page reuses the file instead of writing another
+                            java.io.File outFile = getImageStore().put(imageBytes);
+                            android.graphics.Bitmap bitmap = loadDisplayBitmap(outFile);
                             if (bitmap != null) {
-                                // Persist it to file so subsequent saves use the new format
-                                java.io.File imagesDir = new java.io.File(getContext().getFilesDir(), "canvas_images");
-                                if (!imagesDir.exists()) {
-                                    //noinspection ResultOfMethodCallIgnored
-                                    imagesDir.mkdirs();
-                                }
-                                String timeStamp = new java.text.SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.getDefault())
-                                        .format(new java.util.Date());
-                                java.io.File outFile = new java.io.File(imagesDir, "img_" + timeStamp + "_" + java.util.UUID.randomUUID() + ".png");
-                                try (java.io.FileOutputStream fos = new java.io.FileOutputStream(outFile)) {
-                                    bitmap.compress(android.graphics.Bitmap.CompressFormat.PNG, 100, fos);
-                                }
-
                                 ImageElement element = new ImageElement(bitmap, outFile.getAbsolutePath(), x, y, width, height);
                                 element.rotation = rotation;
                                 element.flipHorizontal = flipH;
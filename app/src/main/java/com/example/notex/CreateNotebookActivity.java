@@ -10,9 +10,9 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.databinding.ActivityCreateNotebookBinding;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
 
 /**
@@ -22,7 +22,7 @@ public class CreateNotebookActivity extends AppCompatActivity {
 
     private ActivityCreateNotebookBinding binding;
     private AuthManager authManager;
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private String selectedColor = "#5DADE2"; // Default sky blue
 
     private final String[] notebookColors = {
@@ -47,7 +47,7 @@ public class CreateNotebookActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
 
         authManager = AuthManager.getInstance(this);
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
 
         setupToolbar();
         setupColorPicker();
@@ -138,13 +138,13 @@ public class CreateNotebookActivity extends AppCompatActivity {
             return;
         }
 
-        boolean success = dbHelper.addNotebook(currentUser.getId(), title, selectedColor);
-
-        if (success) {
-            Toast.makeText(this, "Notebook created successfully", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to create notebook", Toast.LENGTH_SHORT).show();
-        }
+        repository.addNotebook(currentUser.getId(), title, selectedColor, success -> {
+            if (success) {
+                Toast.makeText(this, "Notebook created successfully", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                Toast.makeText(this, "Failed to create notebook", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
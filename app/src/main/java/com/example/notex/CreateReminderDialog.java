@@ -16,9 +16,9 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.notex.databinding.DialogCreateReminderBinding;
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
 import com.google.android.material.chip.Chip;
 
@@ -33,7 +33,7 @@ import java.util.UUID;
 public class CreateReminderDialog {
 
     private final Context context;
-    private final DatabaseHelper dbHelper;
+    private final NoteRepository repository;
     private final AuthManager authManager;
     private final User currentUser;
     private AlertDialog dialog;
@@ -52,7 +52,7 @@ public class CreateReminderDialog {
 
     public CreateReminderDialog(Context context, OnReminderCreatedListener listener) {
         this.context = context;
-        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.repository = NoteRepository.getInstance(context);
         this.authManager = AuthManager.getInstance(context);
         this.currentUser = authManager.getCurrentUser();
         this.listener = listener;
@@ -250,8 +250,10 @@ public class CreateReminderDialog {
         }
 
         // Save to database
-        String reminderId = dbHelper.createReminder(reminder);
-        
+        repository.createReminder(reminder, reminderId -> onReminderSaved(reminderId, reminder));
+    }
+
+    private void onReminderSaved(String reminderId, Reminder reminder) {
         if (reminderId != null) {
             // Schedule alarm for time-based reminders
             if (selectedTriggerType.equals(Reminder.TRIGGER_TIME)) {
@@ -76,8 +76,14 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void attemptLogin(String username, String password, User.UserRole role) {
-        boolean success = authManager.login(username, password, role);
+        setLoginEnabled(false);
+        authManager.login(username, password, role, success -> onLoginResult(username, password, role, success));
+    }
 
+    private void onLoginResult(String username, String password, User.UserRole role, boolean success) {
+        if (isFinishing()) {
+            return;
+        }
         if (success) {
             // Login successful
             Toast.makeText(this, "Welcome, " + username + "!", Toast.LENGTH_SHORT).show();
@@ -92,17 +98,25 @@ public class LoginActivity extends AppCompatActivity {
             startActivity(intent);
             finish();
         } else {
-            // Login failed
-            String errorMessage = getString(R.string.error_invalid_credentials);
-
-            // Check if it's a role mismatch
-            if (authManager.login(username, password,
-                    role == User.UserRole.USER ? User.UserRole.ADMIN : User.UserRole.USER)) {
-                authManager.logout(); // Logout the wrong role
-                errorMessage = getString(R.string.error_wrong_role);
-            }
-
-            Toast.makeText(this, errorMessage, Toast.LENGTH_LONG).show();
+            // Login failed; check if it's a role mismatch
+            authManager.login(username, password,
+                    role == User.UserRole.USER ? User.UserRole.ADMIN : User.UserRole.USER, otherRole -> {
+                String errorMessage = getString(R.string.error_invalid_credentials);
+                if (otherRole) {
+                    authManager.logout(); // Logout the wrong role
+                    errorMessage = getString(R.string.error_wrong_role);
+                }
+                setLoginEnabled(true);
+                Toast.makeText(this, errorMessage, Toast.LENGTH_LONG).show();
+            });
         }
     }
+
+    /**
+     * Block a second attempt while one is being checked
+     */
+    private void setLoginEnabled(boolean enabled) {
+        binding.btnLoginUser.setEnabled(enabled);
+        binding.btnLoginAdmin.setEnabled(enabled);
+    }
 }
@@ -6,9 +6,10 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.databinding.ActivityMultiPageEditorBinding;
 import com.example.notex.models.Page;
+import com.example.notex.models.PageSummary;
+import com.example.notex.repository.NoteRepository;
 
 /**
  * MultiPageEditorActivity - Multi-page notebook editor with scrollable pages
@@ -21,10 +22,14 @@ import com.example.notex.models.Page;
 public class MultiPageEditorActivity extends AppCompatActivity {
 
     private ActivityMultiPageEditorBinding binding;
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private String notebookId;
     private String pageId;
     private boolean isEditMode = false;
+    // The page's row is being looked up or created; a save made meanwhile waits for its id
+    private boolean pageIdPending = false;
+    private String pendingSaveData;
+    private int pendingSavePageCount;
     private CanvasView.Mode currentMode = CanvasView.Mode.SCROLL; // Default to scroll
     private boolean hasUnsavedChanges = false;
     
@@ -47,7 +52,7 @@ public class MultiPageEditorActivity extends AppCompatActivity {
         binding = ActivityMultiPageEditorBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
 
         // Get intent data
         notebookId = getIntent().getStringExtra("NOTEBOOK_ID");
@@ -70,26 +75,8 @@ public class MultiPageEditorActivity extends AppCompatActivity {
             loadPage();
         } else {
             // Check if notebook has existing pages
-            java.util.List<Page> existingPages = dbHelper.getNotebookPages(notebookId);
-            if (existingPages != null && !existingPages.isEmpty()) {
-                // Load the first page
-                pageId = existingPages.get(0).getId();
-                isEditMode = true;
-                loadPage();
-            } else {
-                // Create first page automatically for new notebooks
-                binding.multiPageCanvas.addNewPage();
-                // Auto-save the initial page
-                String canvasData = binding.multiPageCanvas.toJson();
-                boolean success = dbHelper.addPage(notebookId, "Multi-Page Notebook", canvasData);
-                if (success) {
-                    isEditMode = true;
-                    java.util.List<Page> pages = dbHelper.getNotebookPages(notebookId);
-                    if (!pages.isEmpty()) {
-                        pageId = pages.get(pages.size() - 1).getId();
-                    }
-                }
-            }
+            pageIdPending = true;
+            repository.getNotebookPageSummaries(notebookId, this::onExistingPagesLoaded);
             // Set toolbar title with notebook name
             if (getSupportActionBar() != null && notebookName != null) {
                 getSupportActionBar().setTitle(notebookName);
@@ -97,6 +84,26 @@ public class MultiPageEditorActivity extends AppCompatActivity {
         }
     }
 
+    private void onExistingPagesLoaded(java.util.List<PageSummary> existingPages) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (existingPages != null && !existingPages.isEmpty()) {
+            // Load the first page
+            pageId = existingPages.get(0).getId();
+            isEditMode = true;
+            // The loaded page replaces the canvas, and with it anything a waiting save held
+            pageIdPending = false;
+            pendingSaveData = null;
+            loadPage();
+        } else {
+            // Create first page automatically for new notebooks
+            binding.multiPageCanvas.addNewPage();
+            // Auto-save the initial page
+            createPage(binding.multiPageCanvas.toJson(), -1);
+        }
+    }
+
     private void setupToolbar() {
         setSupportActionBar(binding.toolbar);
         if (getSupportActionBar() != null) {
@@ -1802,7 +1809,13 @@ public class MultiPageEditorActivity extends AppCompatActivity {
     }
 
     private void loadPage() {
-        Page page = dbHelper.getPageById(pageId);
+        repository.getPageById(pageId, this::showPage);
+    }
+
+    private void showPage(Page page) {
+        if (isDestroyed()) {
+            return;
+        }
         if (page != null) {
             // Load multi-page canvas content from JSON
             String content = page.getContent();
@@ -1822,22 +1835,49 @@ public class MultiPageEditorActivity extends AppCompatActivity {
         String canvasData = binding.multiPageCanvas.toJson();
         int actualPageCount = binding.multiPageCanvas.getPageCount();
 
-        boolean success;
+        if (pageIdPending) {
+            // Written once the page's id is known, so a second row is never inserted
+            pendingSaveData = canvasData;
+            pendingSavePageCount = actualPageCount;
+            return;
+        }
+        writePage(canvasData, actualPageCount);
+    }
+
+    private void writePage(String canvasData, int actualPageCount) {
         if (isEditMode) {
-            success = dbHelper.updatePage(pageId, "Multi-Page Notebook", canvasData);
+            repository.updatePage(notebookId, pageId, "Multi-Page Notebook", canvasData,
+                success -> onPageSaved(success, actualPageCount));
         } else {
-            success = dbHelper.addPage(notebookId, "Multi-Page Notebook", canvasData);
-            if (success) {
+            createPage(canvasData, actualPageCount);
+        }
+    }
+
+    /**
+     * Insert the page's row; saves made until its id is known update it instead
+     * @param actualPageCount pages to report as saved, or -1 for the silent first save
+     */
+    private void createPage(String canvasData, int actualPageCount) {
+        pageIdPending = true;
+        repository.createPage(notebookId, "Multi-Page Notebook", canvasData, newPageId -> {
+            pageIdPending = false;
+            if (newPageId != null) {
                 // Switch to edit mode after first save
                 isEditMode = true;
-                // Get the newly created page ID
-                java.util.List<Page> pages = dbHelper.getNotebookPages(notebookId);
-                if (!pages.isEmpty()) {
-                    pageId = pages.get(pages.size() - 1).getId();
-                }
+                pageId = newPageId;
             }
-        }
+            if (actualPageCount >= 0) {
+                onPageSaved(newPageId != null, actualPageCount);
+            }
+            if (pendingSaveData != null) {
+                String pending = pendingSaveData;
+                pendingSaveData = null;
+                writePage(pending, pendingSavePageCount);
+            }
+        });
+    }
 
+    private void onPageSaved(boolean success, int actualPageCount) {
         if (success) {
             Toast.makeText(this, "✅ Saved! (" + 
                 actualPageCount + " page" + 
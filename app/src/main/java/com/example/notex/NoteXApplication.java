@@ -0,0 +1,52 @@
+package com.example.notex;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.example.notex.jobs.JobManager;
+import com.example.notex.repository.NoteRepository;
+
+/**
+ * NoteXApplication - Process-wide setup.
+ * Debug builds enable StrictMode so any disk or network access left on the
+ * main thread shows up in logcat. Media no page refers to any more is
+ * collected in the background once per process start, and exports the
+ * last process did not get to finish are resumed. Pooled scan buffers are
+ * dropped whenever the system asks for memory back.
+ */
+public class NoteXApplication extends Application {
+
+    private static final String TAG = "NoteXApplication";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedSqlLiteObjects()
+                    .detectLeakedClosableObjects()
+                    .penaltyLog()
+                    .build());
+        }
+
+        NoteRepository.getInstance(this).collectOrphanedMedia(
+                result -> Log.i(TAG, "Media collection: " + result));
+        JobManager.getInstance(this).resumeUnfinished();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Pooled scan buffers are only a cache; they are made again when needed
+        ScanUtils.trimPools();
+    }
+}
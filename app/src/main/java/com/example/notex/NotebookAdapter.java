@@ -36,6 +36,8 @@ public class NotebookAdapter extends RecyclerView.Adapter<NotebookAdapter.Notebo
         void onDeleteClick(Notebook notebook);
 
         void onExportPdfClick(Notebook notebook);
+
+        void onExportArchiveClick(Notebook notebook);
     }
 
     public NotebookAdapter(Context context, List<Notebook> notebooks, OnNotebookClickListener listener) {
@@ -142,6 +144,11 @@ public class NotebookAdapter extends RecyclerView.Adapter<NotebookAdapter.Notebo
                             listener.onExportPdfClick(notebook);
                         }
                         return true;
+                    } else if (id == R.id.action_export_archive) {
+                        if (listener != null) {
+                            listener.onExportArchiveClick(notebook);
+                        }
+                        return true;
                     } else if (id == R.id.action_pin) {
                         if (listener != null) {
                             listener.onPinClick(notebook);
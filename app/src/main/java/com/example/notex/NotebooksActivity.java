@@ -2,13 +2,6 @@ package com.example.notex;
 
 import android.app.ProgressDialog;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.Typeface;
-import android.graphics.pdf.PdfDocument;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -18,27 +11,33 @@ import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.notex.database.DatabaseHelper;
+import com.example.notex.database.NotebookArchive;
 import com.example.notex.databinding.ActivityNotebooksBinding;
+import com.example.notex.export.PdfExportDialog;
 import com.example.notex.models.Notebook;
-import com.example.notex.models.Page;
+import com.example.notex.models.SearchResult;
 import com.example.notex.models.User;
+import com.example.notex.repository.BackgroundJob;
+import com.example.notex.repository.KeysetLoader;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.example.notex.utils.LoadMoreScrollListener;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * NotebooksActivity - Displays user's notebooks
@@ -47,12 +46,23 @@ public class NotebooksActivity extends AppCompatActivity {
 
     private ActivityNotebooksBinding binding;
     private AuthManager authManager;
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private NotebookAdapter notebookAdapter;
     private List<Notebook> notebooks;
-    private List<Notebook> allNotebooks;
+    // Notebooks loaded so far, in listing order; grows a page at a time as the user scrolls
+    private final List<Notebook> allNotebooks = new ArrayList<>();
+    private KeysetLoader<Notebook> notebookLoader;
+    private ActivityResultLauncher<String[]> importLauncher;
     private User currentUser;
     private boolean searchMode = false;
+    private String searchQuery = "";
+    private boolean notebooksStale = false;
+
+    private static final int SEARCH_LIMIT = 50;
+    private static final int PAGE_SIZE = 50;
+
+    // Notebook or page writes change titles, pins, counts or ordering
+    private final NoteRepository.OnChangeListener changeListener = (table, id) -> notebooksStale = true;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -61,18 +71,29 @@ public class NotebooksActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
 
         authManager = AuthManager.getInstance(this);
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
         currentUser = authManager.getCurrentUser();
+        importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+            if (uri != null) {
+                importNotebookArchive(uri);
+            }
+        });
 
         if (currentUser == null) {
             finish();
             return;
         }
 
+        notebookLoader = new KeysetLoader<>(PAGE_SIZE,
+                (after, limit, callback) -> repository.getUserNotebooks(currentUser.getId(), after, limit, callback),
+                Notebook::getId, this::onNotebooksPage);
+
         setupToolbar();
         setupRecyclerView();
         setupClickListeners();
         setupSearch();
+        repository.addOnChangeListener(changeListener,
+                NoteRepository.Table.NOTEBOOKS, NoteRepository.Table.PAGES);
         loadNotebooks();
     }
 
@@ -142,6 +163,7 @@ public class NotebooksActivity extends AppCompatActivity {
     }
 
     private void filterNotebooks(String query) {
+        searchQuery = query;
         notebooks.clear();
         
         if (query.isEmpty()) {
@@ -153,12 +175,61 @@ public class NotebooksActivity extends AppCompatActivity {
                     notebooks.add(notebook);
                 }
             }
+            // Then add notebooks whose page text matches, best match first
+            repository.search(currentUser.getId(), query, SEARCH_LIMIT, results -> addContentMatches(query, results));
         }
         
         // Pass search query to adapter for highlighting
         notebookAdapter.setSearchQuery(query);
     }
 
+    private void addContentMatches(String query, List<SearchResult> results) {
+        // Ignore results for a query the user has already typed past
+        if (isDestroyed() || !query.equals(searchQuery)) {
+            return;
+        }
+
+        Map<String, Notebook> notebooksById = new HashMap<>();
+        for (Notebook notebook : allNotebooks) {
+            notebooksById.put(notebook.getId(), notebook);
+        }
+
+        boolean added = false;
+        for (SearchResult result : results) {
+            String notebookId = result.getNotebookId();
+            if (notebookId == null) {
+                continue;
+            }
+            if (!notebooksById.containsKey(notebookId)) {
+                // Not scrolled into view yet; fetch it on its own
+                notebooksById.put(notebookId, null);
+                repository.getNotebookById(notebookId, fetched -> addSearchMatch(query, fetched));
+                continue;
+            }
+            Notebook notebook = notebooksById.get(notebookId);
+            if (notebook != null && !notebooks.contains(notebook)) {
+                notebooks.add(notebook);
+                added = true;
+            }
+        }
+        if (added) {
+            notebookAdapter.notifyDataSetChanged();
+        }
+    }
+
+    private void addSearchMatch(String query, Notebook notebook) {
+        if (isDestroyed() || notebook == null || !query.equals(searchQuery)) {
+            return;
+        }
+        for (Notebook shown : notebooks) {
+            if (shown.getId().equals(notebook.getId())) {
+                return;
+            }
+        }
+        notebooks.add(notebook);
+        notebookAdapter.notifyItemInserted(notebooks.size() - 1);
+    }
+
     private void setupRecyclerView() {
         notebooks = new ArrayList<>();
         notebookAdapter = new NotebookAdapter(this, notebooks, new NotebookAdapter.OnNotebookClickListener() {
@@ -173,27 +244,38 @@ public class NotebooksActivity extends AppCompatActivity {
 
             @Override
             public void onPinClick(Notebook notebook) {
-                dbHelper.toggleNotebookPin(notebook.getId());
-                loadNotebooks();
+                repository.toggleNotebookPin(notebook.getId(), success -> loadNotebooks());
             }
 
             @Override
             public void onDeleteClick(Notebook notebook) {
-                dbHelper.deleteNotebook(notebook.getId());
-                loadNotebooks();
-                android.widget.Toast.makeText(NotebooksActivity.this,
-                        "Notebook deleted",
-                        android.widget.Toast.LENGTH_SHORT).show();
+                repository.deleteNotebook(notebook.getId(), success -> {
+                    loadNotebooks();
+                    android.widget.Toast.makeText(NotebooksActivity.this,
+                            "Notebook deleted",
+                            android.widget.Toast.LENGTH_SHORT).show();
+                });
             }
 
             @Override
             public void onExportPdfClick(Notebook notebook) {
                 exportNotebookToPdf(notebook);
             }
+
+            @Override
+            public void onExportArchiveClick(Notebook notebook) {
+                exportNotebookArchive(notebook);
+            }
         });
 
         binding.recyclerViewNotebooks.setLayoutManager(new LinearLayoutManager(this));
         binding.recyclerViewNotebooks.setAdapter(notebookAdapter);
+        // Search results are not paged; the plain listing loads more near its end
+        binding.recyclerViewNotebooks.addOnScrollListener(new LoadMoreScrollListener(() -> {
+            if (searchQuery.isEmpty()) {
+                notebookLoader.loadNext();
+            }
+        }));
     }
 
     private void setupClickListeners() {
@@ -204,10 +286,32 @@ public class NotebooksActivity extends AppCompatActivity {
     }
 
     private void loadNotebooks() {
-        allNotebooks = dbHelper.getUserNotebooks(currentUser.getId());
-        notebooks.clear();
-        notebooks.addAll(allNotebooks);
-        notebookAdapter.notifyDataSetChanged();
+        notebooksStale = false;
+        notebookLoader.reset();
+        notebookLoader.loadNext();
+    }
+
+    private void onNotebooksPage(List<Notebook> loaded, boolean firstPage) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (firstPage) {
+            allNotebooks.clear();
+        }
+        allNotebooks.addAll(loaded);
+
+        if (!searchQuery.isEmpty()) {
+            // Re-run the filter over what is loaded now
+            filterNotebooks(searchQuery);
+        } else if (firstPage) {
+            notebooks.clear();
+            notebooks.addAll(allNotebooks);
+            notebookAdapter.notifyDataSetChanged();
+        } else if (!loaded.isEmpty()) {
+            int start = notebooks.size();
+            notebooks.addAll(loaded);
+            notebookAdapter.notifyItemRangeInserted(start, loaded.size());
+        }
 
         // Show/hide empty state
         if (notebooks.isEmpty()) {
@@ -231,6 +335,9 @@ public class NotebooksActivity extends AppCompatActivity {
         if (id == R.id.action_search) {
             enterSearchMode();
             return true;
+        } else if (id == R.id.action_import_archive) {
+            importLauncher.launch(new String[] { NotebookArchive.MIME_TYPE, "application/octet-stream" });
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -247,14 +354,22 @@ public class NotebooksActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        loadNotebooks();
+        // Only re-query when a notebook or page was written while we were away
+        if (notebooksStale) {
+            loadNotebooks();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (repository != null) {
+            repository.removeOnChangeListener(changeListener);
+        }
     }
 
     private void exportNotebookToPdf(Notebook notebook) {
-        // Get all pages for this notebook
-        List<Page> pages = dbHelper.getNotebookPages(notebook.getId());
-        
-        if (pages.isEmpty()) {
+        if (notebook.getPageCount() == 0) {
             Toast.makeText(this, "No pages to export", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -274,230 +389,97 @@ public class NotebooksActivity extends AppCompatActivity {
             if (pdfName.isEmpty()) {
                 pdfName = notebook.getTitle();
             }
-            performPdfExport(notebook, pages, pdfName);
+            PdfExportDialog.start(this, notebook.getId(), pdfName);
         });
         
         nameDialog.setNegativeButton("Cancel", null);
         nameDialog.show();
     }
-    
-    private void performPdfExport(Notebook notebook, List<Page> pages, String pdfName) {
-        ProgressDialog progressDialog = new ProgressDialog(this);
-        progressDialog.setMessage("Exporting notebook to PDF...");
-        progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
-        progressDialog.setMax(pages.size());
-        progressDialog.setCancelable(false);
-        progressDialog.show();
-
-        new Thread(() -> {
-            try {
-                // Create PDF document
-                PdfDocument pdfDocument = new PdfDocument();
-
-                for (int i = 0; i < pages.size(); i++) {
-                    Page page = pages.get(i);
-                    final int currentPage = i + 1;
 
-                    runOnUiThread(() -> {
-                        progressDialog.setProgress(currentPage);
-                        progressDialog.setMessage("Rendering page " + currentPage + " of " + pages.size() + "...");
-                    });
-
-                    // Create a page in the PDF (A4 size: 595 x 842 points)
-                    PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, i + 1).create();
-                    PdfDocument.Page pdfPage = pdfDocument.startPage(pageInfo);
-
-                    Canvas canvas = pdfPage.getCanvas();
-                    canvas.drawColor(Color.WHITE);
-
-                    // Render the page content
-                    renderPageToPdfCanvas(page, canvas);
-
-                    pdfDocument.finishPage(pdfPage);
-                }
-
-                // Save PDF to scanned_documents folder (My Documents)
-                File docsDir = new File(getExternalFilesDir(null), "scanned_documents");
-                if (!docsDir.exists()) {
-                    docsDir.mkdirs();
-                }
-
-                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
-                String fileName = pdfName.replaceAll("[^a-zA-Z0-9]", "_") + "_" + timestamp + ".pdf";
-                File pdfFile = new File(docsDir, fileName);
-
-                FileOutputStream fos = new FileOutputStream(pdfFile);
-                pdfDocument.writeTo(fos);
-                fos.close();
-                pdfDocument.close();
-
-                runOnUiThread(() -> {
+    private void exportNotebookArchive(Notebook notebook) {
+        File archivesDir = getExternalFilesDir("archives");
+        if (archivesDir == null) {
+            Toast.makeText(this, "Storage is not available", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File archive = new File(archivesDir,
+                notebook.getTitle().replaceAll("[^a-zA-Z0-9]", "_") + "_" + timestamp + NotebookArchive.FILE_EXTENSION);
+
+        ProgressDialog progressDialog = newArchiveProgressDialog("Exporting notebook...");
+        BackgroundJob job = repository.exportNotebookArchive(notebook.getId(), archive,
+                (done, total) -> updateArchiveProgress(progressDialog, done, total),
+                written -> {
                     progressDialog.dismiss();
-                    Toast.makeText(this, "PDF saved to My Documents: " + fileName, Toast.LENGTH_LONG).show();
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (written) {
+                        shareArchive(archive);
+                    } else {
+                        Toast.makeText(this, "Notebook was not exported", Toast.LENGTH_SHORT).show();
+                    }
                 });
+        showArchiveProgressDialog(progressDialog, job);
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> {
-                    progressDialog.dismiss();
-                    Toast.makeText(this, "Failed to export PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-            }
-        }).start();
+    private void shareArchive(File archive) {
+        try {
+            android.net.Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", archive);
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType(NotebookArchive.MIME_TYPE);
+            shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            startActivity(Intent.createChooser(shareIntent, "Save or send notebook"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            Toast.makeText(this, "Archive saved: " + archive.getName(), Toast.LENGTH_LONG).show();
+        }
     }
 
-    private void renderPageToPdfCanvas(Page page, Canvas canvas) {
-        // Render page content to PDF by parsing JSON
-        String content = page.getContent();
-        if (content == null || content.isEmpty()) {
-            // Draw empty page message
-            Paint paint = new Paint();
-            paint.setColor(Color.LTGRAY);
-            paint.setTextSize(18f);
-            paint.setAntiAlias(true);
-            canvas.drawText("Empty page", 50, 100, paint);
+    private void importNotebookArchive(android.net.Uri uri) {
+        java.io.InputStream source;
+        try {
+            source = getContentResolver().openInputStream(uri);
+        } catch (java.io.FileNotFoundException e) {
+            source = null;
+        }
+        if (source == null) {
+            Toast.makeText(this, "Cannot open the selected file", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        try {
-            JSONObject json = new JSONObject(content);
-            
-            // Render paths (drawings)
-            if (json.has("paths")) {
-                JSONArray pathsArray = json.getJSONArray("paths");
-                for (int i = 0; i < pathsArray.length(); i++) {
-                    JSONObject pathObj = pathsArray.getJSONObject(i);
-                    JSONArray pointsArray = pathObj.getJSONArray("points");
-                    
-                    int color = pathObj.optInt("color", Color.BLACK);
-                    float strokeWidth = (float) pathObj.optDouble("strokeWidth", 5.0);
-                    boolean isDashed = pathObj.optBoolean("isDashed", false);
-                    boolean isFilled = pathObj.optBoolean("isFilled", false);
-                    
-                    Paint pathPaint = new Paint();
-                    pathPaint.setColor(color);
-                    pathPaint.setStrokeWidth(strokeWidth);
-                    pathPaint.setAntiAlias(true);
-                    
-                    if (isFilled) {
-                        pathPaint.setStyle(Paint.Style.FILL);
-                    } else {
-                        pathPaint.setStyle(Paint.Style.STROKE);
-                        pathPaint.setStrokeJoin(Paint.Join.ROUND);
-                        pathPaint.setStrokeCap(Paint.Cap.ROUND);
-                    }
-                    
-                    Path path = new Path();
-                    if (pointsArray.length() >= 2) {
-                        path.moveTo((float)pointsArray.getDouble(0), (float)pointsArray.getDouble(1));
-                        for (int j = 2; j < pointsArray.length(); j += 2) {
-                            if (j + 1 < pointsArray.length()) {
-                                path.lineTo((float)pointsArray.getDouble(j), (float)pointsArray.getDouble(j + 1));
-                            }
-                        }
-                    }
-                    canvas.drawPath(path, pathPaint);
-                }
-            }
-            
-            // Render text elements
-            if (json.has("texts")) {
-                JSONArray textsArray = json.getJSONArray("texts");
-                for (int i = 0; i < textsArray.length(); i++) {
-                    JSONObject textObj = textsArray.getJSONObject(i);
-                    String text = textObj.getString("text");
-                    float x = (float) textObj.getDouble("x");
-                    float y = (float) textObj.getDouble("y");
-                    float textSize = (float) textObj.optDouble("textSize", 40.0);
-                    int textColor = textObj.optInt("textColor", Color.BLACK);
-                    int bgColor = textObj.optInt("backgroundColor", Color.TRANSPARENT);
-                    float rotation = (float) textObj.optDouble("rotation", 0);
-                    boolean isBold = textObj.optBoolean("isBold", false);
-                    boolean isItalic = textObj.optBoolean("isItalic", false);
-                    boolean isSticky = textObj.optBoolean("isSticky", false);
-                    
-                    Paint textPaint = new Paint();
-                    textPaint.setColor(textColor);
-                    textPaint.setTextSize(textSize);
-                    textPaint.setAntiAlias(true);
-                    
-                    int style = Typeface.NORMAL;
-                    if (isBold && isItalic) {
-                        style = Typeface.BOLD_ITALIC;
-                    } else if (isBold) {
-                        style = Typeface.BOLD;
-                    } else if (isItalic) {
-                        style = Typeface.ITALIC;
-                    }
-                    textPaint.setTypeface(Typeface.create(Typeface.DEFAULT, style));
-                    
-                    canvas.save();
-                    
-                    // Draw sticky note background if needed
-                    if (isSticky && bgColor != Color.TRANSPARENT) {
-                        Paint bgPaint = new Paint();
-                        bgPaint.setColor(bgColor);
-                        bgPaint.setStyle(Paint.Style.FILL);
-                        
-                        Paint.FontMetrics fm = textPaint.getFontMetrics();
-                        float textHeight = fm.descent - fm.ascent;
-                        float textWidth = textPaint.measureText(text);
-                        
-                        canvas.drawRect(x - 10, y + fm.ascent - 10, x + textWidth + 10, y + fm.descent + 10, bgPaint);
-                    }
-                    
-                    // Apply rotation
-                    if (rotation != 0) {
-                        canvas.rotate(rotation, x, y);
-                    }
-                    
-                    canvas.drawText(text, x, y, textPaint);
-                    canvas.restore();
-                }
-            }
-            
-            // Render images
-            if (json.has("images")) {
-                JSONArray imagesArray = json.getJSONArray("images");
-                for (int i = 0; i < imagesArray.length(); i++) {
-                    JSONObject imageObj = imagesArray.getJSONObject(i);
-                    String path = imageObj.optString("path", null);
-                    
-                    if (path != null && !path.isEmpty()) {
-                        Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(path);
-                        if (bitmap != null) {
-                            float x = (float) imageObj.optDouble("x", 50);
-                            float y = (float) imageObj.optDouble("y", 50);
-                            float width = (float) imageObj.optDouble("width", 200);
-                            float height = (float) imageObj.optDouble("height", 200);
-                            float rotation = (float) imageObj.optDouble("rotation", 0);
-                            boolean flipH = imageObj.optBoolean("flipHorizontal", false);
-                            boolean flipV = imageObj.optBoolean("flipVertical", false);
-                            
-                            canvas.save();
-                            float centerX = x + width / 2;
-                            float centerY = y + height / 2;
-                            canvas.translate(centerX, centerY);
-                            canvas.rotate(rotation);
-                            canvas.scale(flipH ? -1f : 1f, flipV ? -1f : 1f);
-                            canvas.translate(-centerX, -centerY);
-                            
-                            android.graphics.RectF destRect = new android.graphics.RectF(x, y, x + width, y + height);
-                            canvas.drawBitmap(bitmap, null, destRect, null);
-                            canvas.restore();
-                        }
+        ProgressDialog progressDialog = newArchiveProgressDialog("Importing notebook...");
+        BackgroundJob job = repository.importNotebookArchive(currentUser.getId(), source,
+                (done, total) -> updateArchiveProgress(progressDialog, done, total),
+                notebookId -> {
+                    progressDialog.dismiss();
+                    if (isDestroyed()) {
+                        return;
                     }
-                }
-            }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Draw error message
-            Paint paint = new Paint();
-            paint.setColor(Color.RED);
-            paint.setTextSize(14f);
-            paint.setAntiAlias(true);
-            canvas.drawText("Error rendering page: " + e.getMessage(), 50, 100, paint);
+                    Toast.makeText(this, notebookId != null ? "Notebook imported" : "Notebook was not imported",
+                            Toast.LENGTH_SHORT).show();
+                });
+        showArchiveProgressDialog(progressDialog, job);
+    }
+
+    private ProgressDialog newArchiveProgressDialog(String message) {
+        ProgressDialog progressDialog = new ProgressDialog(this);
+        progressDialog.setMessage(message);
+        progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        progressDialog.setCancelable(false);
+        return progressDialog;
+    }
+
+    private void showArchiveProgressDialog(ProgressDialog progressDialog, BackgroundJob job) {
+        progressDialog.setButton(ProgressDialog.BUTTON_NEGATIVE, "Cancel", (dialog, which) -> job.cancel());
+        progressDialog.show();
+    }
+
+    private void updateArchiveProgress(ProgressDialog progressDialog, int done, int total) {
+        if (progressDialog.isShowing()) {
+            progressDialog.setMax(total);
+            progressDialog.setProgress(done);
         }
     }
 }
@@ -9,7 +9,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.notex.models.Page;
+import com.example.notex.models.PageSummary;
 
 import java.util.List;
 
@@ -19,14 +19,14 @@ import java.util.List;
 public class PageAdapter extends RecyclerView.Adapter<PageAdapter.PageViewHolder> {
 
     private Context context;
-    private List<Page> pages;
+    private List<PageSummary> pages;
     private OnPageClickListener listener;
 
     public interface OnPageClickListener {
-        void onPageClick(Page page);
+        void onPageClick(PageSummary page);
     }
 
-    public PageAdapter(Context context, List<Page> pages, OnPageClickListener listener) {
+    public PageAdapter(Context context, List<PageSummary> pages, OnPageClickListener listener) {
         this.context = context;
         this.pages = pages;
         this.listener = listener;
@@ -41,7 +41,7 @@ public class PageAdapter extends RecyclerView.Adapter<PageAdapter.PageViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
-        Page page = pages.get(position);
+        PageSummary page = pages.get(position);
         holder.bind(page);
     }
 
@@ -63,14 +63,13 @@ public class PageAdapter extends RecyclerView.Adapter<PageAdapter.PageViewHolder
             tvPageNumber = itemView.findViewById(R.id.tvPageNumber);
         }
 
-        public void bind(Page page) {
+        public void bind(PageSummary page) {
             tvPageTitle.setText(page.getTitle());
             tvPageNumber.setText("Page " + page.getPageNumber());
 
-            // Show preview of content
-            String content = page.getContent();
-            if (content != null && !content.trim().isEmpty()) {
-                String preview = content.length() > 100 ? content.substring(0, 100) + "..." : content;
+            // Show preview of content (stored with the page, so no content is loaded here)
+            String preview = page.getPreview();
+            if (preview != null && !preview.trim().isEmpty()) {
                 tvPagePreview.setText(preview);
                 tvPagePreview.setVisibility(View.VISIBLE);
             } else {
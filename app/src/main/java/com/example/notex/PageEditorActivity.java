@@ -5,9 +5,9 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.databinding.ActivityPageEditorBinding;
 import com.example.notex.models.Page;
+import com.example.notex.repository.NoteRepository;
 
 /**
  * PageEditorActivity - Canvas-style page editor with toolbar
@@ -15,7 +15,7 @@ import com.example.notex.models.Page;
 public class PageEditorActivity extends AppCompatActivity {
 
     private ActivityPageEditorBinding binding;
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private String notebookId;
     private String pageId;
     private boolean isEditMode = false;
@@ -27,7 +27,7 @@ public class PageEditorActivity extends AppCompatActivity {
         binding = ActivityPageEditorBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
 
         // Get intent data
         notebookId = getIntent().getStringExtra("NOTEBOOK_ID");
@@ -108,7 +108,13 @@ public class PageEditorActivity extends AppCompatActivity {
     }
 
     private void loadPage() {
-        Page page = dbHelper.getPageById(pageId);
+        repository.getPageById(pageId, this::showPage);
+    }
+
+    private void showPage(Page page) {
+        if (isDestroyed()) {
+            return;
+        }
         if (page != null) {
             // Load canvas content from JSON
             String content = page.getContent();
@@ -126,13 +132,21 @@ public class PageEditorActivity extends AppCompatActivity {
         // Serialize canvas content to JSON
         String canvasData = binding.canvasView.toJson();
 
-        boolean success;
         if (isEditMode) {
-            success = dbHelper.updatePage(pageId, "Canvas Page", canvasData);
+            repository.updatePage(notebookId, pageId, "Canvas Page", canvasData, this::onPageSaved);
         } else {
-            success = dbHelper.addPage(notebookId, "Canvas Page", canvasData);
+            repository.createPage(notebookId, "Canvas Page", canvasData, newPageId -> {
+                if (newPageId != null) {
+                    // Later saves update the page instead of adding another
+                    isEditMode = true;
+                    pageId = newPageId;
+                }
+                onPageSaved(newPageId != null);
+            });
         }
+    }
 
+    private void onPageSaved(boolean success) {
         if (success) {
             Toast.makeText(this, "Page saved", Toast.LENGTH_SHORT).show();
         } else {
@@ -86,13 +86,18 @@ public class RegisterActivity extends AppCompatActivity {
         User.UserRole role = binding.btnRoleUser.isChecked() ? User.UserRole.USER : User.UserRole.ADMIN;
 
         // Attempt registration
-        boolean success = authManager.register(username, email, password, role);
-
-        if (success) {
-            Toast.makeText(this, R.string.registration_success, Toast.LENGTH_LONG).show();
-            finish();
-        } else {
-            Toast.makeText(this, R.string.error_username_exists, Toast.LENGTH_LONG).show();
-        }
+        binding.btnRegister.setEnabled(false);
+        authManager.register(username, email, password, role, success -> {
+            if (isFinishing()) {
+                return;
+            }
+            if (success) {
+                Toast.makeText(this, R.string.registration_success, Toast.LENGTH_LONG).show();
+                finish();
+            } else {
+                binding.btnRegister.setEnabled(true);
+                Toast.makeText(this, R.string.error_username_exists, Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
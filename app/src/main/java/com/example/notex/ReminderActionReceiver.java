@@ -6,8 +6,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.widget.Toast;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
+import com.example.notex.repository.NoteRepository;
 
 import java.util.Calendar;
 
@@ -25,7 +25,7 @@ public class ReminderActionReceiver extends BroadcastReceiver {
             return;
         }
 
-        DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
+        NoteRepository repository = NoteRepository.getInstance(context);
         NotificationManager notificationManager = 
             (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 
@@ -36,40 +36,44 @@ public class ReminderActionReceiver extends BroadcastReceiver {
 
         switch (action) {
             case "SNOOZE":
-                handleSnooze(context, intent, dbHelper);
+                handleSnooze(context, intent, repository, goAsync());
                 break;
             case "MARK_DONE":
-                handleMarkDone(context, reminderId, dbHelper);
+                handleMarkDone(context, reminderId, repository, goAsync());
                 break;
         }
     }
 
-    private void handleSnooze(Context context, Intent intent, DatabaseHelper dbHelper) {
+    private void handleSnooze(Context context, Intent intent, NoteRepository repository,
+                              PendingResult pendingResult) {
         String reminderId = intent.getStringExtra("reminder_id");
         String title = intent.getStringExtra("reminder_title");
         String description = intent.getStringExtra("reminder_description");
         String type = intent.getStringExtra("reminder_type");
 
-        Reminder reminder = dbHelper.getReminderById(reminderId);
-        
-        if (reminder != null) {
+        repository.getReminderById(reminderId, reminder -> {
+            if (reminder == null) {
+                pendingResult.finish();
+                return;
+            }
             // Snooze for 10 minutes
             Calendar snoozeTime = Calendar.getInstance();
             snoozeTime.add(Calendar.MINUTE, 10);
-            
+
             reminder.setScheduledAt(snoozeTime.getTimeInMillis());
             reminder.setNotified(false);
-            dbHelper.updateReminder(reminder);
-            
+            repository.updateReminder(reminder, success -> pendingResult.finish());
+
             // Reschedule
             ReminderScheduler.scheduleReminder(context, reminder);
-            
+
             Toast.makeText(context, "Snoozed for 10 minutes", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
-    private void handleMarkDone(Context context, String reminderId, DatabaseHelper dbHelper) {
-        dbHelper.markReminderCompleted(reminderId, true);
+    private void handleMarkDone(Context context, String reminderId, NoteRepository repository,
+                                PendingResult pendingResult) {
+        repository.markReminderCompleted(reminderId, true, success -> pendingResult.finish());
         Toast.makeText(context, "Reminder marked as done", Toast.LENGTH_SHORT).show();
     }
 }
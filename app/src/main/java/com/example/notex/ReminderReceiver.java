@@ -10,8 +10,8 @@ import android.os.Build;
 
 import androidx.core.app.NotificationCompat;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
+import com.example.notex.repository.NoteRepository;
 
 /**
  * ReminderReceiver - BroadcastReceiver for handling reminder alarms
@@ -33,17 +33,20 @@ public class ReminderReceiver extends BroadcastReceiver {
             return;
         }
 
-        // Mark as notified in database
-        DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
-        Reminder reminder = dbHelper.getReminderById(reminderId);
-        
-        if (reminder != null && !reminder.isCompleted()) {
-            showNotification(context, reminderId, title, description, type);
-            
-            // Update notified status
-            reminder.setNotified(true);
-            dbHelper.updateReminder(reminder);
-        }
+        // Mark as notified in database; keep the receiver alive until the write lands
+        NoteRepository repository = NoteRepository.getInstance(context);
+        PendingResult pendingResult = goAsync();
+        repository.getReminderById(reminderId, reminder -> {
+            if (reminder != null && !reminder.isCompleted()) {
+                showNotification(context, reminderId, title, description, type);
+
+                // Update notified status
+                reminder.setNotified(true);
+                repository.updateReminder(reminder, success -> pendingResult.finish());
+            } else {
+                pendingResult.finish();
+            }
+        });
     }
 
     private void showNotification(Context context, String reminderId, String title, 
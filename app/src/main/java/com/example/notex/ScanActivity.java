@@ -2,9 +2,9 @@ package com.example.notex;
 
 import android.Manifest;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -26,15 +26,20 @@ import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.notex.export.PdfProfile;
+import com.example.notex.jobs.JobManager;
+import com.example.notex.models.ExportJob;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -46,6 +51,12 @@ import java.util.concurrent.ExecutionException;
 public class ScanActivity extends AppCompatActivity {
     private static final String TAG = "ScanActivity";
     private static final int PERMISSION_REQUEST_CODE = 1001;
+    private static final String PREFS_NAME = "NoteXPrefs";
+    private static final String KEY_SCAN_PROFILE = "scanProfile";
+    // Height of a page in the thumbnail strip (item_scan_thumbnail)
+    private static final int THUMBNAIL_HEIGHT_DP = 80;
+    // Keeps capture names unique within a millisecond; pages are told apart only by their files
+    private static int captureCount = 0; // UI thread only
     
     private PreviewView previewView;
     private FloatingActionButton btnCapture;
@@ -56,8 +67,16 @@ public class ScanActivity extends AppCompatActivity {
     
     private ImageCapture imageCapture;
     private Camera camera;
-    private List<ScannedPage> scannedPages = new ArrayList<>();
+    // Pages and captures being processed; kept across recreation
+    private ScanSession session;
+    private List<ScannedPage> scannedPages;
     private ScanThumbnailAdapter thumbnailAdapter;
+    private PdfProfile scanProfile; // Resolution and JPEG quality pages are saved at
+    private JobManager jobManager;
+    // PDF export queued from this screen, shared once its job finishes
+    private String exportJobId;
+    private File exportFile;
+    private final JobManager.Listener jobListener = this::onJobFinished;
     private boolean isPortraitMode = false; // false = landscape, true = portrait
     private boolean isFlashOn = false;
     private boolean isFrontCamera = false;
@@ -73,26 +92,39 @@ public class ScanActivity extends AppCompatActivity {
         // Enable edge-to-edge display
         getWindow().setDecorFitsSystemWindows(false);
         
+        session = new ViewModelProvider(this).get(ScanSession.class);
+        scannedPages = session.pages;
+        session.setListener(this::onPageProcessed);
+        
         initViews();
+        scanProfile = loadScanProfile();
+        
+        jobManager = JobManager.getInstance(this);
+        jobManager.addListener(jobListener);
         
         // Restore state if available
         if (savedInstanceState != null) {
             isPortraitMode = savedInstanceState.getBoolean("isPortraitMode", false);
+            exportJobId = savedInstanceState.getString("exportJobId");
+            String exportPath = savedInstanceState.getString("exportPath");
+            exportFile = exportPath != null ? new File(exportPath) : null;
+            // After a rotation the session still has its pages; the saved paths are for after process death
             ArrayList<String> savedPaths = savedInstanceState.getStringArrayList("scannedPaths");
-            if (savedPaths != null) {
+            if (savedPaths != null && session.start()) {
                 for (String path : savedPaths) {
                     File file = new File(path);
                     if (file.exists()) {
-                        Bitmap bitmap = BitmapFactory.decodeFile(path);
-                        if (bitmap != null) {
-                            scannedPages.add(new ScannedPage(path, bitmap));
+                        Bitmap thumbnail = ScanUtils.decodeThumbnail(path, thumbnailSize());
+                        if (thumbnail != null) {
+                            scannedPages.add(new ScannedPage(path, thumbnail));
                         }
                     }
                 }
                 thumbnailAdapter.notifyDataSetChanged();
-                updateUI();
             }
         }
+        session.start();
+        updateUI();
         
         updateOrientationButtons();
         checkPermissionsAndStartCamera();
@@ -112,6 +144,10 @@ public class ScanActivity extends AppCompatActivity {
         
         btnClose.setOnClickListener(v -> finish());
         btnCapture.setOnClickListener(v -> captureImage());
+        btnCapture.setOnLongClickListener(v -> {
+            chooseScanQuality();
+            return true;
+        });
         btnDone.setOnClickListener(v -> processScan());
         btnLandscape.setOnClickListener(v -> setOrientation(false));
         btnPortrait.setOnClickListener(v -> setOrientation(true));
@@ -123,8 +159,11 @@ public class ScanActivity extends AppCompatActivity {
         LinearLayoutManager layoutManager = new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false);
         recyclerThumbnails.setLayoutManager(layoutManager);
         thumbnailAdapter = new ScanThumbnailAdapter(scannedPages, position -> {
-            // Delete page
-            scannedPages.remove(position);
+            // Delete page and its file; the thumbnail may still be drawn while the item
+            // animates out, so it is left to the GC
+            ScannedPage removed = scannedPages.remove(position);
+            //noinspection ResultOfMethodCallIgnored
+            new File(removed.getFilePath()).delete();
             thumbnailAdapter.notifyItemRemoved(position);
             thumbnailAdapter.notifyItemRangeChanged(position, scannedPages.size());
             updateUI();
@@ -132,6 +171,34 @@ public class ScanActivity extends AppCompatActivity {
         recyclerThumbnails.setAdapter(thumbnailAdapter);
     }
     
+    private PdfProfile loadScanProfile() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        try {
+            return PdfProfile.valueOf(prefs.getString(KEY_SCAN_PROFILE, PdfProfile.ARCHIVE.name()));
+        } catch (IllegalArgumentException e) {
+            return PdfProfile.ARCHIVE;
+        }
+    }
+    
+    private void chooseScanQuality() {
+        new AlertDialog.Builder(this)
+            .setTitle("Scan quality")
+            .setSingleChoiceItems(PdfProfile.labels(), scanProfile.ordinal(), (dialog, which) -> {
+                scanProfile = PdfProfile.values()[which];
+                getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putString(KEY_SCAN_PROFILE, scanProfile.name())
+                    .apply();
+                Toast.makeText(this, "Scan quality: " + scanProfile.label, Toast.LENGTH_SHORT).show();
+                dialog.dismiss();
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+    
+    private int thumbnailSize() {
+        return Math.round(THUMBNAIL_HEIGHT_DP * getResources().getDisplayMetrics().density);
+    }
+    
     private void toggleFlash() {
         if (camera == null || !camera.getCameraInfo().hasFlashUnit()) {
             Toast.makeText(this, "Flash not available", Toast.LENGTH_SHORT).show();
@@ -274,10 +341,10 @@ public class ScanActivity extends AppCompatActivity {
     private void captureImage() {
         if (imageCapture == null) return;
         
-        // Create temp file
+        // Create temp file; its processed page is named after it
         File photoFile = new File(
             getExternalFilesDir(null),
-            "scan_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".jpg"
+            "scan_" + System.currentTimeMillis() + "_" + (++captureCount) + ".jpg"
         );
         
         ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(photoFile).build();
@@ -288,7 +355,11 @@ public class ScanActivity extends AppCompatActivity {
             new ImageCapture.OnImageSavedCallback() {
                 @Override
                 public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
-                    processImage(photoFile);
+                    // Settings are read here, as they were when the picture was taken
+                    boolean portrait = isPortraitMode;
+                    PdfProfile profile = scanProfile;
+                    int thumbnailSize = thumbnailSize();
+                    session.process(photoFile, () -> processImage(photoFile, portrait, profile, thumbnailSize));
                 }
                 
                 @Override
@@ -300,46 +371,66 @@ public class ScanActivity extends AppCompatActivity {
         );
     }
     
-    private void processImage(File imageFile) {
-        try {
-            // Load bitmap
-            Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath());
-            
-            // Apply orientation rotation if portrait mode is selected
-            if (isPortraitMode && bitmap != null) {
-                android.graphics.Matrix matrix = new android.graphics.Matrix();
-                matrix.postRotate(90);
-                bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    /**
+     * Straighten and save a capture next to it; runs on the session's processing thread.
+     * Static, as the activity may be recreated while it runs.
+     */
+    private static ScannedPage processImage(File imageFile, boolean portrait, PdfProfile profile,
+                                            int thumbnailSize) throws IOException {
+        // Load bitmap into a pooled one; every step below reuses pooled bitmaps and buffers too
+        Bitmap bitmap = ScanUtils.decodeBitmap(imageFile.getAbsolutePath());
+        if (bitmap == null) {
+            throw new IOException("Cannot decode " + imageFile);
+        }
+        
+        // Apply orientation rotation if portrait mode is selected
+        if (portrait) {
+            ScanUtils.rotateInPlace(bitmap, 90);
+        }
+        
+        // Straighten the page if one is found; otherwise keep the whole photo
+        Bitmap processedBitmap = bitmap;
+        float[][] corners = ScanUtils.detectEdges(bitmap);
+        if (corners != null) {
+            processedBitmap = ScanUtils.perspectiveCorrect(bitmap, corners, ScanUtils.pagePixels(profile));
+            if (processedBitmap != bitmap) {
+                ScanUtils.releaseBitmap(bitmap);
             }
-            
-            // TODO: Edge detection and perspective correction will be added
-            // For now, just use the image as-is
-            Bitmap processedBitmap = bitmap;
-            
-            // Save processed image
-            File processedFile = new File(
-                getExternalFilesDir(null),
-                "processed_" + imageFile.getName()
-            );
-            
-            FileOutputStream fos = new FileOutputStream(processedFile);
-            processedBitmap.compress(Bitmap.CompressFormat.JPEG, 100, fos); // Maximum quality
-            fos.close();
-            
-            // Add to scanned pages
-            ScannedPage page = new ScannedPage(processedFile.getAbsolutePath(), processedBitmap);
-            scannedPages.add(page);
-            
-            runOnUiThread(() -> {
-                thumbnailAdapter.notifyItemInserted(scannedPages.size() - 1);
-                updateUI();
-                Toast.makeText(this, "Page " + scannedPages.size() + " captured", Toast.LENGTH_SHORT).show();
-            });
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing image", e);
-            runOnUiThread(() -> Toast.makeText(this, "Failed to process image", Toast.LENGTH_SHORT).show());
         }
+        
+        // Save processed image at the chosen quality
+        File processedFile = new File(
+            imageFile.getParentFile(),
+            "processed_" + imageFile.getName()
+        );
+        
+        try (FileOutputStream fos = new FileOutputStream(processedFile)) {
+            processedBitmap.compress(Bitmap.CompressFormat.JPEG, profile.jpegQuality, fos);
+        }
+        // The capture is not needed once the processed page is saved
+        //noinspection ResultOfMethodCallIgnored
+        imageFile.delete();
+        
+        // Keep only a thumbnail; the page is decoded from its file again for export
+        Bitmap thumbnail = ScanUtils.createThumbnail(processedBitmap, thumbnailSize);
+        if (thumbnail != processedBitmap) {
+            ScanUtils.releaseBitmap(processedBitmap);
+        }
+        
+        return new ScannedPage(processedFile.getAbsolutePath(), thumbnail);
+    }
+    
+    /**
+     * A capture is done; the session has already added its page
+     */
+    private void onPageProcessed(ScannedPage page) {
+        if (page == null) {
+            Toast.makeText(this, "Failed to process image", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        thumbnailAdapter.notifyItemInserted(scannedPages.size() - 1);
+        updateUI();
+        Toast.makeText(this, "Page " + scannedPages.size() + " captured", Toast.LENGTH_SHORT).show();
     }
     
     private void updateUI() {
@@ -354,6 +445,10 @@ public class ScanActivity extends AppCompatActivity {
     }
     
     private void processScan() {
+        if (session.isProcessing()) {
+            Toast.makeText(this, "Still processing the last page", Toast.LENGTH_SHORT).show();
+            return;
+        }
         if (scannedPages.isEmpty()) {
             Toast.makeText(this, "No pages to process", Toast.LENGTH_SHORT).show();
             return;
@@ -389,40 +484,40 @@ public class ScanActivity extends AppCompatActivity {
     }
     
     private void exportToPDF() {
-        try {
-            // Collect bitmaps
-            java.util.ArrayList<Bitmap> bitmaps = new java.util.ArrayList<>();
-            for (ScannedPage page : scannedPages) {
-                if (page.getBitmap() != null && !page.getBitmap().isRecycled()) {
-                    bitmaps.add(page.getBitmap());
-                }
-            }
-            
-            if (bitmaps.isEmpty()) {
-                Toast.makeText(this, "No valid pages to export", Toast.LENGTH_SHORT).show();
-                return;
-            }
-            
-            // Generate PDF
-            File pdfFile = new File(
-                getExternalFilesDir(null),
-                "Scan_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".pdf"
-            );
-            
-            boolean success = ScanUtils.generatePDF(bitmaps, pdfFile);
-            
-            if (success && pdfFile.exists()) {
-                Toast.makeText(this, "PDF saved: " + pdfFile.getName(), Toast.LENGTH_LONG).show();
-                
-                // Share PDF
-                sharePDF(pdfFile);
-            } else {
-                Toast.makeText(this, "Failed to generate PDF", Toast.LENGTH_SHORT).show();
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error exporting PDF", e);
-            Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        if (exportJobId != null) {
+            Toast.makeText(this, "Already exporting; progress is shown in notifications", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        // Pages are decoded one at a time by the job; one it cannot read is skipped
+        java.util.ArrayList<String> imagePaths = new java.util.ArrayList<>();
+        for (ScannedPage page : scannedPages) {
+            imagePaths.add(page.getFilePath());
+        }
+        
+        File pdfFile = new File(
+            getExternalFilesDir(null),
+            "Scan_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".pdf"
+        );
+        
+        // Written in the background at the chosen scan quality
+        exportJobId = jobManager.saveScanPdf(imagePaths, pdfFile, scanProfile);
+        exportFile = pdfFile;
+        Toast.makeText(this, "Saving in the background; progress is shown in notifications",
+            Toast.LENGTH_SHORT).show();
+    }
+    
+    private void onJobFinished(ExportJob job, boolean succeeded) {
+        if (!job.getId().equals(exportJobId)) {
+            return;
+        }
+        File pdfFile = exportFile;
+        exportJobId = null;
+        exportFile = null;
+        // A failure or cancellation is reported by the job's notification
+        if (succeeded && pdfFile.exists()) {
+            Toast.makeText(this, "PDF saved: " + pdfFile.getName(), Toast.LENGTH_LONG).show();
+            sharePDF(pdfFile);
         }
     }
     
@@ -466,6 +561,8 @@ public class ScanActivity extends AppCompatActivity {
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putBoolean("isPortraitMode", isPortraitMode);
+        outState.putString("exportJobId", exportJobId);
+        outState.putString("exportPath", exportFile != null ? exportFile.getAbsolutePath() : null);
         
         // Save scanned page paths
         ArrayList<String> paths = new ArrayList<>();
@@ -498,12 +595,9 @@ public class ScanActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Clean up resources
-        for (ScannedPage page : scannedPages) {
-            if (page.getBitmap() != null && !page.getBitmap().isRecycled()) {
-                page.getBitmap().recycle();
-            }
-        }
+        jobManager.removeListener(jobListener);
+        // The session and its thumbnails are released when it is cleared
+        session.setListener(null);
     }
     
     private void toggleOrientation() {
@@ -515,14 +609,14 @@ public class ScanActivity extends AppCompatActivity {
         checkPermissionsAndStartCamera();
     }
     
-    // Inner class to represent a scanned page
+    // Inner class to represent a scanned page: its file, and a thumbnail for the strip
     public static class ScannedPage {
         private String filePath;
-        private Bitmap bitmap;
+        private Bitmap thumbnail;
         
-        public ScannedPage(String filePath, Bitmap bitmap) {
+        public ScannedPage(String filePath, Bitmap thumbnail) {
             this.filePath = filePath;
-            this.bitmap = bitmap;
+            this.thumbnail = thumbnail;
         }
         
         public String getFilePath() {
@@ -533,8 +627,14 @@ public class ScanActivity extends AppCompatActivity {
             return filePath;
         }
         
-        public Bitmap getBitmap() {
-            return bitmap;
+        public Bitmap getThumbnail() {
+            return thumbnail;
+        }
+        
+        void recycleThumbnail() {
+            if (thumbnail != null && !thumbnail.isRecycled()) {
+                thumbnail.recycle();
+            }
         }
     }
 }
@@ -27,7 +27,14 @@ import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.example.notex.adapters.ScannedDocumentAdapter;
 import com.example.notex.databinding.ActivityScanDocumentsBinding;
+import com.example.notex.export.PdfExportDialog;
+import com.example.notex.export.PdfProfile;
+import com.example.notex.jobs.JobManager;
 import com.example.notex.models.ScannedDocument;
+import com.example.notex.models.SearchResult;
+import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
+import com.example.notex.utils.AuthManager;
 import com.example.notex.ScanUtils;
 
 import java.io.File;
@@ -45,8 +52,16 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
     private Set<ScannedDocument> selectedDocuments;
     private boolean selectionMode = false;
     private boolean searchMode = false;
+    private String searchQuery = "";
     
+    private NoteRepository repository;
+    private JobManager jobManager;
+    // Shows the files background exports and conversions write
+    private final JobManager.Listener jobListener = (job, succeeded) -> loadDocuments();
+    private String currentUserId;
     private ActivityResultLauncher<Intent> scanLauncher;
+
+    private static final int SEARCH_LIMIT = 50;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,12 +87,29 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
         allDocuments = new ArrayList<>();
         selectedDocuments = new HashSet<>();
         
+        repository = NoteRepository.getInstance(this);
+        jobManager = JobManager.getInstance(this);
+        User currentUser = AuthManager.getInstance(this).getCurrentUser();
+        currentUserId = currentUser != null ? currentUser.getId() : null;
+        
         setupRecyclerView();
         setupListeners();
         setupScanLauncher();
         loadDocuments();
     }
     
+    @Override
+    protected void onResume() {
+        super.onResume();
+        jobManager.addListener(jobListener);
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        jobManager.removeListener(jobListener);
+    }
+    
     private void setupRecyclerView() {
         adapter = new ScannedDocumentAdapter(this, documents, this);
         binding.recyclerDocuments.setLayoutManager(new androidx.recyclerview.widget.LinearLayoutManager(this));
@@ -209,7 +241,8 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
                     docName = "Scan_" + System.currentTimeMillis();
                 }
                 
-                savePdfDocument(docName, imagePaths);
+                String name = docName;
+                PdfExportDialog.chooseProfile(this, profile -> savePdfDocument(name, imagePaths, profile));
             })
             .setNegativeButton("Cancel", null)
             .show();
@@ -233,32 +266,15 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
         return container;
     }
     
-    private void savePdfDocument(String docName, ArrayList<String> imagePaths) {
-        new Thread(() -> {
-            try {
-                File scansDir = new File(getExternalFilesDir(null), "scanned_documents");
-                if (!scansDir.exists()) {
-                    scansDir.mkdirs();
-                }
-                
-                File pdfFile = new File(scansDir, docName + ".pdf");
-                
-                // Generate PDF from images
-                boolean success = ScanUtils.generatePDF(imagePaths, pdfFile);
-                
-                runOnUiThread(() -> {
-                    if (success) {
-                        Toast.makeText(this, "Document saved successfully", Toast.LENGTH_SHORT).show();
-                        loadDocuments();
-                    } else {
-                        Toast.makeText(this, "Failed to save document", Toast.LENGTH_SHORT).show();
-                    }
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        }).start();
+    private void savePdfDocument(String docName, ArrayList<String> imagePaths, PdfProfile profile) {
+        File scansDir = new File(getExternalFilesDir(null), "scanned_documents");
+        if (!scansDir.exists()) {
+            scansDir.mkdirs();
+        }
+        
+        jobManager.saveScanPdf(imagePaths, new File(scansDir, docName + ".pdf"), profile);
+        Toast.makeText(this, "Saving in the background; progress is shown in notifications",
+            Toast.LENGTH_SHORT).show();
     }
     
     private void updateUI() {
@@ -405,6 +421,10 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
                     File newFile = new File(oldFile.getParent(), newName + "." + document.getFileType().toLowerCase());
                     
                     if (oldFile.renameTo(newFile)) {
+                        if (document.getFileType().equals("TXT")) {
+                            repository.removeScanFromIndex(oldFile, null);
+                            repository.indexScanText(newFile, null);
+                        }
                         document.setName(newFile.getName());
                         document.setFilePath(newFile.getAbsolutePath());
                         adapter.notifyDataSetChanged();
@@ -441,6 +461,7 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
             .setPositiveButton("Delete", (dialog, which) -> {
                 File file = new File(document.getFilePath());
                 if (file.delete()) {
+                    repository.removeScanFromIndex(file, null);
                     documents.remove(document);
                     updateUI();
                     Toast.makeText(this, "Deleted successfully", Toast.LENGTH_SHORT).show();
@@ -502,6 +523,7 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
                 for (ScannedDocument doc : new ArrayList<>(selectedDocuments)) {
                     File file = new File(doc.getFilePath());
                     if (file.delete()) {
+                        repository.removeScanFromIndex(file, null);
                         documents.remove(doc);
                         deletedCount++;
                     }
@@ -618,6 +640,7 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
     }
     
     private void filterDocuments(String query) {
+        searchQuery = query;
         documents.clear();
         
         if (query.trim().isEmpty()) {
@@ -629,6 +652,8 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
                     documents.add(doc);
                 }
             }
+            // Then add documents whose recognized text matches
+            repository.search(currentUserId, query, SEARCH_LIMIT, results -> addTextMatches(query, results));
         }
         
         // Pass search query to adapter for highlighting
@@ -636,6 +661,31 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
         updateUI();
     }
     
+    private void addTextMatches(String query, List<SearchResult> results) {
+        // Ignore results for a query the user has already typed past
+        if (isDestroyed() || !query.equals(searchQuery)) {
+            return;
+        }
+        
+        Set<String> matchedPaths = new HashSet<>();
+        for (SearchResult result : results) {
+            if (result.getKind() == SearchResult.Kind.SCAN) {
+                matchedPaths.add(result.getRefId());
+            }
+        }
+        
+        boolean added = false;
+        for (ScannedDocument doc : allDocuments) {
+            if (matchedPaths.contains(doc.getFilePath()) && !documents.contains(doc)) {
+                documents.add(doc);
+                added = true;
+            }
+        }
+        if (added) {
+            updateUI();
+        }
+    }
+    
     private void deleteAllDocuments() {
         if (documents.isEmpty()) {
             Toast.makeText(this, "No documents to delete", Toast.LENGTH_SHORT).show();
@@ -650,6 +700,7 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
                 for (ScannedDocument doc : new ArrayList<>(documents)) {
                     File file = new File(doc.getFilePath());
                     if (file.delete()) {
+                        repository.removeScanFromIndex(file, null);
                         deletedCount++;
                     }
                 }
@@ -735,48 +786,14 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
             return;
         }
         
-        // Create lightweight progress dialog
-        android.app.ProgressDialog progressDialog = new android.app.ProgressDialog(this);
-        progressDialog.setMessage("Converting PDFs to Text...");
-        progressDialog.setProgressStyle(android.app.ProgressDialog.STYLE_HORIZONTAL);
-        progressDialog.setMax(pdfDocs.size());
-        progressDialog.setCancelable(false);
-        progressDialog.show();
-        
-        new Thread(() -> {
-            int successCount = 0;
-            for (int i = 0; i < pdfDocs.size(); i++) {
-                ScannedDocument doc = pdfDocs.get(i);
-                final int current = i + 1;
-                final int total = pdfDocs.size();
-                
-                runOnUiThread(() -> {
-                    progressDialog.setProgress(current);
-                    int percentage = (current * 100) / total;
-                    progressDialog.setMessage("Converting " + current + "/" + total + " (" + percentage + "%)");
-                });
-                
-                File pdfFile = new File(doc.getFilePath());
-                File txtFile = new File(pdfFile.getParent(), 
-                    pdfFile.getName().replace(".pdf", "") + "_converted.txt");
-                
-                if (ScanUtils.convertPdfToText(this, pdfFile, txtFile)) {
-                    successCount++;
-                }
-            }
-            
-            final int finalCount = successCount;
-            runOnUiThread(() -> {
-                progressDialog.dismiss();
-                if (finalCount > 0) {
-                    Toast.makeText(this, "Converted " + finalCount + " PDF(s) to Text", Toast.LENGTH_LONG).show();
-                    exitSelectionMode();
-                    loadDocuments();
-                } else {
-                    Toast.makeText(this, "Conversion failed", Toast.LENGTH_SHORT).show();
-                }
-            });
-        }).start();
+        List<String> paths = new ArrayList<>();
+        for (ScannedDocument doc : pdfDocs) {
+            paths.add(doc.getFilePath());
+        }
+        jobManager.convertPdfsToText(paths);
+        Toast.makeText(this, "Converting in the background; progress is shown in notifications",
+            Toast.LENGTH_SHORT).show();
+        exitSelectionMode();
     }
     
     private void convertTextToPdf(List<ScannedDocument> allDocs) {
@@ -792,48 +809,14 @@ public class ScanDocumentsActivity extends AppCompatActivity implements ScannedD
             return;
         }
         
-        // Create lightweight progress dialog
-        android.app.ProgressDialog progressDialog = new android.app.ProgressDialog(this);
-        progressDialog.setMessage("Converting Text to PDFs...");
-        progressDialog.setProgressStyle(android.app.ProgressDialog.STYLE_HORIZONTAL);
-        progressDialog.setMax(txtDocs.size());
-        progressDialog.setCancelable(false);
-        progressDialog.show();
-        
-        new Thread(() -> {
-            int successCount = 0;
-            for (int i = 0; i < txtDocs.size(); i++) {
-                ScannedDocument doc = txtDocs.get(i);
-                final int current = i + 1;
-                final int total = txtDocs.size();
-                
-                runOnUiThread(() -> {
-                    progressDialog.setProgress(current);
-                    int percentage = (current * 100) / total;
-                    progressDialog.setMessage("Converting " + current + "/" + total + " (" + percentage + "%)");
-                });
-                
-                File txtFile = new File(doc.getFilePath());
-                File pdfFile = new File(txtFile.getParent(), 
-                    txtFile.getName().replace(".txt", "") + "_converted.pdf");
-                
-                if (ScanUtils.convertTextToPdf(txtFile, pdfFile)) {
-                    successCount++;
-                }
-            }
-            
-            final int finalCount = successCount;
-            runOnUiThread(() -> {
-                progressDialog.dismiss();
-                if (finalCount > 0) {
-                    Toast.makeText(this, "Converted " + finalCount + " Text file(s) to PDF", Toast.LENGTH_LONG).show();
-                    exitSelectionMode();
-                    loadDocuments();
-                } else {
-                    Toast.makeText(this, "Conversion failed", Toast.LENGTH_SHORT).show();
-                }
-            });
-        }).start();
+        List<String> paths = new ArrayList<>();
+        for (ScannedDocument doc : txtDocs) {
+            paths.add(doc.getFilePath());
+        }
+        jobManager.convertTextsToPdf(paths);
+        Toast.makeText(this, "Converting in the background; progress is shown in notifications",
+            Toast.LENGTH_SHORT).show();
+        exitSelectionMode();
     }
     
     @Override
@@ -0,0 +1,116 @@
+package com.example.notex;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.ViewModel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ScanSession - The pages of a scan and the captures still being processed.
+ *
+ * Outlives ScanActivity across recreation, e.g. on rotation, so a capture
+ * that finishes while the activity is being recreated still joins the
+ * session. Results are delivered on the main thread to whichever activity is
+ * attached. Once the scan screen is gone for good, captures that finish late
+ * have their files deleted instead of being left behind.
+ */
+public class ScanSession extends ViewModel {
+    private static final String TAG = "ScanSession";
+
+    /** Told on the main thread when a capture is done; page is null when it could not be processed */
+    interface Listener {
+        void onPageProcessed(ScanActivity.ScannedPage page);
+    }
+
+    // Pages are kept as files; only their thumbnails stay in memory
+    final List<ScanActivity.ScannedPage> pages = new ArrayList<>();
+    // Straightening a capture takes too long for the UI thread; one thread keeps pages in capture order
+    private final ExecutorService processingExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int pagesProcessing = 0; // Captures not yet added to pages; main thread only
+    private boolean started = false;
+    private boolean cleared = false;
+    private Listener listener;
+
+    /**
+     * Returns true only on the first call, when the session is new and pages saved
+     * before the process was killed may be restored into it
+     */
+    boolean start() {
+        boolean first = !started;
+        started = true;
+        return first;
+    }
+
+    /** Attach the current activity, or detach it with null when it is destroyed */
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    boolean isProcessing() {
+        return pagesProcessing > 0;
+    }
+
+    /**
+     * Run a capture's processing on the processing thread and add the page it returns
+     */
+    void process(File capture, Callable<ScanActivity.ScannedPage> processing) {
+        if (cleared) {
+            // The picture was saved after the scan screen closed
+            //noinspection ResultOfMethodCallIgnored
+            capture.delete();
+            return;
+        }
+        pagesProcessing++;
+        processingExecutor.execute(() -> {
+            ScanActivity.ScannedPage page = null;
+            try {
+                page = processing.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Error processing image", e);
+            }
+            ScanActivity.ScannedPage result = page;
+            mainHandler.post(() -> deliver(result));
+        });
+    }
+
+    private void deliver(ScanActivity.ScannedPage page) {
+        pagesProcessing--;
+        if (cleared) {
+            // Nobody will see this page again
+            if (page != null) {
+                //noinspection ResultOfMethodCallIgnored
+                new File(page.getFilePath()).delete();
+                page.recycleThumbnail();
+            }
+            return;
+        }
+        if (page != null) {
+            pages.add(page);
+        }
+        if (listener != null) {
+            listener.onPageProcessed(page);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        // Pages already handed back to the caller keep their files; queued captures still run
+        // so their files are deleted when they finish
+        cleared = true;
+        listener = null;
+        processingExecutor.shutdown();
+        for (ScanActivity.ScannedPage page : pages) {
+            page.recycleThumbnail();
+        }
+        ScanUtils.trimPools();
+    }
+}
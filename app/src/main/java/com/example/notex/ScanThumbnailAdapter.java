@@ -37,7 +37,7 @@ public class ScanThumbnailAdapter extends RecyclerView.Adapter<ScanThumbnailAdap
     @Override
     public void onBindViewHolder(@NonNull ThumbnailViewHolder holder, int position) {
         ScanActivity.ScannedPage page = pages.get(position);
-        holder.ivThumbnail.setImageBitmap(page.getBitmap());
+        holder.ivThumbnail.setImageBitmap(page.getThumbnail());
         holder.tvPageNumber.setText(String.valueOf(position + 1));
         holder.btnDelete.setOnClickListener(v -> {
             if (deleteListener != null) {
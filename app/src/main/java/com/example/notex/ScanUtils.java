@@ -5,8 +5,6 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
 import android.graphics.pdf.PdfDocument;
 import android.graphics.pdf.PdfRenderer;
@@ -16,210 +14,425 @@ import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.util.Log;
 
+import com.example.notex.export.PdfProfile;
+import com.example.notex.export.ScanPdfExporter;
+import com.example.notex.export.TextStream;
+import com.example.notex.scan.AdaptiveThreshold;
+import com.example.notex.scan.PageDetector;
+import com.example.notex.scan.PerspectiveWarp;
+import com.example.notex.scan.PixelOps;
+import com.example.notex.scan.SizedPool;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.text.TextRecognition;
 import com.google.mlkit.vision.text.TextRecognizer;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Utility class for document scanning operations
- * Includes PDF generation, image enhancement, and basic edge detection
+ * Includes PDF generation, image enhancement, and page edge detection
  */
 public class ScanUtils {
     private static final String TAG = "ScanUtils";
     
+    // Whole-page pixel work is split across the cores
+    private static final int IMAGE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService IMAGE_EXECUTOR = Executors.newFixedThreadPool(IMAGE_THREADS);
+    
+    // PDF pages being rendered, thresholded or recognized at once during text conversion
+    private static final int OCR_PAGES_IN_FLIGHT = 3;
+    // Thresholds one page while the next renders; the thresholding itself fans out to IMAGE_EXECUTOR
+    private static final ExecutorService OCR_PREPARE_EXECUTOR = Executors.newSingleThreadExecutor();
+    
+    // Characters of text laid out at once when converting text to PDF, about two pages' worth
+    private static final int TEXT_WINDOW_CHARS = 8192;
+    
+    // Straightened pages are capped at A4 at the archive profile's resolution
+    private static final int MAX_PAGE_PIXELS = pagePixels(PdfProfile.ARCHIVE);
+    
+    // Rows of a page rotated or straightened at a time, so the result needs no second full-size buffer
+    private static final int STRIP_ROWS = 256;
+    
+    // Bitmaps and pixel arrays given back by finished steps, reused by later ones of about
+    // the same size; sized in bytes. Bitmaps beyond the budget are recycled.
+    private static final SizedPool<Bitmap> BITMAP_POOL =
+        new SizedPool<>(Runtime.getRuntime().maxMemory() / 2, Bitmap::recycle);
+    private static final SizedPool<int[]> PIXEL_POOL =
+        new SizedPool<>(Runtime.getRuntime().maxMemory() / 4, null);
+    
+    /**
+     * A mutable ARGB bitmap of the given size, taken from the pool when one
+     * is free. Its content is undefined.
+     * Give it back with releaseBitmap once nothing uses it any more.
+     */
+    public static Bitmap obtainBitmap(int width, int height) {
+        long bytes = width * (long) height * 4;
+        Bitmap bitmap = BITMAP_POOL.take(bytes);
+        if (bitmap == null) {
+            // Made a little taller than asked, so a slightly larger page can reuse it
+            int rows = (int) Math.min(Integer.MAX_VALUE / 4 / width, SizedPool.sizeClass(bytes) / 4 / width);
+            bitmap = Bitmap.createBitmap(width, Math.max(height, rows), Bitmap.Config.ARGB_8888);
+        }
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        }
+        return bitmap;
+    }
+    
+    /**
+     * Give a bitmap back for reuse; the caller must not touch it afterwards.
+     * Bitmaps the pool cannot reuse are recycled.
+     */
+    public static void releaseBitmap(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
+            BITMAP_POOL.give(bitmap, bitmap.getAllocationByteCount());
+        } else {
+            bitmap.recycle();
+        }
+    }
+    
+    /**
+     * Drop the pooled bitmaps and pixel arrays, e.g. when scanning or a
+     * conversion ends or the system asks for memory back
+     */
+    public static void trimPools() {
+        BITMAP_POOL.clear();
+        PIXEL_POOL.clear();
+    }
+    
     /**
-     * Generate a multi-page PDF from scanned images
+     * A pixel array of at least count pixels from the pool; give it back with releasePixels
+     */
+    private static int[] obtainPixels(int count) {
+        int[] pixels = PIXEL_POOL.take(count * 4L);
+        return pixels != null ? pixels : new int[(int) (SizedPool.sizeClass(count * 4L) / 4)];
+    }
+    
+    private static void releasePixels(int[] pixels) {
+        PIXEL_POOL.give(pixels, pixels.length * 4L);
+    }
+    
+    /**
+     * Decode an image file into a mutable bitmap, reusing a pooled one when it fits
+     * @param path Image file
+     * @return The decoded bitmap, or null if the file cannot be decoded
+     */
+    public static Bitmap decodeBitmap(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = obtainBitmap(options.outWidth, options.outHeight);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The decoder could not reuse the bitmap, e.g. for an unusual format
+            releaseBitmap(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+    
+    /**
+     * Decode an image file to fit within maxSize pixels on its longer side, e.g. for a
+     * thumbnail. It is subsampled while decoding, so the full image is never in memory.
+     * @param path Image file
+     * @param maxSize Longest side of the result, in pixels
+     * @return The thumbnail, or null if the file cannot be decoded
+     */
+    public static Bitmap decodeThumbnail(String path, int maxSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            return null;
+        }
+        Bitmap thumbnail = createThumbnail(bitmap, maxSize);
+        if (thumbnail != bitmap) {
+            bitmap.recycle();
+        }
+        return thumbnail;
+    }
+    
+    /**
+     * Scale a bitmap down to fit within maxSize pixels on its longer side
+     * @param bitmap Source bitmap; left as is
+     * @param maxSize Longest side of the result, in pixels
+     * @return A new bitmap, or the source itself if it already fits
+     */
+    public static Bitmap createThumbnail(Bitmap bitmap, int maxSize) {
+        float scale = (float) maxSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale >= 1.0f) {
+            return bitmap;
+        }
+        return Bitmap.createScaledBitmap(bitmap,
+            Math.max(1, Math.round(bitmap.getWidth() * scale)),
+            Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+    }
+    
+    /**
+     * Pixels in an A4 page at the profile's resolution, the most a scanned page needs to keep
+     */
+    public static int pagePixels(PdfProfile profile) {
+        return profile.pixelsFor(595) * profile.pixelsFor(842);
+    }
+    
+    /** A change made to a bitmap's pixels, as one array of width x height pixels */
+    private interface PixelEdit {
+        void apply(int[] pixels, int width, int height) throws InterruptedIOException;
+    }
+    
+    /**
+     * Apply an edit to source's pixels and write them to target, which may be source
+     */
+    private static void editPixels(Bitmap source, Bitmap target, PixelEdit edit) throws InterruptedIOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = obtainPixels(width * height);
+        try {
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            edit.apply(pixels, width, height);
+            target.setPixels(pixels, 0, width, 0, 0, width, height);
+        } finally {
+            releasePixels(pixels);
+        }
+    }
+    
+    /**
+     * Apply a colour edit, which cannot be interrupted, into a pooled copy of the original
+     */
+    private static Bitmap editedCopy(Bitmap original, PixelEdit edit) {
+        Bitmap copy = obtainBitmap(original.getWidth(), original.getHeight());
+        try {
+            editPixels(original, copy, edit);
+        } catch (InterruptedIOException e) {
+            throw new IllegalStateException(e);
+        }
+        return copy;
+    }
+    
+    /**
+     * Generate a multi-page PDF from scanned images at print quality
      * @param images List of bitmap images to include in PDF
      * @param outputFile Output PDF file
      * @return true if successful, false otherwise
      */
     public static boolean generatePDF(List<Bitmap> images, File outputFile) {
+        return generatePDF(images, outputFile, PdfProfile.PRINT);
+    }
+
+    /**
+     * Generate a multi-page PDF from scanned images, downsampled to the profile
+     * @param images List of bitmap images to include in PDF; they are not recycled
+     * @param outputFile Output PDF file
+     * @param profile Resolution and JPEG quality to export at
+     * @return true if successful, false otherwise
+     */
+    public static boolean generatePDF(List<Bitmap> images, File outputFile, PdfProfile profile) {
         if (images == null || images.isEmpty()) {
             Log.e(TAG, "No images to convert to PDF");
             return false;
         }
-        
-        PdfDocument document = new PdfDocument();
-        
-        try {
-            for (int i = 0; i < images.size(); i++) {
-                Bitmap bitmap = images.get(i);
-                if (bitmap == null || bitmap.isRecycled()) {
-                    continue;
-                }
-                
-                // Create page info (A4 size scaled to fit image)
-                int pageWidth = bitmap.getWidth();
-                int pageHeight = bitmap.getHeight();
-                
-                // Scale to A4 ratio if needed (maintaining aspect ratio)
-                float a4Ratio = 297f / 210f; // A4 height/width ratio
-                float imageRatio = (float) pageHeight / pageWidth;
-                
-                if (imageRatio > a4Ratio) {
-                    // Image is taller, constrain height
-                    pageHeight = (int) (pageWidth * a4Ratio);
-                } else {
-                    // Image is wider, constrain width
-                    pageWidth = (int) (pageHeight / a4Ratio);
-                }
-                
-                PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(
-                    pageWidth, pageHeight, i + 1).create();
-                    
-                PdfDocument.Page page = document.startPage(pageInfo);
-                Canvas canvas = page.getCanvas();
-                
-                // Draw bitmap on canvas
-                Paint paint = new Paint();
-                paint.setAntiAlias(true);
-                paint.setFilterBitmap(true);
-                
-                // Scale bitmap to fit page
-                float scaleX = (float) pageWidth / bitmap.getWidth();
-                float scaleY = (float) pageHeight / bitmap.getHeight();
-                float scale = Math.min(scaleX, scaleY);
-                
-                int scaledWidth = (int) (bitmap.getWidth() * scale);
-                int scaledHeight = (int) (bitmap.getHeight() * scale);
-                int x = (pageWidth - scaledWidth) / 2;
-                int y = (pageHeight - scaledHeight) / 2;
-                
-                Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
-                canvas.drawBitmap(scaledBitmap, x, y, paint);
-                
-                if (scaledBitmap != bitmap && !scaledBitmap.isRecycled()) {
-                    scaledBitmap.recycle();
-                }
-                
-                document.finishPage(page);
-            }
-            
-            // Write PDF to file
-            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                document.writeTo(fos);
-                Log.i(TAG, "PDF generated successfully: " + outputFile.getAbsolutePath());
-                return true;
-            }
-            
-        } catch (IOException e) {
-            Log.e(TAG, "Error generating PDF", e);
-            return false;
-        } finally {
-            document.close();
-        }
+        return writePdf(outputFile, out -> new ScanPdfExporter(profile).exportBitmaps(images, out));
     }
     
     /**
      * Auto-enhance image: adjust brightness, contrast, and sharpness
      * @param original Original bitmap
-     * @return Enhanced bitmap
+     * @return Enhanced bitmap, from the pool; the original is left as is
      */
     public static Bitmap autoEnhance(Bitmap original) {
         if (original == null || original.isRecycled()) {
             return original;
         }
-        
-        Bitmap enhanced = Bitmap.createBitmap(
-            original.getWidth(), original.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(enhanced);
-        
-        Paint paint = new Paint();
-        
+        return editedCopy(original, ScanUtils::enhance);
+    }
+    
+    /**
+     * Auto-enhance a mutable bitmap in place
+     */
+    public static void autoEnhanceInPlace(Bitmap bitmap) {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            editedInPlace(bitmap, ScanUtils::enhance);
+        }
+    }
+    
+    private static void enhance(int[] pixels, int width, int height) {
         // Increase contrast and brightness
-        ColorMatrix colorMatrix = new ColorMatrix();
-        colorMatrix.set(new float[]{
-            1.2f, 0, 0, 0, 10,      // Red
-            0, 1.2f, 0, 0, 10,      // Green
-            0, 0, 1.2f, 0, 10,      // Blue
-            0, 0, 0, 1, 0           // Alpha
-        });
-        
-        paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
-        canvas.drawBitmap(original, 0, 0, paint);
-        
-        return enhanced;
+        PixelOps.scaleChannels(pixels, width * height, 1.2f, 10);
     }
     
     /**
      * Convert image to black and white (for document scanning)
      * @param original Original bitmap
-     * @return Black and white bitmap
+     * @return Black and white bitmap, from the pool; the original is left as is
      */
     public static Bitmap convertToBlackAndWhite(Bitmap original) {
         if (original == null || original.isRecycled()) {
             return original;
         }
-        
-        Bitmap bw = Bitmap.createBitmap(
-            original.getWidth(), original.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bw);
-        
-        Paint paint = new Paint();
-        ColorMatrix colorMatrix = new ColorMatrix();
-        colorMatrix.setSaturation(0); // Remove color
-        
-        // Increase contrast for better readability
-        ColorMatrix contrastMatrix = new ColorMatrix(new float[]{
-            1.5f, 0, 0, 0, -50,
-            0, 1.5f, 0, 0, -50,
-            0, 0, 1.5f, 0, -50,
-            0, 0, 0, 1, 0
-        });
-        
-        colorMatrix.postConcat(contrastMatrix);
-        paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
-        canvas.drawBitmap(original, 0, 0, paint);
-        
-        return bw;
+        return editedCopy(original, ScanUtils::blackAndWhite);
+    }
+    
+    /**
+     * Convert a mutable bitmap to black and white in place
+     */
+    public static void convertToBlackAndWhiteInPlace(Bitmap bitmap) {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            editedInPlace(bitmap, ScanUtils::blackAndWhite);
+        }
+    }
+    
+    private static void blackAndWhite(int[] pixels, int width, int height) {
+        // Remove color, with increased contrast for better readability
+        PixelOps.toGray(pixels, width * height, 1.5f, -50);
+    }
+    
+    private static void editedInPlace(Bitmap bitmap, PixelEdit edit) {
+        try {
+            editPixels(bitmap, bitmap, edit);
+        } catch (InterruptedIOException e) {
+            throw new IllegalStateException(e);
+        }
     }
     
     /**
-     * Basic edge detection using luminosity analysis
+     * Find the page's corners on a copy scaled down to PageDetector.WORK_SIZE,
+     * which is fast enough to run on every capture
      * Returns detected corners or null if not found
      * @param bitmap Input image
      * @return Array of 4 points [topLeft, topRight, bottomRight, bottomLeft] or null
      */
     public static float[][] detectEdges(Bitmap bitmap) {
-        // TODO: Implement basic edge detection
-        // For v1, we'll return null and use the full image
-        // v2 will add proper contour detection
-        return null;
+        if (bitmap == null || bitmap.isRecycled()) {
+            return null;
+        }
+        
+        float factor = Math.max(1f,
+            Math.max(bitmap.getWidth(), bitmap.getHeight()) / (float) PageDetector.WORK_SIZE);
+        int width = Math.max(1, Math.round(bitmap.getWidth() / factor));
+        int height = Math.max(1, Math.round(bitmap.getHeight() / factor));
+        Bitmap small = obtainBitmap(width, height);
+        new Canvas(small).drawBitmap(bitmap, null, new android.graphics.Rect(0, 0, width, height),
+            new Paint(Paint.FILTER_BITMAP_FLAG));
+        int[] pixels = obtainPixels(width * height);
+        small.getPixels(pixels, 0, width, 0, 0, width, height);
+        releaseBitmap(small);
+        
+        byte[] gray = new byte[width * height];
+        for (int i = 0; i < gray.length; i++) {
+            int pixel = pixels[i];
+            gray[i] = (byte) ((Color.red(pixel) * 77 + Color.green(pixel) * 150 + Color.blue(pixel) * 29) >> 8);
+        }
+        releasePixels(pixels);
+        
+        float[][] corners = PageDetector.detect(gray, width, height);
+        return corners != null ? PageDetector.scale(corners, bitmap.getWidth() / (float) width) : null;
     }
     
     /**
-     * Apply perspective correction to image
+     * Straighten the page inside the corners into an upright rectangle in its
+     * real proportions, at most A4 at 300 dpi
      * @param bitmap Original image
-     * @param corners Four corner points
-     * @return Corrected bitmap
+     * @param corners Four corner points [topLeft, topRight, bottomRight, bottomLeft], e.g. from detectEdges
+     * @return Corrected bitmap from the pool, or the original if there are no corners or the warp was
+     *     interrupted; the original is left as is
      */
     public static Bitmap perspectiveCorrect(Bitmap bitmap, float[][] corners) {
-        // TODO: Implement perspective transform
-        // For v1, return original bitmap
-        return bitmap;
+        return perspectiveCorrect(bitmap, corners, MAX_PAGE_PIXELS);
+    }
+    
+    /**
+     * Straighten the page inside the corners, scaled down to at most maxPixels
+     */
+    public static Bitmap perspectiveCorrect(Bitmap bitmap, float[][] corners, int maxPixels) {
+        if (bitmap == null || bitmap.isRecycled() || corners == null) {
+            return bitmap;
+        }
+        
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] size = PerspectiveWarp.outputSize(corners, width, height, maxPixels);
+        int[] pixels = obtainPixels(width * height);
+        int[] strip = obtainPixels(size[0] * STRIP_ROWS);
+        Bitmap corrected = obtainBitmap(size[0], size[1]);
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            for (int top = 0; top < size[1]; top += STRIP_ROWS) {
+                int rows = Math.min(STRIP_ROWS, size[1] - top);
+                PerspectiveWarp.warp(pixels, width, height, corners, strip, size[0], size[1], top, rows,
+                    IMAGE_EXECUTOR, IMAGE_THREADS);
+                corrected.setPixels(strip, 0, size[0], 0, top, size[0], rows);
+            }
+            return corrected;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Perspective correction interrupted");
+            releaseBitmap(corrected);
+            return bitmap;
+        } finally {
+            releasePixels(pixels);
+            releasePixels(strip);
+        }
     }
     
     /**
      * Rotate bitmap by specified degrees
      * @param source Original bitmap
      * @param degrees Rotation angle (90, 180, 270)
-     * @return Rotated bitmap
+     * @return Rotated bitmap, from the pool for right angles; the source is left as is
      */
     public static Bitmap rotateBitmap(Bitmap source, float degrees) {
         if (source == null || source.isRecycled()) {
             return source;
         }
         
+        if (degrees % 90 == 0) {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            boolean sideways = degrees % 180 != 0;
+            Bitmap rotated = obtainBitmap(sideways ? height : width, sideways ? width : height);
+            rotateInto(source, rotated, (int) (degrees / 90));
+            return rotated;
+        }
+        
         android.graphics.Matrix matrix = new android.graphics.Matrix();
         matrix.postRotate(degrees);
         
@@ -229,6 +442,47 @@ public class ScanUtils {
         return rotated;
     }
     
+    /**
+     * Rotate a mutable bitmap in place by a multiple of 90 degrees
+     * @param bitmap Mutable bitmap; its width and height swap for quarter turns
+     * @param degrees Rotation angle (90, 180, 270)
+     */
+    public static void rotateInPlace(Bitmap bitmap, int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("Not a right angle: " + degrees);
+        }
+        if (bitmap != null && !bitmap.isRecycled()) {
+            rotateInto(bitmap, bitmap, degrees / 90);
+        }
+    }
+    
+    /**
+     * Rotate source clockwise into target, which may be source and is resized to fit
+     */
+    private static void rotateInto(Bitmap source, Bitmap target, int quarterTurns) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean sideways = quarterTurns % 2 != 0;
+        int rotatedWidth = sideways ? height : width;
+        int rotatedHeight = sideways ? width : height;
+        int[] pixels = obtainPixels(width * height);
+        int[] strip = obtainPixels(rotatedWidth * STRIP_ROWS);
+        try {
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            if (target.getWidth() != rotatedWidth || target.getHeight() != rotatedHeight) {
+                target.reconfigure(rotatedWidth, rotatedHeight, Bitmap.Config.ARGB_8888);
+            }
+            for (int top = 0; top < rotatedHeight; top += STRIP_ROWS) {
+                int rows = Math.min(STRIP_ROWS, rotatedHeight - top);
+                PixelOps.rotate(pixels, width, height, quarterTurns, strip, top, rows);
+                target.setPixels(strip, 0, rotatedWidth, 0, top, rotatedWidth, rows);
+            }
+        } finally {
+            releasePixels(pixels);
+            releasePixels(strip);
+        }
+    }
+    
     /**
      * Crop bitmap to specified region
      * @param source Original bitmap
@@ -257,33 +511,50 @@ public class ScanUtils {
     }
     
     /**
-     * Generate PDF from list of image file paths
+     * Generate PDF from list of image file paths at print quality
      * @param imagePaths List of image file paths
      * @param outputFile Output PDF file
      * @return true if successful
      */
     public static boolean generatePDF(ArrayList<String> imagePaths, File outputFile) {
+        return generatePDF(imagePaths, outputFile, PdfProfile.PRINT);
+    }
+
+    /**
+     * Generate PDF from list of image file paths, decoding one image at a time
+     * @param imagePaths List of image file paths
+     * @param outputFile Output PDF file
+     * @param profile Resolution and JPEG quality to export at
+     * @return true if successful
+     */
+    public static boolean generatePDF(ArrayList<String> imagePaths, File outputFile, PdfProfile profile) {
         if (imagePaths == null || imagePaths.isEmpty()) {
             return false;
         }
-        
-        List<Bitmap> bitmaps = new ArrayList<>();
-        try {
-            for (String path : imagePaths) {
-                Bitmap bitmap = BitmapFactory.decodeFile(path);
-                if (bitmap != null) {
-                    bitmaps.add(bitmap);
-                }
-            }
-            
-            return generatePDF(bitmaps, outputFile);
-        } finally {
-            for (Bitmap bitmap : bitmaps) {
-                if (bitmap != null && !bitmap.isRecycled()) {
-                    bitmap.recycle();
-                }
-            }
+        return writePdf(outputFile, out -> new ScanPdfExporter(profile).exportFiles(imagePaths, out));
+    }
+
+    private interface PdfWriter {
+        int write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Write a PDF to the file, removing it again if no page could be written
+     */
+    private static boolean writePdf(File outputFile, PdfWriter writer) {
+        int pages = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            pages = writer.write(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error generating PDF", e);
         }
+        if (pages == 0) {
+            //noinspection ResultOfMethodCallIgnored
+            outputFile.delete();
+            return false;
+        }
+        Log.i(TAG, "PDF generated successfully: " + outputFile.getAbsolutePath());
+        return true;
     }
     
     /**
@@ -306,6 +577,16 @@ public class ScanUtils {
         }
     }
     
+    /**
+     * Receives the recognized text of each PDF page, in page order
+     */
+    public interface PageTextListener {
+        /**
+         * @return false to stop before the next page
+         */
+        boolean onPageText(int pageIndex, int pageCount, String text) throws IOException;
+    }
+
     /**
      * Convert PDF to text using ML Kit text recognition with enhanced preprocessing
      * @param context Application context
@@ -314,229 +595,249 @@ public class ScanUtils {
      * @return true if successful
      */
     public static boolean convertPdfToText(Context context, File pdfFile, File txtFile) {
+        try (Writer writer = new BufferedWriter(new FileWriter(txtFile))) {
+            // Each page is written as soon as it and the pages before it are recognized
+            recognizePdfPages(context, pdfFile, 0, (pageIndex, pageCount, text) -> {
+                writer.write(formatPageText(pageIndex, text));
+                return true;
+            });
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error converting PDF to text", e);
+            return false;
+        }
+    }
+
+    /**
+     * Text of one recognized page as it appears in the converted text file
+     * @param pageIndex Zero-based page index
+     * @param text Recognized text of the page
+     * @return The text followed by a page marker, or "" for a page without text
+     */
+    public static String formatPageText(int pageIndex, String text) {
+        if (text.isEmpty()) {
+            return "";
+        }
+        return text + "\n\n--- Page " + (pageIndex + 1) + " ---\n\n";
+    }
+
+    /**
+     * Run text recognition over the pages of a PDF, starting at a page
+     * Pages are pipelined: the next page renders while earlier ones are
+     * thresholded and recognized, with at most OCR_PAGES_IN_FLIGHT pages in
+     * memory in pooled bitmaps. The listener is called on this thread.
+     * @param context Application context
+     * @param pdfFile Input PDF file
+     * @param firstPage Zero-based page to start at, e.g. where an interrupted conversion stopped
+     * @param listener Receives each page's text
+     * @return Number of pages in the PDF
+     */
+    public static int recognizePdfPages(Context context, File pdfFile, int firstPage, PageTextListener listener)
+            throws IOException {
+        ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(
+            pdfFile, ParcelFileDescriptor.MODE_READ_ONLY);
+        PdfRenderer renderer = new PdfRenderer(fileDescriptor);
+        TextRecognizer recognizer = TextRecognition.getClient();
+        BlockingQueue<OcrPage> recognized = new LinkedBlockingQueue<>();
+        // Text of pages recognized ahead of an earlier page
+        Map<Integer, String> waiting = new HashMap<>();
+        int inFlight = 0;
         try {
-            ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(
-                pdfFile, ParcelFileDescriptor.MODE_READ_ONLY);
-            PdfRenderer renderer = new PdfRenderer(fileDescriptor);
-            
-            StringBuilder allText = new StringBuilder();
-            TextRecognizer recognizer = TextRecognition.getClient();
+            int pageCount = renderer.getPageCount();
+            int nextToRender = firstPage;
+            int nextToDeliver = firstPage;
+            boolean stopped = false;
             
-            for (int i = 0; i < renderer.getPageCount(); i++) {
-                PdfRenderer.Page page = renderer.openPage(i);
-                
-                // Render at optimal 2x resolution for balanced speed and quality
-                Bitmap bitmap = Bitmap.createBitmap(
-                    page.getWidth() * 2, // 2x for optimal speed/quality balance
-                    page.getHeight() * 2,
-                    Bitmap.Config.ARGB_8888
-                );
-                page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-                page.close();
-                
-                // Fast preprocessing optimized for OCR
-                bitmap = fastPreprocessForOCR(bitmap);
-                
-                // Extract text using ML Kit
-                InputImage image = InputImage.fromBitmap(bitmap, 0);
-                CountDownLatch latch = new CountDownLatch(1);
-                final StringBuilder pageText = new StringBuilder();
-                
-                recognizer.process(image)
-                    .addOnSuccessListener(visionText -> {
-                        // Preserve formatting by processing blocks and lines
-                        for (com.google.mlkit.vision.text.Text.TextBlock block : visionText.getTextBlocks()) {
-                            for (com.google.mlkit.vision.text.Text.Line line : block.getLines()) {
-                                pageText.append(line.getText()).append("\n");
-                            }
-                            pageText.append("\n"); // Extra line between blocks
-                        }
-                        latch.countDown();
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Text recognition failed", e);
-                        latch.countDown();
-                    });
-                
-                latch.await();
-                
-                if (pageText.length() > 0) {
-                    allText.append(pageText);
-                    allText.append("\n\n--- Page ").append(i + 1).append(" ---\n\n");
+            while (!stopped && nextToDeliver < pageCount) {
+                if (nextToRender < pageCount && inFlight < OCR_PAGES_IN_FLIGHT) {
+                    OcrPage page = renderForOcr(renderer, nextToRender++);
+                    inFlight++;
+                    OCR_PREPARE_EXECUTOR.execute(() -> prepareAndRecognize(page, recognizer, recognized));
+                    continue;
                 }
                 
-                bitmap.recycle();
+                OcrPage page = takeRecognized(recognized);
+                inFlight--;
+                releaseBitmap(page.bitmap);
+                if (page.error != null) {
+                    throw page.error;
+                }
+                waiting.put(page.index, page.text);
+                while (!stopped && waiting.containsKey(nextToDeliver)) {
+                    stopped = !listener.onPageText(nextToDeliver, pageCount, waiting.remove(nextToDeliver));
+                    nextToDeliver++;
+                }
             }
-            
+            return pageCount;
+        } finally {
+            // Recognition may still be reading bitmaps; wait for it before they are reused
+            try {
+                for (; inFlight > 0; inFlight--) {
+                    releaseBitmap(takeRecognized(recognized).bitmap);
+                }
+            } catch (InterruptedIOException e) {
+                Log.w(TAG, "Interrupted with " + inFlight + " page(s) still being recognized");
+            }
+            // Each call gets its own recognizer; closing it frees ML Kit's native model resources
+            recognizer.close();
             renderer.close();
             fileDescriptor.close();
-            
-            // Write text to file
-            try (FileWriter writer = new FileWriter(txtFile)) {
-                writer.write(allText.toString());
+            // Runs in a job that may be the only scan work in the process; do not keep its buffers pinned
+            trimPools();
+        }
+    }
+    
+    /**
+     * A PDF page on its way through text recognition, in a pooled bitmap
+     */
+    private static final class OcrPage {
+        final Bitmap bitmap;
+        final int index;
+        String text;
+        IOException error;
+        
+        OcrPage(Bitmap bitmap, int index) {
+            this.bitmap = bitmap;
+            this.index = index;
+        }
+    }
+    
+    private static OcrPage renderForOcr(PdfRenderer renderer, int index) {
+        PdfRenderer.Page page = renderer.openPage(index);
+        try {
+            // Render at 2x for a balance of speed and recognition quality
+            Bitmap bitmap = obtainBitmap(page.getWidth() * 2, page.getHeight() * 2);
+            // Clears an earlier page, and gives paper the renderer leaves transparent a white background
+            bitmap.eraseColor(Color.WHITE);
+            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            return new OcrPage(bitmap, index);
+        } finally {
+            page.close();
+        }
+    }
+    
+    /**
+     * Threshold a rendered page and hand it to ML Kit; it goes into recognized
+     * when its text, or an error, is ready
+     */
+    private static void prepareAndRecognize(OcrPage page, TextRecognizer recognizer,
+            BlockingQueue<OcrPage> recognized) {
+        try {
+            fastPreprocessForOCR(page.bitmap);
+            recognizer.process(InputImage.fromBitmap(page.bitmap, 0))
+                .addOnSuccessListener(visionText -> {
+                    page.text = pageText(visionText);
+                    recognized.add(page);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Text recognition failed", e);
+                    page.text = "";
+                    recognized.add(page);
+                });
+        } catch (IOException e) {
+            page.error = e;
+            recognized.add(page);
+        } catch (RuntimeException e) {
+            page.error = new IOException("Preparing page " + (page.index + 1) + " failed", e);
+            recognized.add(page);
+        }
+    }
+    
+    private static OcrPage takeRecognized(BlockingQueue<OcrPage> recognized) throws InterruptedIOException {
+        try {
+            return recognized.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Text recognition interrupted");
+        }
+    }
+    
+    /**
+     * Recognized text with its layout kept: a line per line, a blank line after each block
+     */
+    private static String pageText(com.google.mlkit.vision.text.Text visionText) {
+        StringBuilder pageText = new StringBuilder();
+        for (com.google.mlkit.vision.text.Text.TextBlock block : visionText.getTextBlocks()) {
+            for (com.google.mlkit.vision.text.Text.Line line : block.getLines()) {
+                pageText.append(line.getText()).append("\n");
             }
-            
-            return true;
-        } catch (Exception e) {
-            Log.e(TAG, "Error converting PDF to text", e);
-            return false;
+            pageText.append("\n");
         }
+        return pageText.toString();
     }
     
     /**
      * Fast preprocessing optimized for OCR - best balance of speed and accuracy
-     * Uses optimized single-pass algorithm
-     * @param original Original bitmap
-     * @return Preprocessed bitmap optimized for text recognition
+     * Thresholds the page in place with Sauvola's method, which keeps text in
+     * shadows and on tinted paper that a single global threshold loses
+     * @param bitmap Mutable bitmap, e.g. a freshly rendered page
      */
-    private static Bitmap fastPreprocessForOCR(Bitmap original) {
-        if (original == null || original.isRecycled()) {
-            return original;
-        }
-        
-        int width = original.getWidth();
-        int height = original.getHeight();
-        
-        // Direct pixel manipulation for maximum speed
-        int[] pixels = new int[width * height];
-        original.getPixels(pixels, 0, width, 0, 0, width, height);
-        
-        // Single-pass processing for speed
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            
-            // Fast grayscale with optimal ITU-R BT.709 weights
-            int r = Color.red(pixel);
-            int g = Color.green(pixel);
-            int b = Color.blue(pixel);
-            int gray = (r * 77 + g * 150 + b * 29) >> 8; // Fast division by 256
-            
-            // Apply contrast enhancement inline
-            gray = Math.min(255, Math.max(0, (gray - 128) * 3 / 2 + 128));
-            
-            // Simple adaptive thresholding - faster than full window
-            int value = gray > 140 ? 255 : 0; // Optimized threshold
-            
-            pixels[i] = Color.rgb(value, value, value);
+    private static void fastPreprocessForOCR(Bitmap bitmap) throws InterruptedIOException {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
         }
-        
-        Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        result.setPixels(pixels, 0, width, 0, 0, width, height);
-        
-        return result;
+        editPixels(bitmap, bitmap, ScanUtils::thresholdForText);
     }
     
     /**
      * Preprocess bitmap for better OCR results
      * Applies contrast enhancement, noise reduction, and sharpening
      * @param original Original bitmap
-     * @return Preprocessed bitmap optimized for text recognition
+     * @return Preprocessed bitmap optimized for text recognition, from the pool
      */
-    private static Bitmap preprocessForOCR(Bitmap original) {
+    private static Bitmap preprocessForOCR(Bitmap original) throws InterruptedIOException {
         if (original == null || original.isRecycled()) {
             return original;
         }
         
-        // Step 1: Increase contrast and brightness
-        Bitmap enhanced = Bitmap.createBitmap(
-            original.getWidth(), original.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(enhanced);
-        
-        Paint paint = new Paint();
-        
-        // Enhanced color matrix for better text contrast
-        ColorMatrix colorMatrix = new ColorMatrix();
-        colorMatrix.set(new float[]{
-            1.5f, 0, 0, 0, 20,      // Red - increased contrast
-            0, 1.5f, 0, 0, 20,      // Green - increased contrast
-            0, 0, 1.5f, 0, 20,      // Blue - increased contrast
-            0, 0, 0, 1, 0           // Alpha
-        });
-        
-        paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
-        canvas.drawBitmap(original, 0, 0, paint);
-        
-        // Step 2: Apply grayscale conversion for better text detection
-        Bitmap grayscale = convertToGrayscale(enhanced);
-        enhanced.recycle();
-        
-        // Step 3: Apply adaptive thresholding for better text/background separation
-        Bitmap thresholded = applyAdaptiveThreshold(grayscale);
-        grayscale.recycle();
-        
-        return thresholded;
+        Bitmap result = obtainBitmap(original.getWidth(), original.getHeight());
+        try {
+            editPixels(original, result, (pixels, width, height) -> {
+                // Step 1: Increase contrast and brightness for better text contrast
+                PixelOps.scaleChannels(pixels, width * height, 1.5f, 20);
+                
+                // Step 2: Apply grayscale conversion for better text detection
+                convertToGrayscale(pixels, width, height);
+                
+                // Step 3: Apply adaptive thresholding for better text/background separation
+                thresholdForText(pixels, width, height);
+            });
+        } catch (InterruptedIOException e) {
+            releaseBitmap(result);
+            throw e;
+        }
+        return result;
     }
     
     /**
-     * Convert bitmap to grayscale
-     * @param original Original bitmap
-     * @return Grayscale bitmap
+     * Convert ARGB pixels to grayscale in place
      */
-    private static Bitmap convertToGrayscale(Bitmap original) {
-        Bitmap grayscale = Bitmap.createBitmap(
-            original.getWidth(), original.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(grayscale);
-        
-        Paint paint = new Paint();
-        ColorMatrix colorMatrix = new ColorMatrix();
-        colorMatrix.setSaturation(0);
-        
-        paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
-        canvas.drawBitmap(original, 0, 0, paint);
-        
-        return grayscale;
+    private static void convertToGrayscale(int[] pixels, int width, int height) {
+        PixelOps.toGray(pixels, width * height, 1, 0);
     }
     
     /**
-     * Apply adaptive thresholding to separate text from background
-     * @param original Original grayscale bitmap
-     * @return Thresholded bitmap
+     * Threshold ARGB pixels in place, bands of rows in parallel
      */
-    private static Bitmap applyAdaptiveThreshold(Bitmap original) {
-        int width = original.getWidth();
-        int height = original.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        
-        int[] pixels = new int[width * height];
-        original.getPixels(pixels, 0, width, 0, 0, width, height);
-        
-        // Calculate local threshold for each pixel
-        int windowSize = 15; // Size of local window
-        int halfWindow = windowSize / 2;
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int sum = 0;
-                int count = 0;
-                
-                // Calculate average in local window
-                for (int dy = -halfWindow; dy <= halfWindow; dy++) {
-                    for (int dx = -halfWindow; dx <= halfWindow; dx++) {
-                        int nx = x + dx;
-                        int ny = y + dy;
-                        
-                        if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
-                            int pixel = pixels[ny * width + nx];
-                            int gray = Color.red(pixel); // Already grayscale
-                            sum += gray;
-                            count++;
-                        }
-                    }
-                }
-                
-                int average = sum / count;
-                int currentPixel = pixels[y * width + x];
-                int currentGray = Color.red(currentPixel);
-                
-                // Apply threshold with small bias to prefer white background
-                int threshold = average - 10;
-                int newColor = currentGray > threshold ? Color.WHITE : Color.BLACK;
-                pixels[y * width + x] = newColor;
-            }
+    private static void thresholdForText(int[] pixels, int width, int height) throws InterruptedIOException {
+        try {
+            AdaptiveThreshold.forText().apply(pixels, width, height, IMAGE_EXECUTOR, IMAGE_THREADS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Thresholding interrupted");
         }
-        
-        result.setPixels(pixels, 0, width, 0, 0, width, height);
-        return result;
+    }
+    
+    /**
+     * Told as each page of a text to PDF conversion is finished
+     */
+    public interface PdfPageListener {
+        /**
+         * @param pageNumber One-based number of the page just finished
+         * @param fractionRead Share of the text file laid out so far, 0 to 1
+         * @return false to stop; no PDF is written then
+         */
+        boolean onPageFinished(int pageNumber, float fractionRead) throws IOException;
     }
     
     /**
@@ -547,89 +848,84 @@ public class ScanUtils {
      */
     public static boolean convertTextToPdf(File txtFile, File pdfFile) {
         try {
-            // Read text content
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(txtFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                }
-            }
-            
-            if (content.length() == 0) {
+            return convertTextToPdf(txtFile, pdfFile, null);
+        } catch (InterruptedIOException e) {
+            Log.e(TAG, "Text to PDF conversion interrupted", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Convert text file to PDF a page at a time
+     * The file is read in chunks and only about a page of text is laid out
+     * at once, so files of any size convert in bounded memory and in time
+     * proportional to their length.
+     * @param txtFile Input text file
+     * @param pdfFile Output PDF file
+     * @param listener Told after each page, or null
+     * @return true if successful, false if the conversion failed or the listener stopped it
+     * @throws InterruptedIOException if the listener threw it, e.g. because the conversion was cancelled
+     */
+    public static boolean convertTextToPdf(File txtFile, File pdfFile, PdfPageListener listener)
+            throws InterruptedIOException {
+        // A4 size in points (1 point = 1/72 inch)
+        int pageWidth = 595; // 8.27 inches * 72
+        int pageHeight = 842; // 11.69 inches * 72
+        int margin = 40;
+        int textWidth = pageWidth - (2 * margin);
+        int availableHeight = pageHeight - (2 * margin);
+        
+        TextPaint textPaint = new TextPaint();
+        textPaint.setColor(Color.BLACK);
+        textPaint.setTextSize(12);
+        textPaint.setAntiAlias(true);
+        
+        PdfDocument document = new PdfDocument();
+        try (TextStream text = new TextStream(new FileReader(txtFile))) {
+            // Start with about two pages of text; grown if a page still has room when it runs out
+            int window = TEXT_WINDOW_CHARS;
+            CharSequence pending = text.fill(window);
+            if (pending.length() == 0) {
                 return false;
             }
-            
-            // Create PDF
-            PdfDocument document = new PdfDocument();
-            
-            // A4 size in points (1 point = 1/72 inch)
-            int pageWidth = 595; // 8.27 inches * 72
-            int pageHeight = 842; // 11.69 inches * 72
-            int margin = 40;
-            int textWidth = pageWidth - (2 * margin);
-            
-            TextPaint textPaint = new TextPaint();
-            textPaint.setColor(Color.BLACK);
-            textPaint.setTextSize(12);
-            textPaint.setAntiAlias(true);
-            
-            String text = content.toString();
+            long fileLength = Math.max(1, txtFile.length());
             int pageNumber = 1;
-            int startIndex = 0;
             
-            while (startIndex < text.length()) {
-                PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(
-                    pageWidth, pageHeight, pageNumber).create();
-                PdfDocument.Page page = document.startPage(pageInfo);
-                Canvas canvas = page.getCanvas();
-                
-                // Calculate how much text fits on this page
-                int availableHeight = pageHeight - (2 * margin);
-                String remainingText = text.substring(startIndex);
-                
-                StaticLayout layout = StaticLayout.Builder.obtain(
-                    remainingText, 0, remainingText.length(), textPaint, textWidth)
-                    .setAlignment(Layout.Alignment.ALIGN_NORMAL)
-                    .setLineSpacing(1.0f, 1.0f)
-                    .setIncludePad(true)
-                    .build();
+            while (!text.isFinished()) {
+                StaticLayout layout = layoutText(text.fill(window), textPaint, textWidth);
                 
                 // Find how many lines fit on this page
                 int lineCount = 0;
-                int totalHeight = 0;
-                for (int i = 0; i < layout.getLineCount(); i++) {
-                    totalHeight += layout.getLineBottom(i) - layout.getLineTop(i);
-                    if (totalHeight > availableHeight) {
-                        break;
-                    }
-                    lineCount = i + 1;
+                while (lineCount < layout.getLineCount()
+                        && layout.getLineBottom(lineCount) - layout.getLineTop(0) <= availableHeight) {
+                    lineCount++;
                 }
-                
-                if (lineCount == 0) {
-                    lineCount = 1; // At least one line
+                if (lineCount == layout.getLineCount() && !text.isExhausted()) {
+                    // The window ran out before the page did; its last line may be cut short
+                    window *= 2;
+                    continue;
                 }
+                lineCount = Math.max(1, lineCount); // At least one line
                 
-                int endIndex = Math.min(startIndex + layout.getLineEnd(lineCount - 1), text.length());
-                String pageText = text.substring(startIndex, endIndex);
+                PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(
+                    pageWidth, pageHeight, pageNumber).create();
+                PdfDocument.Page page = document.startPage(pageInfo);
+                Canvas canvas = page.getCanvas();
                 
-                // Draw text on page
+                // Draw only the lines that fit; the layout skips lines outside the clip
                 canvas.save();
                 canvas.translate(margin, margin);
-                
-                StaticLayout finalLayout = StaticLayout.Builder.obtain(
-                    pageText, 0, pageText.length(), textPaint, textWidth)
-                    .setAlignment(Layout.Alignment.ALIGN_NORMAL)
-                    .setLineSpacing(1.0f, 1.0f)
-                    .setIncludePad(true)
-                    .build();
-                
-                finalLayout.draw(canvas);
+                canvas.clipRect(0, 0, textWidth, layout.getLineBottom(lineCount - 1));
+                layout.draw(canvas);
                 canvas.restore();
                 
                 document.finishPage(page);
+                text.consume(layout.getLineEnd(lineCount - 1));
                 
-                startIndex = endIndex;
+                float fractionRead = text.isFinished() ? 1f : Math.min(0.99f, text.consumed() / (float) fileLength);
+                if (listener != null && !listener.onPageFinished(pageNumber, fractionRead)) {
+                    return false;
+                }
                 pageNumber++;
             }
             
@@ -637,13 +933,26 @@ public class ScanUtils {
             try (FileOutputStream fos = new FileOutputStream(pdfFile)) {
                 document.writeTo(fos);
             }
-            
-            document.close();
             return true;
             
+        } catch (InterruptedIOException e) {
+            throw e;
         } catch (Exception e) {
             Log.e(TAG, "Error converting text to PDF", e);
             return false;
+        } finally {
+            document.close();
         }
     }
+    
+    private static StaticLayout layoutText(CharSequence text, TextPaint textPaint, int width) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), textPaint, width)
+            .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+            .setLineSpacing(1.0f, 1.0f)
+            .setIncludePad(true)
+            // Greedy breaking: a line's end never depends on text after it, so a page's
+            // lines come out the same however much of the text follows in the window
+            .setBreakStrategy(Layout.BREAK_STRATEGY_SIMPLE)
+            .build();
+    }
 }
@@ -6,6 +6,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.notex.databinding.ActivityTextViewerBinding;
+import com.example.notex.repository.NoteRepository;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -102,6 +103,8 @@ public class TextViewerActivity extends AppCompatActivity {
             fos.write(content.getBytes());
             fos.close();
             
+            // Keep the search index in step with the edited text
+            NoteRepository.getInstance(this).indexScanText(file, null);
             originalContent = content;
             Toast.makeText(this, "File saved successfully", Toast.LENGTH_SHORT).show();
             setResult(RESULT_OK);
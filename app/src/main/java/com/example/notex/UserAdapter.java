@@ -37,6 +37,15 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder
         notifyDataSetChanged();
     }
 
+    /**
+     * Append the next page of users
+     */
+    public void addUsers(List<User> more) {
+        int start = users.size();
+        users.addAll(more);
+        notifyItemRangeInserted(start, more.size());
+    }
+
     @NonNull
     @Override
     public UserViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
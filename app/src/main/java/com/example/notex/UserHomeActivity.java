@@ -10,6 +10,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.notex.databinding.ActivityUserHomeBinding;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
 import com.example.notex.activities.RemindersActivity;
 
@@ -22,6 +23,18 @@ public class UserHomeActivity extends AppCompatActivity {
     private ActivityUserHomeBinding binding;
     private AuthManager authManager;
     private User currentUser;
+    private NoteRepository repository;
+    // Counters load on the first onResume, then only after a change
+    private boolean notebooksStale = true;
+    private boolean remindersStale = true;
+
+    private final NoteRepository.OnChangeListener changeListener = (table, id) -> {
+        if (table == NoteRepository.Table.REMINDERS) {
+            remindersStale = true;
+        } else {
+            notebooksStale = true;
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,7 +54,10 @@ public class UserHomeActivity extends AppCompatActivity {
         setupToolbar();
         setupUI();
         setupClickListeners();
-        loadUserData();
+
+        repository = NoteRepository.getInstance(this);
+        repository.addOnChangeListener(changeListener,
+                NoteRepository.Table.NOTEBOOKS, NoteRepository.Table.REMINDERS);
     }
 
     private void setupToolbar() {
@@ -105,12 +121,26 @@ public class UserHomeActivity extends AppCompatActivity {
         });
     }
 
-    private void loadUserData() {
-        // Load user statistics from database
-        com.example.notex.database.DatabaseHelper db = com.example.notex.database.DatabaseHelper.getInstance(this);
-        int notebookCount = db.getNotebookCount(currentUser.getId());
+    private void loadNotebookCount() {
+        notebooksStale = false;
+        repository.getNotebookCount(currentUser.getId(),
+                count -> binding.tvNotebookCount.setText(String.valueOf(count)));
+    }
 
+    private void loadRemindersCount() {
+        // Count reminders and events
+        remindersStale = false;
+        repository.getRemindersCount(String.valueOf(currentUser.getId()),
+                count -> binding.tvRemindersCount.setText(String.valueOf(count)));
+    }
+
+    private void loadDocumentsCount() {
         // Count documents in scanned_documents folder
+        repository.runInBackground(this::countScannedDocuments,
+                count -> binding.tvNotesCount.setText(String.valueOf(count)));
+    }
+
+    private int countScannedDocuments() {
         int documentsCount = 0;
         try {
             java.io.File docsDir = new java.io.File(getExternalFilesDir(null), "scanned_documents");
@@ -127,13 +157,7 @@ public class UserHomeActivity extends AppCompatActivity {
         } catch (Exception e) {
             e.printStackTrace();
         }
-
-        // Count reminders and events
-        int remindersCount = db.getRemindersCount(String.valueOf(currentUser.getId()));
-        
-        binding.tvNotebookCount.setText(String.valueOf(notebookCount));
-        binding.tvNotesCount.setText(String.valueOf(documentsCount));
-        binding.tvRemindersCount.setText(String.valueOf(remindersCount));
+        return documentsCount;
     }
 
     @Override
@@ -183,7 +207,24 @@ public class UserHomeActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh data when returning to this activity
-        loadUserData();
+        // Load user statistics; database counters only when they changed
+        if (repository == null) {
+            return;
+        }
+        if (notebooksStale) {
+            loadNotebookCount();
+        }
+        if (remindersStale) {
+            loadRemindersCount();
+        }
+        loadDocumentsCount();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (repository != null) {
+            repository.removeOnChangeListener(changeListener);
+        }
     }
 }
@@ -8,10 +8,13 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.databinding.ActivityUserListBinding;
 import com.example.notex.models.User;
+import com.example.notex.repository.KeysetLoader;
+import com.example.notex.repository.NoteRepository;
+import com.example.notex.utils.LoadMoreScrollListener;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,8 +23,11 @@ import java.util.List;
 public class UserListActivity extends AppCompatActivity implements UserAdapter.OnUserClickListener {
 
     private ActivityUserListBinding binding;
-    private DatabaseHelper databaseHelper;
+    private NoteRepository repository;
     private UserAdapter userAdapter;
+    private KeysetLoader<User> userLoader;
+
+    private static final int PAGE_SIZE = 50;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,7 +35,7 @@ public class UserListActivity extends AppCompatActivity implements UserAdapter.O
         binding = ActivityUserListBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        databaseHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
 
         setupToolbar();
         setupRecyclerView();
@@ -44,26 +50,38 @@ public class UserListActivity extends AppCompatActivity implements UserAdapter.O
         userAdapter = new UserAdapter(this);
         binding.recyclerViewUsers.setLayoutManager(new LinearLayoutManager(this));
         binding.recyclerViewUsers.setAdapter(userAdapter);
+
+        userLoader = new KeysetLoader<>(PAGE_SIZE, repository::getUsers, User::getId, this::showUsers);
+        binding.recyclerViewUsers.addOnScrollListener(new LoadMoreScrollListener(userLoader::loadNext));
     }
 
     private void loadUsers() {
-        List<User> users = databaseHelper.getAllUsers();
+        userLoader.reset();
+        userLoader.loadNext();
+
+        // Update stats
+        repository.getTotalUserCount(totalUsers -> binding.tvTotalUsers.setText(String.valueOf(totalUsers)));
+        repository.getUserCountByRole(User.UserRole.ADMIN,
+                adminCount -> binding.tvAdminCount.setText(String.valueOf(adminCount)));
+    }
+
+    private void showUsers(List<User> users, boolean firstPage) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (firstPage) {
+            userAdapter.setUsers(new ArrayList<>(users));
+        } else {
+            userAdapter.addUsers(users);
+        }
 
-        if (users.isEmpty()) {
+        if (userAdapter.getItemCount() == 0) {
             binding.recyclerViewUsers.setVisibility(View.GONE);
             binding.emptyState.setVisibility(View.VISIBLE);
         } else {
             binding.recyclerViewUsers.setVisibility(View.VISIBLE);
             binding.emptyState.setVisibility(View.GONE);
-            userAdapter.setUsers(users);
         }
-
-        // Update stats
-        int totalUsers = databaseHelper.getTotalUserCount();
-        int adminCount = databaseHelper.getUserCountByRole(User.UserRole.ADMIN);
-
-        binding.tvTotalUsers.setText(String.valueOf(totalUsers));
-        binding.tvAdminCount.setText(String.valueOf(adminCount));
     }
 
     @Override
@@ -109,13 +127,14 @@ public class UserListActivity extends AppCompatActivity implements UserAdapter.O
                 .setTitle("Delete User")
                 .setMessage("Are you sure you want to delete " + user.getUsername() + "?\n\nThis action cannot be undone.")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    boolean success = databaseHelper.deleteUser(user.getId());
-                    if (success) {
-                        Toast.makeText(this, "User deleted successfully", Toast.LENGTH_SHORT).show();
-                        loadUsers(); // Refresh list
-                    } else {
-                        Toast.makeText(this, "Failed to delete user", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.deleteUser(user.getId(), success -> {
+                        if (success) {
+                            Toast.makeText(this, "User deleted successfully", Toast.LENGTH_SHORT).show();
+                            loadUsers(); // Refresh list
+                        } else {
+                            Toast.makeText(this, "Failed to delete user", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -129,13 +148,14 @@ public class UserListActivity extends AppCompatActivity implements UserAdapter.O
                 .setTitle(action)
                 .setMessage(message)
                 .setPositiveButton("Confirm", (dialog, which) -> {
-                    boolean success = databaseHelper.updateUserRole(user.getId(), newRole);
-                    if (success) {
-                        Toast.makeText(this, "Role updated successfully", Toast.LENGTH_SHORT).show();
-                        loadUsers(); // Refresh list
-                    } else {
-                        Toast.makeText(this, "Failed to update role", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.updateUserRole(user.getId(), newRole, success -> {
+                        if (success) {
+                            Toast.makeText(this, "Role updated successfully", Toast.LENGTH_SHORT).show();
+                            loadUsers(); // Refresh list
+                        } else {
+                            Toast.makeText(this, "Failed to update role", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -18,9 +18,9 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.example.notex.R;
 import com.example.notex.ReminderScheduler;
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.AuthManager;
 import com.example.notex.utils.LocationPermissionHelper;
 import com.google.android.material.button.MaterialButton;
@@ -47,7 +47,7 @@ public class CreateReminderActivity extends AppCompatActivity {
     private com.google.android.material.slider.Slider sliderRadius;
     private TextView tvRadiusValue;
 
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private Calendar selectedDateTime;
     private String userId;
     private Uri selectedRingtoneUri;
@@ -66,7 +66,7 @@ public class CreateReminderActivity extends AppCompatActivity {
         }
         userId = String.valueOf(currentUser.getId());
 
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
         selectedDateTime = Calendar.getInstance();
         selectedDateTime.add(Calendar.HOUR_OF_DAY, 1); // Default to 1 hour from now
         selectedRingtoneUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
@@ -288,7 +288,7 @@ public class CreateReminderActivity extends AppCompatActivity {
         reminder.setAllDay(cbAllDay.isChecked());
 
         // Save to database
-        dbHelper.createReminder(reminder);
+        repository.createReminder(reminder, null);
         
         // Schedule alarm (only for time-based reminders)
         if (isTimeTrigger) {
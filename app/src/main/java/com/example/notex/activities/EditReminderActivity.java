@@ -18,8 +18,8 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.example.notex.R;
 import com.example.notex.ReminderScheduler;
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
+import com.example.notex.repository.NoteRepository;
 import com.example.notex.utils.LocationPermissionHelper;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
@@ -44,7 +44,7 @@ public class EditReminderActivity extends AppCompatActivity {
     private com.google.android.material.slider.Slider sliderRadius;
     private TextView tvRadiusValue;
 
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private Reminder reminder;
     private Calendar selectedDateTime;
     private Uri selectedRingtoneUri;
@@ -62,9 +62,15 @@ public class EditReminderActivity extends AppCompatActivity {
             return;
         }
 
-        dbHelper = DatabaseHelper.getInstance(this);
-        reminder = dbHelper.getReminderById(reminderId);
-        
+        repository = NoteRepository.getInstance(this);
+        repository.getReminderById(reminderId, this::onReminderLoaded);
+    }
+
+    private void onReminderLoaded(Reminder loaded) {
+        if (isDestroyed()) {
+            return;
+        }
+        reminder = loaded;
         if (reminder == null) {
             Toast.makeText(this, "Error: Reminder not found", Toast.LENGTH_SHORT).show();
             finish();
@@ -347,7 +353,7 @@ public class EditReminderActivity extends AppCompatActivity {
         reminder.setAllDay(cbAllDay.isChecked());
 
         // Update in database
-        dbHelper.updateReminder(reminder);
+        repository.updateReminder(reminder, null);
         
         // Reschedule alarm (only for time-based reminders)
         if (isTimeTrigger) {
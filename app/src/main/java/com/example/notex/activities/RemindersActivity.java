@@ -20,10 +20,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.notex.R;
 import com.example.notex.adapters.RemindersAdapter;
 import com.example.notex.utils.AuthManager;
-import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.Reminder;
 import com.example.notex.ReminderScheduler;
 import com.example.notex.models.User;
+import com.example.notex.repository.KeysetLoader;
+import com.example.notex.repository.NoteRepository;
+import com.example.notex.utils.LoadMoreScrollListener;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.tabs.TabLayout;
 
@@ -42,8 +44,14 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
     private LinearLayout daysContainer;
     private TextView tvTodayLabel;
     private TabLayout tabLayout;
-    private DatabaseHelper dbHelper;
+    private NoteRepository repository;
     private String userId;
+    private KeysetLoader<Reminder> reminderLoader;
+    private boolean remindersStale = false;
+
+    private static final int PAGE_SIZE = 50;
+
+    private final NoteRepository.OnChangeListener changeListener = (table, id) -> remindersStale = true;
     private String currentFilter = null;
     private int selectedDayOffset = 0; // 0 = today
 
@@ -60,7 +68,8 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
         }
         userId = String.valueOf(currentUser.getId());
 
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = NoteRepository.getInstance(this);
+        repository.addOnChangeListener(changeListener, NoteRepository.Table.REMINDERS);
 
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -81,6 +90,11 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
         adapter = new RemindersAdapter(this, this);
         recyclerReminders.setAdapter(adapter);
 
+        // The type / day filters run in the query, one page at a time
+        reminderLoader = new KeysetLoader<>(PAGE_SIZE, this::loadRemindersPage, Reminder::getId,
+                this::onRemindersPage);
+        recyclerReminders.addOnScrollListener(new LoadMoreScrollListener(reminderLoader::loadNext));
+
         fabNewReminder.setOnClickListener(v -> {
             Intent intent = new Intent(this, CreateReminderActivity.class);
             startActivity(intent);
@@ -201,44 +215,51 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
     }
 
     private void loadReminders() {
-        List<Reminder> allReminders = dbHelper.getAllReminders(userId);
-        List<Reminder> filteredReminders = new ArrayList<>();
-        
-        // Get selected day bounds
-        Calendar dayStart = Calendar.getInstance();
-        dayStart.add(Calendar.DAY_OF_MONTH, selectedDayOffset);
-        dayStart.set(Calendar.HOUR_OF_DAY, 0);
-        dayStart.set(Calendar.MINUTE, 0);
-        dayStart.set(Calendar.SECOND, 0);
-        dayStart.set(Calendar.MILLISECOND, 0);
-        
-        Calendar dayEnd = (Calendar) dayStart.clone();
-        dayEnd.add(Calendar.DAY_OF_MONTH, 1);
-        
-        for (Reminder reminder : allReminders) {
-            // Type filter
-            if (currentFilter != null && !reminder.getType().equals(currentFilter)) {
-                continue;
-            }
-            
-            // Date filter (only for "All" tab)
-            if (currentFilter == null) {
-                long scheduledAt = reminder.getScheduledAt();
-                if (scheduledAt < dayStart.getTimeInMillis() || scheduledAt >= dayEnd.getTimeInMillis()) {
-                    continue;
-                }
-            }
-            
-            filteredReminders.add(reminder);
+        remindersStale = false;
+        reminderLoader.reset();
+        reminderLoader.loadNext();
+    }
+
+    /**
+     * Query one page for the current filter: the selected day on the "All"
+     * tab, every reminder of the type on the other tabs
+     */
+    private void loadRemindersPage(Reminder after, int limit, NoteRepository.Callback<List<Reminder>> callback) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (currentFilter == null) {
+            Calendar dayStart = Calendar.getInstance();
+            dayStart.add(Calendar.DAY_OF_MONTH, selectedDayOffset);
+            dayStart.set(Calendar.HOUR_OF_DAY, 0);
+            dayStart.set(Calendar.MINUTE, 0);
+            dayStart.set(Calendar.SECOND, 0);
+            dayStart.set(Calendar.MILLISECOND, 0);
+
+            Calendar dayEnd = (Calendar) dayStart.clone();
+            dayEnd.add(Calendar.DAY_OF_MONTH, 1);
+
+            from = dayStart.getTimeInMillis();
+            to = dayEnd.getTimeInMillis();
         }
-        
-        if (filteredReminders.isEmpty()) {
+        repository.getReminders(userId, currentFilter, from, to, after, limit, callback);
+    }
+
+    private void onRemindersPage(List<Reminder> reminders, boolean firstPage) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (firstPage) {
+            adapter.setReminders(new ArrayList<>(reminders));
+        } else {
+            adapter.addReminders(reminders);
+        }
+
+        if (adapter.getItemCount() == 0) {
             emptyState.setVisibility(View.VISIBLE);
             recyclerReminders.setVisibility(View.GONE);
         } else {
             emptyState.setVisibility(View.GONE);
             recyclerReminders.setVisibility(View.VISIBLE);
-            adapter.setReminders(filteredReminders);
         }
     }
 
@@ -256,9 +277,10 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
                 .setMessage("Are you sure you want to delete \"" + reminder.getTitle() + "\"?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     ReminderScheduler.cancelReminder(this, reminder.getId());
-                    dbHelper.deleteReminder(reminder.getId());
-                    Toast.makeText(this, "Reminder deleted", Toast.LENGTH_SHORT).show();
-                    loadReminders();
+                    repository.deleteReminder(reminder.getId(), success -> {
+                        Toast.makeText(this, "Reminder deleted", Toast.LENGTH_SHORT).show();
+                        loadReminders();
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -266,17 +288,18 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
 
     @Override
     public void onComplete(Reminder reminder) {
-        dbHelper.markReminderCompleted(reminder.getId(), true);
         ReminderScheduler.cancelReminder(this, reminder.getId());
         adapter.markAsCompleted(reminder.getId());
         Toast.makeText(this, "Reminder completed!", Toast.LENGTH_SHORT).show();
-        loadReminders();
+        repository.markReminderCompleted(reminder.getId(), true, success -> loadReminders());
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        loadReminders();
+        if (remindersStale) {
+            loadReminders();
+        }
     }
 
     @Override
@@ -285,5 +308,8 @@ public class RemindersActivity extends AppCompatActivity implements RemindersAda
         if (adapter != null) {
             adapter.stopTimerUpdates();
         }
+        if (repository != null) {
+            repository.removeOnChangeListener(changeListener);
+        }
     }
 }
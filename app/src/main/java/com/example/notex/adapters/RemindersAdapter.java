@@ -55,6 +55,15 @@ public class RemindersAdapter extends RecyclerView.Adapter<RemindersAdapter.Remi
         notifyDataSetChanged();
     }
 
+    /**
+     * Append the next page of reminders
+     */
+    public void addReminders(List<Reminder> more) {
+        int start = reminders.size();
+        reminders.addAll(more);
+        notifyItemRangeInserted(start, more.size());
+    }
+
     public void markAsCompleted(String reminderId) {
         completedReminders.add(reminderId);
     }
@@ -0,0 +1,115 @@
+package com.example.notex.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * CanvasImageStore - Content-addressed store for images inserted on a canvas.
+ *
+ * The picked file is kept byte for byte as {@code img_<sha-256 hex>}, so the
+ * same photo inserted on several pages or notebooks is stored once and never
+ * decoded again to be re-encoded. A downscaled display rendition lives in
+ * {@code display/} next to the originals. Pages referring to an image are
+ * counted by the page_media table; once no page does, {@link MediaCollector}
+ * removes the image together with its rendition. Free of Android
+ * dependencies so it can be unit tested on the JVM.
+ */
+public class CanvasImageStore {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String FILE_PREFIX = "img_";
+    private static final String DISPLAY_DIR = "display";
+
+    private final File rootDir;
+
+    public CanvasImageStore(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    /**
+     * Store the image read from a stream and return its file. An image with
+     * the same bytes that is already stored is reused.
+     */
+    public File put(InputStream in) throws IOException {
+        if (!rootDir.exists() && !rootDir.mkdirs()) {
+            throw new IOException("Cannot create image directory " + rootDir);
+        }
+
+        MessageDigest digest = newDigest();
+        File temp = new File(rootDir, UUID.randomUUID() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[16 * 1024];
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                }
+                out.getFD().sync();
+            }
+
+            File target = new File(rootDir, FILE_PREFIX + toHex(digest.digest()));
+            if (target.exists() && target.length() == temp.length()) {
+                // Touch it so a collection running now treats it as fresh
+                //noinspection ResultOfMethodCallIgnored
+                target.setLastModified(System.currentTimeMillis());
+                return target;
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot move image into place: " + target);
+            }
+            return target;
+        } finally {
+            if (temp.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Store image bytes, e.g. a legacy base64 image, and return its file
+     */
+    public File put(byte[] data) throws IOException {
+        return put(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Where the display rendition of an image is kept, whether or not it exists yet
+     */
+    public static File displayFile(File image) {
+        return new File(new File(image.getParentFile(), DISPLAY_DIR), image.getName());
+    }
+
+    /**
+     * Path to decode when an image is only shown: its display rendition if
+     * there is one, otherwise the image itself
+     */
+    public static String displayPath(String path) {
+        File display = displayFile(new File(path));
+        return display.isFile() ? display.getAbsolutePath() : path;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
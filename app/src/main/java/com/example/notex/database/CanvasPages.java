@@ -0,0 +1,48 @@
+package com.example.notex.database;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CanvasPages - Splits stored page content into the canvases it holds.
+ *
+ * The multi-page editor saves a whole notebook page as
+ * {@code {"pages":[{"content":"<canvas JSON>"}, ...]}}; a page saved by the
+ * single-page editor is one canvas. Exporters need the real pages either
+ * way. Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class CanvasPages {
+
+    private CanvasPages() {
+    }
+
+    /**
+     * Canvas JSON of each page in the content, in order. Empty content, or a
+     * wrapper without pages, is one empty page.
+     */
+    public static List<String> split(String content) {
+        if (content == null || content.isEmpty()) {
+            return Collections.singletonList("");
+        }
+        try {
+            JSONObject json = new JSONObject(content);
+            JSONArray pages = json.optJSONArray("pages");
+            if (pages == null) {
+                return Collections.singletonList(content);
+            }
+            List<String> canvases = new ArrayList<>(pages.length());
+            for (int i = 0; i < pages.length(); i++) {
+                JSONObject page = pages.optJSONObject(i);
+                canvases.add(page != null ? page.optString("content", "") : "");
+            }
+            return canvases.isEmpty() ? Collections.singletonList("") : canvases;
+        } catch (Exception e) {
+            // Not JSON: rendered as a single page that reports the error
+            return Collections.singletonList(content);
+        }
+    }
+}
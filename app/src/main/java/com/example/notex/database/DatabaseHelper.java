@@ -3,22 +3,38 @@ package com.example.notex.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import com.example.notex.models.ExportJob;
 import com.example.notex.models.User;
 import com.example.notex.models.Notebook;
 import com.example.notex.models.Page;
+import com.example.notex.models.PageSummary;
 import com.example.notex.models.Reminder;
+import com.example.notex.models.SearchResult;
+
+import static com.example.notex.database.DatabaseSchema.*;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.text.SimpleDateFormat;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -28,67 +44,31 @@ import java.util.UUID;
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "notex.db";
-    private static final int DATABASE_VERSION = 4; // Updated for reminders table
-
-    // Users table
-    private static final String TABLE_USERS = "users";
-    private static final String COLUMN_ID = "id";
-    private static final String COLUMN_USERNAME = "username";
-    private static final String COLUMN_EMAIL = "email";
-    private static final String COLUMN_PASSWORD_HASH = "password_hash";
-    private static final String COLUMN_ROLE = "role";
-    private static final String COLUMN_CREATED_AT = "created_at";
-    private static final String COLUMN_LAST_LOGIN = "last_login";
-
-    // Notebooks table
-    private static final String TABLE_NOTEBOOKS = "notebooks";
-    private static final String COLUMN_NOTEBOOK_ID = "id";
-    private static final String COLUMN_USER_ID = "user_id";
-    private static final String COLUMN_TITLE = "title";
-    private static final String COLUMN_COLOR = "color";
-    private static final String COLUMN_IS_PINNED = "is_pinned";
-    private static final String COLUMN_NOTEBOOK_CREATED_AT = "created_at";
-    private static final String COLUMN_NOTEBOOK_UPDATED_AT = "updated_at";
-
-    // Pages table
-    private static final String TABLE_PAGES = "pages";
-    private static final String COLUMN_PAGE_ID = "id";
-    private static final String COLUMN_PAGE_NOTEBOOK_ID = "notebook_id";
-    private static final String COLUMN_PAGE_TITLE = "title";
-    private static final String COLUMN_PAGE_CONTENT = "content";
-    private static final String COLUMN_PAGE_NUMBER = "page_number";
-    private static final String COLUMN_PAGE_CREATED_AT = "created_at";
-    private static final String COLUMN_PAGE_UPDATED_AT = "updated_at";
-
-    // Reminders table
-    private static final String TABLE_REMINDERS = "reminders";
-    private static final String COLUMN_REMINDER_ID = "id";
-    private static final String COLUMN_REMINDER_USER_ID = "user_id";
-    private static final String COLUMN_REMINDER_NOTE_ID = "note_id";
-    private static final String COLUMN_REMINDER_NOTEBOOK_ID = "notebook_id";
-    private static final String COLUMN_REMINDER_TITLE = "title";
-    private static final String COLUMN_REMINDER_DESCRIPTION = "description";
-    private static final String COLUMN_REMINDER_TYPE = "type";
-    private static final String COLUMN_REMINDER_TRIGGER_TYPE = "trigger_type";
-    private static final String COLUMN_REMINDER_SCHEDULED_AT = "scheduled_at";
-    private static final String COLUMN_REMINDER_LOCATION = "location";
-    private static final String COLUMN_REMINDER_LATITUDE = "latitude";
-    private static final String COLUMN_REMINDER_LONGITUDE = "longitude";
-    private static final String COLUMN_REMINDER_RADIUS = "radius_meters";
-    private static final String COLUMN_REMINDER_REPEAT_TYPE = "repeat_type";
-    private static final String COLUMN_REMINDER_REPEAT_RULE = "repeat_rule";
-    private static final String COLUMN_REMINDER_PRIORITY = "priority";
-    private static final String COLUMN_REMINDER_IS_COMPLETED = "is_completed";
-    private static final String COLUMN_REMINDER_IS_NOTIFIED = "is_notified";
-    private static final String COLUMN_REMINDER_IS_ALL_DAY = "is_all_day";
-    private static final String COLUMN_REMINDER_TIMEZONE = "timezone";
-    private static final String COLUMN_REMINDER_CREATED_AT = "created_at";
-    private static final String COLUMN_REMINDER_UPDATED_AT = "updated_at";
+    private static final int DATABASE_VERSION = 14; // Background jobs
+
+    // Page content above this many UTF-8 bytes is kept in the blob store instead of the row
+    private static final int INLINE_CONTENT_LIMIT = 64 * 1024;
+    private static final String BLOB_DIR_NAME = "page_blobs";
 
     private static DatabaseHelper instance;
 
+    private final Context context;
+    private PageBlobStore blobStore;
+
+    // Hot writes compiled once against the writable connection; see compiled()
+    private SQLiteStatement insertPageStatement;
+    private SQLiteStatement updatePageStatement;
+    private SQLiteStatement touchNotebookStatement;
+    private SQLiteStatement insertReminderStatement;
+
+    // Whether search_index was created as FTS5 or the FTS4 fallback; see searchUsesFts5()
+    private Boolean searchUsesFts5;
+
     private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        // WAL lets readers run alongside a writer and turns each commit into an append
+        setWriteAheadLoggingEnabled(true);
     }
 
     public static synchronized DatabaseHelper getInstance(Context context) {
@@ -100,72 +80,30 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String CREATE_USERS_TABLE = "CREATE TABLE " + TABLE_USERS + "("
-                + COLUMN_ID + " TEXT PRIMARY KEY,"
-                + COLUMN_USERNAME + " TEXT UNIQUE NOT NULL,"
-                + COLUMN_EMAIL + " TEXT,"
-                + COLUMN_PASSWORD_HASH + " TEXT NOT NULL,"
-                + COLUMN_ROLE + " TEXT NOT NULL,"
-                + COLUMN_CREATED_AT + " TEXT,"
-                + COLUMN_LAST_LOGIN + " TEXT"
-                + ")";
         db.execSQL(CREATE_USERS_TABLE);
 
         // Create notebooks table
-        String CREATE_NOTEBOOKS_TABLE = "CREATE TABLE " + TABLE_NOTEBOOKS + "("
-                + COLUMN_NOTEBOOK_ID + " TEXT PRIMARY KEY,"
-                + COLUMN_USER_ID + " TEXT NOT NULL,"
-                + COLUMN_TITLE + " TEXT NOT NULL,"
-                + COLUMN_COLOR + " TEXT,"
-                + COLUMN_IS_PINNED + " INTEGER DEFAULT 0,"
-                + COLUMN_NOTEBOOK_CREATED_AT + " TEXT,"
-                + COLUMN_NOTEBOOK_UPDATED_AT + " TEXT,"
-                + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
-                + ")";
         db.execSQL(CREATE_NOTEBOOKS_TABLE);
 
         // Create pages table
-        String CREATE_PAGES_TABLE = "CREATE TABLE " + TABLE_PAGES + "("
-                + COLUMN_PAGE_ID + " TEXT PRIMARY KEY,"
-                + COLUMN_PAGE_NOTEBOOK_ID + " TEXT NOT NULL,"
-                + COLUMN_PAGE_TITLE + " TEXT NOT NULL,"
-                + COLUMN_PAGE_CONTENT + " TEXT,"
-                + COLUMN_PAGE_NUMBER + " INTEGER,"
-                + COLUMN_PAGE_CREATED_AT + " TEXT,"
-                + COLUMN_PAGE_UPDATED_AT + " TEXT,"
-                + "FOREIGN KEY(" + COLUMN_PAGE_NOTEBOOK_ID + ") REFERENCES " + TABLE_NOTEBOOKS + "("
-                + COLUMN_NOTEBOOK_ID + ")"
-                + ")";
         db.execSQL(CREATE_PAGES_TABLE);
 
         // Create reminders table
-        String CREATE_REMINDERS_TABLE = "CREATE TABLE " + TABLE_REMINDERS + "("
-                + COLUMN_REMINDER_ID + " TEXT PRIMARY KEY,"
-                + COLUMN_REMINDER_USER_ID + " TEXT NOT NULL,"
-                + COLUMN_REMINDER_NOTE_ID + " TEXT,"
-                + COLUMN_REMINDER_NOTEBOOK_ID + " TEXT,"
-                + COLUMN_REMINDER_TITLE + " TEXT NOT NULL,"
-                + COLUMN_REMINDER_DESCRIPTION + " TEXT,"
-                + COLUMN_REMINDER_TYPE + " TEXT NOT NULL,"
-                + COLUMN_REMINDER_TRIGGER_TYPE + " TEXT NOT NULL,"
-                + COLUMN_REMINDER_SCHEDULED_AT + " INTEGER,"
-                + COLUMN_REMINDER_LOCATION + " TEXT,"
-                + COLUMN_REMINDER_LATITUDE + " REAL,"
-                + COLUMN_REMINDER_LONGITUDE + " REAL,"
-                + COLUMN_REMINDER_RADIUS + " INTEGER,"
-                + COLUMN_REMINDER_REPEAT_TYPE + " TEXT,"
-                + COLUMN_REMINDER_REPEAT_RULE + " TEXT,"
-                + COLUMN_REMINDER_PRIORITY + " INTEGER,"
-                + COLUMN_REMINDER_IS_COMPLETED + " INTEGER DEFAULT 0,"
-                + COLUMN_REMINDER_IS_NOTIFIED + " INTEGER DEFAULT 0,"
-                + COLUMN_REMINDER_IS_ALL_DAY + " INTEGER DEFAULT 0,"
-                + COLUMN_REMINDER_TIMEZONE + " TEXT,"
-                + COLUMN_REMINDER_CREATED_AT + " INTEGER,"
-                + COLUMN_REMINDER_UPDATED_AT + " INTEGER,"
-                + "FOREIGN KEY(" + COLUMN_REMINDER_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
-                + ")";
         db.execSQL(CREATE_REMINDERS_TABLE);
 
+        // Create indexes for hot queries
+        createIndexes(db);
+        db.execSQL(CREATE_INDEX_PAGES_CONTENT_HASH);
+
+        // Create the full-text search index
+        createSearchIndex(db);
+
+        // Track which media files pages refer to
+        createPageMediaTable(db);
+
+        // Exports and conversions that survive a process restart
+        db.execSQL(CREATE_JOBS_TABLE);
+
         // Insert default users
         insertDefaultUsers(db);
     }
@@ -174,33 +112,290 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         if (oldVersion < 4) {
             // Add reminders table for version 4
-            String CREATE_REMINDERS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_REMINDERS + "("
-                    + COLUMN_REMINDER_ID + " TEXT PRIMARY KEY,"
-                    + COLUMN_REMINDER_USER_ID + " TEXT NOT NULL,"
-                    + COLUMN_REMINDER_NOTE_ID + " TEXT,"
-                    + COLUMN_REMINDER_NOTEBOOK_ID + " TEXT,"
-                    + COLUMN_REMINDER_TITLE + " TEXT NOT NULL,"
-                    + COLUMN_REMINDER_DESCRIPTION + " TEXT,"
-                    + COLUMN_REMINDER_TYPE + " TEXT NOT NULL,"
-                    + COLUMN_REMINDER_TRIGGER_TYPE + " TEXT NOT NULL,"
-                    + COLUMN_REMINDER_SCHEDULED_AT + " INTEGER,"
-                    + COLUMN_REMINDER_LOCATION + " TEXT,"
-                    + COLUMN_REMINDER_LATITUDE + " REAL,"
-                    + COLUMN_REMINDER_LONGITUDE + " REAL,"
-                    + COLUMN_REMINDER_RADIUS + " INTEGER,"
-                    + COLUMN_REMINDER_REPEAT_TYPE + " TEXT,"
-                    + COLUMN_REMINDER_REPEAT_RULE + " TEXT,"
-                    + COLUMN_REMINDER_PRIORITY + " INTEGER,"
-                    + COLUMN_REMINDER_IS_COMPLETED + " INTEGER DEFAULT 0,"
-                    + COLUMN_REMINDER_IS_NOTIFIED + " INTEGER DEFAULT 0,"
-                    + COLUMN_REMINDER_IS_ALL_DAY + " INTEGER DEFAULT 0,"
-                    + COLUMN_REMINDER_TIMEZONE + " TEXT,"
-                    + COLUMN_REMINDER_CREATED_AT + " INTEGER,"
-                    + COLUMN_REMINDER_UPDATED_AT + " INTEGER,"
-                    + "FOREIGN KEY(" + COLUMN_REMINDER_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
-                    + ")";
             db.execSQL(CREATE_REMINDERS_TABLE);
         }
+        if (oldVersion < 5) {
+            // Denormalized page count so notebook listings no longer query pages per row
+            db.execSQL("ALTER TABLE " + TABLE_NOTEBOOKS + " ADD COLUMN "
+                    + COLUMN_NOTEBOOK_PAGE_COUNT + " INTEGER DEFAULT 0");
+            backfillPageCounts(db);
+        }
+        if (oldVersion < 6) {
+            // Composite indexes so listings and counts stop scanning whole tables
+            createIndexes(db);
+        }
+        if (oldVersion < 7) {
+            // Large page content moves out of the row into content-addressed files
+            db.execSQL(ADD_PAGE_CONTENT_HASH_COLUMN);
+            db.execSQL(ADD_PAGE_CONTENT_SIZE_COLUMN);
+            db.execSQL(CREATE_INDEX_PAGES_CONTENT_HASH);
+            moveLargeContentToBlobs(db);
+        }
+        if (oldVersion < 8) {
+            // Page lists read a stored preview instead of the content column
+            db.execSQL(ADD_PAGE_PREVIEW_COLUMN);
+            backfillPagePreviews(db);
+        }
+        if (oldVersion < 9) {
+            // Locale-formatted text timestamps become INTEGER epoch millis
+            migrateTimestampsToEpochMillis(db);
+        }
+        if (oldVersion < 10) {
+            // Full-text search over notebooks, page text and reminders
+            createSearchIndex(db);
+            rebuildSearchIndex(db);
+        }
+        if (oldVersion < 11) {
+            // Listing indexes gain the id tie-breaker that keyset paging orders by
+            for (String dropIndex : DROP_SUPERSEDED_INDEXES) {
+                db.execSQL(dropIndex);
+            }
+            createIndexes(db);
+        }
+        if (oldVersion < 12) {
+            // Inline page content is stored deflated; see PageContentCodec
+            compressInlineContent(db);
+        }
+        if (oldVersion < 13) {
+            // Media references so unreferenced images and recordings can be collected
+            createPageMediaTable(db);
+            backfillPageMedia(db);
+        }
+        if (oldVersion < 14) {
+            // Background jobs checkpoint here so a killed export resumes
+            db.execSQL(CREATE_JOBS_TABLE);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeStatements();
+        super.close();
+    }
+
+    private void createIndexes(SQLiteDatabase db) {
+        for (String createIndex : CREATE_INDEXES) {
+            db.execSQL(createIndex);
+        }
+    }
+
+    /**
+     * Recompute page_count for every notebook (used by the v5 migration)
+     */
+    private void backfillPageCounts(SQLiteDatabase db) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_NOTEBOOKS, new String[] { COLUMN_NOTEBOOK_ID },
+                    null, null, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                refreshPageCount(db, cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Move inline page content above the inline limit into the blob store and
+     * record its size for every row (used by the v7 migration)
+     */
+    private void moveLargeContentToBlobs(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_PAGES + " SET " + COLUMN_PAGE_CONTENT_SIZE + " = COALESCE(LENGTH(CAST("
+                + COLUMN_PAGE_CONTENT + " AS BLOB)), 0)");
+
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES, new String[] { COLUMN_PAGE_ID },
+                    COLUMN_PAGE_CONTENT_SIZE + " > ?", new String[] { String.valueOf(INLINE_CONTENT_LIMIT) },
+                    null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                String pageId = cursor.getString(0);
+                // One row at a time so a large page never has to fit in a shared CursorWindow
+                ContentValues values = new ContentValues();
+                putPageContent(values, readInlineContent(db, pageId));
+                // The preview column only exists from v8 on; that step backfills it
+                values.remove(COLUMN_PAGE_PREVIEW);
+                db.update(TABLE_PAGES, values, COLUMN_PAGE_ID + "=?", new String[] { pageId });
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Re-encode inline text content that is long enough to compress (used by
+     * the v12 migration). Blobs are left as they are and get encoded the next
+     * time their page is saved.
+     */
+    private void compressInlineContent(SQLiteDatabase db) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES, new String[] { COLUMN_PAGE_ID },
+                    COLUMN_PAGE_CONTENT_HASH + " IS NULL AND typeof(" + COLUMN_PAGE_CONTENT + ") = 'text' AND "
+                            + COLUMN_PAGE_CONTENT_SIZE + " >= ?",
+                    new String[] { String.valueOf(PageContentCodec.MIN_ENCODE_LENGTH) }, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                String pageId = cursor.getString(0);
+                byte[] packed = PageContentCodec.encode(readInlineContent(db, pageId));
+                if (packed != null) {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_PAGE_CONTENT, packed);
+                    db.update(TABLE_PAGES, values, COLUMN_PAGE_ID + "=?", new String[] { pageId });
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void createPageMediaTable(SQLiteDatabase db) {
+        db.execSQL(CREATE_PAGE_MEDIA_TABLE);
+        db.execSQL(CREATE_INDEX_PAGE_MEDIA_PATH);
+    }
+
+    /**
+     * Record the media references of every page (used by the v13 migration)
+     */
+    private void backfillPageMedia(SQLiteDatabase db) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES, new String[] { COLUMN_PAGE_ID }, null, null, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                String pageId = cursor.getString(0);
+                // One row at a time so a large page never has to fit in a shared CursorWindow
+                trackPageMedia(db, pageId, loadPageContent(db, pageId));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Compute the stored preview of every page (used by the v8 migration)
+     */
+    private void backfillPagePreviews(SQLiteDatabase db) {
+        // Inline content: computed in SQL, same rule as PageSummary.buildPreview
+        db.execSQL("UPDATE " + TABLE_PAGES + " SET " + COLUMN_PAGE_PREVIEW + " = CASE WHEN LENGTH("
+                + COLUMN_PAGE_CONTENT + ") > " + PageSummary.PREVIEW_LENGTH + " THEN SUBSTR(" + COLUMN_PAGE_CONTENT
+                + ", 1, " + PageSummary.PREVIEW_LENGTH + ") || '...' ELSE " + COLUMN_PAGE_CONTENT + " END"
+                + " WHERE " + COLUMN_PAGE_CONTENT_HASH + " IS NULL");
+
+        // Blob content: read each blob once
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES, new String[] { COLUMN_PAGE_ID, COLUMN_PAGE_CONTENT_HASH },
+                    COLUMN_PAGE_CONTENT_HASH + " IS NOT NULL", null, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_PAGE_PREVIEW, PageSummary.buildPreview(readPageContent(null, cursor.getString(1))));
+                db.update(TABLE_PAGES, values, COLUMN_PAGE_ID + "=?", new String[] { cursor.getString(0) });
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Rebuild users, notebooks and pages with INTEGER timestamp columns and
+     * convert the stored text values (used by the v9 migration)
+     */
+    private void migrateTimestampsToEpochMillis(SQLiteDatabase db) {
+        for (String statement : DatabaseSchema.migrateTimestampsToEpochMillis()) {
+            db.execSQL(statement);
+        }
+
+        // Dropping the old tables dropped their indexes too
+        createIndexes(db);
+        db.execSQL(CREATE_INDEX_PAGES_CONTENT_HASH);
+    }
+
+    /**
+     * Index every existing notebook, page and reminder (used by the v10 migration)
+     */
+    private void rebuildSearchIndex(SQLiteDatabase db) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_NOTEBOOKS, new String[] { COLUMN_NOTEBOOK_ID, COLUMN_USER_ID, COLUMN_TITLE },
+                    null, null, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                indexNotebook(db, cursor.getString(0), cursor.getString(1), cursor.getString(2));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT p." + COLUMN_PAGE_ID + ", p." + COLUMN_PAGE_NOTEBOOK_ID + ", n." + COLUMN_USER_ID
+                    + ", p." + COLUMN_PAGE_TITLE + ", p." + COLUMN_PAGE_CONTENT + ", p." + COLUMN_PAGE_CONTENT_HASH
+                    + " FROM " + TABLE_PAGES + " p JOIN " + TABLE_NOTEBOOKS + " n ON n." + COLUMN_NOTEBOOK_ID
+                    + " = p." + COLUMN_PAGE_NOTEBOOK_ID, null);
+            while (cursor != null && cursor.moveToNext()) {
+                String content = readPageContent(readContentColumn(cursor, 4), cursor.getString(5));
+                indexDocument(db, SearchResult.Kind.PAGE, cursor.getString(0), cursor.getString(2),
+                        cursor.getString(1), cursor.getString(3), SearchText.extractPageText(content));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        cursor = null;
+        try {
+            cursor = db.query(TABLE_REMINDERS, null, null, null, null, null, null);
+            while (cursor != null && cursor.moveToNext()) {
+                indexReminder(db, cursorToReminder(cursor));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private String loadPageContent(SQLiteDatabase db, String pageId) {
+        Cursor cursor = null;
+        String content;
+        String hash;
+        try {
+            cursor = db.rawQuery(QUERY_PAGE_CONTENT, new String[] { pageId });
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            content = readContentColumn(cursor, 0);
+            hash = cursor.getString(1);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return readPageContent(content, hash);
+    }
+
+    private String readInlineContent(SQLiteDatabase db, String pageId) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES, new String[] { COLUMN_PAGE_CONTENT },
+                    COLUMN_PAGE_ID + "=?", new String[] { pageId }, null, null, null);
+            return cursor != null && cursor.moveToFirst() ? readContentColumn(cursor, 0) : null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
     }
 
     private void insertDefaultUsers(SQLiteDatabase db) {
@@ -221,8 +416,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_EMAIL, email);
         values.put(COLUMN_PASSWORD_HASH, hashPassword(password));
         values.put(COLUMN_ROLE, role.name());
-        values.put(COLUMN_CREATED_AT, getCurrentTimestamp());
-        values.put(COLUMN_LAST_LOGIN, getCurrentTimestamp());
+        values.put(COLUMN_CREATED_AT, System.currentTimeMillis());
+        values.put(COLUMN_LAST_LOGIN, System.currentTimeMillis());
 
         db.insert(TABLE_USERS, null, values);
     }
@@ -240,8 +435,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             values.put(COLUMN_EMAIL, email);
             values.put(COLUMN_PASSWORD_HASH, hashPassword(password));
             values.put(COLUMN_ROLE, role.name());
-            values.put(COLUMN_CREATED_AT, getCurrentTimestamp());
-            values.put(COLUMN_LAST_LOGIN, getCurrentTimestamp());
+            values.put(COLUMN_CREATED_AT, System.currentTimeMillis());
+            values.put(COLUMN_LAST_LOGIN, System.currentTimeMillis());
 
             long result = db.insert(TABLE_USERS, null, values);
             return result != -1;
@@ -260,11 +455,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = null;
 
         try {
-            cursor = db.query(TABLE_USERS,
-                    null,
-                    COLUMN_USERNAME + "=?",
-                    new String[] { username },
-                    null, null, null);
+            cursor = db.rawQuery(QUERY_USER_BY_USERNAME, new String[] { username });
 
             if (cursor != null && cursor.moveToFirst()) {
                 user = cursorToUser(cursor);
@@ -326,6 +517,33 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return users;
     }
 
+    /**
+     * Get one page of all users, newest first. Pass the last user of the
+     * previous page as {@code after}, or null for the first page.
+     */
+    public List<User> getUsers(User after, int limit) {
+        String createdAt = String.valueOf(after != null ? after.getCreatedAt().getTime() : Long.MAX_VALUE);
+        String id = after != null ? after.getId() : "";
+
+        List<User> users = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            cursor = db.rawQuery(QUERY_USERS_PAGE, new String[] { createdAt, createdAt, id, String.valueOf(limit) });
+
+            while (cursor != null && cursor.moveToNext()) {
+                users.add(cursorToUser(cursor));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return users;
+    }
+
     /**
      * Get user count by role
      */
@@ -357,7 +575,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private void updateLastLogin(String userId) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(COLUMN_LAST_LOGIN, getCurrentTimestamp());
+        values.put(COLUMN_LAST_LOGIN, System.currentTimeMillis());
 
         db.update(TABLE_USERS, values, COLUMN_ID + "=?", new String[] { userId });
     }
@@ -407,8 +625,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         // Set timestamps if available
         int createdAtIndex = cursor.getColumnIndex(COLUMN_CREATED_AT);
         if (createdAtIndex != -1) {
-            String createdAt = cursor.getString(createdAtIndex);
-            // You can parse and set the date if needed
+            user.setCreatedAt(new Date(cursor.getLong(createdAtIndex)));
         }
 
         return user;
@@ -423,13 +640,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return "hashed_" + password;
     }
 
-    /**
-     * Get current timestamp as string
-     */
-    private String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
-    }
 
     /**
      * Get total user count
@@ -463,23 +673,71 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
 
         try {
-            ContentValues values = new ContentValues();
-            values.put(COLUMN_NOTEBOOK_ID, UUID.randomUUID().toString());
-            values.put(COLUMN_USER_ID, userId);
-            values.put(COLUMN_TITLE, title);
-            values.put(COLUMN_COLOR, color);
-            values.put(COLUMN_IS_PINNED, 0);
-            values.put(COLUMN_NOTEBOOK_CREATED_AT, getCurrentTimestamp());
-            values.put(COLUMN_NOTEBOOK_UPDATED_AT, getCurrentTimestamp());
-
-            long result = db.insert(TABLE_NOTEBOOKS, null, values);
-            return result != -1;
+            return insertNotebook(db, UUID.randomUUID().toString(), userId, title, color, false) != -1;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    /** Supplies the pages of an imported notebook one at a time, so they never all sit in memory */
+    public interface PageSource {
+        /** Title and content of the next page, or null when there are no more */
+        Page next() throws IOException;
+    }
+
+    /**
+     * Create a notebook with all its pages in one transaction, e.g. from an
+     * archive. Returns the new notebook's ID, or null if nothing was created.
+     */
+    public String importNotebook(String userId, String title, String color, boolean pinned, PageSource pages) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String notebookId = UUID.randomUUID().toString();
+
+        db.beginTransaction();
+        try {
+            if (insertNotebook(db, notebookId, userId, title, color, pinned) == -1) {
+                return null;
+            }
+            int pageNumber = 0;
+            Page page;
+            while ((page = pages.next()) != null) {
+                if (insertPage(db, UUID.randomUUID().toString(), notebookId, page.getTitle(), page.getContent(),
+                        ++pageNumber) == -1) {
+                    return null;
+                }
+            }
+            refreshPageCount(db, notebookId);
+            db.setTransactionSuccessful();
+            return notebookId;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private long insertNotebook(SQLiteDatabase db, String notebookId, String userId, String title, String color,
+                                boolean pinned) {
+        long timestamp = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_NOTEBOOK_ID, notebookId);
+        values.put(COLUMN_USER_ID, userId);
+        values.put(COLUMN_TITLE, title);
+        values.put(COLUMN_COLOR, color);
+        values.put(COLUMN_IS_PINNED, pinned ? 1 : 0);
+        values.put(COLUMN_NOTEBOOK_PAGE_COUNT, 0);
+        values.put(COLUMN_NOTEBOOK_CREATED_AT, timestamp);
+        values.put(COLUMN_NOTEBOOK_UPDATED_AT, timestamp);
+
+        long result = db.insert(TABLE_NOTEBOOKS, null, values);
+        if (result != -1) {
+            indexNotebook(db, notebookId, userId, title);
+        }
+        return result;
+    }
+
     /**
      * Get all notebooks for a specific user
      */
@@ -489,12 +747,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = null;
 
         try {
-            cursor = db.query(TABLE_NOTEBOOKS,
-                    null,
-                    COLUMN_USER_ID + "=?",
-                    new String[] { userId },
-                    null, null,
-                    COLUMN_IS_PINNED + " DESC, " + COLUMN_NOTEBOOK_UPDATED_AT + " DESC");
+            cursor = db.rawQuery(QUERY_USER_NOTEBOOKS, new String[] { userId });
 
             if (cursor != null && cursor.moveToFirst()) {
                 do {
@@ -510,6 +763,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return notebooks;
     }
 
+    /**
+     * Get one page of a user's notebooks in listing order (pinned first, then
+     * most recently updated). Pass the last notebook of the previous page as
+     * {@code after}, or null for the first page. Each page is an index seek, so
+     * the cost does not grow with how far the user has scrolled.
+     */
+    public List<Notebook> getUserNotebooks(String userId, Notebook after, int limit) {
+        String pinned = after == null || after.isPinned() ? "1" : "0";
+        String updatedAt = String.valueOf(after != null ? after.getUpdatedAt().getTime() : Long.MAX_VALUE);
+        String id = after != null ? after.getId() : "";
+
+        List<Notebook> notebooks = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            cursor = db.rawQuery(QUERY_USER_NOTEBOOKS_PAGE, new String[] {
+                    userId, pinned, pinned, updatedAt, updatedAt, id, String.valueOf(limit) });
+
+            while (cursor != null && cursor.moveToNext()) {
+                notebooks.add(cursorToNotebook(cursor));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return notebooks;
+    }
+
     /**
      * Get notebook by ID
      */
@@ -545,9 +829,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put(COLUMN_TITLE, title);
         values.put(COLUMN_COLOR, color);
-        values.put(COLUMN_NOTEBOOK_UPDATED_AT, getCurrentTimestamp());
+        values.put(COLUMN_NOTEBOOK_UPDATED_AT, System.currentTimeMillis());
 
         int result = db.update(TABLE_NOTEBOOKS, values, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
+        if (result > 0) {
+            indexNotebook(db, notebookId, getNotebookUserId(db, notebookId), title);
+        }
         return result > 0;
     }
 
@@ -556,26 +843,40 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean toggleNotebookPin(String notebookId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        Notebook notebook = getNotebookById(notebookId);
-
-        if (notebook != null) {
-            ContentValues values = new ContentValues();
-            values.put(COLUMN_IS_PINNED, notebook.isPinned() ? 0 : 1);
-            values.put(COLUMN_NOTEBOOK_UPDATED_AT, getCurrentTimestamp());
-
-            int result = db.update(TABLE_NOTEBOOKS, values, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
-            return result > 0;
+        // Flip the flag in a single statement instead of read-then-write
+        SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_NOTEBOOKS
+                + " SET " + COLUMN_IS_PINNED + " = CASE WHEN " + COLUMN_IS_PINNED + "=1 THEN 0 ELSE 1 END, "
+                + COLUMN_NOTEBOOK_UPDATED_AT + "=? WHERE " + COLUMN_NOTEBOOK_ID + "=?");
+        try {
+            statement.bindLong(1, System.currentTimeMillis());
+            statement.bindString(2, notebookId);
+            return statement.executeUpdateDelete() > 0;
+        } finally {
+            statement.close();
         }
-        return false;
     }
 
     /**
-     * Delete notebook
+     * Delete notebook and its pages
      */
     public boolean deleteNotebook(String notebookId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(TABLE_NOTEBOOKS, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
-        return result > 0;
+        Set<String> contentHashes = new HashSet<>();
+        boolean deleted;
+        db.beginTransaction();
+        try {
+            collectContentHashes(db, notebookId, contentHashes);
+            removeNotebookFromSearch(db, notebookId);
+            db.execSQL(DELETE_NOTEBOOK_MEDIA, new Object[] { notebookId });
+            db.delete(TABLE_PAGES, COLUMN_PAGE_NOTEBOOK_ID + "=?", new String[] { notebookId });
+            int result = db.delete(TABLE_NOTEBOOKS, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
+            db.setTransactionSuccessful();
+            deleted = result > 0;
+        } finally {
+            db.endTransaction();
+        }
+        releaseBlobs(db, contentHashes);
+        return deleted;
     }
 
     /**
@@ -587,9 +888,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         int count = 0;
 
         try {
-            cursor = db.rawQuery(
-                    "SELECT COUNT(*) FROM " + TABLE_NOTEBOOKS + " WHERE " + COLUMN_USER_ID + "=?",
-                    new String[] { userId });
+            cursor = db.rawQuery(QUERY_NOTEBOOK_COUNT, new String[] { userId });
 
             if (cursor != null && cursor.moveToFirst()) {
                 count = cursor.getInt(0);
@@ -609,9 +908,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         int count = 0;
 
         try {
-            cursor = db.rawQuery(
-                    "SELECT COUNT(*) FROM " + TABLE_REMINDERS + " WHERE " + COLUMN_USER_ID + "=?",
-                    new String[] { userId });
+            cursor = db.rawQuery(QUERY_REMINDER_COUNT, new String[] { userId });
 
             if (cursor != null && cursor.moveToFirst()) {
                 count = cursor.getInt(0);
@@ -637,8 +934,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         boolean isPinned = isPinnedInt == 1;
 
         Notebook notebook = new Notebook(id, userId, title, color, isPinned);
-        // Set page count for display
-        notebook.setPageCount(getPageCount(id));
+        notebook.setCreatedAt(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_NOTEBOOK_CREATED_AT))));
+        // Also the keyset position of the notebook in getUserNotebooks pages
+        notebook.setUpdatedAt(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_NOTEBOOK_UPDATED_AT))));
+        // Page count is denormalized onto the notebook row, so no per-row query is needed
+        notebook.setPageCount(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_NOTEBOOK_PAGE_COUNT)));
         return notebook;
     }
 
@@ -648,65 +948,155 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Add a new page to a notebook
      */
     public boolean addPage(String notebookId, String title, String content) {
+        return createPage(notebookId, title, content) != null;
+    }
+
+    /**
+     * Add a new page to a notebook and return its ID, or null on failure
+     */
+    public String createPage(String notebookId, String title, String content) {
         SQLiteDatabase db = this.getWritableDatabase();
+        String pageId = UUID.randomUUID().toString();
 
+        db.beginTransaction();
         try {
             // Get next page number
             int pageNumber = getPageCount(notebookId) + 1;
 
-            ContentValues values = new ContentValues();
-            values.put(COLUMN_PAGE_ID, UUID.randomUUID().toString());
-            values.put(COLUMN_PAGE_NOTEBOOK_ID, notebookId);
-            values.put(COLUMN_PAGE_TITLE, title);
-            values.put(COLUMN_PAGE_CONTENT, content);
-            values.put(COLUMN_PAGE_NUMBER, pageNumber);
-            values.put(COLUMN_PAGE_CREATED_AT, getCurrentTimestamp());
-            values.put(COLUMN_PAGE_UPDATED_AT, getCurrentTimestamp());
-
-            long result = db.insert(TABLE_PAGES, null, values);
+            long result = insertPage(db, pageId, notebookId, title, content, pageNumber);
 
-            // Update notebook's updated_at timestamp
+            // Update notebook's updated_at timestamp and cached page count
             if (result != -1) {
-                updateNotebookTimestamp(notebookId);
+                updateNotebookTimestamp(db, notebookId);
+                refreshPageCount(db, notebookId);
+                db.setTransactionSuccessful();
             }
 
-            return result != -1;
+            return result != -1 ? pageId : null;
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return null;
+        } finally {
+            db.endTransaction();
         }
     }
 
     /**
-     * Get all pages for a notebook
+     * Add several pages to a notebook in one transaction.
+     * Pages are numbered after the existing ones in list order; their ids are
+     * generated when missing. Returns the number of pages inserted.
      */
-    public List<Page> getNotebookPages(String notebookId) {
-        List<Page> pages = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = null;
+    public int addPages(String notebookId, List<Page> pages) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int inserted = 0;
 
+        db.beginTransaction();
         try {
-            cursor = db.query(TABLE_PAGES,
-                    null,
-                    COLUMN_PAGE_NOTEBOOK_ID + "=?",
-                    new String[] { notebookId },
-                    null, null,
-                    COLUMN_PAGE_NUMBER + " ASC");
+            int pageNumber = getPageCount(notebookId);
+            for (Page page : pages) {
+                if (page.getId() == null) {
+                    page.setId(UUID.randomUUID().toString());
+                }
+                page.setNotebookId(notebookId);
+                page.setPageNumber(++pageNumber);
+                if (insertPage(db, page.getId(), notebookId, page.getTitle(), page.getContent(), pageNumber) != -1) {
+                    inserted++;
+                }
+            }
 
-            if (cursor != null && cursor.moveToFirst()) {
-                do {
-                    pages.add(cursorToPage(cursor));
-                } while (cursor.moveToNext());
+            if (inserted > 0) {
+                updateNotebookTimestamp(db, notebookId);
+                refreshPageCount(db, notebookId);
             }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
         } finally {
-            if (cursor != null) {
-                cursor.close();
+            db.endTransaction();
+        }
+
+        return inserted;
+    }
+
+    private long insertPage(SQLiteDatabase db, String pageId, String notebookId, String title, String content,
+                            int pageNumber) {
+        long timestamp = System.currentTimeMillis();
+        StoredContent stored = storeContent(content);
+        SQLiteStatement statement = compiled(db, Statement.INSERT_PAGE);
+        long result;
+        synchronized (statement) {
+            statement.clearBindings();
+            bindStringOrNull(statement, 1, pageId);
+            bindStringOrNull(statement, 2, notebookId);
+            bindStringOrNull(statement, 3, title);
+            bindStoredContent(statement, 4, stored);
+            statement.bindLong(8, pageNumber);
+            statement.bindLong(9, timestamp);
+            statement.bindLong(10, timestamp);
+            result = executeInsert(statement);
+        }
+        if (result != -1) {
+            indexPage(db, pageId, notebookId, title, content);
+            trackPageMedia(db, pageId, content);
+        }
+        return result;
+    }
+
+    /**
+     * Get all pages for a notebook
+     */
+    public List<Page> getNotebookPages(String notebookId) {
+        List<Page> pages = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            cursor = db.rawQuery(QUERY_NOTEBOOK_PAGES, new String[] { notebookId });
+
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    pages.add(cursorToPage(cursor));
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
             }
         }
 
         return pages;
     }
 
+    /**
+     * Get the page list of a notebook without loading any page content
+     */
+    public List<PageSummary> getNotebookPageSummaries(String notebookId) {
+        List<PageSummary> summaries = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            cursor = db.rawQuery(QUERY_NOTEBOOK_PAGE_SUMMARIES, new String[] { notebookId });
+
+            while (cursor != null && cursor.moveToNext()) {
+                PageSummary summary = new PageSummary(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getInt(3));
+                summary.setCreatedAt(new Date(cursor.getLong(4)));
+                summary.setUpdatedAt(new Date(cursor.getLong(5)));
+                summary.setContentSize(cursor.getLong(6));
+                summary.setPreview(cursor.getString(7));
+                summaries.add(summary);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return summaries;
+    }
+
     /**
      * Get page by ID
      */
@@ -739,22 +1129,115 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean updatePage(String pageId, String title, String content) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_PAGE_TITLE, title);
-        values.put(COLUMN_PAGE_CONTENT, content);
-        values.put(COLUMN_PAGE_UPDATED_AT, getCurrentTimestamp());
+        String oldHash;
+        boolean updated;
 
-        int result = db.update(TABLE_PAGES, values, COLUMN_PAGE_ID + "=?", new String[] { pageId });
+        db.beginTransaction();
+        try {
+            String notebookId = getPageNotebookId(db, pageId);
+            oldHash = getPageContentHash(db, pageId);
+            int result = updatePageRow(db, pageId, title, content);
+
+            // Update notebook timestamp
+            if (result > 0 && notebookId != null) {
+                updateNotebookTimestamp(db, notebookId);
+                // Content may carry a different multi-page total now
+                refreshPageCount(db, notebookId);
+                indexPage(db, pageId, notebookId, title, content);
+            }
+            if (result > 0) {
+                trackPageMedia(db, pageId, content);
+            }
+            db.setTransactionSuccessful();
+            updated = result > 0;
+        } finally {
+            db.endTransaction();
+        }
+        if (oldHash != null) {
+            releaseBlobs(db, Collections.singleton(oldHash));
+        }
+        return updated;
+    }
 
-        // Update notebook timestamp
-        if (result > 0) {
-            Page page = getPageById(pageId);
-            if (page != null) {
-                updateNotebookTimestamp(page.getNotebookId());
+    /**
+     * Update the title and content of several pages in one transaction.
+     * Each affected notebook is touched once. Returns the number of pages updated.
+     */
+    public int updatePages(List<Page> pages) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        Set<String> notebookIds = new HashSet<>();
+        Set<String> oldHashes = new HashSet<>();
+        int updated = 0;
+
+        db.beginTransaction();
+        try {
+            for (Page page : pages) {
+                String notebookId = page.getNotebookId() != null
+                        ? page.getNotebookId() : getPageNotebookId(db, page.getId());
+                String oldHash = getPageContentHash(db, page.getId());
+                if (oldHash != null) {
+                    oldHashes.add(oldHash);
+                }
+                if (updatePageRow(db, page.getId(), page.getTitle(), page.getContent()) > 0) {
+                    updated++;
+                    trackPageMedia(db, page.getId(), page.getContent());
+                    if (notebookId != null) {
+                        notebookIds.add(notebookId);
+                        indexPage(db, page.getId(), notebookId, page.getTitle(), page.getContent());
+                    }
+                }
             }
+
+            for (String notebookId : notebookIds) {
+                updateNotebookTimestamp(db, notebookId);
+                refreshPageCount(db, notebookId);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        } finally {
+            db.endTransaction();
         }
 
-        return result > 0;
+        releaseBlobs(db, oldHashes);
+        return updated;
+    }
+
+    private int updatePageRow(SQLiteDatabase db, String pageId, String title, String content) {
+        StoredContent stored = storeContent(content);
+        SQLiteStatement statement = compiled(db, Statement.UPDATE_PAGE);
+        synchronized (statement) {
+            statement.clearBindings();
+            bindStringOrNull(statement, 1, title);
+            bindStoredContent(statement, 2, stored);
+            statement.bindLong(6, System.currentTimeMillis());
+            bindStringOrNull(statement, 7, pageId);
+            return statement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * Look up the notebook a page belongs to without loading its content
+     */
+    private String getPageNotebookId(SQLiteDatabase db, String pageId) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PAGES,
+                    new String[] { COLUMN_PAGE_NOTEBOOK_ID },
+                    COLUMN_PAGE_ID + "=?",
+                    new String[] { pageId },
+                    null, null, null);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return null;
     }
 
     /**
@@ -762,12 +1245,61 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean deletePage(String pageId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(TABLE_PAGES, COLUMN_PAGE_ID + "=?", new String[] { pageId });
-        return result > 0;
+        String oldHash;
+        boolean deleted;
+
+        db.beginTransaction();
+        try {
+            String notebookId = getPageNotebookId(db, pageId);
+            oldHash = getPageContentHash(db, pageId);
+            int result = db.delete(TABLE_PAGES, COLUMN_PAGE_ID + "=?", new String[] { pageId });
+            if (result > 0 && notebookId != null) {
+                refreshPageCount(db, notebookId);
+            }
+            removeFromSearch(db, SearchResult.Kind.PAGE, pageId);
+            db.execSQL(DELETE_PAGE_MEDIA, new Object[] { pageId });
+            db.setTransactionSuccessful();
+            deleted = result > 0;
+        } finally {
+            db.endTransaction();
+        }
+        if (oldHash != null) {
+            releaseBlobs(db, Collections.singleton(oldHash));
+        }
+        return deleted;
     }
 
     /**
-     * Get page count for a notebook
+     * Open a page's content for streaming, whether it is stored inline or in
+     * the blob store. Returns null if the page has no content. The caller closes the stream.
+     */
+    public InputStream openPageContent(String pageId) throws IOException {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        String content;
+        String hash;
+
+        try {
+            cursor = db.rawQuery(QUERY_PAGE_CONTENT, new String[] { pageId });
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            content = readContentColumn(cursor, 0);
+            hash = cursor.getString(1);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (hash != null) {
+            return PageContentCodec.decodingStream(getBlobStore().open(hash));
+        }
+        return content != null ? new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Get page count for a notebook (reads the denormalized notebooks.page_count)
      */
     public int getPageCount(String notebookId) {
         SQLiteDatabase db = this.getReadableDatabase();
@@ -775,9 +1307,43 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         int count = 0;
 
         try {
-                cursor = db.rawQuery(
-                    "SELECT COUNT(*) FROM " + TABLE_PAGES + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?",
-                    new String[] { notebookId });
+            cursor = db.query(TABLE_NOTEBOOKS,
+                    new String[] { COLUMN_NOTEBOOK_PAGE_COUNT },
+                    COLUMN_NOTEBOOK_ID + "=?",
+                    new String[] { notebookId },
+                    null, null, null);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Recompute and store the cached page count of a notebook.
+     * Called by every DAO method that adds, removes or rewrites page rows.
+     */
+    private void refreshPageCount(SQLiteDatabase db, String notebookId) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_NOTEBOOK_PAGE_COUNT, countPages(db, notebookId));
+        db.update(TABLE_NOTEBOOKS, values, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
+    }
+
+    /**
+     * Count the pages of a notebook from the pages table
+     */
+    private int countPages(SQLiteDatabase db, String notebookId) {
+        Cursor cursor = null;
+        int count = 0;
+
+        try {
+            cursor = db.rawQuery(QUERY_PAGE_ROW_COUNT, new String[] { notebookId });
 
             if (cursor != null && cursor.moveToFirst()) {
                 count = cursor.getInt(0);
@@ -794,18 +1360,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (count == 1) {
             Cursor contentCursor = null;
             try {
-                contentCursor = db.query(
-                        TABLE_PAGES,
-                        new String[] { COLUMN_PAGE_CONTENT },
-                        COLUMN_PAGE_NOTEBOOK_ID + "=?",
-                        new String[] { notebookId },
-                        null,
-                        null,
-                        COLUMN_PAGE_NUMBER + " ASC",
-                        "1");
+                contentCursor = db.rawQuery(QUERY_FIRST_PAGE_CONTENT, new String[] { notebookId });
 
                 if (contentCursor != null && contentCursor.moveToFirst()) {
-                    String content = contentCursor.getString(0);
+                    String content = readPageContent(readContentColumn(contentCursor, 0),
+                            contentCursor.getString(1));
                     if (content != null && !content.isEmpty()) {
                         try {
                             JSONObject json = new JSONObject(content);
@@ -837,11 +1396,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     /**
      * Update notebook timestamp
      */
-    private void updateNotebookTimestamp(String notebookId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_NOTEBOOK_UPDATED_AT, getCurrentTimestamp());
-        db.update(TABLE_NOTEBOOKS, values, COLUMN_NOTEBOOK_ID + "=?", new String[] { notebookId });
+    private void updateNotebookTimestamp(SQLiteDatabase db, String notebookId) {
+        SQLiteStatement statement = compiled(db, Statement.TOUCH_NOTEBOOK);
+        synchronized (statement) {
+            statement.clearBindings();
+            statement.bindLong(1, System.currentTimeMillis());
+            statement.bindString(2, notebookId);
+            statement.executeUpdateDelete();
+        }
     }
 
     /**
@@ -851,12 +1413,352 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         String id = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_ID));
         String notebookId = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_NOTEBOOK_ID));
         String title = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_TITLE));
-        String content = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_CONTENT));
+        String content = readPageContent(readContentColumn(cursor, cursor.getColumnIndexOrThrow(COLUMN_PAGE_CONTENT)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_CONTENT_HASH)));
         int pageNumber = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_PAGE_NUMBER));
 
         return new Page(id, notebookId, title, content, pageNumber);
     }
 
+    // ==================== Compiled statements ====================
+
+    /** Hot write statements, compiled lazily and reused until the helper is closed */
+    private enum Statement {
+        INSERT_PAGE, UPDATE_PAGE, TOUCH_NOTEBOOK, INSERT_REMINDER
+    }
+
+    /**
+     * Return the compiled form of a hot write statement. Callers bind and
+     * execute it while holding its monitor, since statements are not thread-safe.
+     */
+    private synchronized SQLiteStatement compiled(SQLiteDatabase db, Statement which) {
+        switch (which) {
+            case INSERT_PAGE:
+                if (insertPageStatement == null) {
+                    insertPageStatement = db.compileStatement(INSERT_PAGE);
+                }
+                return insertPageStatement;
+            case UPDATE_PAGE:
+                if (updatePageStatement == null) {
+                    updatePageStatement = db.compileStatement(UPDATE_PAGE);
+                }
+                return updatePageStatement;
+            case TOUCH_NOTEBOOK:
+                if (touchNotebookStatement == null) {
+                    touchNotebookStatement = db.compileStatement(TOUCH_NOTEBOOK);
+                }
+                return touchNotebookStatement;
+            default:
+                if (insertReminderStatement == null) {
+                    insertReminderStatement = db.compileStatement(INSERT_REMINDER);
+                }
+                return insertReminderStatement;
+        }
+    }
+
+    private synchronized void closeStatements() {
+        for (SQLiteStatement statement : new SQLiteStatement[] {
+                insertPageStatement, updatePageStatement, touchNotebookStatement, insertReminderStatement }) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+        insertPageStatement = null;
+        updatePageStatement = null;
+        touchNotebookStatement = null;
+        insertReminderStatement = null;
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Execute an insert, returning -1 on a constraint failure like SQLiteDatabase.insert
+     */
+    private static long executeInsert(SQLiteStatement statement) {
+        try {
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    // ==================== Media references ====================
+
+    /**
+     * Whether any stored page refers to a media file, by absolute path
+     */
+    public boolean isMediaReferenced(String path) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_MEDIA_REFERENCED, new String[] { path });
+            return cursor != null && cursor.moveToFirst();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Paths of all media files the pages of a notebook refer to
+     */
+    public List<String> getNotebookMediaPaths(String notebookId) {
+        Set<String> paths = new LinkedHashSet<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_NOTEBOOK_MEDIA_PATHS, new String[] { notebookId });
+            while (cursor != null && cursor.moveToNext()) {
+                paths.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return new ArrayList<>(paths);
+    }
+
+    /**
+     * Replace the recorded media references of a page with those in its content
+     */
+    private void trackPageMedia(SQLiteDatabase db, String pageId, String content) {
+        db.execSQL(DELETE_PAGE_MEDIA, new Object[] { pageId });
+        for (String path : PageMedia.extractPaths(content)) {
+            db.execSQL(INSERT_PAGE_MEDIA, new Object[] { pageId, path });
+        }
+    }
+
+    // ==================== Background jobs ====================
+
+    public boolean insertJob(ExportJob job) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_JOB_ID, job.getId());
+        values.put(COLUMN_JOB_TYPE, job.getType().name());
+        values.put(COLUMN_JOB_TITLE, job.getTitle());
+        values.put(COLUMN_JOB_PARAMS, job.getParams());
+        values.put(COLUMN_JOB_CHECKPOINT, job.getCheckpoint());
+        values.put(COLUMN_JOB_DONE, job.getDone());
+        values.put(COLUMN_JOB_TOTAL, job.getTotal());
+        values.put(COLUMN_JOB_CREATED_AT, job.getCreatedAt());
+        return db.insert(TABLE_JOBS, null, values) != -1;
+    }
+
+    /**
+     * Record how far a job got and the state it would resume from
+     */
+    public void updateJobProgress(String jobId, int done, int total, String checkpoint) {
+        getWritableDatabase().execSQL(UPDATE_JOB_PROGRESS, new Object[] { done, total, checkpoint, jobId });
+    }
+
+    public void deleteJob(String jobId) {
+        getWritableDatabase().execSQL(DELETE_JOB, new Object[] { jobId });
+    }
+
+    /**
+     * Jobs queued or interrupted by the process ending, oldest first. Rows of
+     * a type this version does not know are dropped.
+     */
+    public List<ExportJob> getUnfinishedJobs() {
+        List<ExportJob> jobs = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_UNFINISHED_JOBS, null);
+            while (cursor != null && cursor.moveToNext()) {
+                ExportJob.Type type;
+                try {
+                    type = ExportJob.Type.valueOf(cursor.getString(1));
+                } catch (IllegalArgumentException e) {
+                    unknown.add(cursor.getString(0));
+                    continue;
+                }
+                ExportJob job = new ExportJob(cursor.getString(0), type, cursor.getString(2),
+                        cursor.getString(3), cursor.getLong(7));
+                job.setCheckpoint(cursor.getString(4));
+                job.setProgress(cursor.getInt(5), cursor.getInt(6));
+                jobs.add(job);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        for (String jobId : unknown) {
+            deleteJob(jobId);
+        }
+        return jobs;
+    }
+
+    // ==================== Page content blobs ====================
+
+    private synchronized PageBlobStore getBlobStore() {
+        if (blobStore == null) {
+            blobStore = new PageBlobStore(new File(context.getFilesDir(), BLOB_DIR_NAME));
+        }
+        return blobStore;
+    }
+
+    /**
+     * Page content as written to a row: inline text or a blob hash, plus the
+     * byte size and list preview derived from it
+     */
+    private static final class StoredContent {
+        String inline;
+        byte[] packed;
+        String hash;
+        long size;
+        String preview;
+    }
+
+    /**
+     * Prepare page content for a row: small content inline, large content in
+     * the blob store with only its hash and size in the row. Either way it is
+     * compressed when that pays off; the size stays the uncompressed size. The
+     * list preview is derived here so it always matches the content. Falls
+     * back to inline storage if the blob cannot be written. Runs on the
+     * repository's write thread, never the UI thread.
+     */
+    private StoredContent storeContent(String content) {
+        StoredContent stored = new StoredContent();
+        stored.preview = PageSummary.buildPreview(content);
+        if (content == null) {
+            return stored;
+        }
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        byte[] packed = PageContentCodec.encode(content);
+        stored.size = bytes.length;
+        if (bytes.length > INLINE_CONTENT_LIMIT) {
+            try {
+                stored.hash = getBlobStore().put(packed != null ? packed : bytes);
+                return stored;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (packed != null) {
+            stored.packed = packed;
+        } else {
+            stored.inline = content;
+        }
+        return stored;
+    }
+
+    private void putPageContent(ContentValues values, String content) {
+        StoredContent stored = storeContent(content);
+        if (stored.packed != null) {
+            values.put(COLUMN_PAGE_CONTENT, stored.packed);
+        } else {
+            values.put(COLUMN_PAGE_CONTENT, stored.inline);
+        }
+        values.put(COLUMN_PAGE_CONTENT_HASH, stored.hash);
+        values.put(COLUMN_PAGE_CONTENT_SIZE, stored.size);
+        values.put(COLUMN_PAGE_PREVIEW, stored.preview);
+    }
+
+    /**
+     * Bind content, content_hash, content_size and preview starting at index
+     */
+    private void bindStoredContent(SQLiteStatement statement, int index, StoredContent stored) {
+        if (stored.packed != null) {
+            statement.bindBlob(index, stored.packed);
+        } else {
+            bindStringOrNull(statement, index, stored.inline);
+        }
+        bindStringOrNull(statement, index + 1, stored.hash);
+        statement.bindLong(index + 2, stored.size);
+        bindStringOrNull(statement, index + 3, stored.preview);
+    }
+
+    /**
+     * Resolve stored page content: the blob when a hash is set, else the inline text
+     */
+    private String readPageContent(String inlineContent, String hash) {
+        if (hash == null) {
+            return inlineContent;
+        }
+        try {
+            // Inflated while it is read, so a large page is never in memory as both bytes and text
+            return PageContentCodec.readContent(getBlobStore().open(hash));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Read the inline content column, which holds legacy text or compressed bytes
+     */
+    private String readContentColumn(Cursor cursor, int index) {
+        if (cursor.getType(index) != Cursor.FIELD_TYPE_BLOB) {
+            return cursor.getString(index);
+        }
+        try {
+            return PageContentCodec.decode(cursor.getBlob(index));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private String getPageContentHash(SQLiteDatabase db, String pageId) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_PAGE_CONTENT, new String[] { pageId });
+            return cursor != null && cursor.moveToFirst() ? cursor.getString(1) : null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void collectContentHashes(SQLiteDatabase db, String notebookId, Set<String> hashes) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_NOTEBOOK_CONTENT_HASHES, new String[] { notebookId });
+            while (cursor != null && cursor.moveToNext()) {
+                hashes.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Delete blobs no page row references any more. Runs after the owning
+     * transaction committed so a rollback never leaves a row without its blob.
+     */
+    private void releaseBlobs(SQLiteDatabase db, Collection<String> hashes) {
+        for (String hash : hashes) {
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery(QUERY_CONTENT_HASH_REFERENCED, new String[] { hash });
+                if (cursor != null && cursor.moveToFirst()) {
+                    continue;
+                }
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            getBlobStore().delete(hash);
+        }
+    }
+
     // ==================== REMINDER CRUD OPERATIONS ====================
 
     /**
@@ -864,33 +1766,73 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public String createReminder(Reminder reminder) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        long result;
+        db.beginTransaction();
+        try {
+            result = insertReminder(db, reminder);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return result != -1 ? reminder.getId() : null;
+    }
 
-        values.put(COLUMN_REMINDER_ID, reminder.getId());
-        values.put(COLUMN_REMINDER_USER_ID, reminder.getUserId());
-        values.put(COLUMN_REMINDER_NOTE_ID, reminder.getNoteId());
-        values.put(COLUMN_REMINDER_NOTEBOOK_ID, reminder.getNotebookId());
-        values.put(COLUMN_REMINDER_TITLE, reminder.getTitle());
-        values.put(COLUMN_REMINDER_DESCRIPTION, reminder.getDescription());
-        values.put(COLUMN_REMINDER_TYPE, reminder.getType());
-        values.put(COLUMN_REMINDER_TRIGGER_TYPE, reminder.getTriggerType());
-        values.put(COLUMN_REMINDER_SCHEDULED_AT, reminder.getScheduledAt());
-        values.put(COLUMN_REMINDER_LOCATION, reminder.getLocation());
-        values.put(COLUMN_REMINDER_LATITUDE, reminder.getLatitude());
-        values.put(COLUMN_REMINDER_LONGITUDE, reminder.getLongitude());
-        values.put(COLUMN_REMINDER_RADIUS, reminder.getRadiusMeters());
-        values.put(COLUMN_REMINDER_REPEAT_TYPE, reminder.getRepeatType());
-        values.put(COLUMN_REMINDER_REPEAT_RULE, reminder.getRepeatRule());
-        values.put(COLUMN_REMINDER_PRIORITY, reminder.getPriority());
-        values.put(COLUMN_REMINDER_IS_COMPLETED, reminder.isCompleted() ? 1 : 0);
-        values.put(COLUMN_REMINDER_IS_NOTIFIED, reminder.isNotified() ? 1 : 0);
-        values.put(COLUMN_REMINDER_IS_ALL_DAY, reminder.isAllDay() ? 1 : 0);
-        values.put(COLUMN_REMINDER_TIMEZONE, reminder.getTimezone());
-        values.put(COLUMN_REMINDER_CREATED_AT, reminder.getCreatedAt());
-        values.put(COLUMN_REMINDER_UPDATED_AT, reminder.getUpdatedAt());
+    /**
+     * Create several reminders in one transaction.
+     * Returns the number of reminders inserted.
+     */
+    public int createReminders(List<Reminder> reminders) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int inserted = 0;
 
-        long result = db.insert(TABLE_REMINDERS, null, values);
-        return result != -1 ? reminder.getId() : null;
+        db.beginTransaction();
+        try {
+            for (Reminder reminder : reminders) {
+                if (insertReminder(db, reminder) != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return inserted;
+    }
+
+    private long insertReminder(SQLiteDatabase db, Reminder reminder) {
+        SQLiteStatement statement = compiled(db, Statement.INSERT_REMINDER);
+        long result;
+        synchronized (statement) {
+            statement.clearBindings();
+            bindStringOrNull(statement, 1, reminder.getId());
+            bindStringOrNull(statement, 2, reminder.getUserId());
+            bindStringOrNull(statement, 3, reminder.getNoteId());
+            bindStringOrNull(statement, 4, reminder.getNotebookId());
+            bindStringOrNull(statement, 5, reminder.getTitle());
+            bindStringOrNull(statement, 6, reminder.getDescription());
+            bindStringOrNull(statement, 7, reminder.getType());
+            bindStringOrNull(statement, 8, reminder.getTriggerType());
+            statement.bindLong(9, reminder.getScheduledAt());
+            bindStringOrNull(statement, 10, reminder.getLocation());
+            statement.bindDouble(11, reminder.getLatitude());
+            statement.bindDouble(12, reminder.getLongitude());
+            statement.bindLong(13, reminder.getRadiusMeters());
+            bindStringOrNull(statement, 14, reminder.getRepeatType());
+            bindStringOrNull(statement, 15, reminder.getRepeatRule());
+            statement.bindLong(16, reminder.getPriority());
+            statement.bindLong(17, reminder.isCompleted() ? 1 : 0);
+            statement.bindLong(18, reminder.isNotified() ? 1 : 0);
+            statement.bindLong(19, reminder.isAllDay() ? 1 : 0);
+            bindStringOrNull(statement, 20, reminder.getTimezone());
+            statement.bindLong(21, reminder.getCreatedAt());
+            statement.bindLong(22, reminder.getUpdatedAt());
+            result = executeInsert(statement);
+        }
+        if (result != -1) {
+            indexReminder(db, reminder);
+        }
+        return result;
     }
 
     /**
@@ -902,15 +1844,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = null;
 
         try {
-            cursor = db.query(
-                    TABLE_REMINDERS,
-                    null,
-                    COLUMN_REMINDER_USER_ID + "=?",
-                    new String[]{userId},
-                    null,
-                    null,
-                    COLUMN_REMINDER_SCHEDULED_AT + " ASC"
-            );
+            cursor = db.rawQuery(QUERY_USER_REMINDERS, new String[]{userId});
 
             if (cursor != null && cursor.moveToFirst()) {
                 do {
@@ -926,6 +1860,41 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return reminders;
     }
 
+    /**
+     * Get one page of a user's reminders scheduled in [from, to), earliest
+     * first, optionally of one type (null for all types). Pass the last
+     * reminder of the previous page as {@code after}, or null for the first page.
+     */
+    public List<Reminder> getReminders(String userId, String type, long from, long to, Reminder after, int limit) {
+        String scheduledAt = String.valueOf(after != null ? after.getScheduledAt() : from);
+        String id = after != null ? after.getId() : "";
+        String until = String.valueOf(to);
+
+        List<Reminder> reminders = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            if (type == null) {
+                cursor = db.rawQuery(QUERY_USER_REMINDERS_PAGE, new String[] {
+                        userId, scheduledAt, until, scheduledAt, id, String.valueOf(limit) });
+            } else {
+                cursor = db.rawQuery(QUERY_USER_REMINDERS_OF_TYPE_PAGE, new String[] {
+                        userId, type, scheduledAt, until, scheduledAt, id, String.valueOf(limit) });
+            }
+
+            while (cursor != null && cursor.moveToNext()) {
+                reminders.add(cursorToReminder(cursor));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return reminders;
+    }
+
     /**
      * Get upcoming reminders (not completed, scheduled in future)
      */
@@ -936,16 +1905,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         try {
             long currentTime = System.currentTimeMillis();
-            cursor = db.query(
-                    TABLE_REMINDERS,
-                    null,
-                    COLUMN_REMINDER_USER_ID + "=? AND " + COLUMN_REMINDER_IS_COMPLETED + "=0 AND " +
-                            COLUMN_REMINDER_SCHEDULED_AT + ">?",
-                    new String[]{userId, String.valueOf(currentTime)},
-                    null,
-                    null,
-                    COLUMN_REMINDER_SCHEDULED_AT + " ASC"
-            );
+            cursor = db.rawQuery(QUERY_UPCOMING_REMINDERS,
+                    new String[]{userId, String.valueOf(currentTime)});
 
             if (cursor != null && cursor.moveToFirst()) {
                 do {
@@ -997,6 +1958,39 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean updateReminder(Reminder reminder) {
         SQLiteDatabase db = this.getWritableDatabase();
+        int result;
+        db.beginTransaction();
+        try {
+            result = updateReminderRow(db, reminder);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return result > 0;
+    }
+
+    /**
+     * Update several reminders in one transaction.
+     * Returns the number of reminders updated.
+     */
+    public int updateReminders(List<Reminder> reminders) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int updated = 0;
+
+        db.beginTransaction();
+        try {
+            for (Reminder reminder : reminders) {
+                updated += updateReminderRow(db, reminder);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return updated;
+    }
+
+    private int updateReminderRow(SQLiteDatabase db, Reminder reminder) {
         ContentValues values = new ContentValues();
 
         values.put(COLUMN_REMINDER_TITLE, reminder.getTitle());
@@ -1019,7 +2013,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         int result = db.update(TABLE_REMINDERS, values, COLUMN_REMINDER_ID + "=?",
                 new String[]{reminder.getId()});
-        return result > 0;
+        if (result > 0) {
+            indexReminder(db, reminder);
+        }
+        return result;
     }
 
     /**
@@ -1041,8 +2038,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean deleteReminder(String reminderId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(TABLE_REMINDERS, COLUMN_REMINDER_ID + "=?",
-                new String[]{reminderId});
+        int result;
+        db.beginTransaction();
+        try {
+            result = db.delete(TABLE_REMINDERS, COLUMN_REMINDER_ID + "=?",
+                    new String[]{reminderId});
+            removeFromSearch(db, SearchResult.Kind.REMINDER, reminderId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         return result > 0;
     }
 
@@ -1095,4 +2100,206 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         return reminder;
     }
+
+    // ==================== Full-text search ====================
+
+    /**
+     * Search notebooks, page text, reminders and scanned documents visible to
+     * a user. Every word of the query is a prefix term and all must match.
+     * Results are ranked best first where the index supports it (FTS5), newest
+     * first otherwise, with matched terms highlighted (see SearchResult).
+     */
+    public List<SearchResult> search(String userId, String query, int limit) {
+        List<SearchResult> results = new ArrayList<>();
+        String matchQuery = SearchText.toMatchQuery(query);
+        if (matchQuery == null) {
+            return results;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(searchUsesFts5(db) ? QUERY_SEARCH_FTS5 : QUERY_SEARCH_FTS4,
+                    new String[] { matchQuery, userId != null ? userId : "", String.valueOf(limit) });
+            while (cursor != null && cursor.moveToNext()) {
+                results.add(new SearchResult(SearchResult.Kind.valueOf(cursor.getString(0)),
+                        cursor.getString(1), cursor.getString(2), cursor.getString(3), cursor.getString(4)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Index the recognized text of a scanned document, replacing any earlier
+     * entry for the same file. Scans are shared, so they match for every user.
+     */
+    public boolean indexScanDocument(String filePath, String name, String text) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            indexDocument(db, SearchResult.Kind.SCAN, filePath, null, null, name, text);
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Drop a scanned document from the search index, e.g. after the file is deleted
+     */
+    public boolean removeScanDocument(String filePath) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            boolean removed = removeFromSearch(db, SearchResult.Kind.SCAN, filePath);
+            db.setTransactionSuccessful();
+            return removed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Create the search tables, preferring FTS5 and falling back to FTS4 on
+     * platform SQLite builds compiled without it
+     */
+    private void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(CREATE_SEARCH_DOCS_TABLE);
+        db.execSQL(CREATE_INDEX_SEARCH_DOCS_NOTEBOOK);
+        try {
+            db.execSQL(CREATE_SEARCH_INDEX_FTS5);
+        } catch (SQLException e) {
+            db.execSQL(CREATE_SEARCH_INDEX_FTS4);
+        }
+    }
+
+    private synchronized boolean searchUsesFts5(SQLiteDatabase db) {
+        if (searchUsesFts5 == null) {
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE name=?", new String[] { TABLE_SEARCH_INDEX });
+                searchUsesFts5 = cursor != null && cursor.moveToFirst()
+                        && cursor.getString(0).toLowerCase(Locale.ROOT).contains("fts5");
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        return searchUsesFts5;
+    }
+
+    private void indexNotebook(SQLiteDatabase db, String notebookId, String userId, String title) {
+        indexDocument(db, SearchResult.Kind.NOTEBOOK, notebookId, userId, notebookId, title, null);
+    }
+
+    /**
+     * Index the typed and sticky-note text of a page. Runs with the page write,
+     * on the caller's (background) thread.
+     */
+    private void indexPage(SQLiteDatabase db, String pageId, String notebookId, String title, String content) {
+        indexDocument(db, SearchResult.Kind.PAGE, pageId, getNotebookUserId(db, notebookId), notebookId,
+                title, SearchText.extractPageText(content));
+    }
+
+    private void indexReminder(SQLiteDatabase db, Reminder reminder) {
+        indexDocument(db, SearchResult.Kind.REMINDER, reminder.getId(), reminder.getUserId(), null,
+                reminder.getTitle(), SearchText.join(reminder.getDescription(), reminder.getLocation()));
+    }
+
+    /**
+     * Insert or replace one search document. The FTS row shares the document
+     * row's id, so replacing and deleting are rowid lookups rather than scans
+     * of the index.
+     */
+    private void indexDocument(SQLiteDatabase db, SearchResult.Kind kind, String refId, String userId,
+                               String notebookId, String title, String body) {
+        long docId = findSearchDocId(db, kind, refId);
+        if (docId != -1) {
+            db.execSQL(DELETE_SEARCH_ENTRY, new Object[] { docId });
+        }
+
+        ContentValues doc = new ContentValues();
+        if (docId != -1) {
+            doc.put(COLUMN_SEARCH_DOC_ID, docId);
+        }
+        doc.put(COLUMN_SEARCH_KIND, kind.name());
+        doc.put(COLUMN_SEARCH_REF_ID, refId);
+        doc.put(COLUMN_SEARCH_USER_ID, userId);
+        doc.put(COLUMN_SEARCH_NOTEBOOK_ID, notebookId);
+        doc.put(COLUMN_SEARCH_UPDATED_AT, System.currentTimeMillis());
+        docId = db.insertWithOnConflict(TABLE_SEARCH_DOCS, null, doc, SQLiteDatabase.CONFLICT_REPLACE);
+        if (docId == -1) {
+            return;
+        }
+
+        ContentValues entry = new ContentValues();
+        entry.put("rowid", docId);
+        entry.put(COLUMN_SEARCH_TITLE, title);
+        entry.put(COLUMN_SEARCH_BODY, body);
+        db.insert(TABLE_SEARCH_INDEX, null, entry);
+    }
+
+    private boolean removeFromSearch(SQLiteDatabase db, SearchResult.Kind kind, String refId) {
+        long docId = findSearchDocId(db, kind, refId);
+        if (docId == -1) {
+            return false;
+        }
+        db.execSQL(DELETE_SEARCH_ENTRY, new Object[] { docId });
+        return db.delete(TABLE_SEARCH_DOCS, COLUMN_SEARCH_DOC_ID + "=?",
+                new String[] { String.valueOf(docId) }) > 0;
+    }
+
+    /**
+     * Drop the notebook's own entry and those of all its pages
+     */
+    private void removeNotebookFromSearch(SQLiteDatabase db, String notebookId) {
+        db.execSQL(DELETE_NOTEBOOK_SEARCH_ENTRIES, new Object[] { notebookId });
+        db.delete(TABLE_SEARCH_DOCS, COLUMN_SEARCH_NOTEBOOK_ID + "=?", new String[] { notebookId });
+    }
+
+    private long findSearchDocId(SQLiteDatabase db, SearchResult.Kind kind, String refId) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(QUERY_SEARCH_DOC_ID, new String[] { kind.name(), refId });
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return -1;
+    }
+
+    private String getNotebookUserId(SQLiteDatabase db, String notebookId) {
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_NOTEBOOKS,
+                    new String[] { COLUMN_USER_ID },
+                    COLUMN_NOTEBOOK_ID + "=?",
+                    new String[] { notebookId },
+                    null, null, null);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return null;
+    }
 }
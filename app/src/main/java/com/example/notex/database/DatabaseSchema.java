@@ -0,0 +1,513 @@
+package com.example.notex.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DatabaseSchema - Table, column, index and hot-query definitions for notex.db.
+ * Kept free of Android dependencies so the schema and query plans can be
+ * verified by plain JVM unit tests.
+ */
+final class DatabaseSchema {
+
+    private DatabaseSchema() {
+    }
+
+    // Users table
+    static final String TABLE_USERS = "users";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_USERNAME = "username";
+    static final String COLUMN_EMAIL = "email";
+    static final String COLUMN_PASSWORD_HASH = "password_hash";
+    static final String COLUMN_ROLE = "role";
+    static final String COLUMN_CREATED_AT = "created_at";
+    static final String COLUMN_LAST_LOGIN = "last_login";
+
+    // Notebooks table
+    static final String TABLE_NOTEBOOKS = "notebooks";
+    static final String COLUMN_NOTEBOOK_ID = "id";
+    static final String COLUMN_USER_ID = "user_id";
+    static final String COLUMN_TITLE = "title";
+    static final String COLUMN_COLOR = "color";
+    static final String COLUMN_IS_PINNED = "is_pinned";
+    static final String COLUMN_NOTEBOOK_CREATED_AT = "created_at";
+    static final String COLUMN_NOTEBOOK_UPDATED_AT = "updated_at";
+    static final String COLUMN_NOTEBOOK_PAGE_COUNT = "page_count";
+
+    // Pages table
+    static final String TABLE_PAGES = "pages";
+    static final String COLUMN_PAGE_ID = "id";
+    static final String COLUMN_PAGE_NOTEBOOK_ID = "notebook_id";
+    static final String COLUMN_PAGE_TITLE = "title";
+    static final String COLUMN_PAGE_CONTENT = "content";
+    static final String COLUMN_PAGE_NUMBER = "page_number";
+    static final String COLUMN_PAGE_CREATED_AT = "created_at";
+    static final String COLUMN_PAGE_UPDATED_AT = "updated_at";
+    static final String COLUMN_PAGE_CONTENT_HASH = "content_hash";
+    static final String COLUMN_PAGE_CONTENT_SIZE = "content_size";
+    static final String COLUMN_PAGE_PREVIEW = "preview";
+
+    // Reminders table
+    static final String TABLE_REMINDERS = "reminders";
+    static final String COLUMN_REMINDER_ID = "id";
+    static final String COLUMN_REMINDER_USER_ID = "user_id";
+    static final String COLUMN_REMINDER_NOTE_ID = "note_id";
+    static final String COLUMN_REMINDER_NOTEBOOK_ID = "notebook_id";
+    static final String COLUMN_REMINDER_TITLE = "title";
+    static final String COLUMN_REMINDER_DESCRIPTION = "description";
+    static final String COLUMN_REMINDER_TYPE = "type";
+    static final String COLUMN_REMINDER_TRIGGER_TYPE = "trigger_type";
+    static final String COLUMN_REMINDER_SCHEDULED_AT = "scheduled_at";
+    static final String COLUMN_REMINDER_LOCATION = "location";
+    static final String COLUMN_REMINDER_LATITUDE = "latitude";
+    static final String COLUMN_REMINDER_LONGITUDE = "longitude";
+    static final String COLUMN_REMINDER_RADIUS = "radius_meters";
+    static final String COLUMN_REMINDER_REPEAT_TYPE = "repeat_type";
+    static final String COLUMN_REMINDER_REPEAT_RULE = "repeat_rule";
+    static final String COLUMN_REMINDER_PRIORITY = "priority";
+    static final String COLUMN_REMINDER_IS_COMPLETED = "is_completed";
+    static final String COLUMN_REMINDER_IS_NOTIFIED = "is_notified";
+    static final String COLUMN_REMINDER_IS_ALL_DAY = "is_all_day";
+    static final String COLUMN_REMINDER_TIMEZONE = "timezone";
+    static final String COLUMN_REMINDER_CREATED_AT = "created_at";
+    static final String COLUMN_REMINDER_UPDATED_AT = "updated_at";
+
+    // Search documents: one row per indexed item, its id is the FTS rowid
+    static final String TABLE_SEARCH_DOCS = "search_docs";
+    static final String COLUMN_SEARCH_DOC_ID = "id";
+    static final String COLUMN_SEARCH_KIND = "kind";
+    static final String COLUMN_SEARCH_REF_ID = "ref_id";
+    static final String COLUMN_SEARCH_USER_ID = "user_id";
+    static final String COLUMN_SEARCH_NOTEBOOK_ID = "notebook_id";
+    static final String COLUMN_SEARCH_UPDATED_AT = "updated_at";
+
+    // Full-text index over search documents
+    static final String TABLE_SEARCH_INDEX = "search_index";
+    static final String COLUMN_SEARCH_TITLE = "title";
+    static final String COLUMN_SEARCH_BODY = "body";
+
+    // Media files referenced by page content: one row per (page, path)
+    static final String TABLE_PAGE_MEDIA = "page_media";
+    static final String COLUMN_MEDIA_PAGE_ID = "page_id";
+    static final String COLUMN_MEDIA_PATH = "path";
+
+    // Background exports and conversions that have not finished
+    static final String TABLE_JOBS = "jobs";
+    static final String COLUMN_JOB_ID = "id";
+    static final String COLUMN_JOB_TYPE = "type";
+    static final String COLUMN_JOB_TITLE = "title";
+    static final String COLUMN_JOB_PARAMS = "params";
+    static final String COLUMN_JOB_CHECKPOINT = "checkpoint";
+    static final String COLUMN_JOB_DONE = "done";
+    static final String COLUMN_JOB_TOTAL = "total";
+    static final String COLUMN_JOB_CREATED_AT = "created_at";
+
+    // ==================== Tables ====================
+
+    static final String CREATE_USERS_TABLE = "CREATE TABLE " + TABLE_USERS + "("
+            + COLUMN_ID + " TEXT PRIMARY KEY,"
+            + COLUMN_USERNAME + " TEXT UNIQUE NOT NULL,"
+            + COLUMN_EMAIL + " TEXT,"
+            + COLUMN_PASSWORD_HASH + " TEXT NOT NULL,"
+            + COLUMN_ROLE + " TEXT NOT NULL,"
+            + COLUMN_CREATED_AT + " INTEGER,"
+            + COLUMN_LAST_LOGIN + " INTEGER"
+            + ")";
+
+    static final String CREATE_NOTEBOOKS_TABLE = "CREATE TABLE " + TABLE_NOTEBOOKS + "("
+            + COLUMN_NOTEBOOK_ID + " TEXT PRIMARY KEY,"
+            + COLUMN_USER_ID + " TEXT NOT NULL,"
+            + COLUMN_TITLE + " TEXT NOT NULL,"
+            + COLUMN_COLOR + " TEXT,"
+            + COLUMN_IS_PINNED + " INTEGER DEFAULT 0,"
+            + COLUMN_NOTEBOOK_CREATED_AT + " INTEGER,"
+            + COLUMN_NOTEBOOK_UPDATED_AT + " INTEGER,"
+            + COLUMN_NOTEBOOK_PAGE_COUNT + " INTEGER DEFAULT 0,"
+            + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
+            + ")";
+
+    static final String CREATE_PAGES_TABLE = "CREATE TABLE " + TABLE_PAGES + "("
+            + COLUMN_PAGE_ID + " TEXT PRIMARY KEY,"
+            + COLUMN_PAGE_NOTEBOOK_ID + " TEXT NOT NULL,"
+            + COLUMN_PAGE_TITLE + " TEXT NOT NULL,"
+            + COLUMN_PAGE_CONTENT + " TEXT,"
+            + COLUMN_PAGE_NUMBER + " INTEGER,"
+            + COLUMN_PAGE_CREATED_AT + " INTEGER,"
+            + COLUMN_PAGE_UPDATED_AT + " INTEGER,"
+            + COLUMN_PAGE_CONTENT_HASH + " TEXT,"
+            + COLUMN_PAGE_CONTENT_SIZE + " INTEGER DEFAULT 0,"
+            + COLUMN_PAGE_PREVIEW + " TEXT,"
+            + "FOREIGN KEY(" + COLUMN_PAGE_NOTEBOOK_ID + ") REFERENCES " + TABLE_NOTEBOOKS + "("
+            + COLUMN_NOTEBOOK_ID + ")"
+            + ")";
+
+    static final String CREATE_REMINDERS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_REMINDERS + "("
+            + COLUMN_REMINDER_ID + " TEXT PRIMARY KEY,"
+            + COLUMN_REMINDER_USER_ID + " TEXT NOT NULL,"
+            + COLUMN_REMINDER_NOTE_ID + " TEXT,"
+            + COLUMN_REMINDER_NOTEBOOK_ID + " TEXT,"
+            + COLUMN_REMINDER_TITLE + " TEXT NOT NULL,"
+            + COLUMN_REMINDER_DESCRIPTION + " TEXT,"
+            + COLUMN_REMINDER_TYPE + " TEXT NOT NULL,"
+            + COLUMN_REMINDER_TRIGGER_TYPE + " TEXT NOT NULL,"
+            + COLUMN_REMINDER_SCHEDULED_AT + " INTEGER,"
+            + COLUMN_REMINDER_LOCATION + " TEXT,"
+            + COLUMN_REMINDER_LATITUDE + " REAL,"
+            + COLUMN_REMINDER_LONGITUDE + " REAL,"
+            + COLUMN_REMINDER_RADIUS + " INTEGER,"
+            + COLUMN_REMINDER_REPEAT_TYPE + " TEXT,"
+            + COLUMN_REMINDER_REPEAT_RULE + " TEXT,"
+            + COLUMN_REMINDER_PRIORITY + " INTEGER,"
+            + COLUMN_REMINDER_IS_COMPLETED + " INTEGER DEFAULT 0,"
+            + COLUMN_REMINDER_IS_NOTIFIED + " INTEGER DEFAULT 0,"
+            + COLUMN_REMINDER_IS_ALL_DAY + " INTEGER DEFAULT 0,"
+            + COLUMN_REMINDER_TIMEZONE + " TEXT,"
+            + COLUMN_REMINDER_CREATED_AT + " INTEGER,"
+            + COLUMN_REMINDER_UPDATED_AT + " INTEGER,"
+            + "FOREIGN KEY(" + COLUMN_REMINDER_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
+            + ")";
+
+    // ==================== Indexes (schema v6) ====================
+
+    // Notebook listing: WHERE user_id=? ORDER BY is_pinned DESC, updated_at DESC, id DESC.
+    // id is the keyset tie-breaker (schema v11)
+    static final String CREATE_INDEX_NOTEBOOKS_USER = "CREATE INDEX IF NOT EXISTS idx_notebooks_user_pinned_updated_id ON "
+            + TABLE_NOTEBOOKS + "(" + COLUMN_USER_ID + ", " + COLUMN_IS_PINNED + " DESC, "
+            + COLUMN_NOTEBOOK_UPDATED_AT + " DESC, " + COLUMN_NOTEBOOK_ID + " DESC)";
+
+    // Pages of a notebook in order; also covers the per-notebook COUNT(*)
+    static final String CREATE_INDEX_PAGES_NOTEBOOK = "CREATE INDEX IF NOT EXISTS idx_pages_notebook_number ON "
+            + TABLE_PAGES + "(" + COLUMN_PAGE_NOTEBOOK_ID + ", " + COLUMN_PAGE_NUMBER + ")";
+
+    // All reminders of a user ordered by schedule then id (keyset tie-breaker, schema v11);
+    // also covers the per-user COUNT(*)
+    static final String CREATE_INDEX_REMINDERS_USER = "CREATE INDEX IF NOT EXISTS idx_reminders_user_scheduled_id ON "
+            + TABLE_REMINDERS + "(" + COLUMN_REMINDER_USER_ID + ", " + COLUMN_REMINDER_SCHEDULED_AT + ", "
+            + COLUMN_REMINDER_ID + ")";
+
+    // Reminders of one type (the Reminders / Events / Tasks tabs), schema v11
+    static final String CREATE_INDEX_REMINDERS_TYPE = "CREATE INDEX IF NOT EXISTS idx_reminders_user_type_scheduled_id ON "
+            + TABLE_REMINDERS + "(" + COLUMN_REMINDER_USER_ID + ", " + COLUMN_REMINDER_TYPE + ", "
+            + COLUMN_REMINDER_SCHEDULED_AT + ", " + COLUMN_REMINDER_ID + ")";
+
+    // Admin user list, newest first (schema v11)
+    static final String CREATE_INDEX_USERS_CREATED = "CREATE INDEX IF NOT EXISTS idx_users_created_id ON "
+            + TABLE_USERS + "(" + COLUMN_CREATED_AT + " DESC, " + COLUMN_ID + " DESC)";
+
+    // Upcoming reminders: WHERE user_id=? AND is_completed=0 AND scheduled_at>? ORDER BY scheduled_at
+    static final String CREATE_INDEX_REMINDERS_PENDING = "CREATE INDEX IF NOT EXISTS idx_reminders_user_completed_scheduled ON "
+            + TABLE_REMINDERS + "(" + COLUMN_REMINDER_USER_ID + ", " + COLUMN_REMINDER_IS_COMPLETED + ", "
+            + COLUMN_REMINDER_SCHEDULED_AT + ")";
+
+    static final String[] CREATE_INDEXES = {
+            CREATE_INDEX_NOTEBOOKS_USER,
+            CREATE_INDEX_PAGES_NOTEBOOK,
+            CREATE_INDEX_REMINDERS_USER,
+            CREATE_INDEX_REMINDERS_PENDING,
+            CREATE_INDEX_REMINDERS_TYPE,
+            CREATE_INDEX_USERS_CREATED
+    };
+
+    // Prefixes of the v11 keyset indexes, dropped by the v11 migration
+    static final String[] DROP_SUPERSEDED_INDEXES = {
+            "DROP INDEX IF EXISTS idx_notebooks_user_pinned_updated",
+            "DROP INDEX IF EXISTS idx_reminders_user_scheduled"
+    };
+
+    // ==================== Blob store (schema v7) ====================
+
+    static final String ADD_PAGE_CONTENT_HASH_COLUMN = "ALTER TABLE " + TABLE_PAGES
+            + " ADD COLUMN " + COLUMN_PAGE_CONTENT_HASH + " TEXT";
+
+    static final String ADD_PAGE_CONTENT_SIZE_COLUMN = "ALTER TABLE " + TABLE_PAGES
+            + " ADD COLUMN " + COLUMN_PAGE_CONTENT_SIZE + " INTEGER DEFAULT 0";
+
+    // Blob reference check before a content file is deleted
+    static final String CREATE_INDEX_PAGES_CONTENT_HASH = "CREATE INDEX IF NOT EXISTS idx_pages_content_hash ON "
+            + TABLE_PAGES + "(" + COLUMN_PAGE_CONTENT_HASH + ")";
+
+    // ==================== Page summaries (schema v8) ====================
+
+    static final String ADD_PAGE_PREVIEW_COLUMN = "ALTER TABLE " + TABLE_PAGES
+            + " ADD COLUMN " + COLUMN_PAGE_PREVIEW + " TEXT";
+
+    // ==================== Epoch-millis timestamps (schema v9) ====================
+
+    /**
+     * SQL expression converting a legacy "yyyy-MM-dd HH:mm:ss" local-time column
+     * to epoch millis. Missing or unparseable values become the migration time.
+     */
+    static String epochMillisFromText(String column) {
+        return "COALESCE(CAST(strftime('%s', " + column + ", 'utc') AS INTEGER) * 1000, "
+                + "CAST(strftime('%s', 'now') AS INTEGER) * 1000)";
+    }
+
+    /**
+     * Statements rebuilding users, notebooks and pages with INTEGER timestamp
+     * columns and converting the stored text values. Indexes of the rebuilt
+     * tables are dropped with them and must be created again.
+     */
+    static List<String> migrateTimestampsToEpochMillis() {
+        List<String> statements = new ArrayList<>();
+        rebuildWithEpochTimestamps(statements, TABLE_USERS, CREATE_USERS_TABLE,
+                new String[] { COLUMN_ID, COLUMN_USERNAME, COLUMN_EMAIL, COLUMN_PASSWORD_HASH, COLUMN_ROLE },
+                COLUMN_CREATED_AT, COLUMN_LAST_LOGIN);
+        rebuildWithEpochTimestamps(statements, TABLE_NOTEBOOKS, CREATE_NOTEBOOKS_TABLE,
+                new String[] { COLUMN_NOTEBOOK_ID, COLUMN_USER_ID, COLUMN_TITLE, COLUMN_COLOR, COLUMN_IS_PINNED,
+                        COLUMN_NOTEBOOK_PAGE_COUNT },
+                COLUMN_NOTEBOOK_CREATED_AT, COLUMN_NOTEBOOK_UPDATED_AT);
+        rebuildWithEpochTimestamps(statements, TABLE_PAGES, CREATE_PAGES_TABLE,
+                new String[] { COLUMN_PAGE_ID, COLUMN_PAGE_NOTEBOOK_ID, COLUMN_PAGE_TITLE, COLUMN_PAGE_CONTENT,
+                        COLUMN_PAGE_NUMBER, COLUMN_PAGE_CONTENT_HASH, COLUMN_PAGE_CONTENT_SIZE, COLUMN_PAGE_PREVIEW },
+                COLUMN_PAGE_CREATED_AT, COLUMN_PAGE_UPDATED_AT);
+        return statements;
+    }
+
+    /**
+     * In SQLite's documented order for changing a table's schema: create the
+     * new table under another name, copy, drop the old one, rename the new one.
+     * Renaming the old table away first would make SQLite 3.26+ rewrite other
+     * tables' foreign keys to the renamed table, which is then dropped.
+     */
+    private static void rebuildWithEpochTimestamps(List<String> statements, String table, String createTable,
+                                                   String[] columns, String... timestampColumns) {
+        String createPrefix = "CREATE TABLE " + table + "(";
+        if (!createTable.startsWith(createPrefix)) {
+            throw new IllegalArgumentException("Unexpected definition of " + table);
+        }
+        String newTable = table + "_new";
+        statements.add("CREATE TABLE " + newTable + "(" + createTable.substring(createPrefix.length()));
+
+        StringBuilder targetColumns = new StringBuilder(String.join(", ", columns));
+        StringBuilder sourceColumns = new StringBuilder(String.join(", ", columns));
+        for (String column : timestampColumns) {
+            targetColumns.append(", ").append(column);
+            sourceColumns.append(", ").append(epochMillisFromText(column));
+        }
+        statements.add("INSERT INTO " + newTable + " (" + targetColumns + ") SELECT " + sourceColumns
+                + " FROM " + table);
+        statements.add("DROP TABLE " + table);
+        statements.add("ALTER TABLE " + newTable + " RENAME TO " + table);
+    }
+
+    // ==================== Media references (schema v13) ====================
+
+    static final String CREATE_PAGE_MEDIA_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_PAGE_MEDIA + " ("
+            + COLUMN_MEDIA_PAGE_ID + " TEXT NOT NULL,"
+            + COLUMN_MEDIA_PATH + " TEXT NOT NULL,"
+            + "PRIMARY KEY(" + COLUMN_MEDIA_PAGE_ID + ", " + COLUMN_MEDIA_PATH + ")) WITHOUT ROWID";
+
+    // Garbage collection asks per file whether anything still refers to it
+    static final String CREATE_INDEX_PAGE_MEDIA_PATH = "CREATE INDEX IF NOT EXISTS idx_page_media_path ON "
+            + TABLE_PAGE_MEDIA + "(" + COLUMN_MEDIA_PATH + ")";
+
+    static final String INSERT_PAGE_MEDIA = "INSERT OR IGNORE INTO " + TABLE_PAGE_MEDIA
+            + " (" + COLUMN_MEDIA_PAGE_ID + ", " + COLUMN_MEDIA_PATH + ") VALUES (?, ?)";
+
+    static final String DELETE_PAGE_MEDIA = "DELETE FROM " + TABLE_PAGE_MEDIA + " WHERE " + COLUMN_MEDIA_PAGE_ID + "=?";
+
+    static final String DELETE_NOTEBOOK_MEDIA = "DELETE FROM " + TABLE_PAGE_MEDIA
+            + " WHERE " + COLUMN_MEDIA_PAGE_ID + " IN (SELECT " + COLUMN_PAGE_ID + " FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?)";
+
+    static final String QUERY_MEDIA_REFERENCED = "SELECT 1 FROM " + TABLE_PAGE_MEDIA
+            + " WHERE " + COLUMN_MEDIA_PATH + "=? LIMIT 1";
+
+    // Media packed into a notebook archive; duplicates across pages are dropped by the caller
+    static final String QUERY_NOTEBOOK_MEDIA_PATHS = "SELECT " + COLUMN_MEDIA_PATH + " FROM " + TABLE_PAGE_MEDIA
+            + " WHERE " + COLUMN_MEDIA_PAGE_ID + " IN (SELECT " + COLUMN_PAGE_ID + " FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?)";
+
+    // ==================== Background jobs (schema v14) ====================
+
+    // A row lives from when a job is queued until it ends, so only a handful ever exist
+    static final String CREATE_JOBS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_JOBS + " ("
+            + COLUMN_JOB_ID + " TEXT PRIMARY KEY,"
+            + COLUMN_JOB_TYPE + " TEXT NOT NULL,"
+            + COLUMN_JOB_TITLE + " TEXT,"
+            + COLUMN_JOB_PARAMS + " TEXT NOT NULL,"
+            + COLUMN_JOB_CHECKPOINT + " TEXT,"
+            + COLUMN_JOB_DONE + " INTEGER DEFAULT 0,"
+            + COLUMN_JOB_TOTAL + " INTEGER DEFAULT 0,"
+            + COLUMN_JOB_CREATED_AT + " INTEGER NOT NULL)";
+
+    // Written after every page a job finishes
+    static final String UPDATE_JOB_PROGRESS = "UPDATE " + TABLE_JOBS + " SET " + COLUMN_JOB_DONE + "=?, "
+            + COLUMN_JOB_TOTAL + "=?, " + COLUMN_JOB_CHECKPOINT + "=? WHERE " + COLUMN_JOB_ID + "=?";
+
+    static final String DELETE_JOB = "DELETE FROM " + TABLE_JOBS + " WHERE " + COLUMN_JOB_ID + "=?";
+
+    // Read once per process start to resume; the table is tiny, so no index
+    static final String QUERY_UNFINISHED_JOBS = "SELECT " + COLUMN_JOB_ID + ", " + COLUMN_JOB_TYPE + ", "
+            + COLUMN_JOB_TITLE + ", " + COLUMN_JOB_PARAMS + ", " + COLUMN_JOB_CHECKPOINT + ", " + COLUMN_JOB_DONE
+            + ", " + COLUMN_JOB_TOTAL + ", " + COLUMN_JOB_CREATED_AT + " FROM " + TABLE_JOBS
+            + " ORDER BY " + COLUMN_JOB_CREATED_AT;
+
+    // ==================== Full-text search (schema v10) ====================
+
+    // Scans have no owner (user_id NULL) and are visible to every user
+    static final String CREATE_SEARCH_DOCS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SEARCH_DOCS + " ("
+            + COLUMN_SEARCH_DOC_ID + " INTEGER PRIMARY KEY,"
+            + COLUMN_SEARCH_KIND + " TEXT NOT NULL,"
+            + COLUMN_SEARCH_REF_ID + " TEXT NOT NULL,"
+            + COLUMN_SEARCH_USER_ID + " TEXT,"
+            + COLUMN_SEARCH_NOTEBOOK_ID + " TEXT,"
+            + COLUMN_SEARCH_UPDATED_AT + " INTEGER,"
+            + "UNIQUE(" + COLUMN_SEARCH_KIND + ", " + COLUMN_SEARCH_REF_ID + "))";
+
+    // Dropping a notebook's documents: WHERE notebook_id=?
+    static final String CREATE_INDEX_SEARCH_DOCS_NOTEBOOK = "CREATE INDEX IF NOT EXISTS idx_search_docs_notebook ON "
+            + TABLE_SEARCH_DOCS + "(" + COLUMN_SEARCH_NOTEBOOK_ID + ")";
+
+    // Prefix indexes make 2- and 3-character prefix terms index lookups instead of term scans
+    static final String CREATE_SEARCH_INDEX_FTS5 = "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_SEARCH_INDEX
+            + " USING fts5(" + COLUMN_SEARCH_TITLE + ", " + COLUMN_SEARCH_BODY
+            + ", tokenize = 'unicode61', prefix = '2 3')";
+
+    // Platform SQLite builds without FTS5 get FTS4 (unicode61 is available from API 21)
+    static final String CREATE_SEARCH_INDEX_FTS4 = "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_SEARCH_INDEX
+            + " USING fts4(" + COLUMN_SEARCH_TITLE + ", " + COLUMN_SEARCH_BODY
+            + ", tokenize=unicode61, prefix=\"2,3\")";
+
+    static final String DELETE_SEARCH_ENTRY = "DELETE FROM " + TABLE_SEARCH_INDEX + " WHERE rowid=?";
+
+    static final String DELETE_NOTEBOOK_SEARCH_ENTRIES = "DELETE FROM " + TABLE_SEARCH_INDEX
+            + " WHERE rowid IN (SELECT " + COLUMN_SEARCH_DOC_ID + " FROM " + TABLE_SEARCH_DOCS
+            + " WHERE " + COLUMN_SEARCH_NOTEBOOK_ID + "=?)";
+
+    static final String QUERY_SEARCH_DOC_ID = "SELECT " + COLUMN_SEARCH_DOC_ID + " FROM " + TABLE_SEARCH_DOCS
+            + " WHERE " + COLUMN_SEARCH_KIND + "=? AND " + COLUMN_SEARCH_REF_ID + "=?";
+
+    // Columns: kind, ref_id, notebook_id, highlighted title, highlighted body snippet.
+    // Params: MATCH expression, user ID, limit.
+    private static final String SEARCH_SELECT = "SELECT d." + COLUMN_SEARCH_KIND + ", d." + COLUMN_SEARCH_REF_ID
+            + ", d." + COLUMN_SEARCH_NOTEBOOK_ID + ", ";
+    private static final String SEARCH_FROM = " FROM " + TABLE_SEARCH_INDEX
+            + " JOIN " + TABLE_SEARCH_DOCS + " d ON d." + COLUMN_SEARCH_DOC_ID + " = " + TABLE_SEARCH_INDEX + ".rowid"
+            + " WHERE " + TABLE_SEARCH_INDEX + " MATCH ?"
+            + " AND (d." + COLUMN_SEARCH_USER_ID + "=? OR d." + COLUMN_SEARCH_USER_ID + " IS NULL)";
+
+    // FTS5 ranks with bm25, a title hit weighing as much as five body hits
+    static final String QUERY_SEARCH_FTS5 = SEARCH_SELECT
+            + "highlight(" + TABLE_SEARCH_INDEX + ", 0, char(2), char(3)), "
+            + "snippet(" + TABLE_SEARCH_INDEX + ", 1, char(2), char(3), '…', 12)"
+            + SEARCH_FROM
+            + " ORDER BY bm25(" + TABLE_SEARCH_INDEX + ", 5.0, 1.0) LIMIT ?";
+
+    // FTS4 has no built-in ranking, so hits come newest first
+    static final String QUERY_SEARCH_FTS4 = SEARCH_SELECT
+            + "snippet(" + TABLE_SEARCH_INDEX + ", char(2), char(3), '…', 0, 64), "
+            + "snippet(" + TABLE_SEARCH_INDEX + ", char(2), char(3), '…', 1, 12)"
+            + SEARCH_FROM
+            + " ORDER BY d." + COLUMN_SEARCH_UPDATED_AT + " DESC LIMIT ?";
+
+    // ==================== Hot writes (compiled once per connection) ====================
+
+    static final String INSERT_PAGE = "INSERT INTO " + TABLE_PAGES + " ("
+            + COLUMN_PAGE_ID + ", " + COLUMN_PAGE_NOTEBOOK_ID + ", " + COLUMN_PAGE_TITLE + ", "
+            + COLUMN_PAGE_CONTENT + ", " + COLUMN_PAGE_CONTENT_HASH + ", " + COLUMN_PAGE_CONTENT_SIZE + ", "
+            + COLUMN_PAGE_PREVIEW + ", " + COLUMN_PAGE_NUMBER + ", " + COLUMN_PAGE_CREATED_AT + ", "
+            + COLUMN_PAGE_UPDATED_AT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String UPDATE_PAGE = "UPDATE " + TABLE_PAGES + " SET "
+            + COLUMN_PAGE_TITLE + "=?, " + COLUMN_PAGE_CONTENT + "=?, " + COLUMN_PAGE_CONTENT_HASH + "=?, "
+            + COLUMN_PAGE_CONTENT_SIZE + "=?, " + COLUMN_PAGE_PREVIEW + "=?, " + COLUMN_PAGE_UPDATED_AT + "=?"
+            + " WHERE " + COLUMN_PAGE_ID + "=?";
+
+    static final String TOUCH_NOTEBOOK = "UPDATE " + TABLE_NOTEBOOKS + " SET "
+            + COLUMN_NOTEBOOK_UPDATED_AT + "=? WHERE " + COLUMN_NOTEBOOK_ID + "=?";
+
+    static final String INSERT_REMINDER = "INSERT INTO " + TABLE_REMINDERS + " ("
+            + COLUMN_REMINDER_ID + ", " + COLUMN_REMINDER_USER_ID + ", " + COLUMN_REMINDER_NOTE_ID + ", "
+            + COLUMN_REMINDER_NOTEBOOK_ID + ", " + COLUMN_REMINDER_TITLE + ", " + COLUMN_REMINDER_DESCRIPTION + ", "
+            + COLUMN_REMINDER_TYPE + ", " + COLUMN_REMINDER_TRIGGER_TYPE + ", " + COLUMN_REMINDER_SCHEDULED_AT + ", "
+            + COLUMN_REMINDER_LOCATION + ", " + COLUMN_REMINDER_LATITUDE + ", " + COLUMN_REMINDER_LONGITUDE + ", "
+            + COLUMN_REMINDER_RADIUS + ", " + COLUMN_REMINDER_REPEAT_TYPE + ", " + COLUMN_REMINDER_REPEAT_RULE + ", "
+            + COLUMN_REMINDER_PRIORITY + ", " + COLUMN_REMINDER_IS_COMPLETED + ", " + COLUMN_REMINDER_IS_NOTIFIED + ", "
+            + COLUMN_REMINDER_IS_ALL_DAY + ", " + COLUMN_REMINDER_TIMEZONE + ", " + COLUMN_REMINDER_CREATED_AT + ", "
+            + COLUMN_REMINDER_UPDATED_AT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // ==================== Hot queries ====================
+
+    static final String QUERY_USER_BY_USERNAME = "SELECT * FROM " + TABLE_USERS
+            + " WHERE " + COLUMN_USERNAME + "=?";
+
+    static final String QUERY_USER_NOTEBOOKS = "SELECT * FROM " + TABLE_NOTEBOOKS
+            + " WHERE " + COLUMN_USER_ID + "=?"
+            + " ORDER BY " + COLUMN_IS_PINNED + " DESC, " + COLUMN_NOTEBOOK_UPDATED_AT + " DESC";
+
+    // Keyset page of QUERY_USER_NOTEBOOKS. Params: user_id, then the last row's
+    // is_pinned, is_pinned, updated_at, updated_at, id, then the limit.
+    // Android's minimum SQLite has no row values, hence the expanded comparison;
+    // is_pinned<=? keeps it an index range.
+    static final String QUERY_USER_NOTEBOOKS_PAGE = "SELECT * FROM " + TABLE_NOTEBOOKS
+            + " WHERE " + COLUMN_USER_ID + "=? AND " + COLUMN_IS_PINNED + "<=?"
+            + " AND (" + COLUMN_IS_PINNED + "<? OR " + COLUMN_NOTEBOOK_UPDATED_AT + "<?"
+            + " OR (" + COLUMN_NOTEBOOK_UPDATED_AT + "=? AND " + COLUMN_NOTEBOOK_ID + "<?))"
+            + " ORDER BY " + COLUMN_IS_PINNED + " DESC, " + COLUMN_NOTEBOOK_UPDATED_AT + " DESC, "
+            + COLUMN_NOTEBOOK_ID + " DESC LIMIT ?";
+
+    static final String QUERY_NOTEBOOK_COUNT = "SELECT COUNT(*) FROM " + TABLE_NOTEBOOKS
+            + " WHERE " + COLUMN_USER_ID + "=?";
+
+    static final String QUERY_NOTEBOOK_PAGES = "SELECT * FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?"
+            + " ORDER BY " + COLUMN_PAGE_NUMBER + " ASC";
+
+    // Page list rows: everything except the content column
+    static final String QUERY_NOTEBOOK_PAGE_SUMMARIES = "SELECT " + COLUMN_PAGE_ID + ", " + COLUMN_PAGE_NOTEBOOK_ID + ", "
+            + COLUMN_PAGE_TITLE + ", " + COLUMN_PAGE_NUMBER + ", " + COLUMN_PAGE_CREATED_AT + ", "
+            + COLUMN_PAGE_UPDATED_AT + ", " + COLUMN_PAGE_CONTENT_SIZE + ", " + COLUMN_PAGE_PREVIEW
+            + " FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?"
+            + " ORDER BY " + COLUMN_PAGE_NUMBER + " ASC";
+
+    static final String QUERY_PAGE_ROW_COUNT = "SELECT COUNT(*) FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?";
+
+    static final String QUERY_FIRST_PAGE_CONTENT = "SELECT " + COLUMN_PAGE_CONTENT + ", " + COLUMN_PAGE_CONTENT_HASH
+            + " FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=?"
+            + " ORDER BY " + COLUMN_PAGE_NUMBER + " ASC LIMIT 1";
+
+    static final String QUERY_PAGE_CONTENT = "SELECT " + COLUMN_PAGE_CONTENT + ", " + COLUMN_PAGE_CONTENT_HASH
+            + " FROM " + TABLE_PAGES + " WHERE " + COLUMN_PAGE_ID + "=?";
+
+    static final String QUERY_NOTEBOOK_CONTENT_HASHES = "SELECT " + COLUMN_PAGE_CONTENT_HASH + " FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + "=? AND " + COLUMN_PAGE_CONTENT_HASH + " IS NOT NULL";
+
+    static final String QUERY_CONTENT_HASH_REFERENCED = "SELECT 1 FROM " + TABLE_PAGES
+            + " WHERE " + COLUMN_PAGE_CONTENT_HASH + "=? LIMIT 1";
+
+    static final String QUERY_USER_REMINDERS = "SELECT * FROM " + TABLE_REMINDERS
+            + " WHERE " + COLUMN_REMINDER_USER_ID + "=?"
+            + " ORDER BY " + COLUMN_REMINDER_SCHEDULED_AT + " ASC";
+
+    // Keyset page of a user's reminders scheduled in [from, to). Params: user_id,
+    // last scheduled_at (or from), to, last scheduled_at again, last id (or ""), limit
+    static final String QUERY_USER_REMINDERS_PAGE = "SELECT * FROM " + TABLE_REMINDERS
+            + " WHERE " + COLUMN_REMINDER_USER_ID + "=?"
+            + " AND " + COLUMN_REMINDER_SCHEDULED_AT + ">=? AND " + COLUMN_REMINDER_SCHEDULED_AT + "<?"
+            + " AND (" + COLUMN_REMINDER_SCHEDULED_AT + ">? OR " + COLUMN_REMINDER_ID + ">?)"
+            + " ORDER BY " + COLUMN_REMINDER_SCHEDULED_AT + " ASC, " + COLUMN_REMINDER_ID + " ASC LIMIT ?";
+
+    // As QUERY_USER_REMINDERS_PAGE for one type; the type param follows user_id
+    static final String QUERY_USER_REMINDERS_OF_TYPE_PAGE = "SELECT * FROM " + TABLE_REMINDERS
+            + " WHERE " + COLUMN_REMINDER_USER_ID + "=? AND " + COLUMN_REMINDER_TYPE + "=?"
+            + " AND " + COLUMN_REMINDER_SCHEDULED_AT + ">=? AND " + COLUMN_REMINDER_SCHEDULED_AT + "<?"
+            + " AND (" + COLUMN_REMINDER_SCHEDULED_AT + ">? OR " + COLUMN_REMINDER_ID + ">?)"
+            + " ORDER BY " + COLUMN_REMINDER_SCHEDULED_AT + " ASC, " + COLUMN_REMINDER_ID + " ASC LIMIT ?";
+
+    static final String QUERY_UPCOMING_REMINDERS = "SELECT * FROM " + TABLE_REMINDERS
+            + " WHERE " + COLUMN_REMINDER_USER_ID + "=? AND " + COLUMN_REMINDER_IS_COMPLETED + "=0 AND "
+            + COLUMN_REMINDER_SCHEDULED_AT + ">?"
+            + " ORDER BY " + COLUMN_REMINDER_SCHEDULED_AT + " ASC";
+
+    static final String QUERY_REMINDER_COUNT = "SELECT COUNT(*) FROM " + TABLE_REMINDERS
+            + " WHERE " + COLUMN_REMINDER_USER_ID + "=?";
+
+    // Keyset page of all users, newest first. Params: last created_at twice, last id, limit
+    static final String QUERY_USERS_PAGE = "SELECT * FROM " + TABLE_USERS
+            + " WHERE " + COLUMN_CREATED_AT + "<=? AND (" + COLUMN_CREATED_AT + "<? OR " + COLUMN_ID + "<?)"
+            + " ORDER BY " + COLUMN_CREATED_AT + " DESC, " + COLUMN_ID + " DESC LIMIT ?";
+}
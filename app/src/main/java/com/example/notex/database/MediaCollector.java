@@ -0,0 +1,90 @@
+package com.example.notex.database;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MediaCollector - Deletes media files that no stored page refers to.
+ *
+ * Canvas images and voice recordings are written to disk as soon as they are
+ * added, before the page is saved, and nothing removes them when an element,
+ * page or notebook goes away. Files younger than the grace period are always
+ * kept, so media of a page still open in an editor survives until it is
+ * saved. Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class MediaCollector {
+
+    /** Answers whether any stored page refers to a path */
+    public interface ReferenceCheck {
+        boolean isReferenced(String path);
+    }
+
+    /** Outcome of one collection */
+    public static final class Result {
+        public int filesScanned;
+        public int filesDeleted;
+        public long bytesReclaimed;
+
+        @Override
+        public String toString() {
+            return "deleted " + filesDeleted + " of " + filesScanned + " media files, reclaimed "
+                    + bytesReclaimed + " bytes";
+        }
+    }
+
+    private MediaCollector() {
+    }
+
+    /**
+     * Media candidates: every file in the canvas image directory (display
+     * renditions live in a subdirectory and are not listed) and the voice
+     * recordings in the recording directory. Either may be null.
+     */
+    public static List<File> listMedia(File imagesDir, File recordingsDir, String recordingPrefix) {
+        List<File> files = new ArrayList<>();
+        File[] images = imagesDir != null ? imagesDir.listFiles() : null;
+        if (images != null) {
+            for (File file : images) {
+                if (file.isFile()) {
+                    files.add(file);
+                }
+            }
+        }
+        File[] recordings = recordingsDir != null ? recordingsDir.listFiles() : null;
+        if (recordings != null) {
+            for (File file : recordings) {
+                if (file.isFile() && file.getName().startsWith(recordingPrefix)) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Delete the files that are older than the grace period and not referenced
+     */
+    public static Result collect(List<File> files, ReferenceCheck references, long graceMillis, long now) {
+        Result result = new Result();
+        for (File file : files) {
+            result.filesScanned++;
+            if (now - file.lastModified() < graceMillis || references.isReferenced(file.getAbsolutePath())) {
+                continue;
+            }
+            long size = file.length();
+            if (file.delete()) {
+                result.filesDeleted++;
+                result.bytesReclaimed += size;
+
+                // A canvas image goes together with its display rendition
+                File display = CanvasImageStore.displayFile(file);
+                long displaySize = display.length();
+                if (display.isFile() && display.delete()) {
+                    result.bytesReclaimed += displaySize;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.notex.database;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * NotebookArchive - Zip format for moving a notebook between devices.
+ *
+ * Entries, in order: {@code manifest.json} (notebook metadata, page titles
+ * and the original paths of referenced media), {@code media/<n>} for each
+ * media file, {@code pages/<n>} with each page's content, and finally
+ * {@code checksums.json} with the SHA-256 of every entry. Both sides handle
+ * one entry at a time through streams, so memory use does not grow with the
+ * size of the notebook. Media is copied with channel transfers in bounded
+ * chunks and stored without recompression. Free of Android dependencies so
+ * it can be unit tested on the JVM.
+ */
+public final class NotebookArchive {
+
+    public static final String FILE_EXTENSION = ".notex";
+    public static final String MIME_TYPE = "application/zip";
+
+    static final String FORMAT = "notex-notebook";
+    static final int VERSION = 1;
+    static final String MANIFEST_ENTRY = "manifest.json";
+    static final String CHECKSUMS_ENTRY = "checksums.json";
+    static final String MEDIA_ENTRY_PREFIX = "media/";
+    static final String PAGE_ENTRY_PREFIX = "pages/";
+
+    // Bytes moved per channel transfer; cancellation is checked between chunks
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Polled between entries and chunks; a cancelled archive job stops with an {@link InterruptedIOException} */
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+    /** Notebook metadata and the contents list, written first */
+    public static final class Manifest {
+        public String title;
+        public String color;
+        public boolean pinned;
+        public final List<String> pageTitles = new ArrayList<>();
+        /** Paths the pages refer to media by on the exporting device */
+        public final List<String> mediaPaths = new ArrayList<>();
+        /** Whether each media file is a canvas image (false: a voice recording) */
+        public final List<Boolean> mediaIsImage = new ArrayList<>();
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("format", FORMAT);
+            json.put("version", VERSION);
+            JSONObject notebook = new JSONObject();
+            notebook.put("title", title);
+            notebook.put("color", color);
+            notebook.put("pinned", pinned);
+            json.put("notebook", notebook);
+            JSONArray pages = new JSONArray();
+            for (String pageTitle : pageTitles) {
+                pages.put(new JSONObject().put("title", pageTitle));
+            }
+            json.put("pages", pages);
+            JSONArray media = new JSONArray();
+            for (int i = 0; i < mediaPaths.size(); i++) {
+                media.put(new JSONObject()
+                        .put("path", mediaPaths.get(i))
+                        .put("kind", mediaIsImage.get(i) ? "image" : "recording"));
+            }
+            json.put("media", media);
+            return json;
+        }
+
+        static Manifest fromJson(JSONObject json) throws IOException {
+            if (!FORMAT.equals(json.optString("format")) || json.optInt("version") != VERSION) {
+                throw new IOException("Not a supported notebook archive");
+            }
+            Manifest manifest = new Manifest();
+            JSONObject notebook = json.optJSONObject("notebook");
+            JSONArray pages = json.optJSONArray("pages");
+            JSONArray media = json.optJSONArray("media");
+            if (notebook == null || pages == null || media == null) {
+                throw new IOException("Incomplete archive manifest");
+            }
+            manifest.title = notebook.optString("title", "Imported notebook");
+            manifest.color = notebook.optString("color", null);
+            manifest.pinned = notebook.optBoolean("pinned", false);
+            for (int i = 0; i < pages.length(); i++) {
+                JSONObject page = pages.optJSONObject(i);
+                manifest.pageTitles.add(page != null ? page.optString("title", "") : "");
+            }
+            for (int i = 0; i < media.length(); i++) {
+                JSONObject item = media.optJSONObject(i);
+                if (item == null || item.optString("path", "").isEmpty()) {
+                    throw new IOException("Invalid media entry " + i + " in manifest");
+                }
+                manifest.mediaPaths.add(item.optString("path"));
+                manifest.mediaIsImage.add("image".equals(item.optString("kind")));
+            }
+            return manifest;
+        }
+    }
+
+    /**
+     * Writes an archive. Call {@link #writeManifest} first, then every media
+     * file and every page in manifest order, then {@link #finish}.
+     */
+    public static final class Writer implements Closeable {
+
+        private final ZipOutputStream zip;
+        private final Cancellation cancellation;
+        private final Map<String, String> checksums = new HashMap<>();
+        private final List<String> entryOrder = new ArrayList<>();
+
+        public Writer(OutputStream out, Cancellation cancellation) {
+            this.zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            this.cancellation = cancellation;
+        }
+
+        public void writeManifest(Manifest manifest) throws IOException {
+            try {
+                writeBytes(MANIFEST_ENTRY, manifest.toJson().toString().getBytes(StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                throw new IOException("Cannot write manifest", e);
+            }
+        }
+
+        /**
+         * Copy a media file into the archive with bounded channel transfers
+         */
+        public void writeMedia(int index, File file) throws IOException {
+            checkCancelled(cancellation);
+            // Images and recordings are compressed already; deflating them again only costs time
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            MessageDigest digest = newDigest();
+            String name = MEDIA_ENTRY_PREFIX + index;
+            zip.putNextEntry(new ZipEntry(name));
+            try (FileInputStream in = new FileInputStream(file);
+                 FileChannel source = in.getChannel()) {
+                WritableByteChannel target = Channels.newChannel(new DigestOutputStream(new NonClosingOutputStream(zip), digest));
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    checkCancelled(cancellation);
+                    position += source.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), target);
+                }
+            }
+            zip.closeEntry();
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+            record(name, digest);
+        }
+
+        /**
+         * Stream one page's content into the archive; null means an empty page
+         */
+        public void writePage(int index, InputStream content) throws IOException {
+            checkCancelled(cancellation);
+            MessageDigest digest = newDigest();
+            String name = PAGE_ENTRY_PREFIX + index;
+            zip.putNextEntry(new ZipEntry(name));
+            if (content != null) {
+                OutputStream out = new DigestOutputStream(new NonClosingOutputStream(zip), digest);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = content.read(buffer)) > 0) {
+                    out.write(buffer, 0, count);
+                }
+            }
+            zip.closeEntry();
+            record(name, digest);
+        }
+
+        /**
+         * Write the checksums entry and complete the zip
+         */
+        public void finish() throws IOException {
+            try {
+                JSONObject json = new JSONObject();
+                for (String name : entryOrder) {
+                    json.put(name, checksums.get(name));
+                }
+                byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+                zip.putNextEntry(new ZipEntry(CHECKSUMS_ENTRY));
+                zip.write(data);
+                zip.closeEntry();
+                zip.finish();
+            } catch (JSONException e) {
+                throw new IOException("Cannot write checksums", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+
+        private void writeBytes(String name, byte[] data) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(data);
+            zip.closeEntry();
+            MessageDigest digest = newDigest();
+            digest.update(data);
+            record(name, digest);
+        }
+
+        private void record(String name, MessageDigest digest) {
+            checksums.put(name, toHex(digest.digest()));
+            entryOrder.add(name);
+        }
+    }
+
+    /** Receives the entries of an archive being read, one at a time and in order */
+    public interface Handler {
+        void onManifest(Manifest manifest) throws IOException;
+
+        /** Consume a media file's bytes; whatever is left unread is skipped */
+        void onMedia(int index, InputStream data) throws IOException;
+
+        /** Consume a page's content; whatever is left unread is skipped */
+        void onPage(int index, InputStream data) throws IOException;
+    }
+
+    private NotebookArchive() {
+    }
+
+    /**
+     * Read an archive entry by entry. Every entry is hashed as it streams past
+     * and compared against the trailing checksums; a missing, unexpected or
+     * corrupt entry throws an IOException, after which the caller discards
+     * whatever the handler has staged. Media must come before any page, since
+     * importers rewrite page references as they go.
+     */
+    public static void read(InputStream in, Handler handler, Cancellation cancellation) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        Map<String, String> computed = new HashMap<>();
+        Manifest manifest = null;
+        JSONObject checksums = null;
+        boolean pagesStarted = false;
+
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            checkCancelled(cancellation);
+            String name = entry.getName();
+            if (checksums != null || computed.containsKey(name)) {
+                throw new IOException("Unexpected archive entry " + name);
+            }
+            MessageDigest digest = newDigest();
+            InputStream data = new DigestInputStream(new NonClosingInputStream(zip), digest);
+
+            if (manifest == null) {
+                if (!MANIFEST_ENTRY.equals(name)) {
+                    throw new IOException("Archive does not start with a manifest");
+                }
+                manifest = Manifest.fromJson(parseJson(data));
+                handler.onManifest(manifest);
+            } else if (CHECKSUMS_ENTRY.equals(name)) {
+                checksums = parseJson(data);
+                // Not covered by itself
+                continue;
+            } else if (name.startsWith(MEDIA_ENTRY_PREFIX)) {
+                if (pagesStarted) {
+                    throw new IOException("Media entry after pages: " + name);
+                }
+                handler.onMedia(entryIndex(name, MEDIA_ENTRY_PREFIX, manifest.mediaPaths.size()), data);
+            } else if (name.startsWith(PAGE_ENTRY_PREFIX)) {
+                pagesStarted = true;
+                handler.onPage(entryIndex(name, PAGE_ENTRY_PREFIX, manifest.pageTitles.size()), data);
+            } else {
+                throw new IOException("Unexpected archive entry " + name);
+            }
+
+            drain(data);
+            computed.put(name, toHex(digest.digest()));
+        }
+
+        if (manifest == null || checksums == null) {
+            throw new IOException("Archive is incomplete");
+        }
+        int expected = 1 + manifest.mediaPaths.size() + manifest.pageTitles.size();
+        if (computed.size() != expected || checksums.length() != expected) {
+            throw new IOException("Archive is missing entries");
+        }
+        for (Map.Entry<String, String> hash : computed.entrySet()) {
+            if (!hash.getValue().equals(checksums.optString(hash.getKey()))) {
+                throw new IOException("Checksum mismatch for " + hash.getKey());
+            }
+        }
+    }
+
+    /**
+     * Copy a stream into a file with bounded channel transfers, checking for
+     * cancellation between chunks. Returns the number of bytes copied.
+     */
+    public static long copyToFile(InputStream in, File target, Cancellation cancellation) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        try (FileOutputStream out = new FileOutputStream(target);
+             FileChannel channel = out.getChannel()) {
+            long position = 0;
+            long count;
+            do {
+                checkCancelled(cancellation);
+                count = channel.transferFrom(source, position, TRANSFER_CHUNK);
+                position += count;
+            } while (count > 0);
+            out.getFD().sync();
+            return position;
+        }
+    }
+
+    private static int entryIndex(String name, String prefix, int count) throws IOException {
+        try {
+            int index = Integer.parseInt(name.substring(prefix.length()));
+            if (index >= 0 && index < count) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Unexpected archive entry " + name);
+    }
+
+    private static JSONObject parseJson(InputStream data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = data.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        try {
+            return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException("Corrupt archive metadata", e);
+        }
+    }
+
+    private static void drain(InputStream data) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        //noinspection StatementWithEmptyBody
+        while (data.read(buffer) > 0) {
+        }
+    }
+
+    private static void checkCancelled(Cancellation cancellation) throws InterruptedIOException {
+        if (cancellation != null && cancellation.isCancelled()) {
+            throw new InterruptedIOException("Cancelled");
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /** Lets an entry's consumer close its stream without closing the zip */
+    private static final class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class NonClosingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.notex.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * PageBlobStore - Content-addressed file store for large page content.
+ *
+ * Each blob lives at {@code <root>/<first two hex chars>/<sha-256 hex>}, so
+ * identical content is written once no matter how many pages share it. Blobs
+ * are written to a temp file and renamed into place, so a reader never sees a
+ * partial file. Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public class PageBlobStore {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File rootDir;
+
+    public PageBlobStore(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    /**
+     * Store content and return its hash. Existing blobs are reused.
+     */
+    public String put(byte[] data) throws IOException {
+        String hash = hash(data);
+        File target = fileFor(hash);
+        if (target.exists() && target.length() == data.length) {
+            return hash;
+        }
+
+        File dir = target.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create blob directory " + dir);
+        }
+
+        File temp = new File(dir, hash + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot move blob into place: " + target);
+        }
+        return hash;
+    }
+
+    /**
+     * Read a blob's bytes as stored
+     */
+    public byte[] read(String hash) throws IOException {
+        File file = fileFor(hash);
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int count = in.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    throw new IOException("Blob shrank while reading: " + hash);
+                }
+                offset += count;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Open a blob for streaming reads. The caller closes the stream.
+     */
+    public InputStream open(String hash) throws IOException {
+        return new FileInputStream(fileFor(hash));
+    }
+
+    public boolean exists(String hash) {
+        return fileFor(hash).exists();
+    }
+
+    /**
+     * Delete a blob. The caller must make sure no page row still references it.
+     */
+    public boolean delete(String hash) {
+        File file = fileFor(hash);
+        boolean deleted = file.delete();
+        File dir = file.getParentFile();
+        String[] remaining = dir.list();
+        if (remaining != null && remaining.length == 0) {
+            dir.delete();
+        }
+        return deleted;
+    }
+
+    File fileFor(String hash) {
+        return new File(new File(rootDir, hash.substring(0, 2)), hash);
+    }
+
+    static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.notex.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * PageContentCodec - Compresses stored page content.
+ *
+ * Canvas JSON repeats the same keys on every stroke and text element, so it
+ * deflates well, and better still with a preset dictionary of those keys.
+ * Encoded content starts with a header that plain text never does (a NUL
+ * byte), which lets rows and blobs written before compression be read as
+ * they are:
+ *
+ * <pre>
+ *   0x00 'N' 'Z'   magic
+ *   version        1
+ *   dictionary     0 = none, 1 = {@link #CANVAS_DICTIONARY}
+ *   length         uncompressed UTF-8 length, 4 bytes big-endian
+ *   data           raw deflate stream
+ * </pre>
+ *
+ * Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class PageContentCodec {
+
+    static final byte VERSION = 1;
+    static final byte DICTIONARY_NONE = 0;
+    static final byte DICTIONARY_CANVAS = 1;
+
+    private static final byte[] MAGIC = { 0, 'N', 'Z' };
+    private static final int HEADER_LENGTH = MAGIC.length + 6;
+
+    /** Content shorter than this is stored as text; the header would eat most of the gain */
+    static final int MIN_ENCODE_LENGTH = 256;
+
+    /**
+     * Strings that recur in canvas JSON, as written by CanvasView and wrapped
+     * by MultiPageCanvasView. Deflate favours matches near the end of the
+     * dictionary, so the most frequent strings come last. Never change it:
+     * stored content refers to it by ID; add a new dictionary ID instead.
+     */
+    static final byte[] CANVAS_DICTIONARY = ("{\"pages\":[{\"pageNumber\":,\"content\":\"{\\\"paths\\\":[{\\\"points\\\":["
+            + "\"totalPages\":\"voices\":[{\"audioPath\":\"duration\":\"timestamp\":"
+            + "\"images\":[{\"path\":\"\\/data\\/user\\/0\\/com.example.notex\\/files\\/canvas_images\\/"
+            + "\"flipHorizontal\":false,\"flipVertical\":false,\"width\":\"height\":"
+            + "\"texts\":[{\"text\":\"textSize\":\"textColor\":\"backgroundColor\":0,"
+            + "\"isBold\":false,\"isItalic\":false,\"isUnderline\":false,\"isSticky\":false,\"rotation\":0,"
+            + "\\\"texts\\\":[],\\\"images\\\":[],\\\"voices\\\":[]}\"},"
+            + "\\\"penStyle\\\":\\\"NORMAL\\\",\\\"isDashed\\\":false,\\\"isFilled\\\":false},{\\\"points\\\":["
+            + "\\\"color\\\":-16777216,\\\"strokeWidth\\\":"
+            + "\"penStyle\":\"NORMAL\",\"isDashed\":false,\"isFilled\":false},{\"points\":["
+            + "\"color\":-16777216,\"strokeWidth\":\"x\":\"y\":]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private PageContentCodec() {
+    }
+
+    /**
+     * Compress content with the canvas dictionary. Returns null when the
+     * content is too short or would not get smaller; store it as text then.
+     */
+    public static byte[] encode(String content) {
+        if (content == null || content.length() < MIN_ENCODE_LENGTH) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setDictionary(CANVAS_DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + HEADER_LENGTH);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(VERSION);
+            out.write(DICTIONARY_CANVAS);
+            out.write(raw.length >>> 24);
+            out.write(raw.length >>> 16);
+            out.write(raw.length >>> 8);
+            out.write(raw.length);
+
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+                if (out.size() >= raw.length) {
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Whether stored bytes carry the codec header
+     */
+    public static boolean isEncoded(byte[] data) {
+        if (data == null || data.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turn stored bytes back into content: encoded data is inflated, anything
+     * else is legacy UTF-8 text and returned as is
+     */
+    public static String decode(byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+        if (!isEncoded(data)) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        if (data[3] != VERSION) {
+            throw new IOException("Unsupported page content version " + data[3]);
+        }
+        byte[] dictionary = dictionary(data[4]);
+        int length = ((data[5] & 0xFF) << 24) | ((data[6] & 0xFF) << 16) | ((data[7] & 0xFF) << 8) | (data[8] & 0xFF);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            byte[] raw = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = inflater.inflate(raw, offset, length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated page content");
+                }
+                offset += count;
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt page content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read stored bytes from a stream, e.g. an open blob, and return the
+     * content. The stream is decoded as it is read, so the stored bytes are
+     * never held whole alongside the text. The stream is closed.
+     */
+    public static String readContent(InputStream stored) throws IOException {
+        try (Reader reader = new InputStreamReader(decodingStream(stored), StandardCharsets.UTF_8)) {
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, count);
+            }
+            return content.toString();
+        }
+    }
+
+    /**
+     * Wrap a stream of stored bytes so it yields the UTF-8 content, inflating
+     * encoded data on the fly and passing legacy text through
+     */
+    public static InputStream decodingStream(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, HEADER_LENGTH);
+        byte[] header = new byte[HEADER_LENGTH];
+        int read = 0;
+        while (read < HEADER_LENGTH) {
+            int count = pushback.read(header, read, HEADER_LENGTH - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+
+        if (read < HEADER_LENGTH || !isEncoded(header)) {
+            pushback.unread(header, 0, read);
+            return pushback;
+        }
+        if (header[3] != VERSION) {
+            throw new IOException("Unsupported page content version " + header[3]);
+        }
+
+        final Inflater inflater = new Inflater(true);
+        byte[] dictionary = dictionary(header[4]);
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        return new InflaterInputStream(pushback, inflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static byte[] dictionary(byte id) throws IOException {
+        switch (id) {
+            case DICTIONARY_NONE:
+                return null;
+            case DICTIONARY_CANVAS:
+                return CANVAS_DICTIONARY;
+            default:
+                throw new IOException("Unknown page content dictionary " + id);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.notex.database;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PageMedia - Finds and rewrites the media files a page's canvas JSON refers to.
+ *
+ * Images are referenced by "images"[].path and voice recordings by
+ * "voices"[].audioPath, in a single canvas or in each page of the multi-page
+ * editor's wrapper. Legacy images embedded as base64 have no file and are
+ * skipped. Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class PageMedia {
+
+    private PageMedia() {
+    }
+
+    /**
+     * Absolute paths of all media files referenced by the content, in page order
+     */
+    public static Set<String> extractPaths(String content) {
+        Set<String> paths = new LinkedHashSet<>();
+        collectPaths(content, paths);
+        return paths;
+    }
+
+    /**
+     * Point the content's media references at new paths, e.g. where an
+     * imported archive put its files. Paths not in the map are left as they
+     * are; content that is not canvas JSON is returned unchanged.
+     */
+    public static String rewritePaths(String content, Map<String, String> newPaths) {
+        if (content == null || content.isEmpty() || newPaths.isEmpty()) {
+            return content;
+        }
+        try {
+            JSONObject json = new JSONObject(content);
+
+            JSONArray pages = json.optJSONArray("pages");
+            if (pages != null) {
+                for (int i = 0; i < pages.length(); i++) {
+                    JSONObject page = pages.optJSONObject(i);
+                    String pageContent = page != null ? page.optString("content", null) : null;
+                    if (pageContent != null) {
+                        page.put("content", rewritePaths(pageContent, newPaths));
+                    }
+                }
+            }
+
+            replacePaths(json.optJSONArray("images"), "path", newPaths);
+            replacePaths(json.optJSONArray("voices"), "audioPath", newPaths);
+            return json.toString();
+        } catch (Exception e) {
+            // Not canvas JSON: nothing to rewrite
+            return content;
+        }
+    }
+
+    private static void collectPaths(String content, Set<String> paths) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(content);
+
+            JSONArray pages = json.optJSONArray("pages");
+            if (pages != null) {
+                for (int i = 0; i < pages.length(); i++) {
+                    JSONObject page = pages.optJSONObject(i);
+                    if (page != null) {
+                        collectPaths(page.optString("content", null), paths);
+                    }
+                }
+            }
+
+            addPaths(json.optJSONArray("images"), "path", paths);
+            addPaths(json.optJSONArray("voices"), "audioPath", paths);
+        } catch (Exception e) {
+            // Not canvas JSON: no media
+        }
+    }
+
+    private static void addPaths(JSONArray elements, String key, Set<String> paths) {
+        if (elements == null) {
+            return;
+        }
+        for (int i = 0; i < elements.length(); i++) {
+            JSONObject element = elements.optJSONObject(i);
+            String path = element != null ? element.optString(key, "") : "";
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+    }
+
+    private static void replacePaths(JSONArray elements, String key, Map<String, String> newPaths) throws JSONException {
+        if (elements == null) {
+            return;
+        }
+        for (int i = 0; i < elements.length(); i++) {
+            JSONObject element = elements.optJSONObject(i);
+            String newPath = element != null ? newPaths.get(element.optString(key, "")) : null;
+            if (newPath != null) {
+                element.put(key, newPath);
+            }
+        }
+    }
+}
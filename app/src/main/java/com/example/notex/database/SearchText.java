@@ -0,0 +1,111 @@
+package com.example.notex.database;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SearchText - Builds full-text index documents and MATCH expressions.
+ *
+ * Page content is canvas JSON, either a single canvas ({"texts": [...]}) or
+ * the multi-page editor's wrapper whose "pages" entries hold canvas JSON as a
+ * string. Only typed text and sticky notes are searchable; strokes, images and
+ * voice clips carry no text. Free of Android dependencies so it can be unit
+ * tested on the JVM.
+ */
+public final class SearchText {
+
+    /** Upper bound on terms taken from one query, so a pasted paragraph stays cheap */
+    static final int MAX_QUERY_TERMS = 8;
+
+    private SearchText() {
+    }
+
+    /**
+     * Turn free-form user input into an FTS MATCH expression: every word
+     * becomes a prefix term and all terms must match. Punctuation and FTS
+     * operators in the input are dropped, so the result is always valid.
+     * Returns null if the input contains no searchable words.
+     */
+    public static String toMatchQuery(String input) {
+        if (input == null) {
+            return null;
+        }
+
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= input.length() && terms.size() < MAX_QUERY_TERMS; i++) {
+            char c = i < input.length() ? input.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (term.length() > 0) {
+                // Lower case so words like "and" / "or" are never read as operators
+                terms.add(term.toString().toLowerCase(Locale.ROOT) + "*");
+                term.setLength(0);
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+
+    /**
+     * Extract the searchable text of a page: one line per text element, in
+     * page order. Returns an empty string for content without text.
+     */
+    public static String extractPageText(String content) {
+        StringBuilder text = new StringBuilder();
+        appendCanvasText(content, text);
+        return text.toString().trim();
+    }
+
+    private static void appendCanvasText(String content, StringBuilder text) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(content);
+
+            JSONArray pages = json.optJSONArray("pages");
+            if (pages != null) {
+                for (int i = 0; i < pages.length(); i++) {
+                    JSONObject page = pages.optJSONObject(i);
+                    if (page != null) {
+                        appendCanvasText(page.optString("content", null), text);
+                    }
+                }
+            }
+
+            JSONArray texts = json.optJSONArray("texts");
+            if (texts != null) {
+                for (int i = 0; i < texts.length(); i++) {
+                    JSONObject element = texts.optJSONObject(i);
+                    String value = element != null ? element.optString("text", "") : "";
+                    if (!value.trim().isEmpty()) {
+                        text.append(value.trim()).append('\n');
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Not canvas JSON: index it as plain text
+            text.append(content).append('\n');
+        }
+    }
+
+    /**
+     * Join the non-empty parts of a document body with newlines
+     */
+    public static String join(String... parts) {
+        StringBuilder body = new StringBuilder();
+        for (String part : parts) {
+            if (part != null && !part.trim().isEmpty()) {
+                if (body.length() > 0) {
+                    body.append('\n');
+                }
+                body.append(part.trim());
+            }
+        }
+        return body.toString();
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.notex.export;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * ImagePdfWriter - Writes a PDF with one full-page image per page.
+ *
+ * Unlike PdfDocument, which stores every bitmap as lossless RGB, the image
+ * is embedded in the encoding it is given: JPEG data as is (DCTDecode), so a
+ * camera photo needs no re-encoding, or 1-bit black-and-white pixels
+ * compressed with Flate. Each page goes to the stream as soon as it is
+ * added, so only one page is held in memory. The file only grows, so the
+ * {@link State} after any page is a checkpoint: cut the file back to its
+ * length and {@link #resume} to carry on. Free of Android dependencies so it
+ * can be unit tested on the JVM.
+ */
+public class ImagePdfWriter {
+
+    // Objects 1 and 2 are written last, once every page is known
+    private static final int CATALOG_OBJECT = 1;
+    private static final int PAGES_OBJECT = 2;
+
+    /** An encoded image ready to embed */
+    public static final class Image {
+        final int width;
+        final int height;
+        final String colorSpace;
+        final int bitsPerComponent;
+        final String filter;
+        final byte[] data;
+
+        private Image(int width, int height, String colorSpace, int bitsPerComponent, String filter, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.colorSpace = colorSpace;
+            this.bitsPerComponent = bitsPerComponent;
+            this.filter = filter;
+            this.data = data;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Embed JPEG data unchanged. Size and colour space come from its frame header.
+         */
+        public static Image jpeg(byte[] data) throws IOException {
+            int[] frame = readJpegFrame(data);
+            String colorSpace;
+            switch (frame[2]) {
+                case 1:
+                    colorSpace = "/DeviceGray";
+                    break;
+                case 3:
+                    colorSpace = "/DeviceRGB";
+                    break;
+                default:
+                    throw new IOException("Unsupported JPEG with " + frame[2] + " components");
+            }
+            return new Image(frame[0], frame[1], colorSpace, 8, "/DCTDecode", data);
+        }
+
+        /**
+         * Black-and-white pixels, rows packed 8 to a byte from the high bit and
+         * padded to whole bytes; a set bit is white
+         */
+        public static Image bilevel(byte[] packedRows, int width, int height) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(packedRows.length / 8 + 64);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                out.write(packedRows);
+            } catch (IOException e) {
+                // Cannot happen writing to memory
+                throw new IllegalStateException(e);
+            } finally {
+                deflater.end();
+            }
+            return new Image(width, height, "/DeviceGray", 1, "/FlateDecode", compressed.toByteArray());
+        }
+    }
+
+    /** Bytes written and objects placed so far */
+    public static final class State {
+        final long length;
+        final List<Long> objectOffsets;
+        final List<Integer> pageObjects;
+
+        State(long length, List<Long> objectOffsets, List<Integer> pageObjects) {
+            this.length = length;
+            this.objectOffsets = objectOffsets;
+            this.pageObjects = pageObjects;
+        }
+
+        /** Length the file must be cut back to before resuming */
+        public long getLength() {
+            return length;
+        }
+
+        public JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("length", length)
+                    .put("objects", new JSONArray(objectOffsets))
+                    .put("pages", new JSONArray(pageObjects));
+        }
+
+        public static State fromJson(JSONObject json) throws JSONException {
+            JSONArray objects = json.getJSONArray("objects");
+            List<Long> objectOffsets = new ArrayList<>(objects.length());
+            for (int i = 0; i < objects.length(); i++) {
+                objectOffsets.add(objects.getLong(i));
+            }
+            JSONArray pages = json.getJSONArray("pages");
+            List<Integer> pageObjects = new ArrayList<>(pages.length());
+            for (int i = 0; i < pages.length(); i++) {
+                pageObjects.add(pages.getInt(i));
+            }
+            return new State(json.getLong("length"), objectOffsets, pageObjects);
+        }
+    }
+
+    private final CountingOutputStream out;
+    private final List<Long> objectOffsets;
+    private final List<Integer> pageObjects;
+
+    public ImagePdfWriter(OutputStream out) throws IOException {
+        this(out, new State(0, new ArrayList<>(), new ArrayList<>()));
+        // Reserve the catalog and page tree
+        objectOffsets.add(0L);
+        objectOffsets.add(0L);
+        // A comment with high bytes marks the file as binary for transfer tools
+        write("%PDF-1.4\n");
+        this.out.write(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+    }
+
+    private ImagePdfWriter(OutputStream out, State state) {
+        this.out = new CountingOutputStream(out);
+        this.out.count = state.length;
+        objectOffsets = new ArrayList<>(state.objectOffsets);
+        pageObjects = new ArrayList<>(state.pageObjects);
+    }
+
+    /**
+     * Carry on writing a document from a checkpoint
+     *
+     * @param out appends to the file after it was cut back to {@link State#getLength()}
+     */
+    public static ImagePdfWriter resume(OutputStream out, State state) {
+        return new ImagePdfWriter(out, state);
+    }
+
+    /**
+     * Add a page of the given size in points with the image scaled to fit and centered
+     */
+    public void addPage(Image image, float pageWidth, float pageHeight) throws IOException {
+        float scale = Math.min(pageWidth / image.width, pageHeight / image.height);
+        float drawWidth = image.width * scale;
+        float drawHeight = image.height * scale;
+        float x = (pageWidth - drawWidth) / 2;
+        float y = (pageHeight - drawHeight) / 2;
+
+        int imageObject = beginObject();
+        write("<< /Type /XObject /Subtype /Image /Width " + image.width + " /Height " + image.height
+                + " /ColorSpace " + image.colorSpace + " /BitsPerComponent " + image.bitsPerComponent
+                + " /Filter " + image.filter + " /Length " + image.data.length + " >>\nstream\n");
+        out.write(image.data);
+        write("\nendstream\nendobj\n");
+
+        byte[] content = ("q " + number(drawWidth) + " 0 0 " + number(drawHeight) + " " + number(x) + " "
+                + number(y) + " cm /Im0 Do Q").getBytes(StandardCharsets.US_ASCII);
+        int contentObject = beginObject();
+        write("<< /Length " + content.length + " >>\nstream\n");
+        out.write(content);
+        write("\nendstream\nendobj\n");
+
+        int pageObject = beginObject();
+        write("<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R /MediaBox [0 0 " + number(pageWidth) + " "
+                + number(pageHeight) + "] /Resources << /XObject << /Im0 " + imageObject + " 0 R >> >>"
+                + " /Contents " + contentObject + " 0 R >>\nendobj\n");
+        pageObjects.add(pageObject);
+    }
+
+    public int getPageCount() {
+        return pageObjects.size();
+    }
+
+    /**
+     * Checkpoint after the last page added. Flush the stream before relying on it.
+     */
+    public State getState() {
+        return new State(out.count, new ArrayList<>(objectOffsets), new ArrayList<>(pageObjects));
+    }
+
+    /**
+     * Write the page tree, cross-reference table and trailer. The underlying
+     * stream is flushed but left open.
+     */
+    public void finish() throws IOException {
+        StringBuilder kids = new StringBuilder();
+        for (int page : pageObjects) {
+            kids.append(page).append(" 0 R ");
+        }
+        objectOffsets.set(PAGES_OBJECT - 1, out.count);
+        write(PAGES_OBJECT + " 0 obj\n<< /Type /Pages /Kids [" + kids + "] /Count " + pageObjects.size()
+                + " >>\nendobj\n");
+        objectOffsets.set(CATALOG_OBJECT - 1, out.count);
+        write(CATALOG_OBJECT + " 0 obj\n<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>\nendobj\n");
+
+        long xrefOffset = out.count;
+        StringBuilder xref = new StringBuilder();
+        xref.append("xref\n0 ").append(objectOffsets.size() + 1).append("\n0000000000 65535 f \n");
+        for (long offset : objectOffsets) {
+            xref.append(String.format(Locale.US, "%010d 00000 n \n", offset));
+        }
+        xref.append("trailer\n<< /Size ").append(objectOffsets.size() + 1)
+                .append(" /Root ").append(CATALOG_OBJECT).append(" 0 R >>\nstartxref\n")
+                .append(xrefOffset).append("\n%%EOF\n");
+        write(xref.toString());
+        out.flush();
+    }
+
+    private int beginObject() throws IOException {
+        objectOffsets.add(out.count);
+        int number = objectOffsets.size();
+        write(number + " 0 obj\n");
+        return number;
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String number(float value) {
+        return String.format(Locale.US, "%.2f", value);
+    }
+
+    /**
+     * Width, height and component count from a JPEG's start-of-frame header
+     */
+    static int[] readJpegFrame(byte[] data) throws IOException {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            throw new IOException("Not a JPEG");
+        }
+        int i = 2;
+        while (i + 4 <= data.length) {
+            if ((data[i] & 0xFF) != 0xFF) {
+                throw new IOException("Corrupt JPEG marker at " + i);
+            }
+            int marker = data[i + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte
+                i++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // Markers without a length
+                i += 2;
+                continue;
+            }
+            int length = ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                if (i + 9 >= data.length) {
+                    break;
+                }
+                int height = ((data[i + 5] & 0xFF) << 8) | (data[i + 6] & 0xFF);
+                int width = ((data[i + 7] & 0xFF) << 8) | (data[i + 8] & 0xFF);
+                int components = data[i + 9] & 0xFF;
+                return new int[]{width, height, components};
+            }
+            i += 2 + length;
+        }
+        throw new IOException("JPEG has no frame header");
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.notex.export;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.pdf.PdfDocument;
+
+import com.example.notex.database.CanvasImageStore;
+import com.example.notex.database.CanvasPages;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * NotebookPdfExporter - Renders notebook pages into a PDF document.
+ *
+ * Stored pages are pulled one at a time from a {@link PageSource}, and a page
+ * saved by the multi-page editor is expanded into the canvases it holds, each
+ * becoming its own PDF page. Images are drawn from their display renditions,
+ * decoded at the {@link PdfProfile}'s resolution for the size they appear
+ * at, and shared between pages that repeat them.
+ *
+ * With more than one render thread, pages are prepared in parallel: a worker
+ * parses the canvas JSON, decodes its images and lays out its text while
+ * recording into a {@link Picture}. PdfDocument pages must be added in order,
+ * so the exporting thread replays the pictures in page order out of a
+ * bounded reorder buffer; at most a few pages per thread are ever in flight.
+ * With one thread, each page is drawn straight into the document.
+ */
+public class NotebookPdfExporter {
+
+    // A4 in PDF points
+    public static final int PAGE_WIDTH = 595;
+    public static final int PAGE_HEIGHT = 842;
+
+    private static final int IMAGE_CACHE_ENTRIES = 8;
+    // Prepared pages waiting to be written, per render thread
+    private static final int PAGES_IN_FLIGHT_PER_THREAD = 2;
+
+    /** Supplies stored page content in page order */
+    public interface PageSource {
+        /**
+         * Content of the next stored page ("" for an empty one), or null when
+         * there are no more. Throw to abort the export, e.g. an
+         * InterruptedIOException when it was cancelled.
+         */
+        String next() throws IOException;
+    }
+
+    // Shared by the render threads; guarded by itself
+    private final Map<String, Bitmap> imageCache = new LinkedHashMap<String, Bitmap>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bitmap> eldest) {
+            return size() > IMAGE_CACHE_ENTRIES;
+        }
+    };
+
+    private final int renderThreads;
+    private final PdfProfile profile;
+
+    /**
+     * Exporter that draws each page straight into the document on the calling thread
+     */
+    public NotebookPdfExporter() {
+        this(1, PdfProfile.PRINT);
+    }
+
+    /**
+     * @param renderThreads pages prepared in parallel, e.g. the number of cores
+     * @param profile resolution images are decoded at
+     */
+    public NotebookPdfExporter(int renderThreads, PdfProfile profile) {
+        this.renderThreads = Math.max(1, renderThreads);
+        this.profile = profile;
+    }
+
+    /**
+     * Render every page the source supplies and write the PDF. Returns the
+     * number of PDF pages written.
+     */
+    public int export(PageSource pages, OutputStream out) throws IOException {
+        PdfDocument document = new PdfDocument();
+        ExecutorService renderers = renderThreads > 1 ? Executors.newFixedThreadPool(renderThreads) : null;
+        // Reorder buffer: pages in submission order, written as soon as the oldest is ready
+        ArrayDeque<Future<Picture>> inFlight = new ArrayDeque<>();
+        int maxInFlight = renderThreads * PAGES_IN_FLIGHT_PER_THREAD;
+        try {
+            int pdfPages = 0;
+            String content;
+            while ((content = pages.next()) != null) {
+                for (String canvas : CanvasPages.split(content)) {
+                    if (renderers == null) {
+                        PdfDocument.Page page = startPage(document, ++pdfPages);
+                        page.getCanvas().drawColor(Color.WHITE);
+                        renderCanvas(canvas, page.getCanvas());
+                        document.finishPage(page);
+                        continue;
+                    }
+                    if (inFlight.size() == maxInFlight) {
+                        writePicture(document, ++pdfPages, inFlight.removeFirst());
+                    }
+                    inFlight.addLast(renderers.submit(() -> record(canvas)));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writePicture(document, ++pdfPages, inFlight.removeFirst());
+            }
+            document.writeTo(out);
+            return pdfPages;
+        } finally {
+            if (renderers != null) {
+                for (Future<Picture> pending : inFlight) {
+                    pending.cancel(true);
+                }
+                renderers.shutdownNow();
+            }
+            document.close();
+            synchronized (imageCache) {
+                imageCache.clear();
+            }
+        }
+    }
+
+    private static PdfDocument.Page startPage(PdfDocument document, int pageNumber) {
+        return document.startPage(new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageNumber).create());
+    }
+
+    /**
+     * Wait for a prepared page and replay it into the next PDF page
+     */
+    private static void writePicture(PdfDocument document, int pageNumber, Future<Picture> prepared)
+            throws IOException {
+        Picture picture;
+        try {
+            picture = prepared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering page " + pageNumber);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot render page " + pageNumber, e.getCause());
+        }
+        PdfDocument.Page page = startPage(document, pageNumber);
+        page.getCanvas().drawPicture(picture);
+        document.finishPage(page);
+    }
+
+    /**
+     * Prepare one page on a render thread
+     */
+    private Picture record(String content) {
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(PAGE_WIDTH, PAGE_HEIGHT);
+        canvas.drawColor(Color.WHITE);
+        renderCanvas(content, canvas);
+        picture.endRecording();
+        return picture;
+    }
+
+    /**
+     * Draw one canvas's JSON the way CanvasView shows it, minus selection UI
+     */
+    void renderCanvas(String content, Canvas canvas) {
+        if (content == null || content.isEmpty()) {
+            Paint paint = new Paint();
+            paint.setColor(Color.LTGRAY);
+            paint.setTextSize(18f);
+            paint.setAntiAlias(true);
+            canvas.drawText("Empty page", 50, 100, paint);
+            return;
+        }
+
+        try {
+            JSONObject json = new JSONObject(content);
+            drawPaths(json.optJSONArray("paths"), canvas);
+            drawTexts(json.optJSONArray("texts"), canvas);
+            drawImages(json.optJSONArray("images"), canvas);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Paint paint = new Paint();
+            paint.setColor(Color.RED);
+            paint.setTextSize(14f);
+            paint.setAntiAlias(true);
+            canvas.drawText("Error rendering page: " + e.getMessage(), 50, 100, paint);
+        }
+    }
+
+    private void drawPaths(JSONArray paths, Canvas canvas) throws Exception {
+        if (paths == null) {
+            return;
+        }
+        for (int i = 0; i < paths.length(); i++) {
+            JSONObject pathObj = paths.getJSONObject(i);
+            JSONArray points = pathObj.getJSONArray("points");
+
+            Paint paint = new Paint();
+            paint.setColor(pathObj.optInt("color", Color.BLACK));
+            paint.setStrokeWidth((float) pathObj.optDouble("strokeWidth", 5.0));
+            paint.setAntiAlias(true);
+            if (pathObj.optBoolean("isFilled", false)) {
+                paint.setStyle(Paint.Style.FILL);
+            } else {
+                paint.setStyle(Paint.Style.STROKE);
+                paint.setStrokeJoin(Paint.Join.ROUND);
+                paint.setStrokeCap(Paint.Cap.ROUND);
+            }
+            if (pathObj.optBoolean("isDashed", false)) {
+                paint.setPathEffect(new DashPathEffect(new float[] { 20, 10 }, 0));
+            }
+
+            Path path = new Path();
+            if (points.length() >= 2) {
+                path.moveTo((float) points.getDouble(0), (float) points.getDouble(1));
+                for (int j = 2; j + 1 < points.length(); j += 2) {
+                    path.lineTo((float) points.getDouble(j), (float) points.getDouble(j + 1));
+                }
+            }
+            canvas.drawPath(path, paint);
+        }
+    }
+
+    private void drawTexts(JSONArray texts, Canvas canvas) throws Exception {
+        if (texts == null) {
+            return;
+        }
+        for (int i = 0; i < texts.length(); i++) {
+            JSONObject textObj = texts.getJSONObject(i);
+            String text = textObj.optString("text", "");
+            float x = (float) textObj.optDouble("x", 0);
+            float y = (float) textObj.optDouble("y", 0);
+            float rotation = (float) textObj.optDouble("rotation", 0);
+            int bgColor = textObj.optInt("backgroundColor", Color.TRANSPARENT);
+            boolean isBold = textObj.optBoolean("isBold", false);
+            boolean isItalic = textObj.optBoolean("isItalic", false);
+
+            Paint textPaint = new Paint();
+            textPaint.setColor(textObj.optInt("textColor", Color.BLACK));
+            textPaint.setTextSize((float) textObj.optDouble("textSize", 40.0));
+            textPaint.setUnderlineText(textObj.optBoolean("isUnderline", false));
+            textPaint.setAntiAlias(true);
+            int style = Typeface.NORMAL;
+            if (isBold && isItalic) {
+                style = Typeface.BOLD_ITALIC;
+            } else if (isBold) {
+                style = Typeface.BOLD;
+            } else if (isItalic) {
+                style = Typeface.ITALIC;
+            }
+            textPaint.setTypeface(Typeface.create(Typeface.DEFAULT, style));
+
+            String[] lines = text.split("\n", -1);
+            Paint.FontMetrics fm = textPaint.getFontMetrics();
+            float lineHeight = fm.descent - fm.ascent;
+
+            canvas.save();
+            if (rotation != 0) {
+                canvas.rotate(rotation, x, y);
+            }
+            if (textObj.optBoolean("isSticky", false) && bgColor != Color.TRANSPARENT) {
+                float textWidth = 0;
+                for (String line : lines) {
+                    textWidth = Math.max(textWidth, textPaint.measureText(line));
+                }
+                Paint bgPaint = new Paint();
+                bgPaint.setColor(bgColor);
+                bgPaint.setStyle(Paint.Style.FILL);
+                canvas.drawRect(x - 10, y + fm.ascent - 10, x + textWidth + 10,
+                        y + (lines.length - 1) * lineHeight + fm.descent + 10, bgPaint);
+            }
+            float lineY = y;
+            for (String line : lines) {
+                canvas.drawText(line, x, lineY, textPaint);
+                lineY += lineHeight;
+            }
+            canvas.restore();
+        }
+    }
+
+    private void drawImages(JSONArray images, Canvas canvas) throws Exception {
+        if (images == null) {
+            return;
+        }
+        for (int i = 0; i < images.length(); i++) {
+            JSONObject imageObj = images.getJSONObject(i);
+            String path = imageObj.optString("path", "");
+            if (path.isEmpty()) {
+                continue;
+            }
+            float x = (float) imageObj.optDouble("x", 50);
+            float y = (float) imageObj.optDouble("y", 50);
+            float width = (float) imageObj.optDouble("width", 200);
+            float height = (float) imageObj.optDouble("height", 200);
+            Bitmap bitmap = loadImage(path, width, height);
+            if (bitmap == null) {
+                continue;
+            }
+
+            float centerX = x + width / 2;
+            float centerY = y + height / 2;
+            canvas.save();
+            canvas.translate(centerX, centerY);
+            canvas.rotate((float) imageObj.optDouble("rotation", 0));
+            canvas.scale(imageObj.optBoolean("flipHorizontal", false) ? -1f : 1f,
+                    imageObj.optBoolean("flipVertical", false) ? -1f : 1f);
+            canvas.translate(-centerX, -centerY);
+            canvas.drawBitmap(bitmap, null, new RectF(x, y, x + width, y + height), null);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Decode an image no larger than needed for the area it is drawn in;
+     * repeated images come from the cache
+     */
+    private Bitmap loadImage(String path, float width, float height) {
+        int targetWidth = profile.pixelsFor(width);
+        int targetHeight = profile.pixelsFor(height);
+        String file = CanvasImageStore.displayPath(path);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file, options);
+        if ((options.outWidth < targetWidth || options.outHeight < targetHeight) && !file.equals(path)) {
+            // The display rendition is too small for this profile; sample the original instead
+            file = path;
+            BitmapFactory.decodeFile(file, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= targetWidth
+                && options.outHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+
+        String key = file + "@" + sampleSize;
+        synchronized (imageCache) {
+            Bitmap cached = imageCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Decoded outside the lock so render threads do not wait on each other's images
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(file, options);
+        if (bitmap != null) {
+            synchronized (imageCache) {
+                imageCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+}
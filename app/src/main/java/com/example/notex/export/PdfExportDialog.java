@@ -0,0 +1,54 @@
+package com.example.notex.export;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.widget.Toast;
+
+import com.example.notex.jobs.JobManager;
+import com.example.notex.repository.NoteRepository;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * PdfExportDialog - Asks for a {@link PdfProfile} and queues a notebook PDF
+ * export as a background job. The PDF is saved to My Documents
+ * (scanned_documents).
+ */
+public final class PdfExportDialog {
+
+    private PdfExportDialog() {
+    }
+
+    public static void start(Activity activity, String notebookId, String pdfName) {
+        chooseProfile(activity, profile -> export(activity, notebookId, pdfName, profile));
+    }
+
+    /**
+     * Let the user pick the quality of a PDF; nothing is called back if they cancel
+     */
+    public static void chooseProfile(Activity activity, NoteRepository.Callback<PdfProfile> callback) {
+        new AlertDialog.Builder(activity)
+                .setTitle("PDF quality")
+                .setItems(PdfProfile.labels(), (dialog, which) -> callback.onResult(PdfProfile.values()[which]))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static void export(Activity activity, String notebookId, String pdfName, PdfProfile profile) {
+        File docsDir = new File(activity.getExternalFilesDir(null), "scanned_documents");
+        if (!docsDir.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            docsDir.mkdirs();
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        String fileName = pdfName.replaceAll("[^a-zA-Z0-9]", "_") + "_" + timestamp + ".pdf";
+        File pdfFile = new File(docsDir, fileName);
+
+        JobManager.getInstance(activity).exportNotebookPdf(notebookId, pdfFile, profile);
+        Toast.makeText(activity, "Exporting in the background; progress is shown in notifications",
+                Toast.LENGTH_LONG).show();
+    }
+}
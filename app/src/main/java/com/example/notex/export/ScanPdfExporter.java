@@ -0,0 +1,199 @@
+package com.example.notex.export;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * ScanPdfExporter - Writes scanned pages into a PDF sized by a {@link PdfProfile}.
+ *
+ * Each image gets an A4 page in its own orientation and is downsampled once
+ * to the profile's resolution over the area it fills. A colour photo that
+ * is already a JPEG no larger than that is embedded byte for byte; other
+ * pages are encoded as {@link ScanPageEncoder} decides. Pages are decoded,
+ * encoded and written one at a time.
+ */
+public class ScanPdfExporter {
+
+    // A4 in PDF points
+    private static final float A4_SHORT_SIDE = 595f;
+    private static final float A4_LONG_SIDE = 842f;
+
+    private final PdfProfile profile;
+
+    public ScanPdfExporter(PdfProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Export image files in order, skipping any that cannot be decoded.
+     * Returns the number of pages written.
+     */
+    public int exportFiles(List<String> paths, OutputStream out) throws IOException {
+        ImagePdfWriter writer = new ImagePdfWriter(out);
+        for (String path : paths) {
+            addFile(writer, path);
+        }
+        writer.finish();
+        return writer.getPageCount();
+    }
+
+    /**
+     * Add one image file as the next page. Returns false if it cannot be decoded.
+     */
+    public boolean addFile(ImagePdfWriter writer, String path) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return false;
+        }
+        float[] page = pageSize(options.outWidth, options.outHeight);
+        int[] target = targetSize(options.outWidth, options.outHeight, page);
+        boolean fitsAsIs = options.outWidth <= target[0] && "image/jpeg".equals(options.outMimeType);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= target[0]
+                && options.outHeight / (sampleSize * 2) >= target[1]) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            return false;
+        }
+        try {
+            addPage(writer, bitmap, target, page, fitsAsIs ? new File(path) : null);
+            return true;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Export bitmaps already in memory, e.g. pages of a scan in progress. The
+     * bitmaps are not recycled. Returns the number of pages written.
+     */
+    public int exportBitmaps(List<Bitmap> bitmaps, OutputStream out) throws IOException {
+        ImagePdfWriter writer = new ImagePdfWriter(out);
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap == null || bitmap.isRecycled()) {
+                continue;
+            }
+            float[] page = pageSize(bitmap.getWidth(), bitmap.getHeight());
+            addPage(writer, bitmap, targetSize(bitmap.getWidth(), bitmap.getHeight(), page), page, null);
+        }
+        writer.finish();
+        return writer.getPageCount();
+    }
+
+    /**
+     * Downsample to the target, pick the encoding and write the page
+     *
+     * @param sourceJpeg the JPEG the bitmap was decoded from, when it can be embedded unchanged
+     */
+    private void addPage(ImagePdfWriter writer, Bitmap bitmap, int[] target, float[] page, File sourceJpeg)
+            throws IOException {
+        Bitmap scaled = bitmap.getWidth() > target[0]
+                ? Bitmap.createScaledBitmap(bitmap, target[0], target[1], true)
+                : bitmap;
+        try {
+            int width = scaled.getWidth();
+            int height = scaled.getHeight();
+            ScanPageEncoder.Rows rows = (y, row) -> scaled.getPixels(row, 0, width, 0, y, width, 1);
+            ScanPageEncoder.Kind kind = ScanPageEncoder.classify(rows, width, height);
+
+            ImagePdfWriter.Image image = null;
+            if (kind == ScanPageEncoder.Kind.COLOR && sourceJpeg != null) {
+                try {
+                    image = ImagePdfWriter.Image.jpeg(readFile(sourceJpeg));
+                } catch (IOException e) {
+                    // e.g. a CMYK JPEG; encode it again below
+                    image = null;
+                }
+            }
+            if (image == null) {
+                image = kind == ScanPageEncoder.Kind.BILEVEL
+                        ? ScanPageEncoder.bilevel(rows, width, height)
+                        : encodeJpeg(scaled, kind == ScanPageEncoder.Kind.GRAY);
+            }
+            writer.addPage(image, page[0], page[1]);
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
+    }
+
+    private ImagePdfWriter.Image encodeJpeg(Bitmap bitmap, boolean gray) throws IOException {
+        Bitmap source = bitmap;
+        if (gray || bitmap.hasAlpha()) {
+            // JPEG has no alpha, so transparent areas go on white; grey pages drop the colour noise
+            source = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(source);
+            canvas.drawColor(Color.WHITE);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            if (gray) {
+                ColorMatrix matrix = new ColorMatrix();
+                matrix.setSaturation(0);
+                paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+            }
+            canvas.drawBitmap(bitmap, 0, 0, paint);
+        }
+        try {
+            ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+            if (!source.compress(Bitmap.CompressFormat.JPEG, profile.jpegQuality, jpeg)) {
+                throw new IOException("Cannot encode page as JPEG");
+            }
+            return ImagePdfWriter.Image.jpeg(jpeg.toByteArray());
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
+            }
+        }
+    }
+
+    /**
+     * A4 in the image's orientation
+     */
+    private static float[] pageSize(int width, int height) {
+        return width > height
+                ? new float[]{A4_LONG_SIDE, A4_SHORT_SIDE}
+                : new float[]{A4_SHORT_SIDE, A4_LONG_SIDE};
+    }
+
+    /**
+     * Pixel size the image needs where it is drawn on the page; never larger than it is
+     */
+    private int[] targetSize(int width, int height, float[] page) {
+        float scale = Math.min(page[0] / width, page[1] / height);
+        int targetWidth = Math.min(width, profile.pixelsFor(width * scale));
+        int targetHeight = Math.min(height, Math.max(1, Math.round((float) height * targetWidth / width)));
+        return new int[]{targetWidth, targetHeight};
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[16 * 1024];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                data.write(buffer, 0, count);
+            }
+            return data.toByteArray();
+        }
+    }
+}
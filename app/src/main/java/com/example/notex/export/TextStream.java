@@ -0,0 +1,129 @@
+package com.example.notex.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * TextStream - A window onto a text file that is read a chunk at a time, so
+ * a file of any size can be laid out page by page with only about a page of
+ * text in memory.
+ *
+ * Callers fill the window with at least as much text as a page can hold,
+ * lay out what it shows, and consume the part that made it onto the page.
+ * Line endings are turned into "\n" as the text is read, and text that does
+ * not end with one gets one, as reading it line by line would give. Free of
+ * Android dependencies so it can be unit tested on the JVM.
+ */
+public final class TextStream implements Closeable {
+
+    private static final int READ_CHARS = 4096;
+
+    private final Reader reader;
+    private char[] buffer = new char[READ_CHARS];
+    private int start;
+    private int end;
+    private long consumed;
+    private boolean exhausted;
+    private boolean afterReturn;
+
+    public TextStream(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read until at least minChars unconsumed characters are in the window,
+     * or the text ends
+     *
+     * @return the unconsumed text; valid until the next call to fill or consume
+     */
+    public CharSequence fill(int minChars) throws IOException {
+        while (!exhausted && end - start < minChars) {
+            makeRoom(end - start + READ_CHARS);
+            int read = reader.read(buffer, end, Math.min(READ_CHARS, buffer.length - end));
+            if (read < 0) {
+                exhausted = true;
+                if (end > start && buffer[end - 1] != '\n') {
+                    makeRoom(end - start + 1);
+                    buffer[end++] = '\n';
+                }
+            } else {
+                end = normalizeLineEnds(end, end + read);
+            }
+        }
+        return CharBuffer.wrap(buffer, start, end - start);
+    }
+
+    /**
+     * Drop the first count characters of the window, e.g. the ones laid out on a finished page
+     */
+    public void consume(int count) {
+        if (count < 0 || count > end - start) {
+            throw new IllegalArgumentException("Cannot consume " + count + " of " + (end - start) + " characters");
+        }
+        start += count;
+        consumed += count;
+    }
+
+    /** Whether the whole text has been read and consumed */
+    public boolean isFinished() {
+        return exhausted && start == end;
+    }
+
+    /** Whether the whole text has been read into the window */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /** Characters consumed so far */
+    public long consumed() {
+        return consumed;
+    }
+
+    /** Size of the window's buffer, in characters */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Move the unconsumed text to the front, growing the buffer only if it cannot hold size characters
+     */
+    private void makeRoom(int size) {
+        if (buffer.length - start >= size) {
+            return;
+        }
+        int length = end - start;
+        char[] target = buffer.length >= size ? buffer : new char[Math.max(size, buffer.length * 2)];
+        System.arraycopy(buffer, start, target, 0, length);
+        buffer = target;
+        start = 0;
+        end = length;
+    }
+
+    /**
+     * Turn "\r\n" and a lone "\r" in the newly read range into "\n", and return its new end
+     */
+    private int normalizeLineEnds(int from, int to) {
+        int out = from;
+        for (int i = from; i < to; i++) {
+            char c = buffer[i];
+            if (c == '\r') {
+                buffer[out++] = '\n';
+                afterReturn = true;
+            } else {
+                // The "\n" of a "\r\n", possibly split across reads, was already written
+                if (c != '\n' || !afterReturn) {
+                    buffer[out++] = c;
+                }
+                afterReturn = false;
+            }
+        }
+        return out;
+    }
+}
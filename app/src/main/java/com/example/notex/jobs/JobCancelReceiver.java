@@ -0,0 +1,21 @@
+package com.example.notex.jobs;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * JobCancelReceiver - Handles the Cancel action of a job's progress notification
+ */
+public class JobCancelReceiver extends BroadcastReceiver {
+
+    static final String EXTRA_JOB_ID = "job_id";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String jobId = intent.getStringExtra(EXTRA_JOB_ID);
+        if (jobId != null) {
+            JobManager.getInstance(context).cancel(jobId);
+        }
+    }
+}
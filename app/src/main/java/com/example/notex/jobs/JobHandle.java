@@ -0,0 +1,40 @@
+package com.example.notex.jobs;
+
+import com.example.notex.models.ExportJob;
+import com.example.notex.repository.BackgroundJob;
+
+import org.json.JSONObject;
+
+import java.io.InterruptedIOException;
+
+/**
+ * JobHandle - A queued or running job as its runner sees it: cancellation
+ * plus the checkpoint that persists progress and updates the notification.
+ */
+public class JobHandle extends BackgroundJob {
+
+    private final ExportJob job;
+    private final JobManager manager;
+
+    JobHandle(ExportJob job, JobManager manager) {
+        this.job = job;
+        this.manager = manager;
+    }
+
+    public ExportJob getJob() {
+        return job;
+    }
+
+    public void throwIfCancelled() throws InterruptedIOException {
+        if (isCancelled()) {
+            throw new InterruptedIOException("Cancelled");
+        }
+    }
+
+    /**
+     * Record progress and, if not null, the state to resume from should the process end now
+     */
+    public void checkpoint(int done, int total, JSONObject state) {
+        manager.onCheckpoint(this, done, total, state);
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.notex.jobs;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.example.notex.ScanDocumentsActivity;
+import com.example.notex.database.DatabaseHelper;
+import com.example.notex.export.PdfProfile;
+import com.example.notex.models.ExportJob;
+import com.example.notex.repository.NoteRepository;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JobManager - Runs exports and conversions in the background, independent
+ * of the screen that started them.
+ *
+ * Jobs share the repository's job threads, so only a few run at once and
+ * the rest wait in one queue. Each job is stored in the jobs table from the
+ * moment it is queued and checkpoints there as it goes, so jobs the process
+ * was killed in the middle of are picked up again on the next start and
+ * resume from their last page. Progress, the outcome and a Cancel action
+ * are shown as notifications.
+ */
+public class JobManager {
+
+    private static final String TAG = "JobManager";
+    private static final String CHANNEL_ID = "export_jobs";
+    private static final String CHANNEL_NAME = "Exports and conversions";
+    private static final String CHANNEL_DESC = "Progress of exports and conversions running in the background";
+
+    /** Told on the main thread when a job ends */
+    public interface Listener {
+        void onJobFinished(ExportJob job, boolean succeeded);
+    }
+
+    private static JobManager instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final NoteRepository repository;
+    // Keeps the jobs table's writes off the main thread and in order
+    private final ExecutorService storeExecutor;
+    private final Handler mainHandler;
+    private final Map<ExportJob.Type, JobRunner> runners = new EnumMap<>(ExportJob.Type.class);
+    private final Map<String, JobHandle> activeJobs = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private boolean resumed;
+
+    private JobManager(Context context) {
+        this.context = context;
+        dbHelper = DatabaseHelper.getInstance(context);
+        repository = NoteRepository.getInstance(context);
+        storeExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+        runners.put(ExportJob.Type.NOTEBOOK_PDF, new NotebookPdfJob(repository));
+        runners.put(ExportJob.Type.SCAN_PDF, new ScanPdfJob());
+        runners.put(ExportJob.Type.PDF_TO_TEXT, new PdfToTextJob(context, repository));
+        runners.put(ExportJob.Type.TEXT_TO_PDF, new TextToPdfJob());
+    }
+
+    public static synchronized JobManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new JobManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queue a notebook's export to a PDF file. Returns the job's ID.
+     */
+    public String exportNotebookPdf(String notebookId, File target, PdfProfile profile) {
+        try {
+            return enqueue(ExportJob.Type.NOTEBOOK_PDF, "Exporting " + target.getName(),
+                    NotebookPdfJob.params(notebookId, target, profile));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Queue saving scanned images, in order, as a PDF file. Returns the job's ID.
+     */
+    public String saveScanPdf(List<String> imagePaths, File target, PdfProfile profile) {
+        try {
+            return enqueue(ExportJob.Type.SCAN_PDF, "Saving " + target.getName(),
+                    ScanPdfJob.params(imagePaths, target, profile));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Queue text recognition of PDFs into text files next to them. Returns the job's ID.
+     */
+    public String convertPdfsToText(List<String> pdfPaths) {
+        try {
+            return enqueue(ExportJob.Type.PDF_TO_TEXT, "Converting " + pdfPaths.size() + " PDF(s) to text",
+                    PdfToTextJob.params(pdfPaths));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Queue conversion of text files into PDFs next to them. Returns the job's ID.
+     */
+    public String convertTextsToPdf(List<String> textPaths) {
+        try {
+            return enqueue(ExportJob.Type.TEXT_TO_PDF, "Converting " + textPaths.size() + " text file(s) to PDF",
+                    TextToPdfJob.params(textPaths));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Cancel a queued or running job; it stops at its next page and removes what it had written
+     */
+    public void cancel(String jobId) {
+        JobHandle handle = activeJobs.get(jobId);
+        if (handle != null) {
+            handle.cancel();
+            return;
+        }
+        // Not running in this process, e.g. a notification left over from before a restart
+        storeExecutor.execute(() -> dbHelper.deleteJob(jobId));
+        notificationManager().cancel(jobId.hashCode());
+    }
+
+    /**
+     * Queue the jobs an earlier process left unfinished. Only the first call per process does anything.
+     */
+    public synchronized void resumeUnfinished() {
+        if (resumed) {
+            return;
+        }
+        resumed = true;
+        storeExecutor.execute(() -> {
+            for (ExportJob job : dbHelper.getUnfinishedJobs()) {
+                if (!activeJobs.containsKey(job.getId())) {
+                    Log.i(TAG, "Resuming " + job);
+                    submit(job);
+                }
+            }
+        });
+    }
+
+    private String enqueue(ExportJob.Type type, String title, JSONObject params) {
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), type, title, params.toString(),
+                System.currentTimeMillis());
+        storeExecutor.execute(() -> dbHelper.insertJob(job));
+        submit(job);
+        return job.getId();
+    }
+
+    private void submit(ExportJob job) {
+        JobHandle handle = new JobHandle(job, this);
+        activeJobs.put(job.getId(), handle);
+        notifyProgress(job, "Waiting...");
+        repository.runJob(() -> execute(handle));
+    }
+
+    private void execute(JobHandle handle) {
+        // A job cancelled while queued still runs: its runner stops at once and removes partial output
+        ExportJob job = handle.getJob();
+        notifyProgress(job, null);
+        try {
+            String message = runners.get(job.getType()).run(job, handle);
+            finish(handle, true, message);
+        } catch (InterruptedIOException e) {
+            finish(handle, false, handle.isCancelled() ? null : "Interrupted");
+        } catch (Exception e) {
+            e.printStackTrace();
+            finish(handle, false, "Failed: " + e.getMessage());
+        }
+    }
+
+    void onCheckpoint(JobHandle handle, int done, int total, JSONObject state) {
+        ExportJob job = handle.getJob();
+        job.setProgress(done, total);
+        if (state != null) {
+            job.setCheckpoint(state.toString());
+        }
+        String checkpoint = job.getCheckpoint();
+        storeExecutor.execute(() -> dbHelper.updateJobProgress(job.getId(), done, total, checkpoint));
+        notifyProgress(job, null);
+    }
+
+    /**
+     * @param message outcome to show, or null for a cancelled job whose notification just goes away
+     */
+    private void finish(JobHandle handle, boolean succeeded, String message) {
+        ExportJob job = handle.getJob();
+        activeJobs.remove(job.getId());
+        storeExecutor.execute(() -> dbHelper.deleteJob(job.getId()));
+
+        NotificationManager notifications = notificationManager();
+        if (message == null) {
+            notifications.cancel(job.getId().hashCode());
+        } else {
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(succeeded ? android.R.drawable.stat_sys_download_done
+                            : android.R.drawable.stat_notify_error)
+                    .setContentTitle(job.getTitle())
+                    .setContentText(message)
+                    .setContentIntent(openDocumentsIntent(job))
+                    .setAutoCancel(true);
+            notifications.notify(job.getId().hashCode(), builder.build());
+        }
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onJobFinished(job, succeeded);
+            }
+        });
+    }
+
+    /**
+     * @param text shown instead of the page count, e.g. while queued
+     */
+    private void notifyProgress(ExportJob job, String text) {
+        Intent cancelIntent = new Intent(context, JobCancelReceiver.class);
+        cancelIntent.putExtra(JobCancelReceiver.EXTRA_JOB_ID, job.getId());
+        PendingIntent cancel = PendingIntent.getBroadcast(context, job.getId().hashCode(), cancelIntent,
+                pendingIntentFlags());
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(job.getTitle())
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setContentIntent(openDocumentsIntent(job))
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Cancel", cancel);
+        if (text != null || job.getTotal() == 0) {
+            builder.setContentText(text != null ? text : "Starting...").setProgress(0, 0, true);
+        } else {
+            builder.setContentText(job.getDone() + " of " + job.getTotal())
+                    .setProgress(job.getTotal(), job.getDone(), false);
+        }
+        notificationManager().notify(job.getId().hashCode(), builder.build());
+    }
+
+    private PendingIntent openDocumentsIntent(ExportJob job) {
+        Intent intent = new Intent(context, ScanDocumentsActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        return PendingIntent.getActivity(context, job.getId().hashCode(), intent, pendingIntentFlags());
+    }
+
+    private static int pendingIntentFlags() {
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        return flags;
+    }
+
+    private NotificationManager notificationManager() {
+        NotificationManager notifications =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME,
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setDescription(CHANNEL_DESC);
+            notifications.createNotificationChannel(channel);
+        }
+        return notifications;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.notex.jobs;
+
+import com.example.notex.models.ExportJob;
+
+/**
+ * JobRunner - Does the work of one {@link ExportJob.Type}.
+ *
+ * Runs on a job thread. A runner checkpoints through the handle after every
+ * page or document it finishes and, when started with a checkpoint, carries
+ * on from there instead of starting over. Partial output is left in place
+ * only while the job can still resume: on failure or cancellation the
+ * runner removes it before throwing.
+ */
+interface JobRunner {
+
+    /**
+     * Run or resume the job
+     *
+     * @return text for the notification shown when the job is done
+     * @throws java.io.InterruptedIOException once the handle is cancelled
+     */
+    String run(ExportJob job, JobHandle handle) throws Exception;
+}
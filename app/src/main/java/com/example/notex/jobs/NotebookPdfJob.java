@@ -0,0 +1,47 @@
+package com.example.notex.jobs;
+
+import com.example.notex.export.PdfProfile;
+import com.example.notex.models.ExportJob;
+import com.example.notex.repository.NoteRepository;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * NotebookPdfJob - Renders a notebook to a PDF file.
+ *
+ * PdfDocument only writes its file once every page is finished, so there is
+ * nothing to resume from: an interrupted export starts over, and its
+ * checkpoints only carry progress.
+ */
+class NotebookPdfJob implements JobRunner {
+
+    private final NoteRepository repository;
+
+    NotebookPdfJob(NoteRepository repository) {
+        this.repository = repository;
+    }
+
+    static JSONObject params(String notebookId, File target, PdfProfile profile) throws JSONException {
+        return new JSONObject()
+                .put("notebookId", notebookId)
+                .put("target", target.getAbsolutePath())
+                .put("profile", profile.name());
+    }
+
+    @Override
+    public String run(ExportJob job, JobHandle handle) throws JSONException, IOException {
+        JSONObject params = new JSONObject(job.getParams());
+        File target = new File(params.getString("target"));
+        int pages = repository.writeNotebookPdf(params.getString("notebookId"), target,
+                PdfProfile.valueOf(params.getString("profile")), handle,
+                (done, total) -> handle.checkpoint(done, total, null));
+        if (pages == 0) {
+            throw new IOException("The notebook has no pages");
+        }
+        return "Saved " + pages + " page(s) to My Documents: " + target.getName();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.notex.jobs;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.notex.ScanUtils;
+import com.example.notex.models.ExportJob;
+import com.example.notex.repository.NoteRepository;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * PdfToTextJob - Recognizes the text of PDFs into "_converted.txt" files.
+ *
+ * Each page's text is appended to a ".part" file as soon as it is recognized
+ * and checkpointed with the file's length, so a resumed job skips the pages
+ * already done instead of recognizing the whole document again. A document
+ * that fails is skipped and the rest are still converted.
+ */
+class PdfToTextJob implements JobRunner {
+
+    private static final String TAG = "PdfToTextJob";
+
+    private final Context context;
+    private final NoteRepository repository;
+
+    PdfToTextJob(Context context, NoteRepository repository) {
+        this.context = context;
+        this.repository = repository;
+    }
+
+    static JSONObject params(List<String> pdfPaths) throws JSONException {
+        return new JSONObject().put("documents", new JSONArray(pdfPaths));
+    }
+
+    @Override
+    public String run(ExportJob job, JobHandle handle) throws JSONException, IOException {
+        JSONArray documents = new JSONObject(job.getParams()).getJSONArray("documents");
+        JSONObject checkpoint = job.getCheckpoint() != null ? new JSONObject(job.getCheckpoint()) : new JSONObject();
+        int converted = checkpoint.optInt("converted");
+
+        for (int doc = checkpoint.optInt("doc"); doc < documents.length(); doc++) {
+            handle.throwIfCancelled();
+            File pdfFile = new File(documents.getString(doc));
+            File txtFile = new File(pdfFile.getParent(), pdfFile.getName().replace(".pdf", "") + "_converted.txt");
+            File part = new File(txtFile.getPath() + ".part");
+
+            boolean resuming = checkpoint.optInt("doc") == doc && checkpoint.has("length")
+                    && part.length() >= checkpoint.getLong("length");
+            int firstPage = resuming ? checkpoint.getInt("page") : 0;
+            if (resuming) {
+                try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+                    file.setLength(checkpoint.getLong("length"));
+                }
+            }
+
+            int index = doc;
+            int done = converted;
+            try {
+                try (FileOutputStream out = new FileOutputStream(part, resuming)) {
+                    ScanUtils.recognizePdfPages(context, pdfFile, firstPage, (pageIndex, pageCount, text) -> {
+                        handle.throwIfCancelled();
+                        write(out, ScanUtils.formatPageText(pageIndex, text));
+                        handle.checkpoint(pageIndex + 1, pageCount,
+                                pageCheckpoint(index, pageIndex + 1, out.getChannel().position(), done));
+                        return true;
+                    });
+                }
+                if (!part.renameTo(txtFile)) {
+                    throw new IOException("Cannot move text into place: " + txtFile);
+                }
+                // Make the recognized text searchable as soon as it exists
+                repository.indexScanText(txtFile, null);
+                converted++;
+            } catch (InterruptedIOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                part.delete();
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error converting " + pdfFile, e);
+                //noinspection ResultOfMethodCallIgnored
+                part.delete();
+            }
+            handle.checkpoint(0, 0, new JSONObject().put("doc", doc + 1).put("converted", converted));
+        }
+
+        if (converted == 0) {
+            throw new IOException("Conversion failed");
+        }
+        return "Converted " + converted + " PDF(s) to text";
+    }
+
+    private static JSONObject pageCheckpoint(int doc, int page, long length, int converted) {
+        try {
+            return new JSONObject()
+                    .put("doc", doc)
+                    .put("page", page)
+                    .put("length", length)
+                    .put("converted", converted);
+        } catch (JSONException e) {
+            // Only thrown for non-finite numbers
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.notex.jobs;
+
+import com.example.notex.export.ImagePdfWriter;
+import com.example.notex.export.PdfProfile;
+import com.example.notex.export.ScanPdfExporter;
+import com.example.notex.models.ExportJob;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * ScanPdfJob - Writes scanned images into a PDF, one page at a time.
+ *
+ * The PDF grows in a ".part" file next to the target. After every page the
+ * writer's state is checkpointed, so a resumed job cuts the file back to the
+ * last complete page and carries on from the next image.
+ */
+class ScanPdfJob implements JobRunner {
+
+    static JSONObject params(List<String> imagePaths, File target, PdfProfile profile) throws JSONException {
+        return new JSONObject()
+                .put("images", new JSONArray(imagePaths))
+                .put("target", target.getAbsolutePath())
+                .put("profile", profile.name());
+    }
+
+    @Override
+    public String run(ExportJob job, JobHandle handle) throws Exception {
+        JSONObject params = new JSONObject(job.getParams());
+        JSONArray images = params.getJSONArray("images");
+        File target = new File(params.getString("target"));
+        File part = new File(target.getPath() + ".part");
+        ScanPdfExporter exporter = new ScanPdfExporter(PdfProfile.valueOf(params.getString("profile")));
+
+        int next = 0;
+        ImagePdfWriter.State state = null;
+        if (job.getCheckpoint() != null) {
+            JSONObject checkpoint = new JSONObject(job.getCheckpoint());
+            ImagePdfWriter.State saved = ImagePdfWriter.State.fromJson(checkpoint.getJSONObject("writer"));
+            // Less on disk than the checkpoint claims means the file cannot be trusted; start over
+            if (part.length() >= saved.getLength()) {
+                try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+                    file.setLength(saved.getLength());
+                }
+                state = saved;
+                next = checkpoint.getInt("next");
+            }
+        }
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(part, state != null))) {
+                ImagePdfWriter writer = state != null ? ImagePdfWriter.resume(out, state) : new ImagePdfWriter(out);
+                for (int i = next; i < images.length(); i++) {
+                    handle.throwIfCancelled();
+                    exporter.addFile(writer, images.getString(i));
+                    out.flush();
+                    handle.checkpoint(i + 1, images.length(), new JSONObject()
+                            .put("next", i + 1)
+                            .put("writer", writer.getState().toJson()));
+                }
+                if (writer.getPageCount() == 0) {
+                    throw new IOException("None of the images could be read");
+                }
+                writer.finish();
+            }
+            if (!part.renameTo(target)) {
+                throw new IOException("Cannot move PDF into place: " + target);
+            }
+            return "Saved " + target.getName();
+        } catch (Exception e) {
+            //noinspection ResultOfMethodCallIgnored
+            part.delete();
+            throw e;
+        }
+    }
+}
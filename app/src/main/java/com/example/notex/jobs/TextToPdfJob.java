@@ -0,0 +1,55 @@
+package com.example.notex.jobs;
+
+import com.example.notex.ScanUtils;
+import com.example.notex.models.ExportJob;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * TextToPdfJob - Lays out text files as "_converted.pdf" files.
+ *
+ * Each document is written in one go, so a resumed job starts again at the
+ * first document it had not finished. Progress within a document is shown
+ * per page, against a page count estimated from how much of the file the
+ * pages so far used.
+ */
+class TextToPdfJob implements JobRunner {
+
+    static JSONObject params(List<String> textPaths) throws JSONException {
+        return new JSONObject().put("documents", new JSONArray(textPaths));
+    }
+
+    @Override
+    public String run(ExportJob job, JobHandle handle) throws JSONException, IOException {
+        JSONArray documents = new JSONObject(job.getParams()).getJSONArray("documents");
+        JSONObject checkpoint = job.getCheckpoint() != null ? new JSONObject(job.getCheckpoint()) : new JSONObject();
+        int converted = checkpoint.optInt("converted");
+
+        for (int doc = checkpoint.optInt("doc"); doc < documents.length(); doc++) {
+            handle.throwIfCancelled();
+            File txtFile = new File(documents.getString(doc));
+            File pdfFile = new File(txtFile.getParent(), txtFile.getName().replace(".txt", "") + "_converted.pdf");
+            boolean written = ScanUtils.convertTextToPdf(txtFile, pdfFile, (page, fractionRead) -> {
+                handle.throwIfCancelled();
+                handle.checkpoint(page, Math.max(page, Math.round(page / fractionRead)), null);
+                return true;
+            });
+            if (written) {
+                converted++;
+            }
+            handle.checkpoint(doc + 1, documents.length(),
+                    new JSONObject().put("doc", doc + 1).put("converted", converted));
+        }
+
+        if (converted == 0) {
+            throw new IOException("Conversion failed");
+        }
+        return "Converted " + converted + " text file(s) to PDF";
+    }
+}
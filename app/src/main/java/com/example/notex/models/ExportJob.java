@@ -0,0 +1,83 @@
+package com.example.notex.models;
+
+/**
+ * A queued or running background export or conversion, as stored in the
+ * jobs table. Parameters and checkpoint are JSON written by the job type's
+ * runner; the checkpoint is what a job killed with the process resumes from.
+ */
+public class ExportJob {
+
+    public enum Type { NOTEBOOK_PDF, SCAN_PDF, PDF_TO_TEXT, TEXT_TO_PDF }
+
+    private final String id;
+    private final Type type;
+    private final String title;
+    private final String params;
+    private final long createdAt;
+    private String checkpoint;
+    private int done;
+    private int total;
+
+    public ExportJob(String id, Type type, String title, String params, long createdAt) {
+        this.id = id;
+        this.type = type;
+        this.title = title;
+        this.params = params;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Shown in the job's notification, e.g. "Exporting My Notebook" */
+    public String getTitle() {
+        return title;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** JSON state to resume from, or null when the job has not got anywhere yet */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public int getDone() {
+        return done;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setProgress(int done, int total) {
+        this.done = done;
+        this.total = total;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportJob{" +
+                "id='" + id + '\'' +
+                ", type=" + type +
+                ", title='" + title + '\'' +
+                ", done=" + done +
+                ", total=" + total +
+                '}';
+    }
+}
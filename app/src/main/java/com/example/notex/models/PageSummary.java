@@ -0,0 +1,100 @@
+package com.example.notex.models;
+
+import java.util.Date;
+
+/**
+ * Lightweight page row for list screens: everything except the page content.
+ * The preview is the first characters of the content, computed when the page is saved.
+ */
+public class PageSummary {
+
+    /** Number of content characters kept in the stored preview */
+    public static final int PREVIEW_LENGTH = 100;
+
+    private String id;
+    private String notebookId;
+    private String title;
+    private int pageNumber;
+    private Date createdAt;
+    private Date updatedAt;
+    private long contentSize;
+    private String preview;
+
+    public PageSummary(String id, String notebookId, String title, int pageNumber) {
+        this.id = id;
+        this.notebookId = notebookId;
+        this.title = title;
+        this.pageNumber = pageNumber;
+    }
+
+    /**
+     * Build the stored preview text for page content, or null for a page without content
+     */
+    public static String buildPreview(String content) {
+        if (content == null) {
+            return null;
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) + "..." : content;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getNotebookId() {
+        return notebookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /** Size of the stored content in bytes */
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    public void setContentSize(long contentSize) {
+        this.contentSize = contentSize;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    @Override
+    public String toString() {
+        return "PageSummary{" +
+                "id='" + id + '\'' +
+                ", notebookId='" + notebookId + '\'' +
+                ", title='" + title + '\'' +
+                ", pageNumber=" + pageNumber +
+                ", contentSize=" + contentSize +
+                '}';
+    }
+}
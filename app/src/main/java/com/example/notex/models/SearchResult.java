@@ -0,0 +1,62 @@
+package com.example.notex.models;
+
+/**
+ * One full-text search hit. Matched terms in the title and snippet are
+ * wrapped in {@link #HIGHLIGHT_START} / {@link #HIGHLIGHT_END} markers so the
+ * UI can style them without re-running the match.
+ */
+public class SearchResult {
+
+    public static final char HIGHLIGHT_START = '\u0002';
+    public static final char HIGHLIGHT_END = '\u0003';
+
+    /** What a hit points at; the reference ID is the row ID, or the file path for scans */
+    public enum Kind {
+        NOTEBOOK, PAGE, REMINDER, SCAN
+    }
+
+    private Kind kind;
+    private String refId;
+    private String notebookId;
+    private String title;
+    private String snippet;
+
+    public SearchResult(Kind kind, String refId, String notebookId, String title, String snippet) {
+        this.kind = kind;
+        this.refId = refId;
+        this.notebookId = notebookId;
+        this.title = title;
+        this.snippet = snippet;
+    }
+
+    /**
+     * Remove highlight markers, e.g. for plain-text display or comparison
+     */
+    public static String stripHighlights(String text) {
+        if (text == null) {
+            return null;
+        }
+        return text.replace(String.valueOf(HIGHLIGHT_START), "").replace(String.valueOf(HIGHLIGHT_END), "");
+    }
+
+    // Getters
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getRefId() {
+        return refId;
+    }
+
+    public String getNotebookId() {
+        return notebookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+}
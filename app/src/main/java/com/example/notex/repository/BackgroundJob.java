@@ -0,0 +1,28 @@
+package com.example.notex.repository;
+
+import com.example.notex.database.NotebookArchive;
+
+/**
+ * BackgroundJob - Handle to a notebook export or import running in the
+ * background. Cancelling stops the job at the next page, entry or transfer
+ * chunk and discards whatever it had written; the callback then receives a
+ * failure.
+ */
+public class BackgroundJob implements NotebookArchive.Cancellation {
+
+    /** Items (pages or archive entries) processed so far out of the total, on the main thread */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.notex.repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * KeysetLoader - Loads a list screen one page at a time as the user scrolls.
+ *
+ * Each request passes the last row already loaded, so the database seeks
+ * straight to the next page rather than skipping an offset, and memory grows
+ * only with what the user has actually scrolled through. Rows inserted above
+ * the loaded position are not shifted into the next page; a row that an
+ * update moved further down (e.g. an unpinned notebook) is dropped by ID if it
+ * comes back, so no row is ever shown twice. Callbacks run on the main thread.
+ */
+public class KeysetLoader<T> {
+
+    /** Fetches the page after a row (null for the first page) */
+    public interface PageQuery<T> {
+        void load(T after, int limit, NoteRepository.Callback<List<T>> callback);
+    }
+
+    /** Receives the rows of each page that were not loaded before */
+    public interface PageListener<T> {
+        void onPageLoaded(List<T> rows, boolean firstPage);
+    }
+
+    public interface IdFunction<T> {
+        String idOf(T row);
+    }
+
+    private final int pageSize;
+    private final PageQuery<T> query;
+    private final IdFunction<T> ids;
+    private final PageListener<T> listener;
+    private final Set<String> loadedIds = new HashSet<>();
+
+    private T last;
+    private boolean loading;
+    private boolean hasMore = true;
+    private int generation;
+
+    public KeysetLoader(int pageSize, PageQuery<T> query, IdFunction<T> ids, PageListener<T> listener) {
+        this.pageSize = pageSize;
+        this.query = query;
+        this.ids = ids;
+        this.listener = listener;
+    }
+
+    /**
+     * Forget everything loaded so far, e.g. after a write or a filter change.
+     * A page still in flight is discarded when it arrives.
+     */
+    public void reset() {
+        generation++;
+        loadedIds.clear();
+        last = null;
+        loading = false;
+        hasMore = true;
+    }
+
+    /**
+     * Request the next page unless one is already loading or the end was reached
+     */
+    public void loadNext() {
+        if (loading || !hasMore) {
+            return;
+        }
+        loading = true;
+        boolean firstPage = last == null;
+        int requestGeneration = generation;
+        query.load(last, pageSize, page -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loading = false;
+            hasMore = page.size() == pageSize;
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+
+            List<T> fresh = new ArrayList<>(page.size());
+            for (T row : page) {
+                if (loadedIds.add(ids.idOf(row))) {
+                    fresh.add(row);
+                }
+            }
+            listener.onPageLoaded(fresh, firstPage);
+            if (fresh.isEmpty() && hasMore) {
+                // Every row was already shown; nothing new to scroll to, so keep going
+                loadNext();
+            }
+        });
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.notex.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ModelCache - Bounded LRU cache of loaded models, with hit/miss counters.
+ *
+ * Entries are bounded by total weight (e.g. characters of page content)
+ * rather than count, and the least recently used ones are evicted first.
+ * Every invalidation bumps a version; a value loaded from the database is
+ * only stored if no invalidation happened since the load started, so a read
+ * racing a write can never put the old row back. Thread-safe.
+ */
+public class ModelCache<K, V> {
+
+    /** Size of one entry in the cache's unit of weight */
+    public interface Weigher<V> {
+        int weigh(V value);
+    }
+
+    /** Matches entries to drop in {@link #invalidateIf} */
+    public interface EntryFilter<K, V> {
+        boolean matches(K key, V value);
+    }
+
+    private final int maxWeight;
+    private final Weigher<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int weight;
+    private long version;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public ModelCache(int maxWeight, Weigher<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Cache bounded by number of entries
+     */
+    public ModelCache(int maxEntries) {
+        this(maxEntries, value -> 1);
+    }
+
+    /**
+     * Return the cached value, or null on a miss. Counts the hit or miss.
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Return the cached value without counting a hit or miss
+     */
+    public synchronized V peek(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Current version; take it before loading a value and pass it to {@link #put}
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Store a value loaded at {@code loadedAtVersion}. Dropped if anything was
+     * invalidated since, or if the value alone exceeds the cache's budget.
+     * Returns whether the value was stored.
+     */
+    public synchronized boolean put(K key, V value, long loadedAtVersion) {
+        if (value == null || loadedAtVersion != version) {
+            return false;
+        }
+        return store(key, value);
+    }
+
+    /**
+     * Replace the entry for a key with a value known to match what was just
+     * written, e.g. the model of a page that was saved
+     */
+    public synchronized void update(K key, V value) {
+        version++;
+        remove(key);
+        if (value != null) {
+            store(key, value);
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        version++;
+        remove(key);
+    }
+
+    public synchronized void invalidateIf(EntryFilter<K, V> filter) {
+        version++;
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (filter.matches(entry.getKey(), entry.getValue())) {
+                weight -= weigher.weigh(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long requests = hitCount + missCount;
+        int hitPercent = requests != 0 ? (int) (100 * hitCount / requests) : 0;
+        return String.format(Locale.ROOT, "ModelCache[entries=%d,weight=%d/%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+                entries.size(), weight, maxWeight, hitCount, missCount, evictionCount, hitPercent);
+    }
+
+    private boolean store(K key, V value) {
+        int valueWeight = weigher.weigh(value);
+        remove(key);
+        if (valueWeight > maxWeight) {
+            return false;
+        }
+        entries.put(key, value);
+        weight += valueWeight;
+
+        Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Map.Entry<K, V> entry = eldest.next();
+            weight -= weigher.weigh(entry.getValue());
+            eldest.remove();
+            evictionCount++;
+        }
+        return true;
+    }
+
+    private void remove(K key) {
+        V old = entries.remove(key);
+        if (old != null) {
+            weight -= weigher.weigh(old);
+        }
+    }
+}
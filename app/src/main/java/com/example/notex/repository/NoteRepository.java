@@ -0,0 +1,798 @@
+package com.example.notex.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.notex.database.CanvasImageStore;
+import com.example.notex.database.DatabaseHelper;
+import com.example.notex.database.MediaCollector;
+import com.example.notex.database.NotebookArchive;
+import com.example.notex.database.PageMedia;
+import com.example.notex.export.NotebookPdfExporter;
+import com.example.notex.export.PdfProfile;
+import com.example.notex.models.Notebook;
+import com.example.notex.models.Page;
+import com.example.notex.models.PageSummary;
+import com.example.notex.models.Reminder;
+import com.example.notex.models.SearchResult;
+import com.example.notex.models.User;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * NoteRepository - Off-main-thread access to DatabaseHelper for all screens.
+ *
+ * Reads run on a small fixed pool, writes on a single thread so they apply in
+ * the order they were issued. Results and change notifications are delivered
+ * on the main thread. Screens subscribe to the tables they display and reload
+ * only when one of them changes.
+ *
+ * Notebooks and full page models are kept in bounded LRU caches, so going
+ * back and forth between the notebook, page list and editor screens does not
+ * re-query the same rows. Each write method invalidates exactly the entries
+ * it affects before its callback runs. Cached models are shared between
+ * callers and must be treated as read-only.
+ */
+public class NoteRepository {
+
+    private static final String TAG = "NoteRepository";
+
+    private static final int READ_THREADS = 2;
+    // Exports, imports and conversions running at once; further jobs queue
+    private static final int MAX_CONCURRENT_JOBS = 2;
+
+    /** Largest OCR text indexed per scanned document */
+    private static final int MAX_SCAN_TEXT_CHARS = 1024 * 1024;
+
+    /** Media younger than this is never collected, so pages still open in an editor keep theirs */
+    private static final long MEDIA_GRACE_MILLIS = 24 * 60 * 60 * 1000L;
+    // Where CanvasView stores images and MultiPageEditorActivity stores recordings
+    private static final String CANVAS_IMAGES_DIR = "canvas_images";
+    private static final String RECORDING_PREFIX = "voice_";
+
+    private static final int NOTEBOOK_CACHE_ENTRIES = 100;
+    /** Budget for cached page content, in characters (2 bytes each) */
+    private static final int PAGE_CACHE_CHARS = 4 * 1024 * 1024;
+
+    /** Tables a write can touch; listeners subscribe per table */
+    public enum Table {
+        USERS, NOTEBOOKS, PAGES, REMINDERS, SEARCH
+    }
+
+    /** Receives a query or write result on the main thread */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /** Notified on the main thread after a write to a subscribed table commits */
+    public interface OnChangeListener {
+        /**
+         * @param table table that changed
+         * @param id    ID of the changed row's owner (notebook, page, reminder or user), may be null
+         */
+        void onChanged(Table table, String id);
+    }
+
+    private static NoteRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    // Export, import and conversion jobs can run for minutes; they get their own threads so reads and
+    // writes are not held up, and share one queue so starting many does not spawn a thread each
+    private final ExecutorService jobExecutor;
+    private final Handler mainHandler;
+    private final Map<Table, List<OnChangeListener>> listeners = new ConcurrentHashMap<>();
+
+    private final ModelCache<String, Notebook> notebookCache = new ModelCache<>(NOTEBOOK_CACHE_ENTRIES);
+    private final ModelCache<String, Page> pageCache = new ModelCache<>(PAGE_CACHE_CHARS,
+            page -> 64 + (page.getContent() != null ? page.getContent().length() : 0));
+    // Page IDs of a notebook in page order; the pages themselves live in pageCache
+    private final ModelCache<String, List<String>> notebookPageIdsCache = new ModelCache<>(NOTEBOOK_CACHE_ENTRIES);
+
+    private NoteRepository(Context context) {
+        this.context = context;
+        dbHelper = DatabaseHelper.getInstance(context);
+        readExecutor = Executors.newFixedThreadPool(READ_THREADS);
+        writeExecutor = Executors.newSingleThreadExecutor();
+        jobExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_JOBS);
+        mainHandler = new Handler(Looper.getMainLooper());
+        for (Table table : Table.values()) {
+            listeners.put(table, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    public static synchronized NoteRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new NoteRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // ==================== Change notifications ====================
+
+    public void addOnChangeListener(OnChangeListener listener, Table... tables) {
+        for (Table table : tables) {
+            listeners.get(table).add(listener);
+        }
+    }
+
+    public void removeOnChangeListener(OnChangeListener listener) {
+        for (List<OnChangeListener> tableListeners : listeners.values()) {
+            tableListeners.remove(listener);
+        }
+    }
+
+    private void notifyChanged(Table table, String id) {
+        for (OnChangeListener listener : listeners.get(table)) {
+            listener.onChanged(table, id);
+        }
+    }
+
+    // ==================== Executors ====================
+
+    private <T> void read(Supplier<T> query, Callback<T> callback) {
+        read(query, null, callback);
+    }
+
+    /**
+     * @param failure delivered instead of a result if the query throws, so the caller is always called back
+     */
+    private <T> void read(Supplier<T> query, T failure, Callback<T> callback) {
+        readExecutor.execute(() -> {
+            T result = failure;
+            try {
+                result = query.get();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Read failed", e);
+            }
+            if (callback != null) {
+                T delivered = result;
+                mainHandler.post(() -> callback.onResult(delivered));
+            }
+        });
+    }
+
+    private <T> void write(Supplier<T> operation, Table table, String id, Callback<T> callback) {
+        write(operation, table, id, null, callback);
+    }
+
+    /**
+     * @param failure delivered instead of a result if the operation throws, so the caller is always called back
+     */
+    private <T> void write(Supplier<T> operation, Table table, String id, T failure, Callback<T> callback) {
+        writeExecutor.execute(() -> {
+            T result = failure;
+            try {
+                result = operation.get();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Write failed", e);
+            }
+            T delivered = result;
+            mainHandler.post(() -> {
+                notifyChanged(table, id);
+                if (callback != null) {
+                    callback.onResult(delivered);
+                }
+            });
+        });
+    }
+
+    /**
+     * Serve a read from the cache, or load it on the read pool and cache the result
+     */
+    private <V> void cachedRead(ModelCache<String, V> cache, String key, Supplier<V> query, Callback<V> callback) {
+        V cached = cache.get(key);
+        if (cached != null) {
+            if (callback != null) {
+                mainHandler.post(() -> callback.onResult(cached));
+            }
+            return;
+        }
+        read(() -> {
+            long version = cache.version();
+            V value = query.get();
+            cache.put(key, value, version);
+            return value;
+        }, callback);
+    }
+
+    /**
+     * Notebook and page cache counters, e.g. for logging
+     */
+    public String getCacheStats() {
+        return "notebooks " + notebookCache + ", pages " + pageCache + ", page lists " + notebookPageIdsCache;
+    }
+
+    /**
+     * Run other blocking work (e.g. file system scans) on the read pool and
+     * deliver its result on the main thread; null if the task throws.
+     */
+    public <T> void runInBackground(Supplier<T> task, Callback<T> callback) {
+        read(task, callback);
+    }
+
+    // ==================== Users ====================
+
+    /**
+     * One keyset page of users, newest first; see {@link KeysetLoader}
+     */
+    public void getUsers(User after, int limit, Callback<List<User>> callback) {
+        read(() -> dbHelper.getUsers(after, limit), Collections.emptyList(), callback);
+    }
+
+    public void getTotalUserCount(Callback<Integer> callback) {
+        read(dbHelper::getTotalUserCount, 0, callback);
+    }
+
+    public void getUserCountByRole(User.UserRole role, Callback<Integer> callback) {
+        read(() -> dbHelper.getUserCountByRole(role), 0, callback);
+    }
+
+    public void deleteUser(String userId, Callback<Boolean> callback) {
+        write(() -> {
+            boolean deleted = dbHelper.deleteUser(userId);
+            // Pages do not record their owner, so drop them all; deleting users is rare
+            notebookCache.invalidateIf((id, notebook) -> userId.equals(notebook.getUserId()));
+            notebookPageIdsCache.invalidateAll();
+            pageCache.invalidateAll();
+            return deleted;
+        }, Table.USERS, userId, false, callback);
+    }
+
+    public void updateUserRole(String userId, User.UserRole newRole, Callback<Boolean> callback) {
+        write(() -> dbHelper.updateUserRole(userId, newRole), Table.USERS, userId, false, callback);
+    }
+
+    /**
+     * The user with these credentials and role, or null; a match also records the login time
+     */
+    public void validateUser(String username, String password, User.UserRole role, Callback<User> callback) {
+        write(() -> dbHelper.validateUser(username, password, role), Table.USERS, null, callback);
+    }
+
+    /**
+     * Add a user; false if the username is taken. Writes run one at a time, so two
+     * registrations cannot both claim a name.
+     */
+    public void registerUser(String username, String email, String password, User.UserRole role,
+                             Callback<Boolean> callback) {
+        write(() -> !dbHelper.usernameExists(username) && dbHelper.addUser(username, email, password, role),
+                Table.USERS, null, false, callback);
+    }
+
+    // ==================== Notebooks ====================
+
+    /**
+     * One keyset page of a user's notebooks in listing order; see {@link KeysetLoader}
+     */
+    public void getUserNotebooks(String userId, Notebook after, int limit, Callback<List<Notebook>> callback) {
+        read(() -> dbHelper.getUserNotebooks(userId, after, limit), Collections.emptyList(), callback);
+    }
+
+    public void getNotebookById(String notebookId, Callback<Notebook> callback) {
+        cachedRead(notebookCache, notebookId, () -> dbHelper.getNotebookById(notebookId), callback);
+    }
+
+    public void getNotebookCount(String userId, Callback<Integer> callback) {
+        read(() -> dbHelper.getNotebookCount(userId), 0, callback);
+    }
+
+    public void addNotebook(String userId, String title, String color, Callback<Boolean> callback) {
+        write(() -> dbHelper.addNotebook(userId, title, color), Table.NOTEBOOKS, null, false, callback);
+    }
+
+    public void toggleNotebookPin(String notebookId, Callback<Boolean> callback) {
+        write(() -> {
+            boolean toggled = dbHelper.toggleNotebookPin(notebookId);
+            notebookCache.invalidate(notebookId);
+            return toggled;
+        }, Table.NOTEBOOKS, notebookId, false, callback);
+    }
+
+    public void deleteNotebook(String notebookId, Callback<Boolean> callback) {
+        write(() -> {
+            boolean deleted = dbHelper.deleteNotebook(notebookId);
+            notebookCache.invalidate(notebookId);
+            notebookPageIdsCache.invalidate(notebookId);
+            pageCache.invalidateIf((id, page) -> notebookId.equals(page.getNotebookId()));
+            return deleted;
+        }, Table.NOTEBOOKS, notebookId, false, callback);
+    }
+
+    // ==================== Pages ====================
+
+    public void getNotebookPages(String notebookId, Callback<List<Page>> callback) {
+        List<Page> cached = getCachedNotebookPages(notebookId);
+        if (cached != null) {
+            if (callback != null) {
+                mainHandler.post(() -> callback.onResult(cached));
+            }
+            return;
+        }
+        read(() -> {
+            long idsVersion = notebookPageIdsCache.version();
+            long pagesVersion = pageCache.version();
+            List<Page> pages = dbHelper.getNotebookPages(notebookId);
+            List<String> pageIds = new ArrayList<>(pages.size());
+            for (Page page : pages) {
+                pageIds.add(page.getId());
+                pageCache.put(page.getId(), page, pagesVersion);
+            }
+            notebookPageIdsCache.put(notebookId, pageIds, idsVersion);
+            return pages;
+        }, Collections.emptyList(), callback);
+    }
+
+    /**
+     * A notebook's pages from the cache, or null unless every one of them is cached
+     */
+    private List<Page> getCachedNotebookPages(String notebookId) {
+        List<String> pageIds = notebookPageIdsCache.get(notebookId);
+        if (pageIds == null) {
+            return null;
+        }
+        List<Page> pages = new ArrayList<>(pageIds.size());
+        for (String pageId : pageIds) {
+            Page page = pageCache.get(pageId);
+            if (page == null) {
+                return null;
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Page list rows without content, for list screens
+     */
+    public void getNotebookPageSummaries(String notebookId, Callback<List<PageSummary>> callback) {
+        read(() -> dbHelper.getNotebookPageSummaries(notebookId), Collections.emptyList(), callback);
+    }
+
+    public void getPageById(String pageId, Callback<Page> callback) {
+        cachedRead(pageCache, pageId, () -> dbHelper.getPageById(pageId), callback);
+    }
+
+    /**
+     * Add a page; the callback receives the new page ID, or null on failure.
+     * Page listeners are notified with the notebook ID.
+     */
+    public void createPage(String notebookId, String title, String content, Callback<String> callback) {
+        write(() -> {
+            String pageId = dbHelper.createPage(notebookId, title, content);
+            // Page count and timestamp of the notebook changed, and its page list grew
+            notebookCache.invalidate(notebookId);
+            notebookPageIdsCache.invalidate(notebookId);
+            return pageId;
+        }, Table.PAGES, notebookId, callback);
+    }
+
+    /**
+     * Update a page. Page listeners are notified with the notebook ID. A cached
+     * copy of the page is replaced with what was written rather than re-read.
+     */
+    public void updatePage(String notebookId, String pageId, String title, String content,
+                           Callback<Boolean> callback) {
+        write(() -> {
+            Page old = pageCache.peek(pageId);
+            boolean updated = dbHelper.updatePage(pageId, title, content);
+            if (updated && old != null) {
+                Page page = new Page(pageId, old.getNotebookId(), title, content, old.getPageNumber());
+                page.setCreatedAt(old.getCreatedAt());
+                pageCache.update(pageId, page);
+            } else {
+                pageCache.invalidate(pageId);
+            }
+            notebookCache.invalidate(notebookId);
+            return updated;
+        }, Table.PAGES, notebookId, false, callback);
+    }
+
+    // ==================== Reminders ====================
+
+    /**
+     * One keyset page of a user's reminders scheduled in [from, to), of one
+     * type or of all types when type is null; see {@link KeysetLoader}
+     */
+    public void getReminders(String userId, String type, long from, long to, Reminder after, int limit,
+                             Callback<List<Reminder>> callback) {
+        read(() -> dbHelper.getReminders(userId, type, from, to, after, limit), Collections.emptyList(), callback);
+    }
+
+    public void getReminderById(String reminderId, Callback<Reminder> callback) {
+        read(() -> dbHelper.getReminderById(reminderId), callback);
+    }
+
+    public void getRemindersCount(String userId, Callback<Integer> callback) {
+        read(() -> dbHelper.getRemindersCount(userId), 0, callback);
+    }
+
+    public void createReminder(Reminder reminder, Callback<String> callback) {
+        write(() -> dbHelper.createReminder(reminder), Table.REMINDERS, reminder.getId(), callback);
+    }
+
+    public void updateReminder(Reminder reminder, Callback<Boolean> callback) {
+        write(() -> dbHelper.updateReminder(reminder), Table.REMINDERS, reminder.getId(), false, callback);
+    }
+
+    public void markReminderCompleted(String reminderId, boolean completed, Callback<Boolean> callback) {
+        write(() -> dbHelper.markReminderCompleted(reminderId, completed), Table.REMINDERS, reminderId, false,
+                callback);
+    }
+
+    public void deleteReminder(String reminderId, Callback<Boolean> callback) {
+        write(() -> dbHelper.deleteReminder(reminderId), Table.REMINDERS, reminderId, false, callback);
+    }
+
+    // ==================== Media ====================
+
+    /**
+     * Delete canvas images and voice recordings that no stored page refers to
+     * and that are older than a day. Runs on the write thread, after any
+     * save already queued, so a reference being written is never missed.
+     */
+    public void collectOrphanedMedia(Callback<MediaCollector.Result> callback) {
+        writeExecutor.execute(() -> {
+            List<File> media = MediaCollector.listMedia(new File(context.getFilesDir(), CANVAS_IMAGES_DIR),
+                    context.getExternalFilesDir(null), RECORDING_PREFIX);
+            MediaCollector.Result result = MediaCollector.collect(media, dbHelper::isMediaReferenced,
+                    MEDIA_GRACE_MILLIS, System.currentTimeMillis());
+            if (callback != null) {
+                mainHandler.post(() -> callback.onResult(result));
+            }
+        });
+    }
+
+    // ==================== Exports ====================
+
+    /**
+     * Run long work, such as an export or a conversion job, on the shared job
+     * threads. At most MAX_CONCURRENT_JOBS run at once; the rest wait in one queue.
+     */
+    public void runJob(Runnable job) {
+        jobExecutor.execute(job);
+    }
+
+    /**
+     * Render a notebook to a PDF file, reading one stored page at a time, on
+     * the calling thread (a job thread). Progress counts stored pages and is
+     * reported on the calling thread too. The file only appears once complete.
+     * Returns the number of PDF pages written; a cancelled job throws
+     * InterruptedIOException.
+     */
+    public int writeNotebookPdf(String notebookId, File target, PdfProfile profile, BackgroundJob job,
+                                BackgroundJob.ProgressListener progress) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        int written = 0;
+        try {
+            List<PageSummary> pages = dbHelper.getNotebookPageSummaries(notebookId);
+            int[] next = new int[1];
+            if (!pages.isEmpty()) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                    // Pages are prepared on every core and written in order by this thread
+                    NotebookPdfExporter exporter =
+                            new NotebookPdfExporter(Runtime.getRuntime().availableProcessors(), profile);
+                    written = exporter.export(() -> {
+                        if (job.isCancelled()) {
+                            throw new InterruptedIOException("Cancelled");
+                        }
+                        if (next[0] == pages.size()) {
+                            return null;
+                        }
+                        String pageId = pages.get(next[0]++).getId();
+                        progress.onProgress(next[0], pages.size());
+                        try (InputStream content = dbHelper.openPageContent(pageId)) {
+                            return content != null ? readUtf8(content) : "";
+                        }
+                    }, out);
+                }
+                if (!temp.renameTo(target)) {
+                    throw new IOException("Cannot move PDF into place: " + target);
+                }
+            }
+            return written;
+        } finally {
+            if (temp.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    // ==================== Archives ====================
+
+    /**
+     * Write a notebook, its pages and the media they refer to into an archive
+     * file. Pages are streamed from storage one at a time. The file only
+     * appears once complete; the callback receives whether it was written.
+     */
+    public BackgroundJob exportNotebookArchive(String notebookId, File target,
+                                               BackgroundJob.ProgressListener progress, Callback<Boolean> callback) {
+        BackgroundJob job = new BackgroundJob();
+        jobExecutor.execute(() -> {
+            File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+            boolean written = false;
+            try {
+                written = writeNotebookArchive(notebookId, temp, job, progress) && temp.renameTo(target);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (!written) {
+                    //noinspection ResultOfMethodCallIgnored
+                    temp.delete();
+                }
+            }
+            boolean result = written;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+        return job;
+    }
+
+    private boolean writeNotebookArchive(String notebookId, File file, BackgroundJob job,
+                                         BackgroundJob.ProgressListener progress) throws IOException {
+        Notebook notebook = dbHelper.getNotebookById(notebookId);
+        if (notebook == null) {
+            return false;
+        }
+        List<PageSummary> pages = dbHelper.getNotebookPageSummaries(notebookId);
+        String imagesDir = new File(context.getFilesDir(), CANVAS_IMAGES_DIR).getAbsolutePath() + File.separator;
+
+        NotebookArchive.Manifest manifest = new NotebookArchive.Manifest();
+        manifest.title = notebook.getTitle();
+        manifest.color = notebook.getColor();
+        manifest.pinned = notebook.isPinned();
+        for (PageSummary page : pages) {
+            manifest.pageTitles.add(page.getTitle());
+        }
+        List<File> mediaFiles = new ArrayList<>();
+        for (String path : dbHelper.getNotebookMediaPaths(notebookId)) {
+            File media = new File(path);
+            // A reference to a file that is gone cannot be carried over
+            if (media.isFile()) {
+                mediaFiles.add(media);
+                manifest.mediaPaths.add(path);
+                manifest.mediaIsImage.add(path.startsWith(imagesDir));
+            }
+        }
+
+        int total = mediaFiles.size() + pages.size();
+        try (NotebookArchive.Writer writer = new NotebookArchive.Writer(new FileOutputStream(file), job)) {
+            writer.writeManifest(manifest);
+            for (int i = 0; i < mediaFiles.size(); i++) {
+                writer.writeMedia(i, mediaFiles.get(i));
+                postProgress(progress, i + 1, total);
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                try (InputStream content = dbHelper.openPageContent(pages.get(i).getId())) {
+                    writer.writePage(i, content);
+                }
+                postProgress(progress, mediaFiles.size() + i + 1, total);
+            }
+            writer.finish();
+        }
+        return true;
+    }
+
+    /**
+     * Read an archive into a new notebook of the user. Media is copied in as
+     * it streams past and pages are staged in the cache directory; only when
+     * every entry's checksum matched are the pages inserted, in one
+     * transaction. The stream is closed when done. The callback receives the
+     * new notebook's ID, or null if the archive was invalid or the job cancelled.
+     */
+    public BackgroundJob importNotebookArchive(String userId, InputStream source,
+                                               BackgroundJob.ProgressListener progress, Callback<String> callback) {
+        BackgroundJob job = new BackgroundJob();
+        jobExecutor.execute(() -> {
+            File stagingDir = new File(context.getCacheDir(), "archive_import_" + UUID.randomUUID());
+            List<File> copiedRecordings = new ArrayList<>();
+            String notebookId = null;
+            try (InputStream in = source) {
+                notebookId = readNotebookArchive(userId, in, stagingDir, copiedRecordings, job, progress);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                deleteRecursively(stagingDir);
+                if (notebookId == null) {
+                    // Imported images may already be shared with other pages; the media collector takes those
+                    for (File recording : copiedRecordings) {
+                        //noinspection ResultOfMethodCallIgnored
+                        recording.delete();
+                    }
+                }
+            }
+            String result = notebookId;
+            mainHandler.post(() -> {
+                if (result != null) {
+                    notifyChanged(Table.NOTEBOOKS, result);
+                    notifyChanged(Table.PAGES, result);
+                    notifyChanged(Table.SEARCH, result);
+                }
+                callback.onResult(result);
+            });
+        });
+        return job;
+    }
+
+    private String readNotebookArchive(String userId, InputStream in, File stagingDir, List<File> copiedRecordings,
+                                       BackgroundJob job, BackgroundJob.ProgressListener progress) throws IOException {
+        if (!stagingDir.mkdirs()) {
+            throw new IOException("Cannot create " + stagingDir);
+        }
+        CanvasImageStore imageStore = new CanvasImageStore(new File(context.getFilesDir(), CANVAS_IMAGES_DIR));
+        File recordingsDir = context.getExternalFilesDir(null);
+        NotebookArchive.Manifest[] manifest = new NotebookArchive.Manifest[1];
+        Map<String, String> newPaths = new HashMap<>();
+        int[] done = new int[1];
+
+        NotebookArchive.read(in, new NotebookArchive.Handler() {
+            @Override
+            public void onManifest(NotebookArchive.Manifest archiveManifest) {
+                manifest[0] = archiveManifest;
+            }
+
+            @Override
+            public void onMedia(int index, InputStream data) throws IOException {
+                String oldPath = manifest[0].mediaPaths.get(index);
+                File file;
+                if (manifest[0].mediaIsImage.get(index)) {
+                    file = imageStore.put(data);
+                } else {
+                    String name = new File(oldPath).getName();
+                    int dot = name.lastIndexOf('.');
+                    file = new File(recordingsDir, RECORDING_PREFIX + UUID.randomUUID()
+                            + (dot > 0 ? name.substring(dot) : ""));
+                    copiedRecordings.add(file);
+                    NotebookArchive.copyToFile(data, file, job);
+                }
+                newPaths.put(oldPath, file.getAbsolutePath());
+                postProgress(progress, ++done[0], total());
+            }
+
+            @Override
+            public void onPage(int index, InputStream data) throws IOException {
+                // Media entries come first, so references can be pointed at the new files right away
+                String content = PageMedia.rewritePaths(readUtf8(data), newPaths);
+                try (Writer out = new OutputStreamWriter(
+                        new FileOutputStream(new File(stagingDir, String.valueOf(index))), StandardCharsets.UTF_8)) {
+                    out.write(content);
+                }
+                postProgress(progress, ++done[0], total());
+            }
+
+            private int total() {
+                return manifest[0].mediaPaths.size() + manifest[0].pageTitles.size();
+            }
+        }, job);
+
+        List<String> titles = manifest[0].pageTitles;
+        int[] next = new int[1];
+        Future<String> insert = writeExecutor.submit(() -> {
+            String notebookId = dbHelper.importNotebook(userId, manifest[0].title, manifest[0].color,
+                    manifest[0].pinned, () -> {
+                        if (next[0] == titles.size() || job.isCancelled()) {
+                            return null;
+                        }
+                        int index = next[0]++;
+                        String content;
+                        try (InputStream page = new FileInputStream(new File(stagingDir, String.valueOf(index)))) {
+                            content = readUtf8(page);
+                        }
+                        return new Page(null, null, titles.get(index), content, index + 1);
+                    });
+            // Cancelled while inserting: the notebook may be complete, but the caller was told to expect nothing
+            if (notebookId != null && job.isCancelled()) {
+                dbHelper.deleteNotebook(notebookId);
+                return null;
+            }
+            return notebookId;
+        });
+        try {
+            return insert.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Import failed", e);
+        }
+    }
+
+    private void postProgress(BackgroundJob.ProgressListener progress, int done, int total) {
+        if (progress != null) {
+            mainHandler.post(() -> progress.onProgress(done, total));
+        }
+    }
+
+    private static String readUtf8(InputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, count);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    // ==================== Search ====================
+
+    /**
+     * Full-text search over the user's notebooks, page text and reminders and
+     * over scanned documents, best matches first
+     */
+    public void search(String userId, String query, int limit, Callback<List<SearchResult>> callback) {
+        read(() -> dbHelper.search(userId, query, limit), Collections.emptyList(), callback);
+    }
+
+    /**
+     * Index (or re-index) the OCR text file of a scanned document. The file is
+     * read on the write thread, so it can be called right after OCR finishes.
+     */
+    public void indexScanText(File textFile, Callback<Boolean> callback) {
+        write(() -> {
+            String text = readText(textFile);
+            return text != null && dbHelper.indexScanDocument(textFile.getAbsolutePath(), textFile.getName(), text);
+        }, Table.SEARCH, textFile.getAbsolutePath(), false, callback);
+    }
+
+    /**
+     * Remove a deleted or renamed scanned document from the search index
+     */
+    public void removeScanFromIndex(File file, Callback<Boolean> callback) {
+        write(() -> dbHelper.removeScanDocument(file.getAbsolutePath()), Table.SEARCH, file.getAbsolutePath(), false,
+                callback);
+    }
+
+    private static String readText(File file) {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[8192];
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            int read;
+            while (text.length() < MAX_SCAN_TEXT_CHARS && (read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return text.length() > MAX_SCAN_TEXT_CHARS ? text.substring(0, MAX_SCAN_TEXT_CHARS) : text.toString();
+    }
+}
@@ -0,0 +1,595 @@
+package com.example.notex.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PageDetector - Finds the four corners of a page in a photo.
+ *
+ * Works on a small luminance image, {@link #WORK_SIZE} pixels on its long
+ * side, so it is cheap enough to run on every capture. Edges are found with
+ * a blurred Sobel gradient thinned to one pixel, and straight lines with a
+ * Hough transform in which each edge pixel only votes for angles close to
+ * its own gradient. Every pair of roughly horizontal lines is then combined
+ * with every pair of roughly vertical ones, and the quadrilateral whose sides
+ * are best covered by edges, weighted towards larger ones, wins. Its sides
+ * are then fitted to their edge pixels by least squares, which puts the
+ * corners within a pixel of the work image. Free of Android dependencies so
+ * it can be unit tested on the JVM.
+ */
+public final class PageDetector {
+
+    /** Long side, in pixels, of the image to detect on */
+    public static final int WORK_SIZE = 320;
+
+    private static final int ANGLE_STEPS = 180;
+    // Each edge pixel votes for angles this many steps either side of its gradient
+    private static final int VOTE_SPREAD = 8;
+    // Weakest grey-level step across an edge; noise and texture stay below it once blurred
+    private static final int MIN_GRADIENT = 24;
+    // Lines kept per orientation; the quads tried grow with its fourth power
+    private static final int LINES_PER_ORIENTATION = 10;
+    // Lines closer than this in angle and distance are the same line
+    private static final int SAME_LINE_ANGLE = 6;
+    private static final int SAME_LINE_DISTANCE = 6;
+    // A page covers at least this share of the frame
+    private static final float MIN_AREA = 0.12f;
+    // Corners may lie this far outside the frame, as a share of its size
+    private static final float CORNER_MARGIN = 0.03f;
+    // Share of each side that must lie on edges
+    private static final float MIN_SIDE_SUPPORT = 0.5f;
+    // Pixels either side of a found side searched for its edge when refining
+    private static final int REFINE_REACH = 3;
+
+    private static final float[] COS = new float[ANGLE_STEPS];
+    private static final float[] SIN = new float[ANGLE_STEPS];
+
+    static {
+        for (int i = 0; i < ANGLE_STEPS; i++) {
+            double theta = Math.PI * i / ANGLE_STEPS;
+            COS[i] = (float) Math.cos(theta);
+            SIN[i] = (float) Math.sin(theta);
+        }
+    }
+
+    private PageDetector() {
+    }
+
+    /**
+     * Find the page in an 8-bit luminance image
+     *
+     * @return corners {x, y} in the order top left, top right, bottom right,
+     *         bottom left, or null if no page stands out
+     */
+    public static float[][] detect(byte[] gray, int width, int height) {
+        if (width < 16 || height < 16) {
+            return null;
+        }
+        int[] smooth = blur(gray, width, height);
+        boolean[] edges = new boolean[width * height];
+        float[] angles = new float[width * height];
+        int edgeCount = findEdges(smooth, width, height, edges, angles);
+        if (edgeCount == 0) {
+            return null;
+        }
+
+        List<Line> lines = findLines(edges, angles, width, height);
+        List<Line> horizontal = new ArrayList<>();
+        List<Line> vertical = new ArrayList<>();
+        for (Line line : lines) {
+            List<Line> group = line.isAcross() ? horizontal : vertical;
+            if (group.size() < LINES_PER_ORIENTATION) {
+                group.add(line);
+            }
+        }
+        float[][] corners = bestQuad(horizontal, vertical, dilate(edges, width, height), width, height);
+        return corners != null ? refine(corners, edges, width, height) : null;
+    }
+
+    /**
+     * Scale corners found on a downscaled image back to the original
+     */
+    public static float[][] scale(float[][] corners, float factor) {
+        float[][] scaled = new float[corners.length][2];
+        for (int i = 0; i < corners.length; i++) {
+            scaled[i][0] = corners[i][0] * factor;
+            scaled[i][1] = corners[i][1] * factor;
+        }
+        return scaled;
+    }
+
+    /**
+     * 5-tap binomial blur in both directions, kept at 16 times the grey level per pass
+     */
+    private static int[] blur(byte[] gray, int width, int height) {
+        int[] rows = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                rows[row + x] = (gray[row + clamp(x - 2, width)] & 0xFF)
+                        + 4 * (gray[row + clamp(x - 1, width)] & 0xFF)
+                        + 6 * (gray[row + x] & 0xFF)
+                        + 4 * (gray[row + clamp(x + 1, width)] & 0xFF)
+                        + (gray[row + clamp(x + 2, width)] & 0xFF);
+            }
+        }
+        int[] out = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int up2 = clamp(y - 2, height) * width;
+            int up1 = clamp(y - 1, height) * width;
+            int row = y * width;
+            int down1 = clamp(y + 1, height) * width;
+            int down2 = clamp(y + 2, height) * width;
+            for (int x = 0; x < width; x++) {
+                out[row + x] = (rows[up2 + x] + 4 * rows[up1 + x] + 6 * rows[row + x] + 4 * rows[down1 + x]
+                        + rows[down2 + x]) >> 4;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Mark gradient maxima across the edge that are strong enough, and keep the gradient's angle
+     *
+     * @return number of edge pixels
+     */
+    private static int findEdges(int[] smooth, int width, int height, boolean[] edges, float[] angles) {
+        int[] magnitude = new int[width * height];
+        int[] gx = new int[width * height];
+        int[] gy = new int[width * height];
+        int max = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int dx = (smooth[i - width + 1] + 2 * smooth[i + 1] + smooth[i + width + 1])
+                        - (smooth[i - width - 1] + 2 * smooth[i - 1] + smooth[i + width - 1]);
+                int dy = (smooth[i + width - 1] + 2 * smooth[i + width] + smooth[i + width + 1])
+                        - (smooth[i - width - 1] + 2 * smooth[i - width] + smooth[i - width + 1]);
+                gx[i] = dx;
+                gy[i] = dy;
+                // About the grey-level step across a blurred edge: the blur kept 16x, Sobel adds 4x
+                magnitude[i] = (Math.abs(dx) + Math.abs(dy)) >> 5;
+                max = Math.max(max, magnitude[i]);
+            }
+        }
+        if (max < MIN_GRADIENT) {
+            return 0;
+        }
+
+        // Thin to the maximum across the edge, comparing with the neighbours along the gradient
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int m = magnitude[i];
+                if (m < MIN_GRADIENT) {
+                    continue;
+                }
+                int ax = Math.abs(gx[i]);
+                int ay = Math.abs(gy[i]);
+                int step;
+                if (ay * 5 < ax * 2) {
+                    step = 1;
+                } else if (ax * 5 < ay * 2) {
+                    step = width;
+                } else {
+                    step = (gx[i] > 0) == (gy[i] > 0) ? width + 1 : width - 1;
+                }
+                if (m >= magnitude[i - step] && m > magnitude[i + step]) {
+                    edges[i] = true;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < edges.length; i++) {
+            if (edges[i]) {
+                double angle = Math.atan2(gy[i], gx[i]);
+                angles[i] = (float) (angle < 0 ? angle + Math.PI : angle);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hough lines, strongest first, with near duplicates removed. Distances
+     * are measured from the centre of the image, so lines crossing the frame
+     * at about the same place have about the same distance whatever their angle.
+     */
+    private static List<Line> findLines(boolean[] edges, float[] angles, int width, int height) {
+        float cx = width / 2f;
+        float cy = height / 2f;
+        int maxDistance = (int) Math.ceil(Math.hypot(width, height) / 2) + 1;
+        int distances = 2 * maxDistance + 1;
+        int[] votes = new int[ANGLE_STEPS * distances];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if (!edges[i]) {
+                    continue;
+                }
+                int center = Math.round(angles[i] / (float) Math.PI * ANGLE_STEPS);
+                for (int a = center - VOTE_SPREAD; a <= center + VOTE_SPREAD; a++) {
+                    int angle = Math.floorMod(a, ANGLE_STEPS);
+                    int distance = Math.round((x - cx) * COS[angle] + (y - cy) * SIN[angle]);
+                    votes[angle * distances + distance + maxDistance]++;
+                }
+            }
+        }
+
+        // A slanted line's votes spread over neighbouring cells, so peaks are
+        // looked for in 3 x 3 sums and placed at the centroid of their votes
+        int[] spread = new int[votes.length];
+        for (int angle = 0; angle < ANGLE_STEPS; angle++) {
+            for (int d = 0; d < distances; d++) {
+                spread[angle * distances + d] = neighbourhood(votes, distances, angle, d, null);
+            }
+        }
+        int minVotes = (int) (Math.min(width, height) * 0.3f * MIN_SIDE_SUPPORT);
+        List<Line> candidates = new ArrayList<>();
+        for (int angle = 0; angle < ANGLE_STEPS; angle++) {
+            int row = angle * distances;
+            // Neighbouring angles; across 0 degrees the distance index is mirrored
+            int before = angle > 0 ? row - distances : (ANGLE_STEPS - 1) * distances;
+            int after = angle < ANGLE_STEPS - 1 ? row + distances : 0;
+            for (int d = 1; d < distances - 1; d++) {
+                int sum = spread[row + d];
+                int mirrored = distances - 1 - d;
+                if (sum < minVotes || sum < spread[row + d - 1] || sum <= spread[row + d + 1]
+                        || sum < spread[before + (angle > 0 ? d : mirrored)]
+                        || sum <= spread[after + (angle < ANGLE_STEPS - 1 ? d : mirrored)]) {
+                    continue;
+                }
+                float[] centroid = new float[2];
+                neighbourhood(votes, distances, angle, d, centroid);
+                candidates.add(new Line(centroid[0], centroid[1] - maxDistance, sum, cx, cy));
+            }
+        }
+        candidates.sort((l1, l2) -> Integer.compare(l2.votes, l1.votes));
+
+        List<Line> lines = new ArrayList<>();
+        for (Line candidate : candidates) {
+            boolean duplicate = false;
+            for (Line line : lines) {
+                if (line.isNear(candidate)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                lines.add(candidate);
+                if (lines.size() == 4 * LINES_PER_ORIENTATION) {
+                    break;
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Votes in the 3 x 3 cells around one, continuing across 0 degrees where a
+     * line comes back with the opposite distance
+     *
+     * @param centroid if not null, receives the vote-weighted angle step and distance index
+     */
+    private static int neighbourhood(int[] votes, int distances, int angle, int d, float[] centroid) {
+        int sum = 0;
+        float angleSum = 0;
+        float distanceSum = 0;
+        for (int da = -1; da <= 1; da++) {
+            int a = angle + da;
+            boolean wraps = a < 0 || a >= ANGLE_STEPS;
+            int row = Math.floorMod(a, ANGLE_STEPS) * distances;
+            for (int dd = -1; dd <= 1; dd++) {
+                int at = wraps ? distances - 1 - (d + dd) : d + dd;
+                if (at < 0 || at >= distances) {
+                    continue;
+                }
+                int v = votes[row + at];
+                sum += v;
+                angleSum += v * a;
+                distanceSum += v * (d + dd);
+            }
+        }
+        if (centroid != null && sum > 0) {
+            centroid[0] = angleSum / sum;
+            centroid[1] = distanceSum / sum;
+        }
+        return sum;
+    }
+
+    /**
+     * Edge map grown by two pixels, so sides slightly off their edge still count as covered
+     */
+    private static boolean[] dilate(boolean[] edges, int width, int height) {
+        boolean[] near = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!edges[y * width + x]) {
+                    continue;
+                }
+                for (int ny = Math.max(0, y - 2); ny <= Math.min(height - 1, y + 2); ny++) {
+                    for (int nx = Math.max(0, x - 2); nx <= Math.min(width - 1, x + 2); nx++) {
+                        near[ny * width + nx] = true;
+                    }
+                }
+            }
+        }
+        return near;
+    }
+
+    private static float[][] bestQuad(List<Line> horizontal, List<Line> vertical, boolean[] near,
+            int width, int height) {
+        float[][] best = null;
+        double bestScore = 0;
+        float marginX = width * CORNER_MARGIN;
+        float marginY = height * CORNER_MARGIN;
+        for (int h1 = 0; h1 < horizontal.size(); h1++) {
+            for (int h2 = h1 + 1; h2 < horizontal.size(); h2++) {
+                Line top = horizontal.get(h1);
+                Line bottom = horizontal.get(h2);
+                if (top.yAt(width / 2f) > bottom.yAt(width / 2f)) {
+                    Line swap = top;
+                    top = bottom;
+                    bottom = swap;
+                }
+                for (int v1 = 0; v1 < vertical.size(); v1++) {
+                    for (int v2 = v1 + 1; v2 < vertical.size(); v2++) {
+                        Line left = vertical.get(v1);
+                        Line right = vertical.get(v2);
+                        if (left.xAt(height / 2f) > right.xAt(height / 2f)) {
+                            Line swap = left;
+                            left = right;
+                            right = swap;
+                        }
+                        float[][] corners = {
+                                top.intersect(left), top.intersect(right),
+                                bottom.intersect(right), bottom.intersect(left),
+                        };
+                        if (!fits(corners, width, height, marginX, marginY)) {
+                            continue;
+                        }
+                        double area = area(corners) / ((double) width * height);
+                        if (area < MIN_AREA || !isConvex(corners)) {
+                            continue;
+                        }
+                        double total = 0;
+                        double weakest = 1;
+                        for (int side = 0; side < 4; side++) {
+                            double support = support(corners[side], corners[(side + 1) % 4], near, width, height);
+                            total += support;
+                            weakest = Math.min(weakest, support);
+                        }
+                        if (weakest < MIN_SIDE_SUPPORT) {
+                            continue;
+                        }
+                        // Coverage matters most; among well covered quads the page is the biggest
+                        double coverage = total / 4;
+                        double score = coverage * coverage * Math.sqrt(area);
+                        if (score > bestScore) {
+                            bestScore = score;
+                            best = corners;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fit each side to the edge pixels along it, which places the corners
+     * well within a pixel where the Hough angles are a degree apart
+     */
+    private static float[][] refine(float[][] corners, boolean[] edges, int width, int height) {
+        double[][] sides = new double[4][];
+        for (int side = 0; side < 4; side++) {
+            float[] from = corners[side];
+            float[] to = corners[(side + 1) % 4];
+            sides[side] = fitSide(from, to, edges, width, height);
+            if (sides[side] == null) {
+                // Too few edge pixels to improve on; keep the line through the corners
+                sides[side] = lineThrough(from, to);
+            }
+        }
+        float[][] refined = new float[4][];
+        for (int corner = 0; corner < 4; corner++) {
+            // Corner i joins side i - 1 and side i
+            double[] a = sides[(corner + 3) % 4];
+            double[] b = sides[corner];
+            double det = a[0] * b[1] - a[1] * b[0];
+            if (Math.abs(det) < 1e-6) {
+                refined[corner] = corners[corner];
+                continue;
+            }
+            float x = (float) ((a[2] * b[1] - a[1] * b[2]) / det);
+            float y = (float) ((a[0] * b[2] - a[2] * b[0]) / det);
+            // A fit pulled far off by clutter is worse than the coarse corner
+            boolean close = Math.abs(x - corners[corner][0]) <= REFINE_REACH * 2
+                    && Math.abs(y - corners[corner][1]) <= REFINE_REACH * 2;
+            refined[corner] = close ? new float[]{x, y} : corners[corner];
+        }
+        for (float[] corner : refined) {
+            corner[0] = Math.max(0, Math.min(width - 1, corner[0]));
+            corner[1] = Math.max(0, Math.min(height - 1, corner[1]));
+        }
+        return refined;
+    }
+
+    /**
+     * Least-squares line {nx, ny, c}, nx x + ny y = c, through the edge
+     * pixels within reach of a side, leaving out the ends near the corners
+     */
+    private static double[] fitSide(float[] from, float[] to, boolean[] edges, int width, int height) {
+        double dx = to[0] - from[0];
+        double dy = to[1] - from[1];
+        double length = Math.hypot(dx, dy);
+        double ux = dx / length;
+        double uy = dy / length;
+        int steps = (int) length;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        double sumYY = 0;
+        int count = 0;
+        for (int s = (int) (steps * 0.1); s <= steps * 0.9; s++) {
+            double px = from[0] + ux * s;
+            double py = from[1] + uy * s;
+            for (int o = -REFINE_REACH; o <= REFINE_REACH; o++) {
+                int x = (int) Math.round(px - uy * o);
+                int y = (int) Math.round(py + ux * o);
+                if (x >= 0 && y >= 0 && x < width && y < height && edges[y * width + x]) {
+                    sumX += x;
+                    sumY += y;
+                    sumXX += (double) x * x;
+                    sumXY += (double) x * y;
+                    sumYY += (double) y * y;
+                    count++;
+                }
+            }
+        }
+        if (count < Math.max(8, steps / 3)) {
+            return null;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        double cxx = sumXX / count - meanX * meanX;
+        double cxy = sumXY / count - meanX * meanY;
+        double cyy = sumYY / count - meanY * meanY;
+        // The normal is the covariance's eigenvector with the smaller eigenvalue
+        double theta = 0.5 * Math.atan2(2 * cxy, cxx - cyy);
+        double nx = -Math.sin(theta);
+        double ny = Math.cos(theta);
+        return new double[]{nx, ny, nx * meanX + ny * meanY};
+    }
+
+    private static double[] lineThrough(float[] from, float[] to) {
+        double nx = from[1] - to[1];
+        double ny = to[0] - from[0];
+        return new double[]{nx, ny, nx * from[0] + ny * from[1]};
+    }
+
+    private static boolean fits(float[][] corners, int width, int height, float marginX, float marginY) {
+        for (float[] corner : corners) {
+            if (corner == null || corner[0] < -marginX || corner[0] > width - 1 + marginX
+                    || corner[1] < -marginY || corner[1] > height - 1 + marginY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Share of the points along a side that lie on or next to an edge
+     */
+    private static double support(float[] from, float[] to, boolean[] near, int width, int height) {
+        float dx = to[0] - from[0];
+        float dy = to[1] - from[1];
+        int steps = Math.max(1, (int) Math.hypot(dx, dy));
+        int hits = 0;
+        int counted = 0;
+        for (int s = 0; s <= steps; s++) {
+            int x = Math.round(from[0] + dx * s / steps);
+            int y = Math.round(from[1] + dy * s / steps);
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                continue;
+            }
+            counted++;
+            if (near[y * width + x]) {
+                hits++;
+            }
+        }
+        // A side mostly outside the frame cannot be confirmed
+        return counted * 2 < steps ? 0 : (double) hits / counted;
+    }
+
+    private static double area(float[][] corners) {
+        double twice = 0;
+        for (int i = 0; i < 4; i++) {
+            float[] a = corners[i];
+            float[] b = corners[(i + 1) % 4];
+            twice += a[0] * b[1] - b[0] * a[1];
+        }
+        return Math.abs(twice) / 2;
+    }
+
+    private static boolean isConvex(float[][] corners) {
+        int sign = 0;
+        for (int i = 0; i < 4; i++) {
+            float[] a = corners[i];
+            float[] b = corners[(i + 1) % 4];
+            float[] c = corners[(i + 2) % 4];
+            float cross = (b[0] - a[0]) * (c[1] - b[1]) - (b[1] - a[1]) * (c[0] - b[0]);
+            int s = cross > 0 ? 1 : cross < 0 ? -1 : 0;
+            if (s == 0 || (sign != 0 && s != sign)) {
+                return false;
+            }
+            sign = s;
+        }
+        return true;
+    }
+
+    private static int clamp(int value, int size) {
+        return value < 0 ? 0 : value >= size ? size - 1 : value;
+    }
+
+    /** x cos + y sin = distance, the angle being the line's normal */
+    private static final class Line {
+        // Angle in ANGLE_STEPS, 0 up to 180 degrees, and distance from the image centre
+        final float angle;
+        final float centered;
+        final int votes;
+        final float cos;
+        final float sin;
+        // Distance from the image origin
+        final float distance;
+
+        Line(float angle, float centered, int votes, float cx, float cy) {
+            if (angle < 0 || angle >= ANGLE_STEPS) {
+                // The same line seen from the other side of 0 degrees
+                angle = angle < 0 ? angle + ANGLE_STEPS : angle - ANGLE_STEPS;
+                centered = -centered;
+            }
+            this.angle = angle;
+            this.centered = centered;
+            this.votes = votes;
+            double theta = Math.PI * angle / ANGLE_STEPS;
+            cos = (float) Math.cos(theta);
+            sin = (float) Math.sin(theta);
+            distance = centered + cx * cos + cy * sin;
+        }
+
+        /** Roughly horizontal: its normal points up or down */
+        boolean isAcross() {
+            return angle >= ANGLE_STEPS / 4f && angle < 3 * ANGLE_STEPS / 4f;
+        }
+
+        boolean isNear(Line other) {
+            float da = Math.abs(angle - other.angle);
+            if (da <= SAME_LINE_ANGLE) {
+                return Math.abs(centered - other.centered) <= SAME_LINE_DISTANCE;
+            }
+            // Either side of 0 degrees the same line has the opposite distance
+            return ANGLE_STEPS - da <= SAME_LINE_ANGLE && Math.abs(centered + other.centered) <= SAME_LINE_DISTANCE;
+        }
+
+        float yAt(float x) {
+            return (distance - x * cos) / sin;
+        }
+
+        float xAt(float y) {
+            return (distance - y * sin) / cos;
+        }
+
+        float[] intersect(Line other) {
+            float det = cos * other.sin - sin * other.cos;
+            if (Math.abs(det) < 1e-3f) {
+                return null;
+            }
+            float x = (distance * other.sin - other.distance * sin) / det;
+            float y = (cos * other.distance - other.cos * distance) / det;
+            return new float[]{x, y};
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.notex.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel - Runs copies of a worker that share a queue of bands or tiles.
+ */
+final class Parallel {
+
+    private Parallel() {
+    }
+
+    /**
+     * Run copies of a worker and wait for all of them
+     *
+     * @param executor null runs one copy on the calling thread
+     */
+    static void run(ExecutorService executor, int workers, Callable<Void> worker) throws InterruptedException {
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        try {
+            if (executor == null || workers <= 1) {
+                worker.call();
+                return;
+            }
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(worker));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw unchecked(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unchecked(e);
+        }
+    }
+
+    private static RuntimeException unchecked(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.notex.scan;
+
+/**
+ * PixelOps - Colour adjustments and right-angle rotations on ARGB pixel
+ * arrays, so scan pages can be edited in buffers that are reused rather
+ * than drawn into a new bitmap at every step.
+ *
+ * The colour adjustments give the same results as the ColorMatrix filters
+ * they replace, through a lookup table per call. Alpha is kept.
+ *
+ * Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class PixelOps {
+
+    // ColorMatrix.setSaturation(0)'s weights of red, green and blue, in 1/256ths
+    private static final int LUMA_RED = 55;
+    private static final int LUMA_GREEN = 183;
+    private static final int LUMA_BLUE = 18;
+
+    private PixelOps() {
+    }
+
+    /**
+     * Multiply every colour channel by gain and add offset, clamped to 0..255
+     *
+     * @param count number of pixels from the start of the array
+     */
+    public static void scaleChannels(int[] pixels, int count, float gain, float offset) {
+        int[] table = table(gain, offset);
+        for (int i = 0; i < count; i++) {
+            int pixel = pixels[i];
+            pixels[i] = (pixel & 0xFF000000) | table[(pixel >> 16) & 0xFF] << 16
+                    | table[(pixel >> 8) & 0xFF] << 8 | table[pixel & 0xFF];
+        }
+    }
+
+    /**
+     * Turn every pixel grey by its luminance, then multiply by gain and add offset, clamped to 0..255
+     *
+     * @param count number of pixels from the start of the array
+     */
+    public static void toGray(int[] pixels, int count, float gain, float offset) {
+        int[] table = table(gain, offset);
+        for (int i = 0; i < count; i++) {
+            int pixel = pixels[i];
+            int luma = (((pixel >> 16) & 0xFF) * LUMA_RED + ((pixel >> 8) & 0xFF) * LUMA_GREEN
+                    + (pixel & 0xFF) * LUMA_BLUE) >> 8;
+            int gray = table[luma];
+            pixels[i] = (pixel & 0xFF000000) | gray << 16 | gray << 8 | gray;
+        }
+    }
+
+    /**
+     * Rotate a width x height image clockwise by quarter turns into out,
+     * which then holds a height x width image for odd turns
+     *
+     * @param out at least width x height pixels, not the source
+     */
+    public static void rotate(int[] pixels, int width, int height, int quarterTurns, int[] out) {
+        int turns = Math.floorMod(quarterTurns, 4);
+        rotate(pixels, width, height, quarterTurns, out, 0, turns % 2 == 0 ? height : width);
+    }
+
+    /**
+     * Rotate into a band of rows of the rotated image, so a large image can be
+     * rotated through a small buffer
+     *
+     * @param out receives rows firstRow to firstRow + rows - 1 of the rotated image, from its start
+     */
+    public static void rotate(int[] pixels, int width, int height, int quarterTurns, int[] out, int firstRow,
+            int rows) {
+        if (pixels == out) {
+            throw new IllegalArgumentException("Cannot rotate into the source");
+        }
+        int turns = Math.floorMod(quarterTurns, 4);
+        int rotatedWidth = turns % 2 == 0 ? width : height;
+        int o = 0;
+        for (int oy = firstRow; oy < firstRow + rows; oy++) {
+            switch (turns) {
+                case 0:
+                    System.arraycopy(pixels, oy * width, out, o, width);
+                    o += width;
+                    break;
+                case 1:
+                    // Row oy is source column oy, read bottom to top
+                    for (int ox = 0, i = (height - 1) * width + oy; ox < rotatedWidth; ox++, i -= width) {
+                        out[o++] = pixels[i];
+                    }
+                    break;
+                case 2:
+                    // Row oy is source row height - 1 - oy, read right to left
+                    for (int ox = 0, i = (height - oy) * width - 1; ox < rotatedWidth; ox++, i--) {
+                        out[o++] = pixels[i];
+                    }
+                    break;
+                default:
+                    // Row oy is source column width - 1 - oy, read top to bottom
+                    for (int ox = 0, i = width - 1 - oy; ox < rotatedWidth; ox++, i += width) {
+                        out[o++] = pixels[i];
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static int[] table(float gain, float offset) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = Math.max(0, Math.min(255, Math.round(v * gain + offset)));
+        }
+        return table;
+    }
+}
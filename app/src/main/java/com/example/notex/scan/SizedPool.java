@@ -0,0 +1,162 @@
+package com.example.notex.scan;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SizedPool - Keeps large buffers that were given back, e.g. bitmaps and
+ * pixel arrays, for the next operation that needs one at least as big.
+ *
+ * A request takes the smallest free item that fits, as long as it is no
+ * more than twice the size asked for, so pages of slightly different sizes
+ * share buffers without a small page holding on to a huge one. New items
+ * should be made a little larger, at the sizeClass of the size needed, so
+ * a page slightly larger than the ones before still finds a buffer. The pool is
+ * bounded by the total size of its free items; the items given back longest
+ * ago are dropped first and handed to the evictor, e.g. to recycle a bitmap.
+ * Thread-safe.
+ *
+ * Free of Android dependencies so it can be unit tested on the JVM.
+ */
+public final class SizedPool<T> {
+
+    /** Told about items the pool lets go of */
+    public interface Evictor<T> {
+        void evict(T item);
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long size;
+
+        Entry(T item, long size) {
+            this.item = item;
+            this.size = size;
+        }
+    }
+
+    private final long maxSize;
+    private final Evictor<T> evictor;
+    // Oldest first
+    private final List<Entry<T>> free = new ArrayList<>();
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxSize bound on the total size of free items, in the unit items are sized in
+     * @param evictor told about dropped items; null if they need nothing
+     */
+    public SizedPool(long maxSize, Evictor<T> evictor) {
+        this.maxSize = maxSize;
+        this.evictor = evictor;
+    }
+
+    /**
+     * Size to make a new item for a request of size: rounded up to one of
+     * eight steps per doubling, so at most an eighth larger
+     */
+    public static long sizeClass(long size) {
+        if (size <= 16) {
+            return size;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(size) - 3;
+        long step = 1L << shift;
+        return (size + step - 1) / step * step;
+    }
+
+    /**
+     * Take the smallest free item of at least minSize, or null if none fits.
+     * Counts the hit or miss.
+     */
+    public synchronized T take(long minSize) {
+        int best = -1;
+        for (int i = 0; i < free.size(); i++) {
+            long itemSize = free.get(i).size;
+            if (itemSize >= minSize && itemSize <= 2 * minSize
+                    && (best < 0 || itemSize < free.get(best).size)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        Entry<T> entry = free.remove(best);
+        size -= entry.size;
+        return entry.item;
+    }
+
+    /**
+     * Give back an item the caller no longer touches. Items bigger than the
+     * whole pool are evicted at once.
+     */
+    public void give(T item, long itemSize) {
+        List<T> evicted = new ArrayList<>();
+        synchronized (this) {
+            free.add(new Entry<>(item, itemSize));
+            size += itemSize;
+            Iterator<Entry<T>> oldest = free.iterator();
+            while (size > maxSize && oldest.hasNext()) {
+                Entry<T> entry = oldest.next();
+                oldest.remove();
+                size -= entry.size;
+                evicted.add(entry.item);
+                evictionCount++;
+            }
+        }
+        evictAll(evicted);
+    }
+
+    /**
+     * Drop every free item, e.g. when the screen doing the work closes
+     */
+    public void clear() {
+        List<T> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (Entry<T> entry : free) {
+                evicted.add(entry.item);
+            }
+            free.clear();
+            size = 0;
+        }
+        evictAll(evicted);
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /** Total size of the free items */
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "SizedPool[free=%d,size=%d/%d,hits=%d,misses=%d,evictions=%d]",
+                free.size(), size, maxSize, hitCount, missCount, evictionCount);
+    }
+
+    private void evictAll(List<T> items) {
+        if (evictor != null) {
+            // Outside the lock: evicting, e.g. recycling a bitmap, may be slow
+            for (T item : items) {
+                evictor.evict(item);
+            }
+        }
+    }
+}
@@ -5,10 +5,11 @@ import android.content.SharedPreferences;
 
 import com.example.notex.database.DatabaseHelper;
 import com.example.notex.models.User;
+import com.example.notex.repository.NoteRepository;
 
 /**
  * AuthManager - Singleton class for managing user authentication and sessions.
- * Now uses DatabaseHelper for persistent storage.
+ * Users are checked and added through NoteRepository, off the main thread.
  */
 public class AuthManager {
 
@@ -22,11 +23,13 @@ public class AuthManager {
 
     private SharedPreferences sharedPreferences;
     private DatabaseHelper databaseHelper;
+    private NoteRepository repository;
     private User currentUser;
 
     private AuthManager(Context context) {
         sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         databaseHelper = DatabaseHelper.getInstance(context);
+        repository = NoteRepository.getInstance(context);
         loadUserFromPreferences();
     }
 
@@ -43,22 +46,21 @@ public class AuthManager {
      * @param username     Username or email
      * @param password     Password
      * @param expectedRole Expected role (USER or ADMIN) for validation
-     * @return true if login successful, false otherwise
+     * @param callback     Told on the main thread whether login succeeded
      */
-    public boolean login(String username, String password, User.UserRole expectedRole) {
+    public void login(String username, String password, User.UserRole expectedRole,
+                      NoteRepository.Callback<Boolean> callback) {
         // Normalize username (case-insensitive)
         String normalizedUsername = username.toLowerCase().trim();
 
         // Validate user against database
-        User user = databaseHelper.validateUser(normalizedUsername, password, expectedRole);
-
-        if (user != null) {
-            currentUser = user;
-            saveUserToPreferences();
-            return true;
-        }
-
-        return false;
+        repository.validateUser(normalizedUsername, password, expectedRole, user -> {
+            if (user != null) {
+                currentUser = user;
+                saveUserToPreferences();
+            }
+            callback.onResult(user != null);
+        });
     }
 
     /**
@@ -68,19 +70,14 @@ public class AuthManager {
      * @param email    Email
      * @param password Password
      * @param role     User role
-     * @return true if registration successful
+     * @param callback Told on the main thread whether registration succeeded; false if the username exists
      */
-    public boolean register(String username, String email, String password, User.UserRole role) {
+    public void register(String username, String email, String password, User.UserRole role,
+                         NoteRepository.Callback<Boolean> callback) {
         // Normalize username (case-insensitive)
         String normalizedUsername = username.toLowerCase().trim();
 
-        // Check if username already exists
-        if (databaseHelper.usernameExists(normalizedUsername)) {
-            return false;
-        }
-
-        // Add user to database
-        return databaseHelper.addUser(normalizedUsername, email, password, role);
+        repository.registerUser(normalizedUsername, email, password, role, callback);
     }
 
     /**
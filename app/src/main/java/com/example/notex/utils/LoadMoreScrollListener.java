@@ -0,0 +1,34 @@
+package com.example.notex.utils;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * LoadMoreScrollListener - Asks for the next page when a list scrolls close to its end
+ */
+public class LoadMoreScrollListener extends RecyclerView.OnScrollListener {
+
+    /** Rows left below the last visible one when the next page is requested */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private final Runnable loadMore;
+
+    public LoadMoreScrollListener(Runnable loadMore) {
+        this.loadMore = loadMore;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            if (lastVisible >= layoutManager.getItemCount() - 1 - PREFETCH_DISTANCE) {
+                loadMore.run();
+            }
+        }
+    }
+}
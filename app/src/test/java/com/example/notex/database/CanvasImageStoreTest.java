@@ -0,0 +1,70 @@
+package com.example.notex.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CanvasImageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameImage_isStoredOnce() throws IOException {
+        File root = new File(folder.getRoot(), "canvas_images");
+        CanvasImageStore store = new CanvasImageStore(root);
+        byte[] photo = bytes(5000, 1);
+
+        File first = store.put(new ByteArrayInputStream(photo));
+        File second = store.put(photo);
+
+        assertEquals(first, second);
+        assertArrayEquals(photo, Files.readAllBytes(first.toPath()));
+        assertEquals(1, root.listFiles().length);
+        assertNotEquals(first, store.put(bytes(5000, 2)));
+    }
+
+    @Test
+    public void displayPath_prefersRendition() throws IOException {
+        CanvasImageStore store = new CanvasImageStore(folder.getRoot());
+        File image = store.put(bytes(100, 3));
+        assertEquals(image.getAbsolutePath(), CanvasImageStore.displayPath(image.getAbsolutePath()));
+
+        File display = CanvasImageStore.displayFile(image);
+        assertTrue(display.getParentFile().mkdirs());
+        Files.write(display.toPath(), bytes(10, 4));
+        assertEquals(display.getAbsolutePath(), CanvasImageStore.displayPath(image.getAbsolutePath()));
+    }
+
+    @Test
+    public void collectedImage_takesRenditionAlong() throws IOException {
+        CanvasImageStore store = new CanvasImageStore(folder.getRoot());
+        File image = store.put(bytes(100, 5));
+        File display = CanvasImageStore.displayFile(image);
+        assertTrue(display.getParentFile().mkdirs());
+        Files.write(display.toPath(), bytes(10, 6));
+
+        // The rendition directory is not a candidate itself
+        assertEquals(1, MediaCollector.listMedia(folder.getRoot(), null, "voice_").size());
+
+        MediaCollector.Result result = MediaCollector.collect(
+                MediaCollector.listMedia(folder.getRoot(), null, "voice_"), path -> false, 0, Long.MAX_VALUE);
+        assertFalse(image.exists());
+        assertFalse(display.exists());
+        assertEquals(110, result.bytesReclaimed);
+    }
+
+    private static byte[] bytes(int size, int seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.notex.database;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CanvasPagesTest {
+
+    @Test
+    public void singleCanvas_isOnePage() {
+        String canvas = PageContentCodecTest.canvasJson(3, 1);
+        assertEquals(Collections.singletonList(canvas), CanvasPages.split(canvas));
+    }
+
+    @Test
+    public void multiPageWrapper_isExpanded() throws Exception {
+        String first = PageContentCodecTest.canvasJson(2, 2);
+        String second = PageContentCodecTest.canvasJson(4, 3);
+        JSONArray pages = new JSONArray()
+                .put(new JSONObject().put("pageNumber", 1).put("content", first))
+                .put(new JSONObject().put("pageNumber", 2).put("content", second));
+        String wrapper = new JSONObject().put("pages", pages).put("totalPages", 2).toString();
+
+        assertEquals(Arrays.asList(first, second), CanvasPages.split(wrapper));
+    }
+
+    @Test
+    public void emptyContent_isOneEmptyPage() {
+        assertEquals(Collections.singletonList(""), CanvasPages.split(null));
+        assertEquals(Collections.singletonList(""), CanvasPages.split(""));
+        assertEquals(Collections.singletonList(""), CanvasPages.split("{\"pages\":[],\"totalPages\":0}"));
+        assertEquals(Collections.singletonList("not json"), CanvasPages.split("not json"));
+    }
+}
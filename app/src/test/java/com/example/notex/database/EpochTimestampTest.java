@@ -0,0 +1,129 @@
+package com.example.notex.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the v9 text-to-epoch-millis conversion and that the compiled hot
+ * writes match the schema they are bound against.
+ */
+public class EpochTimestampTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(DatabaseSchema.CREATE_USERS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_NOTEBOOKS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_PAGES_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_REMINDERS_TABLE);
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void legacyText_convertsToEpochMillis() throws SQLException {
+        // 'utc' treats the stored value as local time, so compare against the
+        // same conversion done by SQLite rather than a fixed constant
+        long converted = convert("'2024-03-01 12:30:00'");
+        long expected = queryLong("SELECT CAST(strftime('%s', '2024-03-01 12:30:00', 'utc') AS INTEGER) * 1000");
+        assertEquals(expected, converted);
+        assertEquals(0, converted % 1000);
+    }
+
+    @Test
+    public void unparseableText_fallsBackToNow() throws SQLException {
+        long before = System.currentTimeMillis() - 1000;
+        long converted = convert("'not a date'");
+        assertTrue(converted >= before);
+        assertTrue(convert("NULL") >= before);
+    }
+
+    @Test
+    public void hotWrites_bindEveryColumn() throws SQLException {
+        assertEquals(10, parameterCount(DatabaseSchema.INSERT_PAGE));
+        assertEquals(7, parameterCount(DatabaseSchema.UPDATE_PAGE));
+        assertEquals(2, parameterCount(DatabaseSchema.TOUCH_NOTEBOOK));
+        assertEquals(22, parameterCount(DatabaseSchema.INSERT_REMINDER));
+    }
+
+    @Test
+    public void v9Migration_leavesForeignKeysPointingAtLiveTables() throws SQLException {
+        try (Connection v8 = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = v8.createStatement()) {
+            // The tables as schema v8 left them, with text timestamps
+            stmt.execute("CREATE TABLE users(id TEXT PRIMARY KEY, username TEXT UNIQUE NOT NULL, email TEXT,"
+                    + " password_hash TEXT NOT NULL, role TEXT NOT NULL, created_at TEXT, last_login TEXT)");
+            stmt.execute("CREATE TABLE notebooks(id TEXT PRIMARY KEY, user_id TEXT NOT NULL, title TEXT NOT NULL,"
+                    + " color TEXT, is_pinned INTEGER DEFAULT 0, created_at TEXT, updated_at TEXT,"
+                    + " page_count INTEGER DEFAULT 0, FOREIGN KEY(user_id) REFERENCES users(id))");
+            stmt.execute("CREATE TABLE pages(id TEXT PRIMARY KEY, notebook_id TEXT NOT NULL, title TEXT NOT NULL,"
+                    + " content TEXT, page_number INTEGER, created_at TEXT, updated_at TEXT, content_hash TEXT,"
+                    + " content_size INTEGER DEFAULT 0, preview TEXT,"
+                    + " FOREIGN KEY(notebook_id) REFERENCES notebooks(id))");
+            stmt.execute(DatabaseSchema.CREATE_REMINDERS_TABLE);
+            stmt.execute("INSERT INTO users VALUES ('u1', 'ana', NULL, 'hash', 'user', '2024-03-01 12:30:00', NULL)");
+            stmt.execute("INSERT INTO notebooks VALUES ('n1', 'u1', 'Notes', NULL, 0, '2024-03-01 12:30:00',"
+                    + " '2024-03-02 08:00:00', 1)");
+            stmt.execute("INSERT INTO pages VALUES ('p1', 'n1', 'Page 1', 'text', 1, '2024-03-01 12:30:00',"
+                    + " '2024-03-02 08:00:00', NULL, 4, 'text')");
+
+            for (String statement : DatabaseSchema.migrateTimestampsToEpochMillis()) {
+                stmt.execute(statement);
+            }
+            stmt.execute("PRAGMA foreign_keys = ON");
+
+            try (ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master"
+                    + " WHERE sql LIKE '%\\_legacy%' ESCAPE '\\' OR sql LIKE '%\\_new%' ESCAPE '\\'")) {
+                if (rs.next()) {
+                    fail("Dangling reference in " + rs.getString(1));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA foreign_key_check")) {
+                assertFalse(rs.next());
+            }
+            // Reminders were not rebuilt, and must still reach users
+            stmt.execute("INSERT INTO reminders (id, user_id, title, type, trigger_type) VALUES"
+                    + " ('r1', 'u1', 'Call', 'reminder', 'time')");
+            try (ResultSet rs = stmt.executeQuery("SELECT typeof(created_at), updated_at FROM pages")) {
+                assertTrue(rs.next());
+                assertEquals("integer", rs.getString(1));
+                assertTrue(rs.getLong(2) > 0);
+            }
+        }
+    }
+
+    private long convert(String value) throws SQLException {
+        return queryLong("SELECT " + DatabaseSchema.epochMillisFromText(value));
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+
+    private int parameterCount(String sql) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            return stmt.getParameterMetaData().getParameterCount();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.notex.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks the keyset page queries with a small page size and checks they return
+ * exactly the rows of the unpaged ORDER BY, including rows with equal sort
+ * keys. Parameters are bound as strings, the way DatabaseHelper binds them.
+ */
+public class KeysetPaginationTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(DatabaseSchema.CREATE_USERS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_NOTEBOOKS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_PAGES_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_REMINDERS_TABLE);
+            for (String index : DatabaseSchema.CREATE_INDEXES) {
+                stmt.execute(index);
+            }
+
+            // Two pinned and eight unpinned notebooks sharing a handful of timestamps
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO notebooks (id, user_id, title, is_pinned, created_at, updated_at)"
+                        + " VALUES ('nb" + i + "', 'u1', 't', " + (i % 5 == 0 ? 1 : 0) + ", 0, " + (i % 3) + ")");
+            }
+            stmt.execute("INSERT INTO notebooks (id, user_id, title, is_pinned, created_at, updated_at)"
+                    + " VALUES ('other', 'u2', 't', 0, 0, 1)");
+
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO users (id, username, password_hash, role, created_at)"
+                        + " VALUES ('user" + i + "', 'name" + i + "', 'x', 'USER', " + (i / 4) + ")");
+                stmt.execute("INSERT INTO reminders (id, user_id, title, type, trigger_type, scheduled_at)"
+                        + " VALUES ('r" + i + "', 'u1', 't', '" + (i % 2 == 0 ? "TASK" : "EVENT") + "', 'TIME', "
+                        + (100 + i / 3) + ")");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void notebookPages_matchFullOrder() throws SQLException {
+        List<String> paged = new ArrayList<>();
+        String pinned = "1";
+        String updatedAt = String.valueOf(Long.MAX_VALUE);
+        String id = "";
+        while (true) {
+            List<String[]> page = query(DatabaseSchema.QUERY_USER_NOTEBOOKS_PAGE, "id", "is_pinned", "updated_at",
+                    "u1", pinned, pinned, updatedAt, updatedAt, id, String.valueOf(PAGE_SIZE));
+            for (String[] row : page) {
+                paged.add(row[0]);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            String[] last = page.get(page.size() - 1);
+            id = last[0];
+            pinned = last[1];
+            updatedAt = last[2];
+        }
+
+        assertEquals(ids("SELECT id FROM notebooks WHERE user_id='u1'"
+                + " ORDER BY is_pinned DESC, updated_at DESC, id DESC"), paged);
+    }
+
+    @Test
+    public void userPages_matchFullOrder() throws SQLException {
+        List<String> paged = new ArrayList<>();
+        String createdAt = String.valueOf(Long.MAX_VALUE);
+        String id = "";
+        while (true) {
+            List<String[]> page = query(DatabaseSchema.QUERY_USERS_PAGE, "id", "created_at", null,
+                    createdAt, createdAt, id, String.valueOf(PAGE_SIZE));
+            for (String[] row : page) {
+                paged.add(row[0]);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            String[] last = page.get(page.size() - 1);
+            id = last[0];
+            createdAt = last[1];
+        }
+
+        assertEquals(ids("SELECT id FROM users ORDER BY created_at DESC, id DESC"), paged);
+    }
+
+    @Test
+    public void reminderPages_matchFullOrderWithinRange() throws SQLException {
+        assertEquals(ids("SELECT id FROM reminders WHERE user_id='u1' AND scheduled_at>=101 AND scheduled_at<103"
+                + " ORDER BY scheduled_at, id"), pageReminders(null, 101, 103));
+        assertEquals(ids("SELECT id FROM reminders WHERE user_id='u1' AND type='TASK'"
+                + " ORDER BY scheduled_at, id"), pageReminders("TASK", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    private List<String> pageReminders(String type, long from, long to) throws SQLException {
+        List<String> paged = new ArrayList<>();
+        String scheduledAt = String.valueOf(from);
+        String id = "";
+        while (true) {
+            List<String> params = new ArrayList<>();
+            params.add("u1");
+            if (type != null) {
+                params.add(type);
+            }
+            params.add(scheduledAt);
+            params.add(String.valueOf(to));
+            params.add(scheduledAt);
+            params.add(id);
+            params.add(String.valueOf(PAGE_SIZE));
+
+            List<String[]> page = query(type != null ? DatabaseSchema.QUERY_USER_REMINDERS_OF_TYPE_PAGE
+                    : DatabaseSchema.QUERY_USER_REMINDERS_PAGE, "id", "scheduled_at", null,
+                    params.toArray(new String[0]));
+            for (String[] row : page) {
+                paged.add(row[0]);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            String[] last = page.get(page.size() - 1);
+            id = last[0];
+            scheduledAt = last[1];
+        }
+        return paged;
+    }
+
+    private List<String[]> query(String sql, String first, String second, String third, String... params)
+            throws SQLException {
+        List<String[]> rows = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new String[] { rs.getString(first), rs.getString(second),
+                            third != null ? rs.getString(third) : null });
+                }
+            }
+        }
+        return rows;
+    }
+
+    private List<String> ids(String sql) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        return ids;
+    }
+}
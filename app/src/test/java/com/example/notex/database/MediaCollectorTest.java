@@ -0,0 +1,90 @@
+package com.example.notex.database;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class MediaCollectorTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void extractPaths_findsImagesAndVoicesInEveryPage() {
+        String single = "{\"paths\":[],\"images\":[{\"path\":\"/img/a.png\"},{\"imageData\":\"AAAA\"}],"
+                + "\"voices\":[{\"audioPath\":\"/rec/voice_1.3gp\"}]}";
+        assertEquals(new HashSet<>(Arrays.asList("/img/a.png", "/rec/voice_1.3gp")), PageMedia.extractPaths(single));
+
+        String wrapper = "{\"pages\":[{\"content\":" + quote("{\"images\":[{\"path\":\"/img/b.png\"}]}")
+                + "},{\"content\":" + quote(single) + "}]}";
+        assertEquals(Arrays.asList("/img/b.png", "/img/a.png", "/rec/voice_1.3gp"),
+                Arrays.asList(PageMedia.extractPaths(wrapper).toArray()));
+    }
+
+    @Test
+    public void extractPaths_ignoresNonCanvasContent() {
+        assertTrue(PageMedia.extractPaths(null).isEmpty());
+        assertTrue(PageMedia.extractPaths("plain text note").isEmpty());
+        assertTrue(PageMedia.extractPaths(PageContentCodecTest.canvasJson(3, 1)).isEmpty());
+    }
+
+    @Test
+    public void listMedia_takesImagesAndRecordingsOnly() throws IOException {
+        File images = folder.newFolder("canvas_images");
+        File recordings = folder.newFolder("external");
+        File image = write(new File(images, "a.png"), 10);
+        File voice = write(new File(recordings, "voice_1.3gp"), 10);
+        write(new File(recordings, "export.pdf"), 10);
+
+        Set<File> media = new HashSet<>(MediaCollector.listMedia(images, recordings, "voice_"));
+        assertEquals(new HashSet<>(Arrays.asList(image, voice)), media);
+        assertTrue(MediaCollector.listMedia(null, new File(folder.getRoot(), "missing"), "voice_").isEmpty());
+    }
+
+    @Test
+    public void collect_deletesOldUnreferencedFilesOnly() throws IOException {
+        long now = System.currentTimeMillis();
+        File orphan = write(folder.newFile("orphan.png"), 100);
+        File referenced = write(folder.newFile("referenced.png"), 200);
+        File fresh = write(folder.newFile("fresh.png"), 300);
+        assertTrue(orphan.setLastModified(now - 2 * DAY));
+        assertTrue(referenced.setLastModified(now - 2 * DAY));
+        assertTrue(fresh.setLastModified(now - DAY / 2));
+
+        Set<String> references = Collections.singleton(referenced.getAbsolutePath());
+        List<File> media = Arrays.asList(orphan, referenced, fresh);
+        MediaCollector.Result result = MediaCollector.collect(media, references::contains, DAY, now);
+
+        assertFalse(orphan.exists());
+        assertTrue(referenced.exists());
+        assertTrue(fresh.exists());
+        assertEquals(3, result.filesScanned);
+        assertEquals(1, result.filesDeleted);
+        assertEquals(100, result.bytesReclaimed);
+    }
+
+    private static File write(File file, int size) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        return file;
+    }
+
+    private static String quote(String json) {
+        return JSONObject.quote(json);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.notex.database;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class NotebookArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void archive_roundTrips() throws IOException {
+        File image = folder.newFile("img_a");
+        byte[] imageBytes = randomBytes(300_000, 1);
+        Files.write(image.toPath(), imageBytes);
+        String page = PageContentCodecTest.canvasJson(50, 2);
+
+        byte[] archive = writeArchive(image, page, null);
+        Recorder recorder = new Recorder();
+        NotebookArchive.read(new ByteArrayInputStream(archive), recorder, null);
+
+        assertEquals("Trip", recorder.manifest.title);
+        assertEquals("#FF0000", recorder.manifest.color);
+        assertTrue(recorder.manifest.pinned);
+        assertEquals(image.getAbsolutePath(), recorder.manifest.mediaPaths.get(0));
+        assertTrue(recorder.manifest.mediaIsImage.get(0));
+        assertArrayEquals(imageBytes, recorder.media.get(0));
+        assertEquals(page, recorder.pages.get(0));
+        assertEquals("", recorder.pages.get(1));
+    }
+
+    @Test
+    public void modifiedEntry_failsChecksum() throws IOException {
+        File image = folder.newFile("img_b");
+        Files.write(image.toPath(), randomBytes(1000, 3));
+        byte[] archive = writeArchive(image, "{\"paths\":[]}", null);
+
+        byte[] tampered = rewrite(archive, "pages/0", "{\"paths\":[1]}".getBytes(StandardCharsets.UTF_8));
+        try {
+            NotebookArchive.read(new ByteArrayInputStream(tampered), new Recorder(), null);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("pages/0"));
+        }
+    }
+
+    @Test
+    public void missingEntry_isRejected() throws IOException {
+        File image = folder.newFile("img_c");
+        Files.write(image.toPath(), randomBytes(1000, 4));
+        byte[] archive = writeArchive(image, "{}", null);
+
+        try {
+            NotebookArchive.read(new ByteArrayInputStream(rewrite(archive, "media/0", null)), new Recorder(), null);
+            fail();
+        } catch (IOException expected) {
+            // Checksums list an entry that never came
+        }
+    }
+
+    @Test
+    public void mediaAfterPages_isRejected() throws IOException {
+        File image = folder.newFile("img_e");
+        Files.write(image.toPath(), randomBytes(1000, 8));
+        NotebookArchive.Manifest manifest = new NotebookArchive.Manifest();
+        manifest.pageTitles.add("Day 1");
+        manifest.mediaPaths.add(image.getAbsolutePath());
+        manifest.mediaIsImage.add(true);
+
+        // Checksums are valid, only the order is wrong
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NotebookArchive.Writer writer = new NotebookArchive.Writer(out, null)) {
+            writer.writeManifest(manifest);
+            writer.writePage(0, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+            writer.writeMedia(0, image);
+            writer.finish();
+        }
+        try {
+            NotebookArchive.read(new ByteArrayInputStream(out.toByteArray()), new Recorder(), null);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("media/0"));
+        }
+    }
+
+    @Test
+    public void notAnArchive_isRejected() {
+        try {
+            NotebookArchive.read(new ByteArrayInputStream(randomBytes(100, 5)), new Recorder(), null);
+            fail();
+        } catch (IOException expected) {
+            // No manifest, no checksums
+        }
+    }
+
+    @Test
+    public void cancelledExport_stops() throws IOException {
+        File image = folder.newFile("img_d");
+        Files.write(image.toPath(), randomBytes(1000, 6));
+        try {
+            writeArchive(image, "{}", () -> true);
+            fail();
+        } catch (InterruptedIOException expected) {
+            // Cancelled before the first media entry
+        }
+    }
+
+    @Test
+    public void copyToFile_copiesEverything() throws IOException {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17, 7);
+        File target = new File(folder.getRoot(), "voice_1.3gp");
+        assertEquals(data.length, NotebookArchive.copyToFile(new ByteArrayInputStream(data), target, null));
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void rewritePaths_pointsReferencesAtImportedFiles() {
+        String page = "{\"images\":[{\"path\":\"/old/img_a\",\"x\":1},{\"path\":\"/other\"}],"
+                + "\"voices\":[{\"audioPath\":\"/old/voice_1.3gp\"}]}";
+        String wrapper = "{\"pages\":[{\"content\":" + JSONObject.quote(page) + "}]}";
+        Map<String, String> newPaths = new HashMap<>();
+        newPaths.put("/old/img_a", "/new/img_a");
+        newPaths.put("/old/voice_1.3gp", "/new/voice_2.3gp");
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("/new/img_a", "/other", "/new/voice_2.3gp")),
+                PageMedia.extractPaths(PageMedia.rewritePaths(wrapper, newPaths)));
+        assertEquals("plain text", PageMedia.rewritePaths("plain text", newPaths));
+        assertSame(page, PageMedia.rewritePaths(page, Collections.emptyMap()));
+    }
+
+    private byte[] writeArchive(File image, String page, NotebookArchive.Cancellation cancellation)
+            throws IOException {
+        NotebookArchive.Manifest manifest = new NotebookArchive.Manifest();
+        manifest.title = "Trip";
+        manifest.color = "#FF0000";
+        manifest.pinned = true;
+        manifest.pageTitles.add("Day 1");
+        manifest.pageTitles.add("Day 2");
+        manifest.mediaPaths.add(image.getAbsolutePath());
+        manifest.mediaIsImage.add(true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NotebookArchive.Writer writer = new NotebookArchive.Writer(out, cancellation)) {
+            writer.writeManifest(manifest);
+            writer.writeMedia(0, image);
+            writer.writePage(0, new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+            writer.writePage(1, null);
+            writer.finish();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Copy an archive, replacing one entry's data, or dropping it when data is null
+     */
+    private static byte[] rewrite(byte[] archive, String name, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.getName().equals(name) && data == null) {
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                zip.write(entry.getName().equals(name) ? data : readAll(in));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static final class Recorder implements NotebookArchive.Handler {
+        NotebookArchive.Manifest manifest;
+        final List<byte[]> media = new ArrayList<>();
+        final List<String> pages = new ArrayList<>();
+
+        @Override
+        public void onManifest(NotebookArchive.Manifest manifest) {
+            this.manifest = manifest;
+        }
+
+        @Override
+        public void onMedia(int index, InputStream data) throws IOException {
+            assertEquals(media.size(), index);
+            media.add(readAll(data));
+        }
+
+        @Override
+        public void onPage(int index, InputStream data) throws IOException {
+            assertEquals(pages.size(), index);
+            pages.add(new String(readAll(data), StandardCharsets.UTF_8));
+        }
+    }
+}
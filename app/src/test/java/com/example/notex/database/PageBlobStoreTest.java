@@ -0,0 +1,67 @@
+package com.example.notex.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip and deduplication checks for the page content blob store.
+ */
+public class PageBlobStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void put_thenRead_returnsSameContent() throws IOException {
+        PageBlobStore store = new PageBlobStore(folder.getRoot());
+        String content = "{\"totalPages\":2,\"pages\":[\"ä\",\"ö\"]}";
+
+        String hash = store.put(content.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(64, hash.length());
+        assertEquals(content, new String(store.read(hash), StandardCharsets.UTF_8));
+        try (InputStream in = store.open(hash)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            assertEquals(content, out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void put_identicalContent_storesOneFile() throws IOException {
+        PageBlobStore store = new PageBlobStore(folder.getRoot());
+        byte[] data = "same".getBytes(StandardCharsets.UTF_8);
+
+        String first = store.put(data);
+        String second = store.put(data.clone());
+
+        assertEquals(first, second);
+        File[] shards = folder.getRoot().listFiles();
+        assertEquals(1, shards.length);
+        assertEquals(1, shards[0].listFiles().length);
+    }
+
+    @Test
+    public void delete_removesBlobAndEmptyShard() throws IOException {
+        PageBlobStore store = new PageBlobStore(folder.getRoot());
+        String hash = store.put("gone".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(store.delete(hash));
+
+        assertFalse(store.exists(hash));
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.notex.database;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PageContentCodecTest {
+
+    @Test
+    public void encodedContent_roundTrips() throws IOException {
+        String content = canvasJson(200, 1);
+        byte[] packed = PageContentCodec.encode(content);
+
+        assertNotNull(packed);
+        assertTrue(PageContentCodec.isEncoded(packed));
+        assertEquals(content, PageContentCodec.decode(packed));
+        assertEquals(content, readAll(PageContentCodec.decodingStream(new ByteArrayInputStream(packed))));
+        assertEquals(content, PageContentCodec.readContent(new ByteArrayInputStream(packed)));
+    }
+
+    @Test
+    public void legacyText_isReadAsIs() throws IOException {
+        String content = "{\"paths\":[],\"texts\":[{\"text\":\"héllo\"}]}";
+        byte[] legacy = content.getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(PageContentCodec.isEncoded(legacy));
+        assertEquals(content, PageContentCodec.decode(legacy));
+        assertEquals(content, readAll(PageContentCodec.decodingStream(new ByteArrayInputStream(legacy))));
+        assertEquals("", readAll(PageContentCodec.decodingStream(new ByteArrayInputStream(new byte[0]))));
+        assertEquals(content, PageContentCodec.readContent(new ByteArrayInputStream(legacy)));
+    }
+
+    @Test
+    public void shortContent_isLeftAsText() {
+        assertNull(PageContentCodec.encode(null));
+        assertNull(PageContentCodec.encode("{\"paths\":[]}"));
+    }
+
+    @Test
+    public void encodedContent_isNeverLarger() {
+        StringBuilder noise = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            noise.append((char) (0x21 + random.nextInt(94)));
+        }
+        byte[] packed = PageContentCodec.encode(noise.toString());
+        assertTrue(packed == null || packed.length < noise.length());
+    }
+
+    @Test
+    public void canvasJson_atLeastHalves() {
+        String content = canvasJson(500, 2);
+        int raw = content.getBytes(StandardCharsets.UTF_8).length;
+        int packed = PageContentCodec.encode(content).length;
+        assertTrue("ratio " + raw / (double) packed, packed * 2 < raw);
+    }
+
+    @Test
+    public void corruptData_throws() {
+        byte[] packed = PageContentCodec.encode(canvasJson(50, 3));
+        byte[] truncated = new byte[packed.length / 2];
+        System.arraycopy(packed, 0, truncated, 0, truncated.length);
+        try {
+            PageContentCodec.decode(truncated);
+            fail();
+        } catch (IOException expected) {
+            // Reported to the caller rather than returning partial content
+        }
+        try {
+            PageContentCodec.readContent(new ByteArrayInputStream(truncated));
+            fail();
+        } catch (IOException expected) {
+            // Streaming reads report it too
+        }
+    }
+
+    @Test
+    public void textColumn_keepsBlobsAndText() throws SQLException, IOException {
+        String content = canvasJson(100, 4);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(DatabaseSchema.CREATE_USERS_TABLE);
+                stmt.execute(DatabaseSchema.CREATE_NOTEBOOKS_TABLE);
+                stmt.execute(DatabaseSchema.CREATE_PAGES_TABLE);
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO pages (id, notebook_id, title, content, page_number) VALUES (?, 'n', 't', ?, 1)")) {
+                insert.setString(1, "packed");
+                insert.setBytes(2, PageContentCodec.encode(content));
+                insert.executeUpdate();
+                insert.setString(1, "legacy");
+                insert.setString(2, content);
+                insert.executeUpdate();
+            }
+
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, typeof(content), content FROM pages ORDER BY id")) {
+                assertTrue(rs.next());
+                assertEquals("text", rs.getString(2));
+                assertTrue(rs.next());
+                assertEquals("blob", rs.getString(2));
+                assertEquals(content, PageContentCodec.decode(rs.getBytes(3)));
+            }
+        }
+    }
+
+    /**
+     * Canvas JSON in the shape CanvasView writes: strokes of float points plus a few text boxes
+     */
+    static String canvasJson(int strokes, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("{\"paths\":[");
+        for (int i = 0; i < strokes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"points\":[");
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1500;
+            int points = 20 + random.nextInt(60);
+            for (int p = 0; p < points; p++) {
+                x += random.nextFloat() * 6 - 3;
+                y += random.nextFloat() * 6 - 3;
+                json.append(p > 0 ? "," : "").append(x).append(',').append(y);
+            }
+            json.append("],\"color\":-16777216,\"strokeWidth\":5,\"penStyle\":\"NORMAL\",")
+                    .append("\"isDashed\":false,\"isFilled\":false}");
+        }
+        json.append("],\"texts\":[{\"text\":\"Meeting notes\",\"x\":120.5,\"y\":80.25,\"textSize\":48,")
+                .append("\"rotation\":0,\"textColor\":-16777216,\"backgroundColor\":0,\"isBold\":false,")
+                .append("\"isItalic\":false,\"isUnderline\":false,\"isSticky\":false}],\"images\":[],\"voices\":[]}");
+        return json.toString();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = stream.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.notex.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN over every hot DAO query against the real schema
+ * and fails if any of them falls back to a full table scan or a temp sort.
+ */
+public class QueryPlanTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(DatabaseSchema.CREATE_USERS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_NOTEBOOKS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_PAGES_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_REMINDERS_TABLE);
+            for (String createIndex : DatabaseSchema.CREATE_INDEXES) {
+                stmt.execute(createIndex);
+            }
+            stmt.execute(DatabaseSchema.CREATE_INDEX_PAGES_CONTENT_HASH);
+            stmt.execute(DatabaseSchema.CREATE_PAGE_MEDIA_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_INDEX_PAGE_MEDIA_PATH);
+            stmt.execute(DatabaseSchema.CREATE_JOBS_TABLE);
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void userByUsername_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_BY_USERNAME, "demo_user");
+    }
+
+    @Test
+    public void userNotebooks_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_NOTEBOOKS, "user");
+    }
+
+    @Test
+    public void notebookCount_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_NOTEBOOK_COUNT, "user");
+    }
+
+    @Test
+    public void notebookPages_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_NOTEBOOK_PAGES, "notebook");
+    }
+
+    @Test
+    public void notebookPageSummaries_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_NOTEBOOK_PAGE_SUMMARIES, "notebook");
+    }
+
+    @Test
+    public void pageRowCount_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_PAGE_ROW_COUNT, "notebook");
+    }
+
+    @Test
+    public void firstPageContent_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_FIRST_PAGE_CONTENT, "notebook");
+    }
+
+    @Test
+    public void pageContent_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_PAGE_CONTENT, "page");
+    }
+
+    @Test
+    public void notebookContentHashes_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_NOTEBOOK_CONTENT_HASHES, "notebook");
+    }
+
+    @Test
+    public void contentHashReferenced_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_CONTENT_HASH_REFERENCED, "hash");
+    }
+
+    @Test
+    public void userReminders_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_REMINDERS, "user");
+    }
+
+    @Test
+    public void upcomingReminders_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_UPCOMING_REMINDERS, "user", 0L);
+    }
+
+    @Test
+    public void reminderCount_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_REMINDER_COUNT, "user");
+    }
+
+    @Test
+    public void userNotebooksPage_seeksIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_NOTEBOOKS_PAGE, "user", 1, 1, 1000L, 1000L, "nb", 50);
+    }
+
+    @Test
+    public void userRemindersPage_seeksIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_REMINDERS_PAGE, "user", 0L, 1000L, 0L, "", 50);
+    }
+
+    @Test
+    public void userRemindersOfTypePage_seeksIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USER_REMINDERS_OF_TYPE_PAGE, "user", "task", 0L, 1000L, 0L, "", 50);
+    }
+
+    @Test
+    public void usersPage_seeksIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_USERS_PAGE, Long.MAX_VALUE, Long.MAX_VALUE, "", 50);
+    }
+
+    @Test
+    public void mediaReferenced_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_MEDIA_REFERENCED, "/files/canvas_images/a.png");
+    }
+
+    @Test
+    public void deletePageMedia_usesKey() throws SQLException {
+        assertIndexed(DatabaseSchema.DELETE_PAGE_MEDIA, "page");
+    }
+
+    @Test
+    public void deleteNotebookMedia_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.DELETE_NOTEBOOK_MEDIA, "notebook");
+    }
+
+    @Test
+    public void notebookMediaPaths_usesIndex() throws SQLException {
+        assertIndexed(DatabaseSchema.QUERY_NOTEBOOK_MEDIA_PATHS, "notebook");
+    }
+
+    @Test
+    public void jobProgress_usesKey() throws SQLException {
+        assertIndexed(DatabaseSchema.UPDATE_JOB_PROGRESS, 3, 10, "{}", "job");
+        assertIndexed(DatabaseSchema.DELETE_JOB, "job");
+    }
+
+    private void assertIndexed(String sql, Object... args) throws SQLException {
+        List<String> plan = explain(sql, args);
+        assertFalse("Empty plan for: " + sql, plan.isEmpty());
+        for (String detail : plan) {
+            assertFalse("Full scan in plan " + plan + " for: " + sql, detail.startsWith("SCAN "));
+            assertFalse("Temp sort in plan " + plan + " for: " + sql, detail.contains("TEMP B-TREE"));
+        }
+    }
+
+    private List<String> explain(String sql, Object... args) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < args.length; i++) {
+                pstmt.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    details.add(rs.getString("detail"));
+                }
+            }
+        }
+        return details;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.notex.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the search queries against both index flavors (FTS5 and the FTS4
+ * fallback) with the same documents DatabaseHelper writes.
+ */
+public class SearchIndexTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void fts5_prefixMatchesRankTitleHitsFirstAndHighlight() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS5);
+        addSampleDocuments();
+
+        List<String[]> hits = search(DatabaseSchema.QUERY_SEARCH_FTS5, "meet", "alice");
+
+        assertEquals(2, hits.size());
+        assertEquals("nb-1", hits.get(0)[1]);
+        assertEquals("\u0002Meeting\u0003 notes", hits.get(0)[3]);
+        assertEquals("page-1", hits.get(1)[1]);
+        assertTrue(hits.get(1)[4].contains("\u0002meeting\u0003"));
+    }
+
+    @Test
+    public void fts4_fallbackRunsTheSameSearch() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS4);
+        addSampleDocuments();
+
+        List<String[]> hits = search(DatabaseSchema.QUERY_SEARCH_FTS4, "meet", "alice");
+
+        assertEquals(2, hits.size());
+        // No ranking in FTS4: newest document first
+        assertEquals("page-1", hits.get(0)[1]);
+        assertTrue(hits.get(0)[4].contains("\u0002meeting\u0003"));
+        assertEquals("\u0002Meeting\u0003 notes", hits.get(1)[3]);
+    }
+
+    @Test
+    public void search_showsOwnAndSharedDocumentsOnly() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS5);
+        addSampleDocuments();
+
+        List<String[]> hits = search(DatabaseSchema.QUERY_SEARCH_FTS5, "invoice", "alice");
+
+        assertEquals(1, hits.size());
+        assertEquals("SCAN", hits.get(0)[0]);
+    }
+
+    @Test
+    public void search_requiresEveryTerm() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS5);
+        addSampleDocuments();
+
+        assertEquals(1, search(DatabaseSchema.QUERY_SEARCH_FTS5, "meeting budget", "alice").size());
+        assertEquals(0, search(DatabaseSchema.QUERY_SEARCH_FTS5, "meeting invoice", "alice").size());
+    }
+
+    @Test
+    public void deletingNotebook_removesItsPageEntries() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS5);
+        addSampleDocuments();
+
+        try (PreparedStatement stmt = connection.prepareStatement(DatabaseSchema.DELETE_NOTEBOOK_SEARCH_ENTRIES)) {
+            stmt.setString(1, "nb-1");
+            stmt.executeUpdate();
+        }
+
+        assertEquals(0, search(DatabaseSchema.QUERY_SEARCH_FTS5, "meet", "alice").size());
+        assertEquals(1, search(DatabaseSchema.QUERY_SEARCH_FTS5, "invoice", "alice").size());
+    }
+
+    @Test
+    public void search_joinsDocumentsByRowid() throws SQLException {
+        createIndex(DatabaseSchema.CREATE_SEARCH_INDEX_FTS5);
+
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "EXPLAIN QUERY PLAN " + DatabaseSchema.QUERY_SEARCH_FTS5)) {
+            stmt.setString(1, "meet*");
+            stmt.setString(2, "alice");
+            stmt.setInt(3, 20);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString("detail")).append('\n');
+                }
+            }
+        }
+
+        assertTrue(plan.toString(), plan.toString().contains("VIRTUAL TABLE"));
+        assertTrue(plan.toString(), plan.toString().contains("SEARCH d USING INTEGER PRIMARY KEY"));
+    }
+
+    private void createIndex(String createIndex) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(DatabaseSchema.CREATE_SEARCH_DOCS_TABLE);
+            stmt.execute(DatabaseSchema.CREATE_INDEX_SEARCH_DOCS_NOTEBOOK);
+            stmt.execute(createIndex);
+        }
+    }
+
+    private void addSampleDocuments() throws SQLException {
+        addDocument(1, "NOTEBOOK", "nb-1", "alice", "nb-1", 100, "Meeting notes", null);
+        addDocument(2, "PAGE", "page-1", "alice", "nb-1", 300, "Page 1",
+                "Agenda for the weekly meeting\nBudget review");
+        addDocument(3, "REMINDER", "rem-1", "bob", null, 200, "Pay invoice", "Before Friday");
+        addDocument(4, "SCAN", "/scans/receipt.txt", null, null, 50, "receipt.txt", "INVOICE 1042 total 99.00");
+    }
+
+    private void addDocument(long id, String kind, String refId, String userId, String notebookId,
+                             long updatedAt, String title, String body) throws SQLException {
+        try (PreparedStatement doc = connection.prepareStatement("INSERT INTO " + DatabaseSchema.TABLE_SEARCH_DOCS
+                + " VALUES (?, ?, ?, ?, ?, ?)");
+             PreparedStatement entry = connection.prepareStatement("INSERT INTO " + DatabaseSchema.TABLE_SEARCH_INDEX
+                     + " (rowid, " + DatabaseSchema.COLUMN_SEARCH_TITLE + ", " + DatabaseSchema.COLUMN_SEARCH_BODY
+                     + ") VALUES (?, ?, ?)")) {
+            doc.setLong(1, id);
+            doc.setString(2, kind);
+            doc.setString(3, refId);
+            doc.setString(4, userId);
+            doc.setString(5, notebookId);
+            doc.setLong(6, updatedAt);
+            doc.executeUpdate();
+
+            entry.setLong(1, id);
+            entry.setString(2, title);
+            entry.setString(3, body);
+            entry.executeUpdate();
+        }
+    }
+
+    private List<String[]> search(String sql, String query, String userId) throws SQLException {
+        List<String[]> hits = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, SearchText.toMatchQuery(query));
+            stmt.setString(2, userId);
+            stmt.setString(3, "20");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    hits.add(new String[] {
+                            rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5) });
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.notex.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchTextTest {
+
+    @Test
+    public void matchQuery_makesEveryWordAPrefixTerm() {
+        assertEquals("meeting* notes*", SearchText.toMatchQuery("Meeting notes"));
+    }
+
+    @Test
+    public void matchQuery_dropsOperatorsAndPunctuation() {
+        assertEquals("foo* and* bar* or* baz*", SearchText.toMatchQuery("foo AND \"bar\" OR -baz*"));
+        assertEquals("café* 42*", SearchText.toMatchQuery("  café, 42!  "));
+    }
+
+    @Test
+    public void matchQuery_returnsNullWithoutWords() {
+        assertNull(SearchText.toMatchQuery(null));
+        assertNull(SearchText.toMatchQuery(""));
+        assertNull(SearchText.toMatchQuery(" \"*\" - "));
+    }
+
+    @Test
+    public void matchQuery_capsTermCount() {
+        String query = SearchText.toMatchQuery("a b c d e f g h i j k");
+        assertEquals(SearchText.MAX_QUERY_TERMS, query.split(" ").length);
+    }
+
+    @Test
+    public void pageText_readsSingleCanvas() {
+        String canvas = "{\"paths\":[{\"points\":[1,2,3,4]}],"
+                + "\"texts\":[{\"text\":\"Buy milk\",\"x\":1,\"y\":2},{\"text\":\"  \"},"
+                + "{\"text\":\"Call Ana\",\"isSticky\":true}]}";
+        assertEquals("Buy milk\nCall Ana", SearchText.extractPageText(canvas));
+    }
+
+    @Test
+    public void pageText_readsEveryPageOfMultiPageContent() {
+        String first = "{\"texts\":[{\"text\":\"Chapter one\"}]}";
+        String second = "{\"texts\":[{\"text\":\"Chapter two\"}]}";
+        String content = "{\"pages\":[{\"pageNumber\":1,\"content\":" + quote(first) + "},"
+                + "{\"pageNumber\":2,\"content\":" + quote(second) + "}],\"totalPages\":2}";
+        assertEquals("Chapter one\nChapter two", SearchText.extractPageText(content));
+    }
+
+    @Test
+    public void pageText_handlesPlainAndEmptyContent() {
+        assertEquals("just some text", SearchText.extractPageText("just some text"));
+        assertEquals("", SearchText.extractPageText("{\"paths\":[]}"));
+        assertEquals("", SearchText.extractPageText(null));
+    }
+
+    @Test
+    public void join_skipsEmptyParts() {
+        assertEquals("Dentist\nMain St", SearchText.join("Dentist", null, " ", "Main St"));
+        assertEquals("", SearchText.join(null, ""));
+    }
+
+    private static String quote(String json) {
+        return "\"" + json.replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.notex.export;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class ImagePdfWriterTest {
+
+    static byte[] jpeg(int width, int height, int type) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | 0x40);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void jpeg_sizeAndColourSpaceComeFromFrameHeader() throws Exception {
+        ImagePdfWriter.Image color = ImagePdfWriter.Image.jpeg(jpeg(64, 48, BufferedImage.TYPE_INT_RGB));
+        assertEquals(64, color.getWidth());
+        assertEquals(48, color.getHeight());
+        assertEquals("/DeviceRGB", color.colorSpace);
+
+        ImagePdfWriter.Image gray = ImagePdfWriter.Image.jpeg(jpeg(10, 20, BufferedImage.TYPE_BYTE_GRAY));
+        assertEquals("/DeviceGray", gray.colorSpace);
+        assertEquals(10, gray.getWidth());
+        assertEquals(20, gray.getHeight());
+    }
+
+    @Test(expected = IOException.class)
+    public void jpeg_rejectsOtherData() throws Exception {
+        ImagePdfWriter.Image.jpeg("%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void bilevel_isStoredDeflated() throws Exception {
+        byte[] packed = new byte[100 * 13];
+        packed[5] = (byte) 0xA5;
+        ImagePdfWriter.Image image = ImagePdfWriter.Image.bilevel(packed, 100, 100);
+        assertEquals(1, image.bitsPerComponent);
+        assertTrue(image.data.length < packed.length);
+
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(image.data))) {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                inflated.write(buffer, 0, count);
+            }
+        }
+        assertArrayEquals(packed, inflated.toByteArray());
+    }
+
+    @Test
+    public void crossReferenceTable_pointsAtEveryObject() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImagePdfWriter writer = new ImagePdfWriter(out);
+        writer.addPage(ImagePdfWriter.Image.jpeg(jpeg(40, 60, BufferedImage.TYPE_INT_RGB)), 595, 842);
+        writer.addPage(ImagePdfWriter.Image.bilevel(new byte[5 * 30], 40, 30), 842, 595);
+        writer.finish();
+        assertEquals(2, writer.getPageCount());
+
+        String pdf = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+        assertTrue(pdf.contains("/Type /Pages /Kids [5 0 R 8 0 R ] /Count 2"));
+
+        Matcher startXref = Pattern.compile("startxref\n(\\d+)\n").matcher(pdf);
+        assertTrue(startXref.find());
+        int xref = Integer.parseInt(startXref.group(1));
+        assertTrue(pdf.startsWith("xref\n0 9\n", xref));
+
+        Matcher entries = Pattern.compile("(\\d{10}) 00000 n \n").matcher(pdf.substring(xref));
+        int object = 0;
+        while (entries.find()) {
+            object++;
+            int offset = Integer.parseInt(entries.group(1));
+            assertTrue("object " + object, pdf.startsWith(object + " 0 obj\n", offset));
+        }
+        assertEquals(8, object);
+    }
+
+    @Test
+    public void resumedDocument_matchesOneWrittenStraightThrough() throws Exception {
+        ImagePdfWriter.Image first = ImagePdfWriter.Image.bilevel(new byte[4 * 20], 30, 20);
+        ImagePdfWriter.Image second = ImagePdfWriter.Image.jpeg(jpeg(40, 60, BufferedImage.TYPE_INT_RGB));
+
+        ByteArrayOutputStream straight = new ByteArrayOutputStream();
+        ImagePdfWriter writer = new ImagePdfWriter(straight);
+        writer.addPage(first, 595, 842);
+        writer.addPage(second, 595, 842);
+        writer.finish();
+
+        // Killed while writing the second page: the file holds a partial object past the checkpoint
+        ByteArrayOutputStream interrupted = new ByteArrayOutputStream();
+        writer = new ImagePdfWriter(interrupted);
+        writer.addPage(first, 595, 842);
+        String checkpoint = writer.getState().toJson().toString();
+        interrupted.write("9 0 obj\n<< /Type /XObj".getBytes(StandardCharsets.US_ASCII));
+
+        ImagePdfWriter.State state = ImagePdfWriter.State.fromJson(new JSONObject(checkpoint));
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        resumed.write(interrupted.toByteArray(), 0, (int) state.getLength());
+        writer = ImagePdfWriter.resume(resumed, state);
+        writer.addPage(second, 595, 842);
+        writer.finish();
+
+        assertEquals(2, writer.getPageCount());
+        assertArrayEquals(straight.toByteArray(), resumed.toByteArray());
+    }
+}
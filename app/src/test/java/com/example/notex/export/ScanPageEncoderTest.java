@@ -0,0 +1,81 @@
+package com.example.notex.export;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+public class ScanPageEncoderTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+
+    /** A page held as one ARGB array */
+    private static ScanPageEncoder.Rows rows(int[] pixels, int width) {
+        return (y, row) -> System.arraycopy(pixels, y * width, row, 0, width);
+    }
+
+    private static int[] textPage(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Lines of "text": short black runs every few rows
+                boolean ink = y % 20 < 6 && x % 9 < 4;
+                pixels[y * width + x] = ink ? BLACK : WHITE;
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void blackTextOnWhite_isBilevel() {
+        int[] pixels = textPage(200, 300);
+        assertEquals(ScanPageEncoder.Kind.BILEVEL, ScanPageEncoder.classify(rows(pixels, 200), 200, 300));
+    }
+
+    @Test
+    public void greyPhoto_isGray() {
+        int[] pixels = new int[256 * 100];
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 256; x++) {
+                pixels[y * 256 + x] = 0xFF000000 | x << 16 | x << 8 | x;
+            }
+        }
+        assertEquals(ScanPageEncoder.Kind.GRAY, ScanPageEncoder.classify(rows(pixels, 256), 256, 100));
+    }
+
+    @Test
+    public void colouredArea_isColor() {
+        int[] pixels = textPage(200, 300);
+        for (int y = 100; y < 140; y++) {
+            for (int x = 50; x < 150; x++) {
+                pixels[y * 200 + x] = 0xFFD03020;
+            }
+        }
+        assertEquals(ScanPageEncoder.Kind.COLOR, ScanPageEncoder.classify(rows(pixels, 200), 200, 300));
+    }
+
+    @Test
+    public void bilevel_packsRowsFromHighBitWithWhiteSet() throws Exception {
+        // 10 pixels wide pads each row to 2 bytes
+        int[] pixels = {
+                WHITE, BLACK, WHITE, BLACK, BLACK, BLACK, BLACK, BLACK, WHITE, WHITE,
+                BLACK, BLACK, BLACK, BLACK, BLACK, BLACK, BLACK, BLACK, BLACK, 0xFFC0C0C0,
+        };
+        ImagePdfWriter.Image image = ScanPageEncoder.bilevel(rows(pixels, 10), 10, 2);
+        assertEquals(10, image.getWidth());
+        assertEquals(2, image.getHeight());
+
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(image.data))) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                packed.write(b);
+            }
+        }
+        assertArrayEquals(new byte[]{(byte) 0xA0, (byte) 0xC0, 0x00, 0x40}, packed.toByteArray());
+    }
+}
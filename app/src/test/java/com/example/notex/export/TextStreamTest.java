@@ -0,0 +1,89 @@
+package com.example.notex.export;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class TextStreamTest {
+
+    /** Hands out at most one character per read, so every split between reads is exercised */
+    private static Reader trickle(String text) {
+        return new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(1, length));
+            }
+        };
+    }
+
+    private static String readAll(TextStream stream) throws IOException {
+        StringBuilder text = new StringBuilder();
+        CharSequence window = stream.fill(Integer.MAX_VALUE / 4);
+        text.append(window);
+        stream.consume(window.length());
+        assertTrue(stream.isFinished());
+        return text.toString();
+    }
+
+    @Test
+    public void lineEnds_becomeNewlines() throws IOException {
+        String text = "one\r\ntwo\rthree\n\r\nfour";
+        String expected = "one\ntwo\nthree\n\nfour\n";
+        assertEquals(expected, readAll(new TextStream(new StringReader(text))));
+        assertEquals(expected, readAll(new TextStream(trickle(text))));
+    }
+
+    @Test
+    public void emptyText_hasNothingToLayOut() throws IOException {
+        TextStream stream = new TextStream(new StringReader(""));
+        assertEquals(0, stream.fill(100).length());
+        assertTrue(stream.isFinished());
+    }
+
+    @Test
+    public void fill_readsAtLeastWhatIsAskedForUnlessTheTextEnds() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        TextStream stream = new TextStream(new StringReader(text.toString()));
+        assertTrue(stream.fill(5000).length() >= 5000);
+        assertFalse(stream.isExhausted());
+        assertEquals(10_001, stream.fill(20_000).length());
+        assertTrue(stream.isExhausted());
+        assertFalse(stream.isFinished());
+    }
+
+    @Test
+    public void pageByPage_keepsTheWindowSmall() throws IOException {
+        // A few megabytes of log lines, laid out a "page" of up to 3000 characters at a time
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; text.length() < 3_000_000; line++) {
+            text.append("2024-05-01 12:00:00 INFO request ").append(line).append(" served in ")
+                    .append(line % 97).append(" ms\n");
+        }
+        TextStream stream = new TextStream(new StringReader(text.toString()));
+        StringBuilder laidOut = new StringBuilder();
+        int pages = 0;
+        while (!stream.isFinished()) {
+            CharSequence window = stream.fill(8192);
+            int page = Math.min(window.length(), 3000 - pages % 7 * 100);
+            laidOut.append(window, 0, page);
+            stream.consume(page);
+            pages++;
+        }
+        assertEquals(text.toString(), laidOut.toString());
+        assertEquals(text.length(), stream.consumed());
+        assertTrue("window grew to " + stream.capacity(), stream.capacity() <= 2 * (8192 + 4096));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void consumingMoreThanTheWindow_isRejected() throws IOException {
+        TextStream stream = new TextStream(new StringReader("short"));
+        stream.consume(stream.fill(10).length() + 1);
+    }
+}
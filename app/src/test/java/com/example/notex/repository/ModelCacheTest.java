@@ -0,0 +1,77 @@
+package com.example.notex.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ModelCacheTest {
+
+    @Test
+    public void getCountsHitsAndMisses() {
+        ModelCache<String, String> cache = new ModelCache<>(10);
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", "A", cache.version()));
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.peek("a"));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedFirst() {
+        ModelCache<String, String> cache = new ModelCache<>(2);
+        cache.put("a", "A", cache.version());
+        cache.put("b", "B", cache.version());
+        cache.get("a");
+        cache.put("c", "C", cache.version());
+
+        assertNull(cache.peek("b"));
+        assertEquals("A", cache.peek("a"));
+        assertEquals("C", cache.peek("c"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void weightBoundsTheCache() {
+        ModelCache<String, String> cache = new ModelCache<>(10, String::length);
+        cache.put("a", "123456", cache.version());
+        cache.put("b", "1234", cache.version());
+        assertEquals(2, cache.size());
+
+        cache.put("c", "12", cache.version());
+        assertNull(cache.peek("a"));
+
+        // Larger than the whole budget: not cached, nothing else evicted
+        assertFalse(cache.put("d", "12345678901", cache.version()));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidation_isNotStored() {
+        ModelCache<String, String> cache = new ModelCache<>(10);
+        long version = cache.version();
+        cache.invalidate("a");
+
+        assertFalse(cache.put("a", "stale", version));
+        assertNull(cache.peek("a"));
+    }
+
+    @Test
+    public void updateAndInvalidate_replaceAndDropEntries() {
+        ModelCache<String, String> cache = new ModelCache<>(10);
+        cache.put("a", "A", cache.version());
+        cache.put("b", "B", cache.version());
+        cache.put("c", "C", cache.version());
+
+        cache.update("a", "A2");
+        assertEquals("A2", cache.peek("a"));
+
+        cache.invalidateIf((key, value) -> value.startsWith("B"));
+        assertNull(cache.peek("b"));
+        assertEquals("C", cache.peek("c"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.notex.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveThresholdTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+
+    /** The threshold straight from its definition, summing every window pixel by pixel */
+    private static int[] bruteForce(byte[] gray, int width, int height, AdaptiveThreshold.Method method,
+            int window, double k) {
+        int radius = window / 2;
+        int[] out = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long sum = 0;
+                long squares = 0;
+                int count = 0;
+                for (int wy = Math.max(0, y - radius); wy < Math.min(height, y + radius + 1); wy++) {
+                    for (int wx = Math.max(0, x - radius); wx < Math.min(width, x + radius + 1); wx++) {
+                        int g = gray[wy * width + wx] & 0xFF;
+                        sum += g;
+                        squares += g * g;
+                        count++;
+                    }
+                }
+                double mean = (double) sum / count;
+                double deviation = Math.sqrt(Math.max(0, (double) squares / count - mean * mean));
+                double threshold;
+                switch (method) {
+                    case MEAN:
+                        threshold = mean - k;
+                        break;
+                    case NIBLACK:
+                        threshold = mean + k * deviation;
+                        break;
+                    default:
+                        threshold = mean * (1 + k * (deviation / 128 - 1));
+                }
+                out[y * width + x] = (gray[y * width + x] & 0xFF) >= threshold ? WHITE : BLACK;
+            }
+        }
+        return out;
+    }
+
+    private static byte[] noise(int width, int height, long seed) {
+        byte[] gray = new byte[width * height];
+        new Random(seed).nextBytes(gray);
+        return gray;
+    }
+
+    private static void assertMatchesBruteForce(AdaptiveThreshold.Method method, int window, double k,
+            ExecutorService executor, int threads) throws InterruptedException {
+        // Tall enough for several bands, and the last one partial
+        int width = 53;
+        int height = 300;
+        byte[] gray = noise(width, height, window);
+        int[] out = new int[width * height];
+        new AdaptiveThreshold(method, window, k).apply(gray, width, height, out, executor, threads);
+        assertArrayEquals(method + " " + window, bruteForce(gray, width, height, method, window, k), out);
+    }
+
+    @Test
+    public void everyMethod_matchesWindowSummedPixelByPixel() throws InterruptedException {
+        for (int window : new int[]{3, 15, 61}) {
+            assertMatchesBruteForce(AdaptiveThreshold.Method.MEAN, window, 10, null, 1);
+            assertMatchesBruteForce(AdaptiveThreshold.Method.NIBLACK, window, -0.2, null, 1);
+            assertMatchesBruteForce(AdaptiveThreshold.Method.SAUVOLA, window, 0.3, null, 1);
+        }
+    }
+
+    @Test
+    public void parallelBands_matchOneThread() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertMatchesBruteForce(AdaptiveThreshold.Method.SAUVOLA, 31, 0.2, executor, 3);
+            assertMatchesBruteForce(AdaptiveThreshold.Method.MEAN, 31, 10, executor, 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void largestWindow_onWhitePage_doesNotOverflow() throws InterruptedException {
+        // All-white windows of 255 x 255 have the largest sum of squares the tables must hold
+        int width = 600;
+        int height = 600;
+        byte[] gray = new byte[width * height];
+        Arrays.fill(gray, (byte) 255);
+        gray[300 * width + 300] = 0;
+        int[] out = new int[width * height];
+        new AdaptiveThreshold(AdaptiveThreshold.Method.NIBLACK, AdaptiveThreshold.MAX_WINDOW, -0.2)
+                .apply(gray, width, height, out, null, 1);
+        assertEquals(BLACK, out[300 * width + 300]);
+        assertEquals(WHITE, out[300 * width + 299]);
+        assertEquals(WHITE, out[0]);
+    }
+
+    @Test
+    public void sauvola_findsTextInShadowAGlobalThresholdLoses() throws InterruptedException {
+        // Paper fading from 230 to 60 left to right, with strokes 50 levels darker than the paper
+        int width = 400;
+        int height = 120;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int paper = 230 - 170 * x / width;
+                boolean ink = y % 30 >= 10 && y % 30 < 14 && x % 12 < 6;
+                int g = ink ? paper - 50 : paper;
+                pixels[y * width + x] = 0xFF000000 | g << 16 | g << 8 | g;
+            }
+        }
+        // Under a global 128 the whole shadowed right half goes black
+        assertTrue((pixels[11 * width + 395] & 0xFF) < 128);
+
+        AdaptiveThreshold.forText().apply(pixels, width, height, null, 1);
+
+        int inkMissed = 0;
+        int paperLost = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean ink = y % 30 >= 10 && y % 30 < 14 && x % 12 < 6;
+                if (ink && pixels[y * width + x] != BLACK) {
+                    inkMissed++;
+                } else if (!ink && pixels[y * width + x] != WHITE) {
+                    paperLost++;
+                }
+            }
+        }
+        assertTrue("ink missed: " + inkMissed, inkMissed < width * height / 100);
+        assertTrue("paper lost: " + paperLost, paperLost < width * height / 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evenWindow_isRejected() {
+        new AdaptiveThreshold(AdaptiveThreshold.Method.MEAN, 16, 10);
+    }
+}
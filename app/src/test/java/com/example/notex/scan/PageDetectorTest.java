@@ -0,0 +1,210 @@
+package com.example.notex.scan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PageDetectorTest {
+
+    // Largest corner error in pixels of the work image
+    private static final float TOLERANCE = 1.5f;
+    // A desktop JVM takes about 8 ms; the margin keeps slow build machines from failing
+    private static final long BUDGET_MS = 40;
+
+    private enum Background { DARK_WOOD, GREY_BLOTCHES, LIGHT_TABLE, CLUTTER }
+
+    /** A photographed page: the corners it was drawn with and the luminance image */
+    private static final class Scene {
+        final String name;
+        final float[][] corners;
+        final int width;
+        final int height;
+        final byte[] gray;
+
+        Scene(String name, float[][] corners, int width, int height, byte[] gray) {
+            this.name = name;
+            this.corners = corners;
+            this.width = width;
+            this.height = height;
+            this.gray = gray;
+        }
+    }
+
+    private static float[][] quad(float... xy) {
+        return new float[][]{{xy[0], xy[1]}, {xy[2], xy[3]}, {xy[4], xy[5]}, {xy[6], xy[7]}};
+    }
+
+    /**
+     * Draw a scene the way a phone sees it: paper with lines of text on a
+     * background, light falling off across the frame, a soft focus and sensor noise
+     *
+     * @param page corners top left, top right, bottom right, bottom left, or null for no page
+     */
+    private static Scene photograph(String name, int width, int height, float[][] page, Background background,
+            int paper, long seed) {
+        Random random = new Random(seed);
+        float[][] text = page != null ? shrink(page, 0.12f) : null;
+        float[] sharp = new float[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = 0;
+                // 2 x 2 samples per pixel anti-alias the page's outline
+                for (int s = 0; s < 4; s++) {
+                    float sx = x + 0.25f + 0.5f * (s & 1);
+                    float sy = y + 0.25f + 0.5f * (s >> 1);
+                    if (page != null && inside(page, sx, sy)) {
+                        boolean ink = inside(text, sx, sy) && (sy + 0.05f * sx) % 11 < 2.5f && sx % 19 < 13;
+                        value += ink ? 50 : paper;
+                    } else {
+                        value += background(background, sx, sy, width, height);
+                    }
+                }
+                // Light falls off towards the bottom right
+                sharp[y * width + x] = value / 4 * (1 - 0.25f * (x + y) / (width + height));
+            }
+        }
+        byte[] gray = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = 0;
+                int count = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
+                            sum += sharp[ny * width + nx];
+                            count++;
+                        }
+                    }
+                }
+                int g = Math.round(sum / count + (float) random.nextGaussian() * 6);
+                gray[y * width + x] = (byte) Math.max(0, Math.min(255, g));
+            }
+        }
+        return new Scene(name, page, width, height, gray);
+    }
+
+    private static float background(Background background, float x, float y, int width, int height) {
+        switch (background) {
+            case DARK_WOOD:
+                return 55 + 18 * (float) Math.sin(x / 6 + 3 * Math.sin(y / 37));
+            case GREY_BLOTCHES:
+                return 110 + 25 * (float) (Math.sin(x / 23) * Math.cos(y / 17));
+            case LIGHT_TABLE:
+                return 160 + 6 * (float) Math.sin((x + y) / 29);
+            default:
+                // A table edge across the frame and a phone lying next to the page
+                float value = y > 0.9f * height - 0.1f * x ? 40 : 120;
+                if (x > 0.03f * width && x < 0.14f * width && y > 0.1f * height && y < 0.38f * height) {
+                    value = 20;
+                }
+                return value;
+        }
+    }
+
+    private static boolean inside(float[][] quad, float x, float y) {
+        for (int i = 0; i < 4; i++) {
+            float[] a = quad[i];
+            float[] b = quad[(i + 1) % 4];
+            // Clockwise on screen: inside is to the right of every side
+            if ((b[0] - a[0]) * (y - a[1]) - (b[1] - a[1]) * (x - a[0]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static float[][] shrink(float[][] quad, float share) {
+        float cx = 0;
+        float cy = 0;
+        for (float[] corner : quad) {
+            cx += corner[0] / 4;
+            cy += corner[1] / 4;
+        }
+        float[][] shrunk = new float[4][];
+        for (int i = 0; i < 4; i++) {
+            shrunk[i] = new float[]{quad[i][0] + (cx - quad[i][0]) * share, quad[i][1] + (cy - quad[i][1]) * share};
+        }
+        return shrunk;
+    }
+
+    private static List<Scene> corpus() {
+        List<Scene> scenes = new ArrayList<>();
+        scenes.add(photograph("straight on dark wood", 240, 320,
+                quad(40, 38, 202, 36, 205, 282, 37, 285), Background.DARK_WOOD, 225, 1));
+        scenes.add(photograph("tilted away on dark wood", 240, 320,
+                quad(62, 52, 180, 48, 221, 290, 18, 296), Background.DARK_WOOD, 215, 2));
+        scenes.add(photograph("rotated on grey", 240, 320,
+                quad(70, 24, 226, 66, 176, 300, 16, 254), Background.GREY_BLOTCHES, 230, 3));
+        scenes.add(photograph("landscape on grey", 320, 240,
+                quad(30, 42, 284, 30, 296, 206, 22, 214), Background.GREY_BLOTCHES, 220, 4));
+        scenes.add(photograph("low contrast on a light table", 240, 320,
+                quad(35, 30, 210, 40, 200, 290, 28, 280), Background.LIGHT_TABLE, 228, 5));
+        scenes.add(photograph("small and skewed on a light table", 240, 320,
+                quad(80, 90, 170, 84, 182, 226, 70, 232), Background.LIGHT_TABLE, 235, 6));
+        scenes.add(photograph("next to a phone on a table edge", 240, 320,
+                quad(60, 30, 220, 34, 214, 250, 52, 244), Background.CLUTTER, 225, 7));
+        return scenes;
+    }
+
+    @Test
+    public void corpus_cornersWithinTolerance() {
+        for (Scene scene : corpus()) {
+            float[][] found = PageDetector.detect(scene.gray, scene.width, scene.height);
+            assertNotNull(scene.name + ": no page found", found);
+            for (int i = 0; i < 4; i++) {
+                double error = Math.hypot(found[i][0] - scene.corners[i][0], found[i][1] - scene.corners[i][1]);
+                assertTrue(scene.name + ": corner " + i + " is " + String.format("%.1f", error) + " px off",
+                        error <= TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void backgroundOnly_findsNoPage() {
+        for (Background background : Background.values()) {
+            Scene scene = photograph("empty " + background, 240, 320, null, background, 0, 8);
+            assertNull(scene.name, PageDetector.detect(scene.gray, scene.width, scene.height));
+        }
+    }
+
+    @Test
+    public void flatImage_findsNoPage() {
+        byte[] gray = new byte[240 * 320];
+        Arrays.fill(gray, (byte) 128);
+        assertNull(PageDetector.detect(gray, 240, 320));
+    }
+
+    @Test
+    public void scale_mapsCornersBackToTheOriginal() {
+        float[][] scaled = PageDetector.scale(quad(1, 2, 3, 4, 5, 6, 7, 8), 12.5f);
+        assertEquals(12.5f, scaled[0][0], 0);
+        assertEquals(100f, scaled[3][1], 0);
+    }
+
+    @Test
+    public void detection_fitsTheCaptureBudget() {
+        List<Scene> scenes = corpus();
+        // Let the JIT settle first
+        for (int i = 0; i < 20; i++) {
+            for (Scene scene : scenes) {
+                PageDetector.detect(scene.gray, scene.width, scene.height);
+            }
+        }
+        int runs = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            for (Scene scene : scenes) {
+                PageDetector.detect(scene.gray, scene.width, scene.height);
+            }
+        }
+        double average = (System.nanoTime() - start) / 1e6 / (runs * scenes.size());
+        assertTrue(String.format("%.1f ms per frame", average), average < BUDGET_MS);
+    }
+}
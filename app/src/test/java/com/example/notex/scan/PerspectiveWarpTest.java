@@ -0,0 +1,195 @@
+package com.example.notex.scan;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class PerspectiveWarpTest {
+
+    /**
+     * Corners of a width x height rectangle photographed by a pinhole camera
+     * with the given focal length, tilted and turned by the given degrees
+     */
+    private static float[][] photograph(double width, double height, double tilt, double turn, double distance,
+            double focal, int imageWidth, int imageHeight) {
+        double[][] rectangle = {
+                {-width / 2, -height / 2}, {width / 2, -height / 2}, {width / 2, height / 2}, {-width / 2, height / 2},
+        };
+        double ct = Math.cos(Math.toRadians(tilt));
+        double st = Math.sin(Math.toRadians(tilt));
+        double cr = Math.cos(Math.toRadians(turn));
+        double sr = Math.sin(Math.toRadians(turn));
+        float[][] corners = new float[4][];
+        for (int i = 0; i < 4; i++) {
+            double x = rectangle[i][0];
+            double y = rectangle[i][1];
+            // Tilt about the x axis, then turn about the y axis, then move away from the camera
+            double y1 = y * ct;
+            double z1 = y * st;
+            double x2 = x * cr + z1 * sr;
+            double z2 = -x * sr + z1 * cr + distance;
+            corners[i] = new float[]{
+                    (float) (focal * x2 / z2 + imageWidth / 2.0), (float) (focal * y1 / z2 + imageHeight / 2.0),
+            };
+        }
+        return corners;
+    }
+
+    @Test
+    public void aspectRatio_ofTiltedA4_isRecovered() {
+        double a4 = 210.0 / 297.0;
+        // Tilted and turned: the focal length comes from the corners, so any lens will do
+        for (double[] pose : new double[][]{{30, 20}, {-20, 35}, {15, -10}}) {
+            float[][] corners = photograph(210, 297, pose[0], pose[1], 450, 4200, 3000, 4000);
+            float ratio = PerspectiveWarp.aspectRatio(corners, 3000, 4000);
+            assertEquals("tilt " + pose[0] + " turn " + pose[1], a4, ratio, a4 * 0.01);
+        }
+        // Head on, or only tilted or turned: the ratio rests on the phone lens assumed, 3000 px here
+        for (double[] pose : new double[][]{{0, 0}, {25, 0}, {0, 30}}) {
+            float[][] corners = photograph(210, 297, pose[0], pose[1], 450, 3000, 3000, 4000);
+            float ratio = PerspectiveWarp.aspectRatio(corners, 3000, 4000);
+            assertEquals("tilt " + pose[0] + " turn " + pose[1], a4, ratio, a4 * 0.01);
+        }
+    }
+
+    @Test
+    public void outputSize_keepsRatioAndCapsPixels() {
+        float[][] corners = photograph(210, 297, 30, 0, 450, 3000, 3000, 4000);
+        int[] size = PerspectiveWarp.outputSize(corners, 3000, 4000, 1_000_000);
+        assertTrue(size[0] * size[1] <= 1_000_000 + size[0] + size[1]);
+        assertEquals(210.0 / 297.0, (double) size[0] / size[1], 0.01);
+
+        int[] uncapped = PerspectiveWarp.outputSize(corners, 3000, 4000, Integer.MAX_VALUE);
+        double longerSide = Math.max(Math.hypot(corners[0][0] - corners[3][0], corners[0][1] - corners[3][1]),
+                Math.hypot(corners[1][0] - corners[2][0], corners[1][1] - corners[2][1]));
+        assertEquals(longerSide, uncapped[1], 1);
+    }
+
+    @Test
+    public void wholeImageCorners_copyTheImage() throws InterruptedException {
+        int width = 37;
+        int height = 23;
+        int[] source = new int[width * height];
+        Random random = new Random(1);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        float[][] corners = {{0, 0}, {width - 1, 0}, {width - 1, height - 1}, {0, height - 1}};
+        int[] out = new int[width * height];
+        PerspectiveWarp.warp(source, width, height, corners, out, width, height, null, 1);
+        assertArrayEquals(source, out);
+    }
+
+    @Test
+    public void warp_undoesAKnownPerspective() throws InterruptedException {
+        // A photo whose every pixel is coloured by where it lies on the page: red across, green down
+        int width = 400;
+        int height = 300;
+        float[][] corners = {{60, 30}, {330, 55}, {370, 280}, {20, 240}};
+        double[] h = PerspectiveWarp.squareToQuad(corners);
+        double[] inverse = invert(h);
+        int[] source = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double w = inverse[6] * x + inverse[7] * y + inverse[8];
+                double u = (inverse[0] * x + inverse[1] * y + inverse[2]) / w;
+                double v = (inverse[3] * x + inverse[4] * y + inverse[5]) / w;
+                source[y * width + x] = 0xFF000000 | channel(u) << 16 | channel(v) << 8 | 0x80;
+            }
+        }
+
+        int outWidth = 120;
+        int outHeight = 90;
+        int[] out = new int[outWidth * outHeight];
+        PerspectiveWarp.warp(source, width, height, corners, out, outWidth, outHeight, null, 1);
+        for (int oy = 0; oy < outHeight; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                int pixel = out[oy * outWidth + ox];
+                assertEquals(0xFF, pixel >>> 24);
+                assertEquals(channel((double) ox / (outWidth - 1)), (pixel >> 16) & 0xFF, 2);
+                assertEquals(channel((double) oy / (outHeight - 1)), (pixel >> 8) & 0xFF, 2);
+                assertEquals(0x80, pixel & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    public void parallelTiles_matchOneThread() throws InterruptedException {
+        int width = 300;
+        int height = 200;
+        int[] source = new int[width * height];
+        Random random = new Random(2);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        float[][] corners = {{20.5f, 10.25f}, {280, 30}, {290, 190}, {5, 170}};
+        int[] single = new int[250 * 170];
+        // A larger, reused buffer is filled from the start
+        int[] parallel = new int[250 * 170 + 99];
+        PerspectiveWarp.warp(source, width, height, corners, single, 250, 170, null, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            PerspectiveWarp.warp(source, width, height, corners, parallel, 250, 170, executor, 3);
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < single.length; i++) {
+            assertEquals(single[i], parallel[i]);
+        }
+    }
+
+    @Test
+    public void strips_matchTheWholeOutput() throws InterruptedException {
+        int width = 200;
+        int height = 150;
+        int[] source = new int[width * height];
+        Random random = new Random(3);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        float[][] corners = {{12, 8}, {190, 20}, {185, 140}, {3, 130}};
+        int[] whole = new int[160 * 120];
+        PerspectiveWarp.warp(source, width, height, corners, whole, 160, 120, null, 1);
+
+        int[] strip = new int[160 * 50];
+        for (int firstRow = 0; firstRow < 120; firstRow += 50) {
+            int rows = Math.min(50, 120 - firstRow);
+            PerspectiveWarp.warp(source, width, height, corners, strip, 160, 120, firstRow, rows, null, 1);
+            for (int i = 0; i < 160 * rows; i++) {
+                assertEquals(whole[firstRow * 160 + i], strip[i]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallOutputBuffer_isRejected() throws InterruptedException {
+        float[][] corners = {{0, 0}, {9, 0}, {9, 9}, {0, 9}};
+        PerspectiveWarp.warp(new int[100], 10, 10, corners, new int[50], 10, 10, null, 1);
+    }
+
+    private static int channel(double share) {
+        return (int) Math.round(Math.max(0, Math.min(1, share)) * 255);
+    }
+
+    /** Inverse of the homography as a row-major 3 x 3 matrix */
+    private static double[] invert(double[] h) {
+        double a = h[0];
+        double b = h[1];
+        double c = h[2];
+        double d = h[3];
+        double e = h[4];
+        double f = h[5];
+        double g = h[6];
+        double k = h[7];
+        // The adjugate; the inverse's scale does not matter for a homography
+        return new double[]{
+                e - f * k, c * k - b, b * f - c * e,
+                f * g - d, a - c * g, c * d - a * f,
+                d * k - e * g, b * g - a * k, a * e - b * d,
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.notex.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PixelOpsTest {
+
+    @Test
+    public void scaleChannels_clampsAndKeepsAlpha() {
+        int[] pixels = {0x80_10_80_F0, 0xFF_00_00_00, 0xAB_CD_EF_12};
+        PixelOps.scaleChannels(pixels, 2, 1.2f, 10);
+
+        assertEquals(0x80_1D_A4_FF, pixels[0]);
+        assertEquals(0xFF_0A_0A_0A, pixels[1]);
+        // Past the count is left alone
+        assertEquals(0xAB_CD_EF_12, pixels[2]);
+    }
+
+    @Test
+    public void toGray_usesLuminanceThenGainAndOffset() {
+        int[] pixels = {0xFF_FF_00_00, 0xFF_00_FF_00, 0xFF_00_00_FF, 0x40_FF_FF_FF};
+        PixelOps.toGray(pixels, pixels.length, 1, 0);
+
+        // Green weighs most and blue least, as in ColorMatrix.setSaturation(0)
+        assertEquals(0xFF_36_36_36, pixels[0]);
+        assertEquals(0xFF_B6_B6_B6, pixels[1]);
+        assertEquals(0xFF_11_11_11, pixels[2]);
+        assertEquals(0x40_FF_FF_FF, pixels[3]);
+
+        int[] contrast = {0xFF_80_80_80, 0xFF_20_20_20};
+        PixelOps.toGray(contrast, contrast.length, 1.5f, -50);
+        assertEquals(0xFF_8E_8E_8E, contrast[0]);
+        assertEquals(0xFF_00_00_00, contrast[1]);
+    }
+
+    @Test
+    public void rotate_turnsClockwise() {
+        // 3 x 2:  1 2 3
+        //         4 5 6
+        int[] pixels = {1, 2, 3, 4, 5, 6};
+        int[] out = new int[8];
+
+        PixelOps.rotate(pixels, 3, 2, 1, out);
+        assertArrayEquals(new int[]{4, 1, 5, 2, 6, 3, 0, 0}, out);
+        PixelOps.rotate(pixels, 3, 2, 2, out);
+        assertArrayEquals(new int[]{6, 5, 4, 3, 2, 1, 0, 0}, out);
+        PixelOps.rotate(pixels, 3, 2, 3, out);
+        assertArrayEquals(new int[]{3, 6, 2, 5, 1, 4, 0, 0}, out);
+        PixelOps.rotate(pixels, 3, 2, -1, out);
+        assertArrayEquals(new int[]{3, 6, 2, 5, 1, 4, 0, 0}, out);
+        PixelOps.rotate(pixels, 3, 2, 4, out);
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 0, 0}, out);
+    }
+
+    @Test
+    public void rotate_aBandOfRowsMatchesTheWholeImage() {
+        int width = 7;
+        int height = 5;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i;
+        }
+        for (int turns = 0; turns < 4; turns++) {
+            int[] whole = new int[pixels.length];
+            PixelOps.rotate(pixels, width, height, turns, whole);
+            int rotatedWidth = turns % 2 == 0 ? width : height;
+            int rotatedHeight = pixels.length / rotatedWidth;
+            int[] band = new int[rotatedWidth * 2];
+            for (int firstRow = 0; firstRow < rotatedHeight; firstRow += 2) {
+                int rows = Math.min(2, rotatedHeight - firstRow);
+                PixelOps.rotate(pixels, width, height, turns, band, firstRow, rows);
+                for (int i = 0; i < rotatedWidth * rows; i++) {
+                    assertEquals("turns " + turns, whole[firstRow * rotatedWidth + i], band[i]);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotate_intoTheSource_isRejected() {
+        int[] pixels = new int[4];
+        PixelOps.rotate(pixels, 2, 2, 1, pixels);
+    }
+}
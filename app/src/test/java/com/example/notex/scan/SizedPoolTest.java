@@ -0,0 +1,98 @@
+package com.example.notex.scan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SizedPoolTest {
+
+    @Test
+    public void take_returnsTheSmallestItemThatFits() {
+        SizedPool<String> pool = new SizedPool<>(1000, null);
+        pool.give("large", 300);
+        pool.give("medium", 200);
+        pool.give("small", 100);
+
+        assertEquals("medium", pool.take(150));
+        assertEquals("large", pool.take(150));
+        assertNull(pool.take(150));
+        assertEquals(2, pool.hitCount());
+        assertEquals(1, pool.missCount());
+        assertEquals(100, pool.size());
+    }
+
+    @Test
+    public void take_skipsItemsMoreThanTwiceTheSize() {
+        SizedPool<String> pool = new SizedPool<>(1000, null);
+        pool.give("huge", 401);
+        assertNull(pool.take(200));
+        assertEquals("huge", pool.take(201));
+    }
+
+    @Test
+    public void give_evictsTheOldestItemsBeyondTheBudget() {
+        List<String> evicted = new ArrayList<>();
+        SizedPool<String> pool = new SizedPool<>(250, evicted::add);
+        pool.give("first", 100);
+        pool.give("second", 100);
+        pool.give("third", 100);
+
+        assertEquals(Arrays.asList("first"), evicted);
+        assertEquals(200, pool.size());
+        assertEquals(1, pool.evictionCount());
+
+        // An item bigger than the whole pool goes straight out
+        pool.give("oversized", 300);
+        assertEquals(Arrays.asList("first", "second", "third", "oversized"), evicted);
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void clear_evictsEverything() {
+        List<String> evicted = new ArrayList<>();
+        SizedPool<String> pool = new SizedPool<>(1000, evicted::add);
+        pool.give("a", 10);
+        pool.give("b", 20);
+        pool.clear();
+
+        assertEquals(Arrays.asList("a", "b"), evicted);
+        assertNull(pool.take(10));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void sizeClass_roundsUpByAtMostAnEighth() {
+        assertEquals(16, SizedPool.sizeClass(16));
+        assertEquals(1024, SizedPool.sizeClass(1024));
+        assertEquals(1152, SizedPool.sizeClass(1025));
+        for (long size = 17; size < 100_000; size += 37) {
+            long sizeClass = SizedPool.sizeClass(size);
+            assertTrue(sizeClass >= size);
+            assertTrue(sizeClass <= size + size / 8);
+        }
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() {
+        SizedPool<int[]> pool = new SizedPool<>(Long.MAX_VALUE, null);
+        // Pages of a batch differ slightly in size, as straightened scans do
+        int[] sizes = {1000, 990, 1010, 1000, 985, 1020};
+        int allocations = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int size : sizes) {
+                int[] buffer = pool.take(size * 4L);
+                if (buffer == null) {
+                    buffer = new int[(int) SizedPool.sizeClass(size)];
+                    allocations++;
+                }
+                assertTrue(buffer.length >= size);
+                pool.give(buffer, buffer.length * 4L);
+            }
+        }
+        assertEquals(1, allocations);
+    }
+}
@@ -4,6 +4,7 @@ import com.example.notex_desktop.NoteXApp;
 import com.example.notex_desktop.database.DatabaseHelper;
 import com.example.notex_desktop.models.Notebook;
 import com.example.notex_desktop.models.Page;
+import com.example.notex_desktop.models.PageSummary;
 import com.example.notex_desktop.utils.AuthManager;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -55,7 +56,7 @@ public class NotebookPagesController implements Initializable {
     }
 
     private void loadPages() {
-        List<Page> pages = databaseHelper.getNotebookPages(currentNotebook.getId());
+        List<PageSummary> pages = databaseHelper.getNotebookPageSummaries(currentNotebook.getId());
         
         pageCountLabel.setText(pages.size() + " pages");
         pagesContainer.getChildren().clear();
@@ -69,13 +70,13 @@ public class NotebookPagesController implements Initializable {
             emptyState.setManaged(false);
             pagesContainer.setVisible(true);
 
-            for (Page page : pages) {
+            for (PageSummary page : pages) {
                 pagesContainer.getChildren().add(createPageCard(page));
             }
         }
     }
 
-    private HBox createPageCard(Page page) {
+    private HBox createPageCard(PageSummary page) {
         HBox card = new HBox(15);
         card.setAlignment(Pos.CENTER_LEFT);
         card.setPadding(new Insets(15));
@@ -96,12 +97,8 @@ public class NotebookPagesController implements Initializable {
         titleLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
         titleLabel.getStyleClass().add("page-title");
 
-        // Preview of content
-        String preview = page.getContent() != null ? 
-            (page.getContent().length() > 100 ? 
-                page.getContent().substring(0, 100) + "..." : 
-                page.getContent()) : 
-            "Empty page";
+        // Preview of content (stored with the page, so no content is loaded here)
+        String preview = page.getPreview() != null ? page.getPreview() : "Empty page";
         Label previewLabel = new Label(preview);
         previewLabel.getStyleClass().add("page-preview");
         previewLabel.setWrapText(true);
@@ -140,12 +137,18 @@ public class NotebookPagesController implements Initializable {
         return card;
     }
 
-    private void openPage(Page page) {
+    private void openPage(PageSummary summary) {
+        // Full content is loaded only when the page is opened
+        Page page = databaseHelper.getPageById(summary.getId());
+        if (page == null) {
+            loadPages();
+            return;
+        }
         NoteXApp.setCurrentPage(page);
         NoteXApp.setRoot("views/page_editor");
     }
 
-    private void deletePage(Page page) {
+    private void deletePage(PageSummary page) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Delete Page");
         alert.setHeaderText("Delete \"" + page.getTitle() + "\"?");
@@ -4,6 +4,7 @@ import com.example.notex_desktop.NoteXApp;
 import com.example.notex_desktop.database.DatabaseHelper;
 import com.example.notex_desktop.models.Notebook;
 import com.example.notex_desktop.utils.AuthManager;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
@@ -138,6 +139,7 @@ public class PageEditorController implements Initializable {
     // Multi-page support
     private List<PageData> pages = new ArrayList<>();
     private int currentPageIndex = 0;
+    private boolean pagesLoaded = false; // Saving or adding pages waits for the stored ones
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -297,8 +299,23 @@ public class PageEditorController implements Initializable {
     }
 
     private void loadPages() {
-        // Try to load existing pages from database
-        loadExistingPages();
+        // A save started from an earlier editor may still be writing these pages, so read them
+        // after it on the write thread rather than making the FX thread wait
+        String notebookId = currentNotebook.getId();
+        databaseHelper.afterWrites(() -> {
+            List<com.example.notex_desktop.models.Page> existingPages =
+                databaseHelper.getNotebookPages(notebookId);
+            Platform.runLater(() -> showPages(existingPages));
+        });
+    }
+    
+    private void showPages(List<com.example.notex_desktop.models.Page> existingPages) {
+        for (com.example.notex_desktop.models.Page page : existingPages) {
+            PageData pageData = new PageData();
+            pageData.setCanvasData(page.getContent());
+            pages.add(pageData);
+        }
+        currentPageIndex = 0;
         
         // If no pages exist, create initial page
         if (pages.isEmpty()) {
@@ -322,6 +339,7 @@ public class PageEditorController implements Initializable {
             gc = currentCanvas.getGraphicsContext2D();
         }
         
+        pagesLoaded = true;
         updatePageInfo();
         updatePagesView();
     }
@@ -1248,17 +1266,18 @@ public class PageEditorController implements Initializable {
 
     @FXML
     private void handleSave() {
+        if (!pagesLoaded) {
+            return;
+        }
         saveCurrentPage();
         saveAllPages();
-        
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("Saved");
-        alert.setContentText("All " + pages.size() + " page(s) saved successfully!");
-        alert.showAndWait();
     }
 
     @FXML
     private void handleAddPage() {
+        if (!pagesLoaded) {
+            return;
+        }
         // Save current page if exists
         if (currentPageIndex >= 0 && currentPageIndex < pages.size()) {
             savePageData(currentPageIndex);
@@ -1288,7 +1307,9 @@ public class PageEditorController implements Initializable {
 
     @FXML
     private void handleBack() {
-        NoteXApp.setRoot("views/my_notebooks");
+        // The notebook list reads page counts and dates a save in progress is still writing;
+        // open it once the save is done instead of blocking the FX thread on it
+        databaseHelper.afterWrites(() -> Platform.runLater(() -> NoteXApp.setRoot("views/my_notebooks")));
     }
     
     // ==================== PEN OPTIONS DIALOG ====================
@@ -1886,52 +1907,51 @@ public class PageEditorController implements Initializable {
     }
     
     private void saveAllPages() {
-        // Save all canvases to page data
+        // Save all canvases to page data; snapshots have to be taken on the FX thread
+        List<String> contents = new ArrayList<>();
         for (int i = 0; i < pages.size(); i++) {
             savePageData(i);
+            contents.add(pages.get(i).getCanvasData());
         }
-        
-        // Save each page to database
-        for (int i = 0; i < pages.size(); i++) {
-            String pageTitle = currentNotebook.getTitle() + " - Page " + (i + 1);
-            String content = pages.get(i).getCanvasData();
-            
-            if (i == 0 && databaseHelper.getNotebookPages(currentNotebook.getId()).size() == 0) {
-                // Add first page
-                databaseHelper.addPage(currentNotebook.getId(), pageTitle, content);
-            } else {
-                // Update or add additional pages
-                List<com.example.notex_desktop.models.Page> existingPages = 
-                    databaseHelper.getNotebookPages(currentNotebook.getId());
-                if (i < existingPages.size()) {
-                    databaseHelper.updatePage(existingPages.get(i).getId(), pageTitle, content);
-                } else {
-                    databaseHelper.addPage(currentNotebook.getId(), pageTitle, content);
-                }
-            }
-        }
-    }
-    
-    private void loadExistingPages() {
-        List<com.example.notex_desktop.models.Page> existingPages = 
-            databaseHelper.getNotebookPages(currentNotebook.getId());
-        
-        if (!existingPages.isEmpty()) {
-            pages.clear();
-            for (com.example.notex_desktop.models.Page page : existingPages) {
-                PageData pageData = new PageData();
-                pageData.setCanvasData(page.getContent());
-                pages.add(pageData);
-            }
-            currentPageIndex = 0;
-            
-            // Load pages onto canvases
-            for (int i = 0; i < pages.size(); i++) {
-                if (i < canvases.size()) {
-                    loadPageDataOntoCanvas(i);
+        Notebook notebook = currentNotebook;
+        btnSave.setDisable(true);
+
+        // Writing compresses every page, so keep it off the FX thread; saves run one at a time
+        databaseHelper.submitWrite(() -> {
+            boolean saved = false;
+            try {
+                // Save each page to database; only the existing page ids are needed, not their content
+                List<com.example.notex_desktop.models.PageSummary> existingPages =
+                    databaseHelper.getNotebookPageSummaries(notebook.getId());
+                saved = true;
+                for (int i = 0; i < contents.size(); i++) {
+                    String pageTitle = notebook.getTitle() + " - Page " + (i + 1);
+                    String content = contents.get(i);
+
+                    if (i < existingPages.size()) {
+                        // Update existing pages in order
+                        saved &= databaseHelper.updatePage(existingPages.get(i).getId(), pageTitle, content);
+                    } else {
+                        // Add pages beyond the stored ones
+                        saved &= databaseHelper.addPage(notebook.getId(), pageTitle, content);
+                    }
                 }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                saved = false;
+            } finally {
+                boolean success = saved;
+                Platform.runLater(() -> {
+                    btnSave.setDisable(false);
+                    Alert alert = new Alert(success ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+                    alert.setTitle(success ? "Saved" : "Save Failed");
+                    alert.setContentText(success
+                        ? "All " + contents.size() + " page(s) saved successfully!"
+                        : "Some pages could not be saved. Please try again.");
+                    alert.showAndWait();
+                });
             }
-        }
+        });
     }
     
 
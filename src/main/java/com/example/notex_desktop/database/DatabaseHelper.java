@@ -3,12 +3,19 @@ package com.example.notex_desktop.database;
 import com.example.notex_desktop.models.User;
 import com.example.notex_desktop.models.Notebook;
 import com.example.notex_desktop.models.Page;
+import com.example.notex_desktop.models.PageSummary;
 import com.example.notex_desktop.models.Reminder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * DatabaseHelper - SQLite database helper for NoteX Desktop
@@ -20,6 +27,13 @@ public class DatabaseHelper {
     private static DatabaseHelper instance;
     private Connection connection;
 
+    // Saves that are too slow for the FX thread run here, one at a time and in order
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notex-db-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // Users table
     private static final String TABLE_USERS = "users";
     private static final String COLUMN_ID = "id";
@@ -39,6 +53,7 @@ public class DatabaseHelper {
     private static final String COLUMN_IS_PINNED = "is_pinned";
     private static final String COLUMN_NOTEBOOK_CREATED_AT = "created_at";
     private static final String COLUMN_NOTEBOOK_UPDATED_AT = "updated_at";
+    private static final String COLUMN_NOTEBOOK_PAGE_COUNT = "page_count";
 
     // Pages table
     private static final String TABLE_PAGES = "pages";
@@ -49,6 +64,8 @@ public class DatabaseHelper {
     private static final String COLUMN_PAGE_NUMBER = "page_number";
     private static final String COLUMN_PAGE_CREATED_AT = "created_at";
     private static final String COLUMN_PAGE_UPDATED_AT = "updated_at";
+    private static final String COLUMN_PAGE_CONTENT_SIZE = "content_size";
+    private static final String COLUMN_PAGE_PREVIEW = "preview";
 
     private DatabaseHelper() {
         initializeDatabase();
@@ -61,6 +78,21 @@ public class DatabaseHelper {
         return instance;
     }
 
+    /**
+     * Run a write in the background, after every write submitted before it
+     */
+    public Future<?> submitWrite(Runnable write) {
+        return writeExecutor.submit(write);
+    }
+
+    /**
+     * Run a task in the background once every write submitted so far has finished, e.g. to read
+     * what they wrote without making the caller wait for them
+     */
+    public void afterWrites(Runnable task) {
+        writeExecutor.execute(task);
+    }
+
     private void initializeDatabase() {
         try {
             // Get user home directory for database file
@@ -103,6 +135,7 @@ public class DatabaseHelper {
                     + COLUMN_IS_PINNED + " INTEGER DEFAULT 0,"
                     + COLUMN_NOTEBOOK_CREATED_AT + " TEXT,"
                     + COLUMN_NOTEBOOK_UPDATED_AT + " TEXT,"
+                    + COLUMN_NOTEBOOK_PAGE_COUNT + " INTEGER DEFAULT 0,"
                     + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
                     + ")";
             stmt.execute(CREATE_NOTEBOOKS_TABLE);
@@ -116,11 +149,18 @@ public class DatabaseHelper {
                     + COLUMN_PAGE_NUMBER + " INTEGER,"
                     + COLUMN_PAGE_CREATED_AT + " TEXT,"
                     + COLUMN_PAGE_UPDATED_AT + " TEXT,"
+                    + COLUMN_PAGE_CONTENT_SIZE + " INTEGER DEFAULT 0,"
+                    + COLUMN_PAGE_PREVIEW + " TEXT,"
                     + "FOREIGN KEY(" + COLUMN_PAGE_NOTEBOOK_ID + ") REFERENCES " + TABLE_NOTEBOOKS + "("
                     + COLUMN_NOTEBOOK_ID + ")"
                     + ")";
             stmt.execute(CREATE_PAGES_TABLE);
 
+            // Older databases predate the denormalized page count column
+            addPageCountColumnIfMissing(stmt);
+            // ... and the page size / preview columns read by page lists
+            addPageSummaryColumnsIfMissing(stmt);
+
             // Create reminders table
             String CREATE_REMINDERS_TABLE = "CREATE TABLE IF NOT EXISTS reminders ("
                     + "id TEXT PRIMARY KEY,"
@@ -151,6 +191,47 @@ public class DatabaseHelper {
         }
     }
 
+    /**
+     * Add notebooks.page_count to databases created before it existed and backfill it
+     */
+    private void addPageCountColumnIfMissing(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + TABLE_NOTEBOOKS + ")")) {
+            while (rs.next()) {
+                if (COLUMN_NOTEBOOK_PAGE_COUNT.equals(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+
+        stmt.execute("ALTER TABLE " + TABLE_NOTEBOOKS + " ADD COLUMN " + COLUMN_NOTEBOOK_PAGE_COUNT
+                + " INTEGER DEFAULT 0");
+        stmt.execute("UPDATE " + TABLE_NOTEBOOKS + " SET " + COLUMN_NOTEBOOK_PAGE_COUNT + " = (SELECT COUNT(*) FROM "
+                + TABLE_PAGES + " WHERE " + TABLE_PAGES + "." + COLUMN_PAGE_NOTEBOOK_ID + " = "
+                + TABLE_NOTEBOOKS + "." + COLUMN_NOTEBOOK_ID + ")");
+    }
+
+    /**
+     * Add pages.content_size and pages.preview to databases created before they existed and backfill them
+     */
+    private void addPageSummaryColumnsIfMissing(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + TABLE_PAGES + ")")) {
+            while (rs.next()) {
+                if (COLUMN_PAGE_PREVIEW.equals(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+
+        stmt.execute("ALTER TABLE " + TABLE_PAGES + " ADD COLUMN " + COLUMN_PAGE_CONTENT_SIZE + " INTEGER DEFAULT 0");
+        stmt.execute("ALTER TABLE " + TABLE_PAGES + " ADD COLUMN " + COLUMN_PAGE_PREVIEW + " TEXT");
+        // Same rule as PageSummary.buildPreview
+        stmt.execute("UPDATE " + TABLE_PAGES + " SET "
+                + COLUMN_PAGE_CONTENT_SIZE + " = COALESCE(LENGTH(CAST(" + COLUMN_PAGE_CONTENT + " AS BLOB)), 0), "
+                + COLUMN_PAGE_PREVIEW + " = CASE WHEN LENGTH(" + COLUMN_PAGE_CONTENT + ") > "
+                + PageSummary.PREVIEW_LENGTH + " THEN SUBSTR(" + COLUMN_PAGE_CONTENT + ", 1, "
+                + PageSummary.PREVIEW_LENGTH + ") || '...' ELSE " + COLUMN_PAGE_CONTENT + " END");
+    }
+
     private void insertDefaultUsersIfEmpty() {
         try {
             String countQuery = "SELECT COUNT(*) FROM " + TABLE_USERS;
@@ -525,10 +606,28 @@ public class DatabaseHelper {
         boolean isPinned = rs.getInt(COLUMN_IS_PINNED) == 1;
 
         Notebook notebook = new Notebook(id, userId, title, color, isPinned);
-        notebook.setPageCount(getPageCount(id));
+        // Page count is denormalized onto the notebook row, so no per-row query is needed
+        notebook.setPageCount(rs.getInt(COLUMN_NOTEBOOK_PAGE_COUNT));
         return notebook;
     }
 
+    /**
+     * Recompute and store the cached page count of a notebook.
+     * Called by every DAO method that adds or removes page rows.
+     */
+    private void refreshPageCount(String notebookId) {
+        String sql = "UPDATE " + TABLE_NOTEBOOKS + " SET " + COLUMN_NOTEBOOK_PAGE_COUNT + " = (SELECT COUNT(*) FROM "
+                + TABLE_PAGES + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + " = ?) WHERE " + COLUMN_NOTEBOOK_ID + " = ?";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, notebookId);
+            pstmt.setString(2, notebookId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Update notebook timestamp
      */
@@ -554,20 +653,24 @@ public class DatabaseHelper {
 
         String sql = "INSERT INTO " + TABLE_PAGES + " (" + COLUMN_PAGE_ID + ", " + COLUMN_PAGE_NOTEBOOK_ID + ", "
                 + COLUMN_PAGE_TITLE + ", " + COLUMN_PAGE_CONTENT + ", " + COLUMN_PAGE_NUMBER + ", "
-                + COLUMN_PAGE_CREATED_AT + ", " + COLUMN_PAGE_UPDATED_AT + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+                + COLUMN_PAGE_CREATED_AT + ", " + COLUMN_PAGE_UPDATED_AT + ", " + COLUMN_PAGE_CONTENT_SIZE + ", "
+                + COLUMN_PAGE_PREVIEW + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, UUID.randomUUID().toString());
             pstmt.setString(2, notebookId);
             pstmt.setString(3, title);
-            pstmt.setString(4, content);
+            setContent(pstmt, 4, content);
             pstmt.setInt(5, pageNumber);
             pstmt.setString(6, getCurrentTimestamp());
             pstmt.setString(7, getCurrentTimestamp());
+            pstmt.setLong(8, contentSize(content));
+            pstmt.setString(9, PageSummary.buildPreview(content));
             
             boolean result = pstmt.executeUpdate() > 0;
             if (result) {
                 updateNotebookTimestamp(notebookId);
+                refreshPageCount(notebookId);
             }
             return result;
         } catch (SQLException e) {
@@ -596,6 +699,35 @@ public class DatabaseHelper {
         return pages;
     }
 
+    /**
+     * Get the page list of a notebook without loading any page content
+     */
+    public List<PageSummary> getNotebookPageSummaries(String notebookId) {
+        List<PageSummary> summaries = new ArrayList<>();
+        String sql = "SELECT " + COLUMN_PAGE_ID + ", " + COLUMN_PAGE_NOTEBOOK_ID + ", " + COLUMN_PAGE_TITLE + ", "
+                + COLUMN_PAGE_NUMBER + ", " + COLUMN_PAGE_CREATED_AT + ", " + COLUMN_PAGE_UPDATED_AT + ", "
+                + COLUMN_PAGE_CONTENT_SIZE + ", " + COLUMN_PAGE_PREVIEW + " FROM " + TABLE_PAGES
+                + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + " = ? ORDER BY " + COLUMN_PAGE_NUMBER + " ASC";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, notebookId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                PageSummary summary = new PageSummary(rs.getString(COLUMN_PAGE_ID),
+                        rs.getString(COLUMN_PAGE_NOTEBOOK_ID), rs.getString(COLUMN_PAGE_TITLE),
+                        rs.getInt(COLUMN_PAGE_NUMBER));
+                summary.setCreatedAt(parseTimestamp(rs.getString(COLUMN_PAGE_CREATED_AT)));
+                summary.setUpdatedAt(parseTimestamp(rs.getString(COLUMN_PAGE_UPDATED_AT)));
+                summary.setContentSize(rs.getLong(COLUMN_PAGE_CONTENT_SIZE));
+                summary.setPreview(rs.getString(COLUMN_PAGE_PREVIEW));
+                summaries.add(summary);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return summaries;
+    }
+
     /**
      * Get page by ID
      */
@@ -619,19 +751,23 @@ public class DatabaseHelper {
      */
     public boolean updatePage(String pageId, String title, String content) {
         String sql = "UPDATE " + TABLE_PAGES + " SET " + COLUMN_PAGE_TITLE + " = ?, " + COLUMN_PAGE_CONTENT + " = ?, "
-                + COLUMN_PAGE_UPDATED_AT + " = ? WHERE " + COLUMN_PAGE_ID + " = ?";
+                + COLUMN_PAGE_UPDATED_AT + " = ?, " + COLUMN_PAGE_CONTENT_SIZE + " = ?, " + COLUMN_PAGE_PREVIEW
+                + " = ? WHERE " + COLUMN_PAGE_ID + " = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, title);
-            pstmt.setString(2, content);
+            setContent(pstmt, 2, content);
             pstmt.setString(3, getCurrentTimestamp());
-            pstmt.setString(4, pageId);
+            pstmt.setLong(4, contentSize(content));
+            pstmt.setString(5, PageSummary.buildPreview(content));
+            pstmt.setString(6, pageId);
             
             boolean result = pstmt.executeUpdate() > 0;
             if (result) {
-                Page page = getPageById(pageId);
-                if (page != null) {
-                    updateNotebookTimestamp(page.getNotebookId());
+                // Only the notebook id is needed, not the page content just written
+                String notebookId = getPageNotebookId(pageId);
+                if (notebookId != null) {
+                    updateNotebookTimestamp(notebookId);
                 }
             }
             return result;
@@ -645,11 +781,16 @@ public class DatabaseHelper {
      * Delete page
      */
     public boolean deletePage(String pageId) {
+        String notebookId = getPageNotebookId(pageId);
         String sql = "DELETE FROM " + TABLE_PAGES + " WHERE " + COLUMN_PAGE_ID + " = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, pageId);
-            return pstmt.executeUpdate() > 0;
+            boolean result = pstmt.executeUpdate() > 0;
+            if (result && notebookId != null) {
+                refreshPageCount(notebookId);
+            }
+            return result;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -657,10 +798,29 @@ public class DatabaseHelper {
     }
 
     /**
-     * Get page count for a notebook
+     * Look up the notebook a page belongs to without loading its content
+     */
+    private String getPageNotebookId(String pageId) {
+        String sql = "SELECT " + COLUMN_PAGE_NOTEBOOK_ID + " FROM " + TABLE_PAGES + " WHERE " + COLUMN_PAGE_ID + " = ?";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, pageId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return rs.getString(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Get page count for a notebook (reads the denormalized notebooks.page_count)
      */
     public int getPageCount(String notebookId) {
-        String sql = "SELECT COUNT(*) FROM " + TABLE_PAGES + " WHERE " + COLUMN_PAGE_NOTEBOOK_ID + " = ?";
+        String sql = "SELECT " + COLUMN_NOTEBOOK_PAGE_COUNT + " FROM " + TABLE_NOTEBOOKS + " WHERE "
+                + COLUMN_NOTEBOOK_ID + " = ?";
 
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setString(1, notebookId);
@@ -681,7 +841,7 @@ public class DatabaseHelper {
         String id = rs.getString(COLUMN_PAGE_ID);
         String notebookId = rs.getString(COLUMN_PAGE_NOTEBOOK_ID);
         String title = rs.getString(COLUMN_PAGE_TITLE);
-        String content = rs.getString(COLUMN_PAGE_CONTENT);
+        String content = readContent(rs);
         int pageNumber = rs.getInt(COLUMN_PAGE_NUMBER);
 
         return new Page(id, notebookId, title, content, pageNumber);
@@ -702,6 +862,49 @@ public class DatabaseHelper {
         return sdf.format(new Date());
     }
 
+    /**
+     * Parse a stored timestamp, or return null if it is missing or malformed
+     */
+    private Date parseTimestamp(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).parse(timestamp);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private long contentSize(String content) {
+        return content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    /**
+     * Bind page content, compressed when that makes it smaller; see PageContentCodec.
+     * The size and preview columns always describe the uncompressed text.
+     */
+    private void setContent(PreparedStatement pstmt, int index, String content) throws SQLException {
+        byte[] packed = PageContentCodec.encode(content);
+        if (packed != null) {
+            pstmt.setBytes(index, packed);
+        } else {
+            pstmt.setString(index, content);
+        }
+    }
+
+    /**
+     * Read the content column, which holds legacy text or compressed bytes
+     */
+    private String readContent(ResultSet rs) throws SQLException {
+        try {
+            return PageContentCodec.decode(rs.getBytes(COLUMN_PAGE_CONTENT));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     // ==================== REMINDER OPERATIONS ====================
 
     /**
@@ -0,0 +1,125 @@
+package com.example.notex_desktop.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * PageContentCodec - Compresses stored page content.
+ *
+ * Desktop pages hold a Base64 snapshot of the canvas pixels, which is mostly
+ * long runs of the background colour and deflates to a fraction of its size.
+ * Encoded content starts with a header that plain text never does (a NUL
+ * byte), so rows written before compression are still read as they are:
+ *
+ * <pre>
+ *   0x00 'N' 'Z'   magic
+ *   version        1
+ *   dictionary     0 = none (the only one used on desktop)
+ *   length         uncompressed UTF-8 length, 4 bytes big-endian
+ *   data           raw deflate stream
+ * </pre>
+ */
+final class PageContentCodec {
+
+    static final byte VERSION = 1;
+    static final byte DICTIONARY_NONE = 0;
+
+    private static final byte[] MAGIC = { 0, 'N', 'Z' };
+    private static final int HEADER_LENGTH = MAGIC.length + 6;
+
+    /** Content shorter than this is stored as text; the header would eat most of the gain */
+    static final int MIN_ENCODE_LENGTH = 256;
+
+    private PageContentCodec() {
+    }
+
+    /**
+     * Compress content. Returns null when the content is too short or would
+     * not get smaller; store it as text then.
+     */
+    static byte[] encode(String content) {
+        if (content == null || content.length() < MIN_ENCODE_LENGTH) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + HEADER_LENGTH);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(VERSION);
+            out.write(DICTIONARY_NONE);
+            out.write(raw.length >>> 24);
+            out.write(raw.length >>> 16);
+            out.write(raw.length >>> 8);
+            out.write(raw.length);
+
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+                if (out.size() >= raw.length) {
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Turn stored bytes back into content: encoded data is inflated, anything
+     * else is legacy UTF-8 text and returned as is
+     */
+    static String decode(byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+        if (!isEncoded(data)) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        if (data[3] != VERSION || data[4] != DICTIONARY_NONE) {
+            throw new IOException("Unsupported page content format " + data[3] + "/" + data[4]);
+        }
+        int length = ((data[5] & 0xFF) << 24) | ((data[6] & 0xFF) << 16) | ((data[7] & 0xFF) << 8) | (data[8] & 0xFF);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            byte[] raw = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = inflater.inflate(raw, offset, length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated page content");
+                }
+                offset += count;
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt page content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static boolean isEncoded(byte[] data) {
+        if (data.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}